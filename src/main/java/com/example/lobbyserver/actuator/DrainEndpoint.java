@@ -0,0 +1,63 @@
+package com.example.lobbyserver.actuator;
+
+import com.example.lobbyserver.game.GameInstanceDrain;
+import com.example.lobbyserver.game.GameInstanceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+
+@Component
+@Endpoint(id = "drain")
+@SuppressWarnings("unused")
+public class DrainEndpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(DrainEndpoint.class);
+
+    @Value("${game.server.drain.timeout-millis:600000}")
+    private long drainTimeoutMillis;
+
+    private final GameInstanceService gameInstanceService;
+
+    public DrainEndpoint(GameInstanceService gameInstanceService) {
+        this.gameInstanceService = gameInstanceService;
+    }
+
+    @ReadOperation
+    public DrainInfo drainProgress() {
+        return drainInfo();
+    }
+
+    @WriteOperation
+    public DrainInfo drain(@Nullable Long timeoutSeconds) {
+        var timeout = timeoutSeconds != null ? Duration.ofSeconds(timeoutSeconds) : Duration.ofMillis(drainTimeoutMillis);
+        log.info("Draining lobby server within {}", timeout);
+        gameInstanceService.drain(timeout);
+        return drainInfo();
+    }
+
+    private DrainInfo drainInfo() {
+        var counts = gameInstanceService.getInstanceCountsByState();
+        var remaining = counts.entrySet()
+                .stream()
+                .filter(entry -> !entry.getKey().isTerminal())
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+        var drain = gameInstanceService.getDrain();
+        return new DrainInfo(
+                drain.isPresent(),
+                drain.map(GameInstanceDrain::isCompleted).orElse(false),
+                drain.map(GameInstanceDrain::startedAt).orElse(null),
+                drain.map(GameInstanceDrain::deadline).orElse(null),
+                remaining,
+                counts
+        );
+    }
+}
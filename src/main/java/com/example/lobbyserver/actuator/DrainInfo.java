@@ -0,0 +1,22 @@
+package com.example.lobbyserver.actuator;
+
+import com.example.lobbyserver.game.GameInstanceState;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+public record DrainInfo(
+        boolean draining,
+        boolean completed,
+        Instant startedAt,
+        Instant deadline,
+        long remainingGameInstances,
+        Map<GameInstanceState, Long> gameInstances
+) {
+
+    public DrainInfo {
+        gameInstances = Collections.unmodifiableMap(new EnumMap<>(gameInstances));
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.lobbyserver.actuator;
+
+import com.example.lobbyserver.game.GameProcessTelemetry;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+@Component
+@Endpoint(id = "serverResources")
+@SuppressWarnings("unused")
+public class ServerResourcesEndpoint {
+
+    private final GameProcessTelemetry gameProcessTelemetry;
+
+    public ServerResourcesEndpoint(GameProcessTelemetry gameProcessTelemetry) {
+        this.gameProcessTelemetry = gameProcessTelemetry;
+    }
+
+    @ReadOperation
+    public ServerResourcesInfo getResourceUsage() {
+        var samples = gameProcessTelemetry.samples();
+        return new ServerResourcesInfo(samples.size(), samples, gameProcessTelemetry.recentExits());
+    }
+
+    @ReadOperation
+    public ResponseEntity<GameProcessTelemetry.Sample> getResourceUsageForLobby(@Selector String lobbyId) {
+        try {
+            return ResponseEntity.of(gameProcessTelemetry.sample(Long.parseLong(lobbyId)));
+        } catch (NumberFormatException _) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
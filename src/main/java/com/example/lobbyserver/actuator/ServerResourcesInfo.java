@@ -0,0 +1,17 @@
+package com.example.lobbyserver.actuator;
+
+import com.example.lobbyserver.game.GameProcessTelemetry;
+
+import java.util.List;
+
+public record ServerResourcesInfo(
+        int count,
+        List<GameProcessTelemetry.Sample> gameServers,
+        List<GameProcessTelemetry.Exit> recentExits
+) {
+
+    public ServerResourcesInfo {
+        gameServers = List.copyOf(gameServers);
+        recentExits = List.copyOf(recentExits);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.lobbyserver.actuator;
+
+import com.example.lobbyserver.user.UserStatsService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+@Component
+@Endpoint(id = "userStatsBackfill")
+@SuppressWarnings("unused")
+public class UserStatsBackfillEndpoint {
+
+    private final UserStatsService userStatsService;
+
+    public UserStatsBackfillEndpoint(UserStatsService userStatsService) {
+        this.userStatsService = userStatsService;
+    }
+
+    @WriteOperation
+    public UserStatsBackfillInfo backfill() {
+        return new UserStatsBackfillInfo(userStatsService.backfill());
+    }
+}
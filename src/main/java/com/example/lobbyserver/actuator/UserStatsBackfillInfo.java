@@ -0,0 +1,6 @@
+package com.example.lobbyserver.actuator;
+
+public record UserStatsBackfillInfo(
+        int players
+) {
+}
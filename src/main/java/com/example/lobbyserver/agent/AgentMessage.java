@@ -0,0 +1,99 @@
+package com.example.lobbyserver.agent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Messages exchanged between the lobby server and game host agents. Every message is a single type byte followed by
+ * fixed-size big-endian fields; strings are written in modified UTF-8 as by {@link DataOutputStream#writeUTF}.
+ */
+public sealed interface AgentMessage {
+
+    int PROTOCOL_VERSION = 2;
+
+    /**
+     * Sent by an agent right after connecting. {@code host} is the host name players use to reach its game servers and
+     * {@code secret} the secret shared with the lobby server.
+     */
+    record Hello(int version, String host, int capacity, String secret) implements AgentMessage {
+    }
+
+    /**
+     * Asks an agent to start a game server for the lobby.
+     */
+    record Launch(long lobbyId, int lobbySize) implements AgentMessage {
+    }
+
+    /**
+     * The game server for the lobby accepts players on the given port.
+     */
+    record Launched(long lobbyId, int port) implements AgentMessage {
+    }
+
+    record LaunchFailed(long lobbyId, String reason) implements AgentMessage {
+    }
+
+    /**
+     * Asks an agent to terminate the game server of the lobby, forcibly if {@code force} is set.
+     */
+    record Stop(long lobbyId, boolean force) implements AgentMessage {
+    }
+
+    record Exited(long lobbyId, int exitCode) implements AgentMessage {
+    }
+
+    static AgentMessage read(DataInputStream in) throws IOException {
+        var type = in.readByte();
+        return switch (type) {
+            case 1 -> new Hello(in.readUnsignedShort(), in.readUTF(), in.readInt(), in.readUTF());
+            case 2 -> new Launch(in.readLong(), in.readUnsignedShort());
+            case 3 -> new Launched(in.readLong(), in.readUnsignedShort());
+            case 4 -> new LaunchFailed(in.readLong(), in.readUTF());
+            case 5 -> new Stop(in.readLong(), in.readBoolean());
+            case 6 -> new Exited(in.readLong(), in.readInt());
+            default -> throw new IOException("Unknown agent message type " + type);
+        };
+    }
+
+    /**
+     * Writes and flushes the message. Callers sharing a stream must serialize calls.
+     */
+    static void write(DataOutputStream out, AgentMessage message) throws IOException {
+        switch (message) {
+            case Hello(var version, var host, var capacity, var secret) -> {
+                out.writeByte(1);
+                out.writeShort(version);
+                out.writeUTF(host);
+                out.writeInt(capacity);
+                out.writeUTF(secret);
+            }
+            case Launch(var lobbyId, var lobbySize) -> {
+                out.writeByte(2);
+                out.writeLong(lobbyId);
+                out.writeShort(lobbySize);
+            }
+            case Launched(var lobbyId, var port) -> {
+                out.writeByte(3);
+                out.writeLong(lobbyId);
+                out.writeShort(port);
+            }
+            case LaunchFailed(var lobbyId, var reason) -> {
+                out.writeByte(4);
+                out.writeLong(lobbyId);
+                out.writeUTF(reason);
+            }
+            case Stop(var lobbyId, var force) -> {
+                out.writeByte(5);
+                out.writeLong(lobbyId);
+                out.writeBoolean(force);
+            }
+            case Exited(var lobbyId, var exitCode) -> {
+                out.writeByte(6);
+                out.writeLong(lobbyId);
+                out.writeInt(exitCode);
+            }
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.lobbyserver.agent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Standalone process that starts game servers on its machine on behalf of the lobby server. The agent connects to the
+ * lobby server, announces how many game servers it is willing to run, and then launches and stops game servers as
+ * instructed. All game servers of the agent are destroyed when the connection to the lobby server is lost.
+ * <p>
+ * Usage: {@code GameHostAgent --lobby-server=host:port --executable=path [--host=name] [--capacity=n]}. The secret
+ * shared with the lobby server is read from the {@code GAME_HOST_AGENT_SECRET} environment variable.
+ */
+public final class GameHostAgent implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(GameHostAgent.class);
+
+    private final String host;
+    private final int capacity;
+    private final String secret;
+    private final GameServerStarter starter;
+
+    private final Map<Long, Process> gameServers = new ConcurrentHashMap<>();
+    private volatile Socket socket;
+    private volatile DataOutputStream out;
+
+    public GameHostAgent(String host, int capacity, String secret, GameServerStarter starter) {
+        this.host = host;
+        this.capacity = capacity;
+        this.secret = secret;
+        this.starter = starter;
+    }
+
+    /**
+     * Connects to the lobby server and serves its requests until the connection is closed. Blocks the calling thread.
+     */
+    public void run(String lobbyServerHost, int lobbyServerPort) throws IOException {
+        try (var connection = new Socket(lobbyServerHost, lobbyServerPort)) {
+            connection.setTcpNoDelay(true);
+            socket = connection;
+            out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            var in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+
+            send(new AgentMessage.Hello(AgentMessage.PROTOCOL_VERSION, host, capacity, secret));
+            log.info("Connected to lobby server {}:{} with capacity {}", lobbyServerHost, lobbyServerPort, capacity);
+
+            while (true) {
+                switch (AgentMessage.read(in)) {
+                    case AgentMessage.Launch(var lobbyId, var lobbySize) ->
+                            Thread.ofVirtual().name("game-host-agent-launch-" + lobbyId).start(() -> launch(lobbyId, lobbySize));
+                    case AgentMessage.Stop(var lobbyId, var force) -> stop(lobbyId, force);
+                    case AgentMessage message -> throw new IOException("Unexpected message " + message);
+                }
+            }
+        } catch (EOFException _) {
+            log.info("Lobby server closed the connection");
+        } finally {
+            gameServers.values().forEach(Process::destroy);
+        }
+    }
+
+    private void launch(long lobbyId, int lobbySize) {
+        try {
+            var started = starter.start(lobbyId, lobbySize);
+            gameServers.put(lobbyId, started.process());
+            started.process().onExit().thenAccept(process -> {
+                gameServers.remove(lobbyId, process);
+                log.debug("Game server for lobby {} exited with code {}", lobbyId, process.exitValue());
+                trySend(new AgentMessage.Exited(lobbyId, process.exitValue()));
+            });
+            send(new AgentMessage.Launched(lobbyId, started.port()));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to launch game server for lobby {}", lobbyId, e);
+            trySend(new AgentMessage.LaunchFailed(lobbyId, String.valueOf(e.getMessage())));
+        }
+    }
+
+    private void stop(long lobbyId, boolean force) {
+        var process = gameServers.get(lobbyId);
+        if (process == null) {
+            return;
+        }
+        if (force) {
+            process.destroyForcibly();
+        } else {
+            process.destroy();
+        }
+    }
+
+    private void trySend(AgentMessage message) {
+        try {
+            send(message);
+        } catch (IOException e) {
+            log.debug("Could not send {} to lobby server", message, e);
+        }
+    }
+
+    private synchronized void send(AgentMessage message) throws IOException {
+        AgentMessage.write(out, message);
+    }
+
+    public int runningGameServers() {
+        return gameServers.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        var connection = socket;
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Starts a game server and completes its handshake.
+     */
+    @FunctionalInterface
+    public interface GameServerStarter {
+        StartedGameServer start(long lobbyId, int lobbySize) throws IOException;
+    }
+
+    public record StartedGameServer(Process process, int port) {
+    }
+
+    /**
+     * Starts the game server executable and performs the same handshake as the lobby server: the game server connects
+     * to a local port, receives the lobby size and answers with the port it accepts players on. Like on the lobby
+     * server, the handshake connection stays open until the game server exits.
+     */
+    static GameServerStarter executable(Path executable, Path logDirectory, int handshakeTimeoutMillis) {
+        return (lobbyId, lobbySize) -> {
+            try (var handshake = new ServerSocket(0)) {
+                handshake.setSoTimeout(handshakeTimeoutMillis);
+                var process = new ProcessBuilder(executable.toAbsolutePath().toString(), Integer.toString(handshake.getLocalPort()))
+                        .redirectErrorStream(true)
+                        .redirectOutput(logDirectory.resolve("game-server-" + lobbyId + ".log").toFile())
+                        .start();
+                Socket gameServer = null;
+                try {
+                    gameServer = handshake.accept();
+                    new DataOutputStream(gameServer.getOutputStream()).writeShort(lobbySize);
+                    var port = new DataInputStream(gameServer.getInputStream()).readUnsignedShort();
+                    var connection = gameServer;
+                    process.onExit().whenComplete((_, _) -> closeQuietly(connection));
+                    return new StartedGameServer(process, port);
+                } catch (IOException e) {
+                    if (gameServer != null) {
+                        closeQuietly(gameServer);
+                    }
+                    process.destroy();
+                    throw e;
+                }
+            }
+        };
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            log.debug("Failed to close game server handshake connection", e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String lobbyServer = null;
+        String executable = null;
+        var host = InetAddress.getLocalHost().getHostName();
+        var capacity = Runtime.getRuntime().availableProcessors();
+        for (var arg : args) {
+            var separator = arg.indexOf('=');
+            var value = separator < 0 ? "" : arg.substring(separator + 1);
+            switch (separator < 0 ? arg : arg.substring(0, separator)) {
+                case "--lobby-server" -> lobbyServer = value;
+                case "--executable" -> executable = value;
+                case "--host" -> host = value;
+                case "--capacity" -> capacity = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+        if (lobbyServer == null || executable == null || lobbyServer.lastIndexOf(':') < 0) {
+            throw new IllegalArgumentException(
+                    "Usage: GameHostAgent --lobby-server=host:port --executable=path [--host=name] [--capacity=n]");
+        }
+        var secret = System.getenv("GAME_HOST_AGENT_SECRET");
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("GAME_HOST_AGENT_SECRET must be set to the secret of the lobby server");
+        }
+
+        var logDirectory = Files.createTempDirectory("game-host-agent");
+        var starter = executable(Path.of(executable), logDirectory, 2000);
+        var agent = new GameHostAgent(host, capacity, secret, starter);
+        var separator = lobbyServer.lastIndexOf(':');
+        agent.run(lobbyServer.substring(0, separator), Integer.parseInt(lobbyServer.substring(separator + 1)));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.lobbyserver.game;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A game server process started by a previous run of the lobby server. The process is no longer a child of this JVM,
+ * so its exit code cannot be observed and is reported as {@code -1}.
+ * <p>
+ * The game servers adopted for the matches of one {@linkplain MultiMatchGameServer multi-match process} share a
+ * match count; destroying one of them only ends its match, the process is destroyed along with the last one.
+ */
+final class AdoptedGameServer implements GameServer {
+
+    private final ProcessHandle process;
+    private final String host;
+    private final int port;
+    private final AtomicInteger matchesOnProcess;
+    private final AtomicBoolean released = new AtomicBoolean();
+    private final CompletableFuture<Integer> matchEnded = new CompletableFuture<>();
+
+    AdoptedGameServer(ProcessHandle process, String host, int port) {
+        this(process, host, port, new AtomicInteger(1));
+    }
+
+    AdoptedGameServer(ProcessHandle process, String host, int port, AtomicInteger matchesOnProcess) {
+        this.process = process;
+        this.host = host;
+        this.port = port;
+        this.matchesOnProcess = matchesOnProcess;
+    }
+
+    @Override
+    public String host() {
+        return host;
+    }
+
+    @Override
+    public CompletableFuture<Integer> assignLobby(int lobbySize) {
+        return CompletableFuture.completedFuture(port);
+    }
+
+    @Override
+    public CompletableFuture<Integer> onExit() {
+        return process.onExit().thenApply(_ -> -1).applyToEither(matchEnded, Function.identity());
+    }
+
+    @Override
+    public Optional<ProcessHandle> localProcess() {
+        return Optional.of(process);
+    }
+
+    @Override
+    public boolean isAlive() {
+        return !matchEnded.isDone() && process.isAlive();
+    }
+
+    @Override
+    public void destroy() {
+        if (!released.compareAndSet(false, true)) {
+            return;
+        }
+        if (matchesOnProcess.decrementAndGet() <= 0) {
+            process.destroy();
+        } else {
+            // other matches are still running on the process
+            matchEnded.complete(0);
+        }
+    }
+
+    @Override
+    public void destroyForcibly() {
+        process.destroyForcibly();
+    }
+}
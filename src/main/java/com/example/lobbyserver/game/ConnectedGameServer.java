@@ -0,0 +1,105 @@
+package com.example.lobbyserver.game;
+
+import java.io.File;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
+
+/**
+ * A spawned game server process whose lobby connection has been accepted, but which has not been told its lobby
+ * size yet. The game server blocks until {@link #assignLobby(int)} is called, which makes it usable as a pre-warmed
+ * instance.
+ */
+final class ConnectedGameServer implements GameServer {
+
+    private final Process process;
+    private final HandshakeConnection connection;
+    private final String host;
+    private final IntConsumer portReported;
+    private volatile File logFile;
+
+    ConnectedGameServer(Process process, HandshakeConnection connection, String host, File logFile) {
+        this(process, connection, host, logFile, _ -> {
+        });
+    }
+
+    ConnectedGameServer(Process process, HandshakeConnection connection, String host, File logFile, IntConsumer portReported) {
+        this.process = process;
+        this.connection = connection;
+        this.host = host;
+        this.logFile = logFile;
+        this.portReported = portReported;
+    }
+
+    @Override
+    public String host() {
+        return host;
+    }
+
+    /**
+     * Sends the lobby size to the game server and completes with the port it accepts player connections on.
+     */
+    @Override
+    public CompletableFuture<Integer> assignLobby(int lobbySize) {
+        return connection.exchange(lobbySize).thenApply(port -> {
+            portReported.accept(port);
+            return port;
+        });
+    }
+
+    /**
+     * Completes with the exit code of the process; the lobby connection is closed at that point.
+     */
+    @Override
+    public CompletableFuture<Integer> onExit() {
+        return process.onExit().thenApply(exited -> {
+            close();
+            return exited.exitValue();
+        });
+    }
+
+    /**
+     * The handle of the game server process, empty for a {@link SimulatedGameServer}, which has no native process.
+     */
+    @Override
+    public Optional<ProcessHandle> localProcess() {
+        try {
+            return Optional.of(process.toHandle());
+        } catch (UnsupportedOperationException e) {
+            return Optional.empty();
+        }
+    }
+
+    Process process() {
+        return process;
+    }
+
+    File logFile() {
+        return logFile;
+    }
+
+    void setLogFile(File logFile) {
+        this.logFile = logFile;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    @Override
+    public void destroy() {
+        process.destroy();
+        close();
+    }
+
+    @Override
+    public void destroyForcibly() {
+        process.destroyForcibly();
+        close();
+    }
+
+    void close() {
+        connection.close();
+    }
+}
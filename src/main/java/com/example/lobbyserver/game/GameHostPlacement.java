@@ -0,0 +1,35 @@
+package com.example.lobbyserver.game;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Strategy for choosing the game host a new game server is launched on.
+ */
+public enum GameHostPlacement {
+    /** Spreads game servers evenly, choosing the host with the lowest share of used capacity. */
+    LEAST_LOADED(Comparator.comparingDouble(RemoteGameHost::utilization)),
+    /** Packs game servers onto as few hosts as possible, choosing the fullest host that still has room. */
+    BIN_PACKING(Comparator.comparingDouble(RemoteGameHost::utilization).reversed());
+
+    private final Comparator<RemoteGameHost> preference;
+
+    GameHostPlacement(Comparator<RemoteGameHost> preference) {
+        this.preference = preference;
+    }
+
+    /**
+     * Returns the preferred host with free capacity. Ties are broken by free slots, then by registration order.
+     */
+    Optional<RemoteGameHost> choose(List<RemoteGameHost> hosts) {
+        return hosts.stream()
+                .filter(RemoteGameHost::hasFreeCapacity)
+                .min(preference.thenComparing(Comparator.comparingInt(RemoteGameHost::freeCapacity).reversed()));
+    }
+
+    public static GameHostPlacement fromProperty(String value) {
+        return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
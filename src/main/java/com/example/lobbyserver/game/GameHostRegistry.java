@@ -0,0 +1,200 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Accepts connections from game host agents and places new game servers on them. Disabled unless
+ * {@code game.host.agents.port} is set; game servers are then launched on the lobby server itself only. Agents have to
+ * present the secret configured in {@code game.host.agents.secret}.
+ */
+@Component
+public class GameHostRegistry implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(GameHostRegistry.class);
+
+    @Value("${game.host.agents.port:-1}")
+    private int port;
+
+    @Value("${game.host.placement:least-loaded}")
+    private String placement;
+
+    @Value("${game.host.agents.secret:}")
+    private String secret;
+
+    private final List<RemoteGameHost> gameHosts = new CopyOnWriteArrayList<>();
+    private volatile ServerSocket serverSocket;
+    private volatile boolean running = false;
+
+    public GameHostRegistry(MeterRegistry meterRegistry) {
+        Gauge.builder("game.hosts", gameHosts, List::size)
+                .description("Connected game host agents")
+                .register(meterRegistry);
+        Gauge.builder("game.hosts.slots", gameHosts, hosts -> hosts.stream().mapToInt(RemoteGameHost::used).sum())
+                .description("Game server slots of connected game host agents")
+                .tag("state", "used")
+                .register(meterRegistry);
+        Gauge.builder("game.hosts.slots", gameHosts, hosts -> hosts.stream().mapToInt(RemoteGameHost::freeCapacity).sum())
+                .description("Game server slots of connected game host agents")
+                .tag("state", "free")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a slot on the game host chosen by the configured placement strategy. Returns an empty optional if no
+     * connected game host has free capacity. The reservation has to be launched or released.
+     */
+    Optional<Reservation> reserve() {
+        if (!running) {
+            return Optional.empty();
+        }
+        // only the choice is serialized, the launch request is sent outside the lock
+        synchronized (gameHosts) {
+            return GameHostPlacement.fromProperty(placement).choose(gameHosts)
+                    .filter(RemoteGameHost::reserve)
+                    .map(Reservation::new);
+        }
+    }
+
+    /**
+     * Launches a game server on the game host chosen by the configured placement strategy. Returns an empty optional
+     * if no connected game host has free capacity.
+     */
+    Optional<CompletableFuture<GameServer>> launch(long lobbyId, int lobbySize) {
+        return reserve().map(reservation -> reservation.launch(lobbyId, lobbySize));
+    }
+
+    List<RemoteGameHost> gameHosts() {
+        return List.copyOf(gameHosts);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void start() {
+        if (port < 0) {
+            return;
+        }
+        if (secret.isBlank()) {
+            throw new IllegalStateException("game.host.agents.secret must be set to accept game host agents");
+        }
+        try {
+            serverSocket = new ServerSocket(port);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open game host agent port " + port, e);
+        }
+        running = true;
+        Thread.ofPlatform().name("game-host-agents").daemon().start(this::acceptAgents);
+        log.info("Accepting game host agents on port {}", serverSocket.getLocalPort());
+    }
+
+    private void acceptAgents() {
+        while (running) {
+            try {
+                var socket = serverSocket.accept();
+                Thread.ofVirtual().name("game-host-agent-" + socket.getRemoteSocketAddress()).start(() -> register(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.error("Failed to accept game host agent", e);
+                }
+            }
+        }
+    }
+
+    private void register(Socket socket) {
+        RemoteGameHost gameHost;
+        try {
+            gameHost = RemoteGameHost.accept(socket, secret);
+        } catch (IOException e) {
+            log.warn("Rejected game host agent {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            closeQuietly(socket);
+            return;
+        }
+
+        gameHosts.add(gameHost);
+        log.info("Game host {} connected with capacity {}", gameHost.host(), gameHost.capacity());
+        try {
+            gameHost.serve();
+        } finally {
+            gameHosts.remove(gameHost);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException _) {
+            // already broken
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.debug("Failed to close game host agent port", e);
+        }
+        gameHosts.forEach(RemoteGameHost::close);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * A slot on a game host, taken before the lobby commits so that the launch does not need local admission.
+     */
+    static final class Reservation {
+
+        private final RemoteGameHost gameHost;
+        private final AtomicBoolean used = new AtomicBoolean();
+
+        private Reservation(RemoteGameHost gameHost) {
+            this.gameHost = gameHost;
+        }
+
+        CompletableFuture<GameServer> launch(long lobbyId, int lobbySize) {
+            if (!used.compareAndSet(false, true)) {
+                throw new IllegalStateException("Reservation on game host " + gameHost.host() + " was already used");
+            }
+            try {
+                var gameServer = gameHost.launch(lobbyId, lobbySize);
+                log.debug("Placed game server for lobby {} on game host {}", lobbyId, gameHost);
+                return CompletableFuture.completedFuture(gameServer);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        /**
+         * Gives the slot back unless it was launched. Idempotent.
+         */
+        void release() {
+            if (used.compareAndSet(false, true)) {
+                gameHost.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.lobbyserver.game;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A game instance tracked by {@link GameInstanceService}. State changes are lock-free compare-and-set transitions,
+ * so concurrent callbacks (handshake completion, process exit, players leaving, timeouts) cannot overwrite each
+ * other's state.
+ */
+final class GameInstance {
+
+    private final long lobbyId;
+    private final AtomicInteger connectedPlayers;
+    private final AtomicReference<Phase> phase;
+    private final TransitionListener listener;
+    private volatile GameServer gameServer;
+    private volatile GameInstanceAdmission.Permit permit;
+
+    GameInstance(long lobbyId, int lobbySize, TransitionListener listener) {
+        this(lobbyId, lobbySize, GameInstanceState.QUEUED, listener);
+    }
+
+    GameInstance(long lobbyId, int connectedPlayers, GameInstanceState initialState, TransitionListener listener) {
+        this.lobbyId = lobbyId;
+        this.connectedPlayers = new AtomicInteger(connectedPlayers);
+        this.phase = new AtomicReference<>(new Phase(initialState, System.nanoTime()));
+        this.listener = listener;
+    }
+
+    long lobbyId() {
+        return lobbyId;
+    }
+
+    GameInstanceState state() {
+        return phase.get().state();
+    }
+
+    long nanosInState() {
+        return System.nanoTime() - phase.get().enteredAt();
+    }
+
+    GameServer getGameServer() {
+        return gameServer;
+    }
+
+    void setGameServer(GameServer gameServer) {
+        this.gameServer = gameServer;
+    }
+
+    /**
+     * Attaches the admission permit of this instance. The permit is released as soon as the instance reaches a
+     * terminal state, or right away if it already has.
+     */
+    void holdPermit(GameInstanceAdmission.Permit permit) {
+        this.permit = permit;
+        if (state().isTerminal()) {
+            permit.release();
+        }
+    }
+
+    int playerLeft() {
+        return connectedPlayers.decrementAndGet();
+    }
+
+    int playersRemaining() {
+        return connectedPlayers.get();
+    }
+
+    /**
+     * Moves the instance from the expected state to the given one. Returns {@code false} if the instance is no
+     * longer in the expected state.
+     */
+    boolean transition(GameInstanceState from, GameInstanceState to) {
+        if (!from.canTransitionTo(to)) {
+            throw new IllegalArgumentException("Invalid game instance transition " + from + " -> " + to);
+        }
+
+        var current = phase.get();
+        return current.state() == from && compareAndSet(current, to);
+    }
+
+    /**
+     * Moves the instance to the given state from whatever state it is currently in. Returns {@code false} if that
+     * transition is not allowed from the current state.
+     */
+    boolean transitionTo(GameInstanceState to) {
+        while (true) {
+            var current = phase.get();
+            if (!current.state().canTransitionTo(to)) {
+                return false;
+            }
+            if (compareAndSet(current, to)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean compareAndSet(Phase current, GameInstanceState to) {
+        var next = new Phase(to, System.nanoTime());
+        if (!phase.compareAndSet(current, next)) {
+            return false;
+        }
+        listener.onTransition(current.state(), to, next.enteredAt() - current.enteredAt());
+        var heldPermit = permit;
+        if (to.isTerminal() && heldPermit != null) {
+            heldPermit.release();
+        }
+        return true;
+    }
+
+    private record Phase(GameInstanceState state, long enteredAt) {
+    }
+
+    @FunctionalInterface
+    interface TransitionListener {
+        void onTransition(GameInstanceState from, GameInstanceState to, long nanosInPreviousState);
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits how many game instances run at the same time. A launch is admitted while the number of running instances
+ * is below the configured maximum and the host is not overloaded; otherwise it waits in a bounded first-come,
+ * first-served queue. When the queue is full, launches are rejected right away with a
+ * {@link GameInstanceAdmissionException} so the client can retry later.
+ */
+@Component
+public class GameInstanceAdmission {
+
+    private static final Logger log = LoggerFactory.getLogger(GameInstanceAdmission.class);
+
+    @Value("${game.server.admission.max-instances:64}")
+    private int maxInstances;
+
+    @Value("${game.server.admission.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${game.server.admission.max-wait-millis:30000}")
+    private long maxWaitMillis;
+
+    @Value("${game.server.admission.max-cpu-utilization:0.9}")
+    private double maxCpuUtilization;
+
+    @Value("${game.server.admission.max-load-per-cpu:2.0}")
+    private double maxLoadPerCpu;
+
+    @Value("${game.server.admission.min-available-memory-mb:256}")
+    private long minAvailableMemoryMb;
+
+    @Value("${game.server.admission.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    private final HostLoadProbe hostLoadProbe;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+    private int activeInstances = 0;
+    private boolean closed = false;
+    private volatile HostLoadProbe.HostLoad hostLoad = HostLoadProbe.HostLoad.NONE;
+
+    private final Timer waitTime;
+    private final Counter queueFullRejections;
+    private final Counter timeoutRejections;
+
+    @Autowired
+    public GameInstanceAdmission(MeterRegistry meterRegistry) {
+        this(new HostLoadProbe(Path.of("/proc")), meterRegistry);
+    }
+
+    GameInstanceAdmission(HostLoadProbe hostLoadProbe, MeterRegistry meterRegistry) {
+        this.hostLoadProbe = hostLoadProbe;
+
+        this.waitTime = Timer.builder("game.server.admission.wait")
+                .description("Time game instance launches waited for admission")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueFullRejections = Counter.builder("game.server.admission.rejections")
+                .description("Game instance launches rejected because the admission queue was full")
+                .tag("reason", "queue-full")
+                .register(meterRegistry);
+        this.timeoutRejections = Counter.builder("game.server.admission.rejections")
+                .description("Queued game instance launches that were not admitted in time")
+                .tag("reason", "timeout")
+                .register(meterRegistry);
+        Gauge.builder("game.server.admission.queue", this, GameInstanceAdmission::queueDepth)
+                .description("Game instance launches waiting for admission")
+                .register(meterRegistry);
+        Gauge.builder("game.server.admission.active", this, GameInstanceAdmission::activeInstances)
+                .description("Game instances currently holding an admission permit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Requests a permit to run a game instance. The returned future completes once the launch is admitted, which is
+     * immediately if there is capacity and nobody is waiting. The permit must be released once the instance ends.
+     *
+     * @throws GameInstanceAdmissionException if the admission queue is full
+     * @throws GameInstanceDrainingException   if admission has been closed for draining
+     */
+    CompletableFuture<Permit> admit() {
+        lock.lock();
+        try {
+            if (closed) {
+                throw drainingException();
+            }
+            if (queue.isEmpty() && hasCapacity()) {
+                activeInstances++;
+                return CompletableFuture.completedFuture(new Permit(true));
+            }
+            if (queue.size() >= queueCapacity) {
+                queueFullRejections.increment();
+                throw new GameInstanceAdmissionException("Too many game instances are starting, try again later", retryAfter());
+            }
+
+            var waiter = new Waiter(new CompletableFuture<>(), System.nanoTime());
+            queue.add(waiter);
+            return waiter.admitted();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Grants a permit for a game instance placed on a game host agent. Agents enforce their own capacity, so the
+     * permit does not count against the maximum and the host load of the lobby server; it is only refused while
+     * draining.
+     *
+     * @throws GameInstanceDrainingException if admission has been closed for draining
+     */
+    Permit admitRemote() {
+        lock.lock();
+        try {
+            if (closed) {
+                throw drainingException();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return new Permit(false);
+    }
+
+    /**
+     * Grants a permit for a game instance that is already running, regardless of capacity. Used for game servers
+     * re-adopted after a restart.
+     */
+    Permit adopt() {
+        lock.lock();
+        try {
+            activeInstances++;
+        } finally {
+            lock.unlock();
+        }
+        return new Permit(true);
+    }
+
+    /**
+     * Stops admitting game instances for good. Launches that are still waiting in the queue are failed with a
+     * {@link GameInstanceDrainingException}.
+     */
+    void close() {
+        var rejected = new ArrayList<Waiter>();
+        lock.lock();
+        try {
+            closed = true;
+            rejected.addAll(queue);
+            queue.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        for (var waiter : rejected) {
+            waiter.admitted().completeExceptionally(drainingException());
+        }
+        if (!rejected.isEmpty()) {
+            log.info("Rejected {} queued game instance launches, the lobby server is draining", rejected.size());
+        }
+    }
+
+    public boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Samples the host load, fails queued launches that waited longer than the maximum wait time and admits as many
+     * waiting launches as capacity allows.
+     */
+    @Scheduled(fixedDelayString = "${game.server.admission.poll-interval-millis:1000}")
+    public void poll() {
+        hostLoad = hostLoadProbe.sample();
+
+        var expired = new ArrayList<Waiter>();
+        lock.lock();
+        try {
+            var deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+            while (!queue.isEmpty() && queue.peek().enqueuedAt() - deadline < 0) {
+                expired.add(queue.poll());
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (var waiter : expired) {
+            timeoutRejections.increment();
+            recordWait(waiter);
+            waiter.admitted().completeExceptionally(new GameInstanceAdmissionException(
+                    "Game instance was not admitted within " + maxWaitMillis + " ms", retryAfter()));
+        }
+        if (!expired.isEmpty()) {
+            log.warn("{} queued game instance launches timed out waiting for admission", expired.size());
+        }
+
+        admitWaiting();
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            activeInstances--;
+        } finally {
+            lock.unlock();
+        }
+        admitWaiting();
+    }
+
+    private void admitWaiting() {
+        var admitted = new ArrayList<Waiter>();
+        lock.lock();
+        try {
+            while (!queue.isEmpty() && hasCapacity()) {
+                admitted.add(queue.poll());
+                activeInstances++;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // complete outside the lock, the futures run the launch continuation
+        completeAll(admitted);
+    }
+
+    private void completeAll(List<Waiter> admitted) {
+        for (var waiter : admitted) {
+            recordWait(waiter);
+            if (!waiter.admitted().complete(new Permit(true))) {
+                release();
+            }
+        }
+    }
+
+    private void recordWait(Waiter waiter) {
+        waitTime.record(System.nanoTime() - waiter.enqueuedAt(), TimeUnit.NANOSECONDS);
+    }
+
+    private boolean hasCapacity() {
+        return (maxInstances <= 0 || activeInstances < maxInstances) && !isHostOverloaded();
+    }
+
+    boolean isHostOverloaded() {
+        var load = hostLoad;
+        if (maxCpuUtilization > 0 && load.cpuUtilization() >= maxCpuUtilization) {
+            return true;
+        }
+        if (maxLoadPerCpu > 0 && load.loadAverage() >= maxLoadPerCpu * Runtime.getRuntime().availableProcessors()) {
+            return true;
+        }
+        return minAvailableMemoryMb > 0 && load.availableMemoryBytes() >= 0
+                && load.availableMemoryBytes() < minAvailableMemoryMb * 1024 * 1024;
+    }
+
+    private GameInstanceDrainingException drainingException() {
+        return new GameInstanceDrainingException("The lobby server is draining and does not accept new game instances", retryAfter());
+    }
+
+    private Duration retryAfter() {
+        return Duration.ofSeconds(retryAfterSeconds);
+    }
+
+    public int queueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int activeInstances() {
+        lock.lock();
+        try {
+            return activeInstances;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Waiter(CompletableFuture<Permit> admitted, long enqueuedAt) {
+    }
+
+    /**
+     * The right to run one game instance. Releasing is idempotent.
+     */
+    final class Permit {
+
+        // whether the permit takes one of the local instance slots
+        private final boolean local;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(boolean local) {
+            this.local = local;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true) && local) {
+                GameInstanceAdmission.this.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.lobbyserver.game;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a game instance cannot be admitted, either because the admission queue is full or because a queued
+ * launch waited too long. {@link #getRetryAfter()} is a hint for when the client should try again.
+ */
+public class GameInstanceAdmissionException extends RuntimeException {
+
+    private final transient Duration retryAfter;
+
+    public GameInstanceAdmissionException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.lobbyserver.game;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A drain of the lobby server: no new game instances are accepted, running matches may finish until the deadline,
+ * and the game servers still running then are destroyed. The deadline can only move closer, e.g. when the lobby
+ * server shuts down while an actuator-triggered drain is in progress.
+ */
+public final class GameInstanceDrain {
+
+    private final Instant startedAt;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private volatile Instant deadline;
+
+    GameInstanceDrain(Instant startedAt, Instant deadline) {
+        this.startedAt = startedAt;
+        this.deadline = deadline;
+    }
+
+    public Instant startedAt() {
+        return startedAt;
+    }
+
+    public Instant deadline() {
+        return deadline;
+    }
+
+    public boolean isCompleted() {
+        return completion.isDone();
+    }
+
+    /**
+     * Completes once every game instance has finished or was destroyed.
+     */
+    public CompletableFuture<Void> completion() {
+        return completion.copy();
+    }
+
+    synchronized void shortenDeadline(Instant deadline) {
+        if (deadline.isBefore(this.deadline)) {
+            this.deadline = deadline;
+        }
+    }
+
+    void complete() {
+        completion.complete(null);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.lobbyserver.game;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a game instance is requested while the lobby server is draining. Unlike a full admission queue, this
+ * server will not accept the launch again, so clients should retry against another lobby server.
+ */
+public class GameInstanceDrainingException extends GameInstanceAdmissionException {
+
+    public GameInstanceDrainingException(String message, Duration retryAfter) {
+        super(message, retryAfter);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.lobbyserver.game;
+
+/**
+ * Thrown when a lobby has no game instance (anymore), for example because its game server failed to start or was
+ * cleaned up by the {@link GameInstanceReconciler}.
+ */
+public class GameInstanceNotFoundException extends IllegalStateException {
+
+    public GameInstanceNotFoundException(long lobbyId) {
+        super("Game instance for lobby " + lobbyId + " does not exist");
+    }
+}
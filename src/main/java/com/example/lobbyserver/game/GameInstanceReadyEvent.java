@@ -0,0 +1,7 @@
+package com.example.lobbyserver.game;
+
+/**
+ * Published once the game server of a lobby reported its port and the address has been stored for the lobby.
+ */
+public record GameInstanceReadyEvent(long lobbyId, String host, int port) {
+}
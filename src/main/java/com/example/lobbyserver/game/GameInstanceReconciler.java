@@ -0,0 +1,264 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.lobby.db.Lobby;
+import com.example.lobbyserver.lobby.db.LobbyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Periodically compares the lobby table, the tracked game instances and the game server processes, and repairs the
+ * drift between them that the regular code paths leave behind:
+ * <ul>
+ *     <li>lobbies without a game instance, or whose game server is gone before the match started, are deleted</li>
+ *     <li>game instances whose lobby was deleted are abandoned and their game servers destroyed</li>
+ *     <li>game server processes that belong to no game instance are killed, which also frees their ports</li>
+ * </ul>
+ * Lobbies are read in batches of {@code game.server.reconcile.batch-size}. A resource is only repaired if it is still
+ * out of step on the next run, so lobbies and processes that are just being created are left alone. Processes that
+ * survive being destroyed are killed forcibly on the run after.
+ */
+@Component
+public class GameInstanceReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(GameInstanceReconciler.class);
+
+    @Value("${game.server.reconcile.enabled:true}")
+    private boolean enabled;
+
+    @Value("${game.server.reconcile.batch-size:500}")
+    private int batchSize;
+
+    @Value("${game.server.executable-name:}")
+    private String gameServerExecutable;
+
+    private final LobbyRepository lobbyRepository;
+    private final GameInstanceService gameInstanceService;
+    private final GameServerPool gameServerPool;
+    private final Supplier<Stream<ProcessHandle>> childProcesses;
+
+    private volatile Set<Long> suspectLobbies = Set.of();
+    private volatile Set<Long> suspectInstances = Set.of();
+    private volatile Map<Long, Integer> suspectProcesses = Map.of();
+
+    private final Counter deletedLobbies;
+    private final Counter abandonedInstances;
+    private final Counter killedProcesses;
+    private final Timer duration;
+
+    @Autowired
+    public GameInstanceReconciler(LobbyRepository lobbyRepository, GameInstanceService gameInstanceService, GameServerPool gameServerPool, MeterRegistry meterRegistry) {
+        this(lobbyRepository, gameInstanceService, gameServerPool, () -> ProcessHandle.current().children(), meterRegistry);
+    }
+
+    GameInstanceReconciler(LobbyRepository lobbyRepository, GameInstanceService gameInstanceService, GameServerPool gameServerPool, Supplier<Stream<ProcessHandle>> childProcesses, MeterRegistry meterRegistry) {
+        this.lobbyRepository = lobbyRepository;
+        this.gameInstanceService = gameInstanceService;
+        this.gameServerPool = gameServerPool;
+        this.childProcesses = childProcesses;
+
+        this.deletedLobbies = repairs(meterRegistry, "lobby", "Lobbies deleted because their game instance was gone");
+        this.abandonedInstances = repairs(meterRegistry, "instance", "Game instances abandoned because their lobby was gone");
+        this.killedProcesses = repairs(meterRegistry, "process", "Game server processes killed because they belonged to no game instance");
+        this.duration = Timer.builder("game.reconciler.run")
+                .description("Time to reconcile lobbies, game instances and game server processes")
+                .register(meterRegistry);
+        suspects(meterRegistry, "lobby", reconciler -> reconciler.suspectLobbies.size());
+        suspects(meterRegistry, "instance", reconciler -> reconciler.suspectInstances.size());
+        suspects(meterRegistry, "process", reconciler -> reconciler.suspectProcesses.size());
+    }
+
+    private static Counter repairs(MeterRegistry meterRegistry, String kind, String description) {
+        return Counter.builder("game.reconciler.repairs")
+                .description(description)
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    private void suspects(MeterRegistry meterRegistry, String kind, Function<GameInstanceReconciler, Integer> count) {
+        Gauge.builder("game.reconciler.suspects", this, reconciler -> count.apply(reconciler))
+                .description("Resources found out of step that are repaired if they still are on the next run")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${game.server.reconcile.interval-millis:60000}",
+            fixedDelayString = "${game.server.reconcile.interval-millis:60000}")
+    public void reconcile() {
+        if (!enabled || !gameInstanceService.isRunning()) {
+            return;
+        }
+        try {
+            var report = duration.record(this::reconcileOnce);
+            if (report != null && report.repairs() > 0) {
+                log.info("Reconciled game instances: deleted {} lobbies, abandoned {} game instances, killed {} game server processes",
+                        report.deletedLobbies(), report.abandonedInstances(), report.killedProcesses());
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to reconcile game instances", e);
+        }
+    }
+
+    Report reconcileOnce() {
+        var instances = gameInstanceService.snapshot()
+                .stream()
+                .collect(Collectors.toMap(GameInstance::lobbyId, Function.identity()));
+
+        var lobbyIds = new HashSet<Long>();
+        var lobbies = reconcileLobbies(instances, lobbyIds);
+        var orphanedInstances = reconcileInstances(instances.values(), lobbyIds);
+        var orphanedProcesses = reconcileProcesses(instances.values());
+        return new Report(lobbyIds.size(), lobbies, orphanedInstances, orphanedProcesses);
+    }
+
+    private int reconcileLobbies(Map<Long, GameInstance> instances, Set<Long> lobbyIds) {
+        var suspects = new HashSet<Long>();
+        var deleted = 0;
+        var after = 0L;
+        List<Lobby> batch;
+        do {
+            batch = lobbyRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(batchSize));
+            for (var lobby : batch) {
+                lobbyIds.add(lobby.getId());
+                if (!isDead(lobby, instances.get(lobby.getId()))) {
+                    continue;
+                }
+                if (suspectLobbies.contains(lobby.getId()) && deleteLobby(lobby)) {
+                    deleted++;
+                } else {
+                    suspects.add(lobby.getId());
+                }
+            }
+            if (!batch.isEmpty()) {
+                after = batch.getLast().getId();
+            }
+        } while (batch.size() == batchSize);
+        suspectLobbies = suspects;
+        return deleted;
+    }
+
+    /**
+     * A lobby is dead if it has no game instance, or if its game server is gone before the match started, so
+     * players would still be sent to it.
+     */
+    private static boolean isDead(Lobby lobby, GameInstance instance) {
+        return instance == null || (instance.state().isTerminal() && lobby.notStarted());
+    }
+
+    private boolean deleteLobby(Lobby lobby) {
+        try {
+            lobbyRepository.delete(lobby);
+        } catch (DataAccessException e) {
+            // a player joined or left in the meantime, the next run takes another look
+            log.debug("Could not delete dead lobby {}", lobby.getId(), e);
+            return false;
+        }
+        log.warn("Deleted lobby {}, it has no running game server", lobby.getId());
+        gameInstanceService.abandon(lobby.getId());
+        deletedLobbies.increment();
+        return true;
+    }
+
+    private int reconcileInstances(Iterable<GameInstance> instances, Set<Long> lobbyIds) {
+        var suspects = new HashSet<Long>();
+        var abandoned = 0;
+        for (var instance : instances) {
+            if (instance.state().isTerminal() || lobbyIds.contains(instance.lobbyId())) {
+                continue;
+            }
+            if (!suspectInstances.contains(instance.lobbyId())) {
+                suspects.add(instance.lobbyId());
+                continue;
+            }
+            log.warn("Abandoning game instance for lobby {}, the lobby does not exist", instance.lobbyId());
+            gameInstanceService.abandon(instance.lobbyId());
+            abandonedInstances.increment();
+            abandoned++;
+        }
+        suspectInstances = suspects;
+        return abandoned;
+    }
+
+    private int reconcileProcesses(Iterable<GameInstance> instances) {
+        var executable = Objects.requireNonNullElse(gameServerExecutable, "");
+        if (executable.isBlank()) {
+            suspectProcesses = Map.of();
+            return 0;
+        }
+        var executableName = fileName(executable);
+
+        var known = new HashSet<Long>();
+        for (var instance : instances) {
+            var gameServer = instance.getGameServer();
+            if (gameServer != null) {
+                gameServer.localProcess().ifPresent(process -> known.add(process.pid()));
+            }
+        }
+        gameServerPool.idleProcesses().forEach(process -> known.add(process.pid()));
+
+        var suspects = new HashMap<Long, Integer>();
+        var killed = 0;
+        try (var children = childProcesses.get()) {
+            for (var process : (Iterable<ProcessHandle>) children::iterator) {
+                if (known.contains(process.pid()) || !isGameServer(process, executableName)) {
+                    continue;
+                }
+                var sightings = suspectProcesses.getOrDefault(process.pid(), 0) + 1;
+                suspects.put(process.pid(), sightings);
+                if (sightings == 2) {
+                    log.warn("Destroying game server process {}, it belongs to no game instance", process.pid());
+                    process.destroy();
+                    killedProcesses.increment();
+                    killed++;
+                } else if (sightings > 2) {
+                    log.warn("Killing game server process {}, it did not exit after being destroyed", process.pid());
+                    process.destroyForcibly();
+                }
+            }
+        }
+        suspectProcesses = suspects;
+        return killed;
+    }
+
+    private static boolean isGameServer(ProcessHandle process, String executableName) {
+        return process.info()
+                .command()
+                .map(command -> fileName(command).equals(executableName))
+                .orElse(false);
+    }
+
+    private static String fileName(String path) {
+        return Objects.toString(Path.of(path).getFileName(), "");
+    }
+
+    /**
+     * The outcome of one reconciliation run.
+     */
+    record Report(int lobbiesScanned, int deletedLobbies, int abandonedInstances, int killedProcesses) {
+
+        int repairs() {
+            return deletedLobbies + abandonedInstances + killedProcesses;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.game.db.GameInstanceRecord;
+import com.example.lobbyserver.game.db.GameInstanceRecordRepository;
+import com.example.lobbyserver.lobby.db.LobbyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persists the game instances that are ready or running, so their game servers can be re-adopted when the lobby server
+ * restarts. Only game servers running on the lobby server itself can be re-adopted; game host agents destroy their
+ * game servers when they lose the connection to the lobby server.
+ */
+@Component
+public class GameInstanceRecovery {
+
+    private static final Logger log = LoggerFactory.getLogger(GameInstanceRecovery.class);
+
+    private final GameInstanceRecordRepository gameInstanceRecordRepository;
+    private final LobbyRepository lobbyRepository;
+
+    public GameInstanceRecovery(GameInstanceRecordRepository gameInstanceRecordRepository, LobbyRepository lobbyRepository) {
+        this.gameInstanceRecordRepository = gameInstanceRecordRepository;
+        this.lobbyRepository = lobbyRepository;
+    }
+
+    void recordReady(long lobbyId, GameServer gameServer, int port, int playersRemaining) {
+        var process = gameServer.localProcess();
+        gameInstanceRecordRepository.save(new GameInstanceRecord(
+                lobbyId,
+                process.map(ProcessHandle::pid).orElse(null),
+                process.flatMap(handle -> handle.info().startInstant()).orElse(null),
+                gameServer.host(),
+                port,
+                playersRemaining,
+                LocalDateTime.now()
+        ));
+    }
+
+    void recordPlayersRemaining(long lobbyId, int playersRemaining) {
+        gameInstanceRecordRepository.updatePlayersRemainingByLobbyId(lobbyId, playersRemaining);
+    }
+
+    void forget(long lobbyId) {
+        gameInstanceRecordRepository.deleteById(lobbyId);
+    }
+
+    void forgetAll() {
+        gameInstanceRecordRepository.deleteAll();
+    }
+
+    /**
+     * Reconciles the persisted game instances with the running processes and the lobby table. Game servers that are
+     * still alive and whose lobby still points at them are returned for adoption. Game servers that cannot be adopted
+     * are destroyed, unless another adopted match runs on the same process; their lobbies and the lobbies that point
+     * at no tracked game server are deleted.
+     */
+    List<AdoptedGameInstance> recover() {
+        var adopted = new ArrayList<AdoptedGameInstance>();
+        var adoptedLobbyIds = new HashSet<Long>();
+        var matchesByPid = new HashMap<Long, AtomicInteger>();
+        var unadoptable = new HashMap<Long, ProcessHandle>();
+
+        for (var record : gameInstanceRecordRepository.findAll()) {
+            var lobby = lobbyRepository.findById(record.getLobbyId());
+            var process = findProcess(record);
+
+            if (process.isPresent() && lobby.isPresent()
+                    && Objects.equals(lobby.get().getGameServerPort(), record.getPort())
+                    && record.getPlayersRemaining() > 0) {
+                log.info("Re-adopted game server process {} for lobby {}", record.getPid(), record.getLobbyId());
+                adopted.add(new AdoptedGameInstance(
+                        record.getLobbyId(),
+                        record.getPlayersRemaining(),
+                        lobby.get().getGameStarted(),
+                        new AdoptedGameServer(process.get(), record.getHost(), record.getPort(),
+                                matchesOnProcess(matchesByPid, record.getPid()))));
+                adoptedLobbyIds.add(record.getLobbyId());
+                continue;
+            }
+
+            process.ifPresent(handle -> {
+                log.warn("Game server process {} of lobby {} cannot be re-adopted", handle.pid(), record.getLobbyId());
+                unadoptable.put(handle.pid(), handle);
+            });
+            lobby.ifPresent(lobbyRepository::delete);
+            gameInstanceRecordRepository.delete(record);
+        }
+
+        for (var handle : unadoptable.values()) {
+            if (!matchesByPid.containsKey(handle.pid())) {
+                log.warn("Destroying game server process {}", handle.pid());
+                handle.destroy();
+            }
+        }
+
+        for (var lobby : lobbyRepository.findAll()) {
+            if (!adoptedLobbyIds.contains(lobby.getId())) {
+                log.warn("Deleting lobby {}, its game server is not running anymore", lobby.getId());
+                lobbyRepository.delete(lobby);
+            }
+        }
+
+        return adopted;
+    }
+
+    /**
+     * Counts the matches adopted on a process, which is more than one for a multi-match game server.
+     */
+    private static AtomicInteger matchesOnProcess(Map<Long, AtomicInteger> matchesByPid, long pid) {
+        var matches = matchesByPid.computeIfAbsent(pid, _ -> new AtomicInteger());
+        matches.incrementAndGet();
+        return matches;
+    }
+
+    /**
+     * Looks up the live process of a record. The start time guards against the pid having been reused.
+     */
+    private static Optional<ProcessHandle> findProcess(GameInstanceRecord record) {
+        if (record.getPid() == null) {
+            return Optional.empty();
+        }
+        return ProcessHandle.of(record.getPid())
+                .filter(ProcessHandle::isAlive)
+                .filter(handle -> record.getProcessStart() == null || handle.info().startInstant()
+                        .map(record.getProcessStart()::equals)
+                        .orElse(true));
+    }
+
+    record AdoptedGameInstance(long lobbyId, int playersRemaining, boolean started, AdoptedGameServer gameServer) {
+    }
+}
@@ -1,141 +1,570 @@
 package com.example.lobbyserver.game;
 
 import com.example.lobbyserver.lobby.db.LobbyRepository;
-import lombok.EqualsAndHashCode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.SmartLifecycle;
-import org.springframework.core.io.FileSystemResource;
+import org.springframework.dao.DataAccessException;
 import org.springframework.lang.NonNull;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Phaser;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.lobbyserver.game.GameInstanceState.*;
 
 @Service
 public class GameInstanceService implements SmartLifecycle {
 
-    @Value("${game.server.executable-name}")
-    private String gameServerExecutable;
+    @Value("${game.host.local.enabled:true}")
+    private boolean localGameServersEnabled;
+
+    @Value("${game.server.lifecycle.detach-on-shutdown:false}")
+    private boolean detachOnShutdown;
+
+    @Value("${game.server.lifecycle.starting-timeout-millis:10000}")
+    private long startingTimeoutMillis;
+
+    @Value("${game.server.lifecycle.handshaking-timeout-millis:10000}")
+    private long handshakingTimeoutMillis;
+
+    @Value("${game.server.lifecycle.draining-timeout-millis:30000}")
+    private long drainingTimeoutMillis;
+
+    @Value("${game.server.lifecycle.retention-millis:60000}")
+    private long retentionMillis;
 
-    @Value("${game.server.instance.host}")
-    private String gameServerInstanceHost;
+    @Value("${game.server.drain.shutdown-timeout-millis:20000}")
+    private long shutdownDrainTimeoutMillis;
+
+    @Value("${game.server.drain.kill-grace-millis:5000}")
+    private long killGraceMillis;
+
+    @Value("${game.server.drain.poll-interval-millis:1000}")
+    private long drainPollIntervalMillis;
 
     private static final Logger log = LoggerFactory.getLogger(GameInstanceService.class);
 
     private final LobbyRepository lobbyRepository;
     private final ServerLogsService serverLogsService;
+    private final GameServerLauncher gameServerLauncher;
+    private final GameServerPool gameServerPool;
+    private final MultiMatchPacker multiMatchPacker;
+    private final GameProcessSupervisor gameProcessSupervisor;
+    private final GameProcessTelemetry gameProcessTelemetry;
+    private final GameHostRegistry gameHostRegistry;
+    private final GameInstanceAdmission gameInstanceAdmission;
+    private final GameInstanceRecovery gameInstanceRecovery;
     private final Executor taskScheduler;
+    private final ApplicationEventPublisher eventPublisher;
 
-    private final Map<Long, GameInstanceInfo> gameInstances = new ConcurrentHashMap<>();
+    private final Map<Long, GameInstance> gameInstances = new ConcurrentHashMap<>();
+    // time in a state by the state it was left for, registered for the allowed transitions
+    private final Map<GameInstanceState, Map<GameInstanceState, Timer>> timeInState = new EnumMap<>(GameInstanceState.class);
     private volatile boolean running = false;
+    private volatile GameInstanceDrain drain;
 
-    private final Phaser stopGate = new Phaser(1);
-
-    public GameInstanceService(LobbyRepository lobbyRepository, ServerLogsService serverLogsService, Executor taskScheduler) {
+    public GameInstanceService(LobbyRepository lobbyRepository, ServerLogsService serverLogsService, GameServerLauncher gameServerLauncher, GameServerPool gameServerPool, MultiMatchPacker multiMatchPacker, GameProcessSupervisor gameProcessSupervisor, GameProcessTelemetry gameProcessTelemetry, GameHostRegistry gameHostRegistry, GameInstanceAdmission gameInstanceAdmission, GameInstanceRecovery gameInstanceRecovery, Executor taskScheduler, ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
         this.lobbyRepository = lobbyRepository;
         this.serverLogsService = serverLogsService;
+        this.gameServerLauncher = gameServerLauncher;
+        this.gameServerPool = gameServerPool;
+        this.multiMatchPacker = multiMatchPacker;
+        this.gameProcessSupervisor = gameProcessSupervisor;
+        this.gameProcessTelemetry = gameProcessTelemetry;
+        this.gameHostRegistry = gameHostRegistry;
+        this.gameInstanceAdmission = gameInstanceAdmission;
+        this.gameInstanceRecovery = gameInstanceRecovery;
         this.taskScheduler = taskScheduler;
+        this.eventPublisher = eventPublisher;
+
+        for (var state : GameInstanceState.values()) {
+            Gauge.builder("game.instances", gameInstances, instances -> countInState(instances, state))
+                    .description("Tracked game instances per lifecycle state")
+                    .tag("state", state.name())
+                    .register(meterRegistry);
+            var timers = new EnumMap<GameInstanceState, Timer>(GameInstanceState.class);
+            for (var next : GameInstanceState.values()) {
+                if (state.canTransitionTo(next)) {
+                    timers.put(next, Timer.builder("game.instances.state.duration")
+                            .description("Time game instances spent in a lifecycle state before moving to the next")
+                            .tag("state", state.name())
+                            .tag("next", next.name())
+                            .publishPercentileHistogram()
+                            .register(meterRegistry));
+                }
+            }
+            timeInState.put(state, timers);
+        }
+    }
+
+    private static long countInState(Map<Long, GameInstance> instances, GameInstanceState state) {
+        return instances.values().stream().filter(instance -> instance.state() == state).count();
+    }
+
+    private void recordTransition(GameInstanceState from, GameInstanceState to, long nanosInPreviousState) {
+        timeInState.get(from).get(to).record(nanosInPreviousState, TimeUnit.NANOSECONDS);
     }
 
-    @Async
+    /**
+     * Starts a game instance for the lobby in the background. Admission is decided synchronously, so a full
+     * admission queue is reported to the caller. Called within a transaction, the game server is only claimed once
+     * the transaction committed, so the lobby row exists when the game server address is stored; a rollback fails the
+     * launch.
+     *
+     * @throws GameInstanceAdmissionException if the launch cannot be queued for admission
+     * @throws GameInstanceDrainingException   if the lobby server is draining
+     */
     public void startNewGameInstance(long lobbyId, int lobbySize) {
-        if (gameInstances.putIfAbsent(lobbyId, new GameInstanceInfo(lobbySize)) != null) {
+        var committed = new CompletableFuture<Void>();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        committed.complete(null);
+                    } else {
+                        committed.completeExceptionally(new IllegalStateException("Lobby " + lobbyId + " was not created"));
+                    }
+                }
+            });
+        } else {
+            committed.complete(null);
+        }
+        launchGameInstance(lobbyId, lobbySize, committed);
+    }
+
+    CompletableFuture<Void> launchGameInstance(long lobbyId, int lobbySize) {
+        return launchGameInstance(lobbyId, lobbySize, CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Waits for admission and for the lobby to be committed, then claims or launches a game server for the lobby. The
+     * placement is chosen first: a slot on a game host agent skips the local admission, which only limits the game
+     * servers on this host. The handshake runs asynchronously; the returned future completes once the game server
+     * port has been stored for the lobby. A failed launch is cleaned up right away.
+     */
+    private CompletableFuture<Void> launchGameInstance(long lobbyId, int lobbySize, CompletableFuture<Void> committed) {
+        var instance = new GameInstance(lobbyId, lobbySize, this::recordTransition);
+        if (gameInstances.putIfAbsent(lobbyId, instance) != null) {
             throw new IllegalStateException("Game instance for lobby " + lobbyId + " already exists");
         }
 
-        try (var serverSocket = new ServerSocket(0)) {
+        var gameHost = gameHostRegistry.reserve();
+        CompletableFuture<GameInstanceAdmission.Permit> admission;
+        try {
+            admission = gameHost.isPresent()
+                    ? CompletableFuture.completedFuture(gameInstanceAdmission.admitRemote())
+                    : gameInstanceAdmission.admit();
+        } catch (GameInstanceAdmissionException e) {
+            gameHost.ifPresent(GameHostRegistry.Reservation::release);
+            gameInstances.remove(lobbyId, instance);
+            throw e;
+        }
 
-            var localLobbyPort = serverSocket.getLocalPort();
-            taskScheduler.execute(() -> launchGameServer(localLobbyPort, lobbyId));
+        return admission
+                .thenCombine(committed, (permit, _) -> permit)
+                .whenComplete((_, e) -> {
+                    if (e != null) {
+                        // a lobby that was rolled back still got its permit, which the instance has to give back
+                        admission.thenAccept(instance::holdPermit);
+                    }
+                })
+                .thenComposeAsync(permit -> {
+                    instance.holdPermit(permit);
+                    if (!instance.transition(QUEUED, STARTING)) {
+                        throw new IllegalStateException("Game instance for lobby " + lobbyId + " was abandoned while queued");
+                    }
+                    return claimOrLaunchGameServer(lobbyId, lobbySize, gameHost);
+                }, taskScheduler)
+                .thenCompose(gameServer -> {
+                    instance.setGameServer(gameServer);
+                    if (!instance.transition(STARTING, HANDSHAKING)) {
+                        gameServer.destroy();
+                        throw new IllegalStateException("Game instance for lobby " + lobbyId + " was abandoned while starting");
+                    }
+                    log.debug("Game server connected for lobby {}", lobbyId);
+
+                    gameProcessSupervisor.supervise(gameServer.onExit(), exitCode -> gameServerExited(instance, exitCode));
+                    gameServer.localProcess().ifPresent(process -> gameProcessTelemetry.track(lobbyId, process));
+
+                    return gameServer.assignLobby(lobbySize);
+                })
+                .thenAccept(port -> {
+                    log.debug("Game server port for lobby {} is {}", lobbyId, port);
+                    if (lobbyRepository.updateGameServerHostAndGameServerPortById(
+                            instance.getGameServer().host(), port, lobbyId) == 0) {
+                        throw new IllegalStateException("Lobby " + lobbyId + " no longer exists");
+                    }
+                    eventPublisher.publishEvent(new GameInstanceReadyEvent(lobbyId, instance.getGameServer().host(), port));
+                    if (!instance.transition(HANDSHAKING, READY)) {
+                        throw new IllegalStateException("Game instance for lobby " + lobbyId + " was abandoned during handshake");
+                    }
+                    gameInstanceRecovery.recordReady(lobbyId, instance.getGameServer(), port, instance.playersRemaining());
+                })
+                .whenComplete((_, e) -> {
+                    if (e != null) {
+                        log.error("Failed to start game instance for lobby {}", lobbyId, e);
+                        gameHost.ifPresent(GameHostRegistry.Reservation::release);
+                        failLaunch(instance);
+                    }
+                });
+    }
 
-            serverSocket.setSoTimeout(2000);
-            var gameServer = serverSocket.accept();
-            log.debug("Game server connected for lobby {}", lobbyId);
+    private CompletableFuture<? extends GameServer> claimOrLaunchGameServer(long lobbyId, int lobbySize,
+                                                                           Optional<GameHostRegistry.Reservation> gameHost) {
+        if (gameHost.isPresent()) {
+            return gameHost.get().launch(lobbyId, lobbySize);
+        }
+        if (!localGameServersEnabled) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No game host has free capacity"));
+        }
+        if (multiMatchPacker.isEnabled()) {
+            return multiMatchPacker.claim(lobbyId, () -> claimOrLaunchLocalGameServer(lobbyId));
+        }
+        return claimOrLaunchLocalGameServer(lobbyId);
+    }
 
-            var out = new DataOutputStream(gameServer.getOutputStream());
-            var in = new DataInputStream(gameServer.getInputStream());
-            out.writeShort(lobbySize);
+    private CompletableFuture<ConnectedGameServer> claimOrLaunchLocalGameServer(long lobbyId) {
+        var pooledGameServer = gameServerPool.claim(lobbyId);
+        if (pooledGameServer.isPresent()) {
+            return CompletableFuture.completedFuture(pooledGameServer.get());
+        }
 
-            var port = in.readShort() & 0xFFFF;
-            log.debug("Game server port for lobby {} is {}", lobbyId, port);
+        try {
+            return gameServerLauncher.launch(serverLogsService.createLogFileForLobby(lobbyId));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-            lobbyRepository.updateGameServerHostAndGameServerPortById(
-                    gameServerInstanceHost, port, lobbyId);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    private void failLaunch(GameInstance instance) {
+        instance.transitionTo(FAILED);
+        var gameServer = instance.getGameServer();
+        if (gameServer != null) {
+            gameServer.destroy();
         }
+        forget(instance);
     }
 
-    public int playerLeftGame(Long lobbyId) {
-        var gameInstanceInfo = gameInstances.get(lobbyId);
-        if (gameInstanceInfo == null) {
-            throw new IllegalStateException("Game instance for lobby " + lobbyId + " does not exist");
+    private void forget(GameInstance instance) {
+        if (gameInstances.remove(instance.lobbyId(), instance)) {
+            // called from exit handlers, which must not block on the database
+            var lobbyId = instance.lobbyId();
+            taskScheduler.execute(() -> {
+                try {
+                    gameInstanceRecovery.forget(lobbyId);
+                } catch (DataAccessException e) {
+                    log.warn("Failed to delete the recovery record of lobby {}", lobbyId, e);
+                }
+            });
         }
+    }
 
-        var remaining = gameInstanceInfo.connectedPlayers.decrementAndGet();
+    private void gameServerExited(GameInstance instance, int exitCode) {
+        log.debug("Game server for lobby {} exited with code {}", instance.lobbyId(), exitCode);
+        gameProcessTelemetry.exited(instance.lobbyId(), exitCode);
+        if (instance.transitionTo(TERMINATED)) {
+            // players may still report their results, the entry is removed once they left or retention expired
+            if (instance.playersRemaining() <= 0) {
+                forget(instance);
+            }
+            return;
+        }
+        if (instance.transitionTo(FAILED)) {
+            forget(instance);
+        }
+    }
+
+    /**
+     * Marks the match of a full lobby as started.
+     */
+    public void gameStarted(long lobbyId) {
+        var instance = gameInstances.get(lobbyId);
+        if (instance != null && !instance.transition(READY, RUNNING)) {
+            log.warn("Game instance for lobby {} cannot start, it is {}", lobbyId, instance.state());
+        }
+    }
 
-        if (remaining == 0) {
-            log.debug("All players left the game {}, shutting down server", lobbyId);
-            gameInstanceInfo.getProcess().destroy();
-            gameInstances.remove(lobbyId);
+    /**
+     * Counts a player out of the game of a lobby and returns the number of players remaining.
+     *
+     * @throws GameInstanceNotFoundException if the lobby has no game instance
+     */
+    public int playerLeftGame(Long lobbyId) {
+        var instance = gameInstances.get(lobbyId);
+        if (instance == null) {
+            throw new GameInstanceNotFoundException(lobbyId);
+        }
+
+        var remaining = instance.playerLeft();
+        instance.transition(RUNNING, DRAINING);
+
+        if (remaining > 0) {
+            gameInstanceRecovery.recordPlayersRemaining(lobbyId, remaining);
+        } else {
+            if (instance.state().isTerminal()) {
+                forget(instance);
+            } else {
+                log.debug("All players left the game {}, shutting down server", lobbyId);
+                instance.transitionTo(DRAINING);
+                var gameServer = instance.getGameServer();
+                if (gameServer != null) {
+                    gameServer.destroy();
+                } else {
+                    failLaunch(instance);
+                }
+            }
         }
 
         return remaining;
     }
 
-    private void launchGameServer(int localLobbyPort, long lobbyId) {
-        stopGate.register();
-        try {
-            var serverResource = new FileSystemResource(Objects.requireNonNull(gameServerExecutable));
-            if (!serverResource.exists()) {
-                throw new IllegalStateException("Game server executable not found at " + serverResource.getPath());
+    /**
+     * The game instances tracked at the moment, for the {@link GameInstanceReconciler}.
+     */
+    List<GameInstance> snapshot() {
+        return List.copyOf(gameInstances.values());
+    }
+
+    /**
+     * Gives up on the game instance of a lobby that no longer exists, is expired or whose game server is gone.
+     * Launches in progress are failed, game servers are destroyed and finished instances are forgotten right away.
+     */
+    public void abandon(long lobbyId) {
+        var instance = gameInstances.get(lobbyId);
+        if (instance == null) {
+            return;
+        }
+        switch (instance.state()) {
+            case QUEUED, STARTING, HANDSHAKING -> failLaunch(instance);
+            case READY, RUNNING, DRAINING -> {
+                instance.transitionTo(DRAINING);
+                var gameServer = instance.getGameServer();
+                if (gameServer != null) {
+                    gameServer.destroy();
+                }
+            }
+            case TERMINATED, FAILED -> forget(instance);
+        }
+    }
+
+    /**
+     * Enforces the per-state timeouts: launches stuck in {@link GameInstanceState#STARTING} or
+     * {@link GameInstanceState#HANDSHAKING} are failed, game servers that do not exit while
+     * {@link GameInstanceState#DRAINING} are killed, and finished instances are forgotten after the retention time.
+     */
+    @Scheduled(fixedDelayString = "${game.server.lifecycle.sweep-interval-millis:1000}")
+    public void enforceStateTimeouts() {
+        for (var instance : gameInstances.values()) {
+            var state = instance.state();
+            var timeoutMillis = switch (state) {
+                case STARTING -> startingTimeoutMillis;
+                case HANDSHAKING -> handshakingTimeoutMillis;
+                case DRAINING -> drainingTimeoutMillis;
+                case TERMINATED, FAILED -> retentionMillis;
+                // queued launches are timed out by the admission
+                case QUEUED, READY, RUNNING -> 0L;
+            };
+            if (timeoutMillis <= 0 || instance.nanosInState() < TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+                continue;
+            }
+
+            switch (state) {
+                case STARTING, HANDSHAKING -> {
+                    log.warn("Game instance for lobby {} timed out while {}", instance.lobbyId(), state);
+                    failLaunch(instance);
+                }
+                case DRAINING -> {
+                    var gameServer = instance.getGameServer();
+                    if (gameServer != null && gameServer.isAlive()) {
+                        log.warn("Game server for lobby {} did not exit while draining, killing it", instance.lobbyId());
+                        gameServer.destroyForcibly();
+                    }
+                }
+                default -> forget(instance);
             }
+        }
+    }
+
+    public Map<GameInstanceState, Long> getInstanceCountsByState() {
+        var counts = new EnumMap<GameInstanceState, Long>(GameInstanceState.class);
+        for (var state : GameInstanceState.values()) {
+            counts.put(state, countInState(gameInstances, state));
+        }
+        return counts;
+    }
 
-            var tempFile = serverLogsService.createLogFileForLobby(lobbyId);
-            var process = new ProcessBuilder(serverResource.getFile().getAbsolutePath(), Integer.toString(localLobbyPort))
-                    .redirectErrorStream(true)
-                    .redirectOutput(tempFile)
-                    .start();
-            log.debug("Game server for lobby {} started", lobbyId);
-            gameInstances.get(lobbyId).setProcess(process.toHandle());
+    /**
+     * Stops accepting game instances and lets the running matches finish. Launches that are still in progress and
+     * lobbies still waiting for players have no match to lose, so they are shut down right away. Game servers that
+     * are still running at the deadline are destroyed. Draining again returns the drain in progress, with its
+     * deadline moved closer if the new timeout ends earlier.
+     */
+    public synchronized GameInstanceDrain drain(Duration timeout) {
+        var deadline = Instant.now().plus(timeout);
+        if (drain != null) {
+            drain.shortenDeadline(deadline);
+            return drain;
+        }
+
+        var started = new GameInstanceDrain(Instant.now(), deadline);
+        drain = started;
+        gameInstanceAdmission.close();
+        gameServerPool.stop();
+        log.info("Draining {} game instances until {}", liveInstances().size(), deadline);
+
+        gameInstances.values().forEach(this::closeIfIdle);
+        awaitDrained(started, -1);
+        return started;
+    }
 
-            var exit = process.waitFor();
-            gameInstances.remove(lobbyId);
+    public Optional<GameInstanceDrain> getDrain() {
+        return Optional.ofNullable(drain);
+    }
 
-            log.debug("Game server for lobby {} exited with code {}", lobbyId, exit);
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException(e);
-        } finally {
-            stopGate.arriveAndDeregister();
+    private void closeIfIdle(GameInstance instance) {
+        switch (instance.state()) {
+            case QUEUED, STARTING, HANDSHAKING -> {
+                log.debug("Cancelling launch of game instance for lobby {}, the lobby server is draining", instance.lobbyId());
+                failLaunch(instance);
+            }
+            case READY -> {
+                if (instance.transition(READY, DRAINING)) {
+                    log.debug("Closing lobby {} that has not started yet, the lobby server is draining", instance.lobbyId());
+                    instance.getGameServer().destroy();
+                }
+            }
+            default -> {
+                // running matches are allowed to finish
+            }
         }
     }
 
+    private void awaitDrained(GameInstanceDrain drain, int lastRemaining) {
+        var remaining = liveInstances();
+        if (remaining.isEmpty()) {
+            log.info("Drained all game instances");
+            drain.complete();
+            return;
+        }
+        if (!Instant.now().isBefore(drain.deadline())) {
+            log.warn("Drain deadline reached, destroying {} remaining game instances", remaining.size());
+            destroyStragglers(remaining).whenComplete((_, _) -> drain.complete());
+            return;
+        }
+
+        if (remaining.size() != lastRemaining) {
+            log.info("Draining, {} game instances remaining until {}", remaining.size(), drain.deadline());
+        }
+        CompletableFuture.delayedExecutor(drainPollIntervalMillis, TimeUnit.MILLISECONDS, taskScheduler)
+                .execute(() -> awaitDrained(drain, remaining.size()));
+    }
+
+    private List<GameInstance> liveInstances() {
+        return gameInstances.values()
+                .stream()
+                .filter(instance -> !instance.state().isTerminal())
+                .toList();
+    }
+
+    /**
+     * Asks every straggler to terminate before waiting on any of them, then kills the game servers that are still
+     * alive after the grace period.
+     */
+    private CompletableFuture<Void> destroyStragglers(List<GameInstance> stragglers) {
+        var exits = new CompletableFuture<?>[stragglers.size()];
+        for (int i = 0; i < exits.length; i++) {
+            var instance = stragglers.get(i);
+            var gameServer = instance.getGameServer();
+            if (gameServer == null) {
+                failLaunch(instance);
+                exits[i] = CompletableFuture.completedFuture(null);
+                continue;
+            }
+
+            instance.transitionTo(DRAINING);
+            gameServer.destroy();
+            // completing a copy on timeout leaves the game server's own exit future untouched
+            exits[i] = gameServer.onExit()
+                    .copy()
+                    .completeOnTimeout(-1, killGraceMillis, TimeUnit.MILLISECONDS)
+                    .thenRun(() -> {
+                        if (gameServer.isAlive()) {
+                            log.warn("Game server for lobby {} did not terminate, killing it", instance.lobbyId());
+                            gameServer.destroyForcibly();
+                        }
+                    });
+        }
+        return CompletableFuture.allOf(exits);
+    }
+
+    /**
+     * Re-adopts the game servers that survived a restart of the lobby server.
+     */
     @Override
     public void start() {
+        for (var adopted : gameInstanceRecovery.recover()) {
+            var instance = new GameInstance(adopted.lobbyId(), adopted.playersRemaining(),
+                    adopted.started() ? RUNNING : READY, this::recordTransition);
+            instance.setGameServer(adopted.gameServer());
+            instance.holdPermit(gameInstanceAdmission.adopt());
+            gameInstances.put(adopted.lobbyId(), instance);
+            gameProcessSupervisor.supervise(adopted.gameServer().onExit(), exitCode -> gameServerExited(instance, exitCode));
+            adopted.gameServer().localProcess().ifPresent(process -> gameProcessTelemetry.track(adopted.lobbyId(), process));
+        }
         running = true;
     }
 
+    /**
+     * Drains the game instances for at most {@code game.server.drain.shutdown-timeout-millis}, unless
+     * {@code game.server.lifecycle.detach-on-shutdown} is set. Detached game servers keep running and are re-adopted
+     * by the next start of the lobby server.
+     */
     @Override
     public void stop(@NonNull Runnable callback) {
-        stop();
-        stopGate.arriveAndAwaitAdvance();
-        callback.run();
+        if (detachOnShutdown) {
+            stop();
+            callback.run();
+            return;
+        }
+
+        drain(Duration.ofMillis(shutdownDrainTimeoutMillis)).completion()
+                .thenCompose(_ -> gameProcessSupervisor.awaitAll())
+                .whenComplete((_, _) -> {
+                    running = false;
+                    callback.run();
+                });
     }
 
+    /**
+     * Destroys all game servers right away, unless {@code game.server.lifecycle.detach-on-shutdown} is set.
+     */
     @Override
     public void stop() {
-        shutdown();
+        if (detachOnShutdown) {
+            log.info("Detaching from {} game instances", gameInstances.size());
+        } else {
+            shutdown();
+        }
         running = false;
     }
 
@@ -147,34 +576,16 @@ public class GameInstanceService implements SmartLifecycle {
     void shutdown() {
         gameInstances.values()
                 .stream()
-                .map(GameInstanceInfo::getProcess)
+                .map(GameInstance::getGameServer)
                 .filter(Objects::nonNull)
-                .forEach(ProcessHandle::destroy);
+                .forEach(GameServer::destroy);
     }
 
     public int terminateAll() {
         shutdown();
         int size = gameInstances.size();
         gameInstances.clear();
+        gameInstanceRecovery.forgetAll();
         return size;
     }
-
-    @SuppressWarnings({"LombokSetterMayBeUsed", "LombokGetterMayBeUsed"})
-    @EqualsAndHashCode
-    static class GameInstanceInfo {
-        private final AtomicInteger connectedPlayers;
-        private ProcessHandle process;
-
-        GameInstanceInfo(int connectedPlayers) {
-            this.connectedPlayers = new AtomicInteger(connectedPlayers);
-        }
-
-        public ProcessHandle getProcess() {
-            return process;
-        }
-
-        public void setProcess(ProcessHandle process) {
-            this.process = process;
-        }
-    }
 }
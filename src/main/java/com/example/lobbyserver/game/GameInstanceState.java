@@ -0,0 +1,40 @@
+package com.example.lobbyserver.game;
+
+/**
+ * Lifecycle of a game instance. Transitions are only allowed along the edges defined by
+ * {@link #canTransitionTo(GameInstanceState)}; {@link #TERMINATED} and {@link #FAILED} are final.
+ */
+public enum GameInstanceState {
+    /** Waiting for admission because the instance limit or the host load threshold is reached. */
+    QUEUED,
+    /** Waiting for a game server to be claimed from the pool or launched. */
+    STARTING,
+    /** The game server is connected and is being told its lobby size. */
+    HANDSHAKING,
+    /** The game server port is known and the lobby is open for players. */
+    READY,
+    /** The lobby is full and the match is being played. */
+    RUNNING,
+    /** Players are leaving or the game server is being shut down. */
+    DRAINING,
+    /** The game server exited after it had been ready. */
+    TERMINATED,
+    /** The game server could not be started or exited before it became ready. */
+    FAILED;
+
+    public boolean canTransitionTo(GameInstanceState next) {
+        return switch (this) {
+            case QUEUED -> next == STARTING || next == FAILED;
+            case STARTING -> next == HANDSHAKING || next == FAILED;
+            case HANDSHAKING -> next == READY || next == FAILED;
+            case READY -> next == RUNNING || next == DRAINING || next == TERMINATED;
+            case RUNNING -> next == DRAINING || next == TERMINATED;
+            case DRAINING -> next == TERMINATED;
+            case TERMINATED, FAILED -> false;
+        };
+    }
+
+    public boolean isTerminal() {
+        return this == TERMINATED || this == FAILED;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Places spawned game server processes on CPU sets and applies per-process limits, so game servers on a full host
+ * neither starve the request threads of the lobby server nor each other.
+ * <p>
+ * With {@code game.server.placement.cpus} (a list like {@code 2-7,10}), the CPUs are split into sets of
+ * {@code game.server.placement.cpus-per-instance} and every game server is pinned to the set with the fewest game
+ * servers, going round-robin between sets with the same count. Leaving the lobby server's own cores out of the list
+ * keeps them free for it. The limits {@code game.server.limits.memory-bytes} (address space),
+ * {@code game.server.limits.open-files} and {@code game.server.limits.nice} are applied on start.
+ * <p>
+ * The command is wrapped in {@code taskset}, {@code prlimit} and {@code nice}, which all replace themselves with the
+ * next command, so the spawned process is still the game server. If a tool is not installed, its part of the
+ * placement is skipped with a warning.
+ */
+@Component
+public class GameProcessPlacement {
+
+    private static final Logger log = LoggerFactory.getLogger(GameProcessPlacement.class);
+
+    static final String TASKSET = "taskset";
+    static final String PRLIMIT = "prlimit";
+    static final String NICE = "nice";
+
+    @Value("${game.server.placement.cpus:}")
+    private String cpus;
+
+    @Value("${game.server.placement.cpus-per-instance:1}")
+    private int cpusPerInstance;
+
+    @Value("${game.server.limits.memory-bytes:0}")
+    private long memoryBytes;
+
+    @Value("${game.server.limits.open-files:0}")
+    private long openFiles;
+
+    @Value("${game.server.limits.nice:0}")
+    private int nice;
+
+    private final Predicate<String> toolAvailable;
+    private final MeterRegistry meterRegistry;
+
+    private List<String> cpuSets = List.of();
+    private int[] instances = new int[0];
+    private int next = 0;
+    private boolean pinning;
+    private boolean limiting;
+    private boolean renicing;
+
+    @Autowired
+    public GameProcessPlacement(MeterRegistry meterRegistry) {
+        this(GameProcessPlacement::isOnPath, meterRegistry);
+    }
+
+    GameProcessPlacement(Predicate<String> toolAvailable, MeterRegistry meterRegistry) {
+        this.toolAvailable = toolAvailable;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        var cpuList = parseCpuList(Objects.requireNonNullElse(cpus, ""));
+        if (cpusPerInstance < 1 || (!cpuList.isEmpty() && cpuList.size() < cpusPerInstance)) {
+            throw new IllegalStateException("Cannot place game servers on " + cpusPerInstance + " of the CPUs " + cpus);
+        }
+
+        var sets = new ArrayList<String>();
+        for (int i = 0; i + cpusPerInstance <= cpuList.size(); i += cpusPerInstance) {
+            var set = new StringBuilder();
+            for (var cpu : cpuList.subList(i, i + cpusPerInstance)) {
+                set.append(set.isEmpty() ? "" : ",").append(cpu);
+            }
+            sets.add(set.toString());
+        }
+        cpuSets = List.copyOf(sets);
+        synchronized (this) {
+            instances = new int[sets.size()];
+            next = 0;
+        }
+        for (int i = 0; i < sets.size(); i++) {
+            var index = i;
+            Gauge.builder("game.server.placement.instances", this, placement -> placement.instancesOn(index))
+                    .description("Game server processes pinned to a CPU set")
+                    .tag("cpus", sets.get(i))
+                    .register(meterRegistry);
+        }
+
+        pinning = !sets.isEmpty() && requireTool(TASKSET);
+        limiting = (memoryBytes > 0 || openFiles > 0) && requireTool(PRLIMIT);
+        renicing = nice != 0 && requireTool(NICE);
+        if (pinning) {
+            log.info("Pinning game servers to the CPU sets {}", cpuSets);
+        }
+    }
+
+    private boolean requireTool(String tool) {
+        if (toolAvailable.test(tool)) {
+            return true;
+        }
+        log.warn("'{}' is not installed, game servers are started without it", tool);
+        return false;
+    }
+
+    /**
+     * Wraps the command of a game server so it starts on the next CPU set with the configured limits. The returned
+     * placement has to be {@linkplain #release(Placement) released} once the game server exited.
+     */
+    Placement place(List<String> command) {
+        var cpuSet = pinning ? nextCpuSet() : -1;
+        var wrapped = new ArrayList<String>();
+        if (cpuSet >= 0) {
+            wrapped.addAll(List.of(TASKSET, "--cpu-list", cpuSets.get(cpuSet)));
+        }
+        if (limiting) {
+            wrapped.add(PRLIMIT);
+            if (memoryBytes > 0) {
+                wrapped.add("--as=" + memoryBytes);
+            }
+            if (openFiles > 0) {
+                wrapped.add("--nofile=" + openFiles);
+            }
+        }
+        if (renicing) {
+            wrapped.addAll(List.of(NICE, "-n", Integer.toString(nice)));
+        }
+        wrapped.addAll(command);
+        return new Placement(wrapped, cpuSet >= 0 ? cpuSets.get(cpuSet) : null, cpuSet);
+    }
+
+    private synchronized int nextCpuSet() {
+        var chosen = next;
+        for (int i = 1; i < instances.length; i++) {
+            var candidate = (next + i) % instances.length;
+            if (instances[candidate] < instances[chosen]) {
+                chosen = candidate;
+            }
+        }
+        instances[chosen]++;
+        next = (chosen + 1) % instances.length;
+        return chosen;
+    }
+
+    void release(Placement placement) {
+        if (placement.index() < 0) {
+            return;
+        }
+        synchronized (this) {
+            if (instances[placement.index()] > 0) {
+                instances[placement.index()]--;
+            }
+        }
+    }
+
+    synchronized int instancesOn(int index) {
+        return instances[index];
+    }
+
+    List<String> cpuSets() {
+        return cpuSets;
+    }
+
+    /**
+     * Parses a CPU list in the format of {@code taskset --cpu-list}, e.g. {@code 0,2-5}.
+     */
+    static List<Integer> parseCpuList(String cpuList) {
+        var parsed = new ArrayList<Integer>();
+        for (var part : cpuList.split(",")) {
+            var range = part.strip();
+            if (range.isEmpty()) {
+                continue;
+            }
+            try {
+                var dash = range.indexOf('-');
+                var first = Integer.parseInt(range.substring(0, dash < 0 ? range.length() : dash).strip());
+                var last = dash < 0 ? first : Integer.parseInt(range.substring(dash + 1).strip());
+                if (first < 0 || last < first) {
+                    throw new IllegalStateException("Invalid CPU range '" + range + "'");
+                }
+                for (int cpu = first; cpu <= last; cpu++) {
+                    parsed.add(cpu);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException("Invalid CPU list '" + cpuList + "'", e);
+            }
+        }
+        return parsed;
+    }
+
+    private static boolean isOnPath(String tool) {
+        var path = Objects.requireNonNullElse(System.getenv("PATH"), "");
+        for (var directory : path.split(File.pathSeparator)) {
+            if (!directory.isEmpty() && Files.isExecutable(Path.of(directory, tool))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The wrapped command of a game server and the CPU set it is pinned to, {@code null} if it is not pinned.
+     */
+    record Placement(List<String> command, String cpuSet, int index) {
+
+        Placement {
+            command = List.copyOf(command);
+        }
+    }
+}
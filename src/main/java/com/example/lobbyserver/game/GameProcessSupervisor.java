@@ -0,0 +1,57 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Tracks running game servers through their exit completions instead of parking one thread per process in
+ * {@link Process#waitFor()}. Exit handlers run on the thread that completes the exit stage, so they must be short
+ * and must not block.
+ */
+@Component
+public class GameProcessSupervisor {
+
+    private static final Logger log = LoggerFactory.getLogger(GameProcessSupervisor.class);
+
+    private final Set<CompletableFuture<Void>> supervised = ConcurrentHashMap.newKeySet();
+
+    public GameProcessSupervisor(MeterRegistry meterRegistry) {
+        Gauge.builder("game.server.supervised", supervised, Set::size)
+                .description("Game servers whose exit is currently being awaited")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers a game server exit. The handler is invoked once the exit stage completes normally; the instance
+     * stops counting as supervised after the handler has run.
+     */
+    public <T> void supervise(CompletionStage<T> exit, Consumer<? super T> onExit) {
+        var done = new CompletableFuture<Void>();
+        supervised.add(done);
+
+        exit.thenAccept(onExit).whenComplete((_, e) -> {
+            if (e != null) {
+                log.error("Game server exit handler failed", e);
+            }
+            supervised.remove(done);
+            done.complete(null);
+        });
+    }
+
+    public CompletableFuture<Void> awaitAll() {
+        return CompletableFuture.allOf(supervised.toArray(CompletableFuture[]::new));
+    }
+
+    public int supervisedCount() {
+        return supervised.size();
+    }
+}
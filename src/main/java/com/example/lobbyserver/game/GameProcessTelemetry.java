@@ -0,0 +1,334 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Samples the resource usage of the local game server processes: CPU time from {@link ProcessHandle.Info}, resident
+ * memory and thread count from {@code /proc/<pid>/status} and open file descriptors from {@code /proc/<pid>/fd}.
+ * Values that cannot be read (for example on hosts without {@code /proc}) are reported as {@code -1}.
+ * <p>
+ * The samples are exposed as aggregate gauges over all game servers and, with
+ * {@code game.server.telemetry.per-lobby-metrics=true}, as gauges per lobby. When a game server exits, its lifetime
+ * peaks and exit code are recorded as distribution summaries and kept in a short list of recent exits. A game server
+ * hosting several matches is tracked for each of its lobbies, but its peaks are shared and recorded once, when its last
+ * lobby is done.
+ */
+@Component
+public class GameProcessTelemetry {
+
+    private static final Logger log = LoggerFactory.getLogger(GameProcessTelemetry.class);
+    private static final int UNKNOWN = -1;
+
+    @Value("${game.server.telemetry.per-lobby-metrics:false}")
+    private boolean perLobbyMetrics;
+
+    @Value("${game.server.telemetry.recent-exits:100}")
+    private int recentExitsCapacity;
+
+    private final Path procRoot;
+    private final MeterRegistry meterRegistry;
+    private final Map<Long, TrackedProcess> tracked = new ConcurrentHashMap<>();
+    // peaks per pid, shared by the lobbies of a game server; the lobby count is only touched inside compute
+    private final Map<Long, ProcessPeaks> peaks = new ConcurrentHashMap<>();
+    private final Deque<Exit> recentExits = new ArrayDeque<>();
+
+    private final DistributionSummary peakRss;
+    private final DistributionSummary peakThreads;
+    private final DistributionSummary peakOpenFiles;
+    private final DistributionSummary cpuTime;
+
+    @Autowired
+    public GameProcessTelemetry(MeterRegistry meterRegistry) {
+        this(Path.of("/proc"), meterRegistry);
+    }
+
+    GameProcessTelemetry(Path procRoot, MeterRegistry meterRegistry) {
+        this.procRoot = procRoot;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("game.server.process.cpu.usage", tracked, processes -> sum(processes, Sample::cpuUsage))
+                .description("CPU cores used by all game server processes")
+                .register(meterRegistry);
+        Gauge.builder("game.server.process.memory.rss", tracked, processes -> sum(processes, Sample::rssBytes))
+                .description("Resident memory of all game server processes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("game.server.process.threads", tracked, processes -> sum(processes, Sample::threads))
+                .description("Threads of all game server processes")
+                .register(meterRegistry);
+        Gauge.builder("game.server.process.open.files", tracked, processes -> sum(processes, Sample::openFiles))
+                .description("Open file descriptors of all game server processes")
+                .register(meterRegistry);
+
+        this.peakRss = DistributionSummary.builder("game.server.process.peak.memory.rss")
+                .description("Peak resident memory of exited game server processes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.peakThreads = DistributionSummary.builder("game.server.process.peak.threads")
+                .description("Peak thread count of exited game server processes")
+                .register(meterRegistry);
+        this.peakOpenFiles = DistributionSummary.builder("game.server.process.peak.open.files")
+                .description("Peak open file descriptors of exited game server processes")
+                .register(meterRegistry);
+        this.cpuTime = DistributionSummary.builder("game.server.process.cpu.time")
+                .description("Total CPU time of exited game server processes")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    private static double sum(Map<Long, TrackedProcess> processes, ToDoubleFunction<Sample> value) {
+        // a game server hosting several matches is tracked for each of its lobbies, but counted once
+        var counted = new HashSet<Long>();
+        return processes.values()
+                .stream()
+                .map(TrackedProcess::lastSample)
+                .filter(sample -> counted.add(sample.pid()))
+                .mapToDouble(value)
+                .filter(v -> v > 0)
+                .sum();
+    }
+
+    /**
+     * Starts sampling the game server process of a lobby. It is sampled once right away.
+     */
+    void track(long lobbyId, ProcessHandle process) {
+        var processPeaks = peaks.compute(process.pid(), (_, p) -> (p == null ? new ProcessPeaks() : p).retain());
+        var trackedProcess = new TrackedProcess(lobbyId, process, processPeaks, System.nanoTime());
+        trackedProcess.update(read(trackedProcess));
+        if (tracked.putIfAbsent(lobbyId, trackedProcess) != null) {
+            release(process.pid());
+            return;
+        }
+        if (perLobbyMetrics) {
+            registerLobbyGauges(trackedProcess);
+        }
+    }
+
+    /**
+     * Stops sampling the game server of a lobby. Once the game server has no other lobby left, its lifetime peaks are
+     * recorded along with the exit code.
+     */
+    void exited(long lobbyId, int exitCode) {
+        var trackedProcess = tracked.remove(lobbyId);
+        if (trackedProcess == null) {
+            return;
+        }
+        trackedProcess.meters.forEach(meterRegistry::remove);
+
+        var exit = trackedProcess.exit(exitCode);
+
+        if (release(exit.pid())) {
+            if (exit.peakRssBytes() >= 0) {
+                peakRss.record(exit.peakRssBytes());
+            }
+            if (exit.peakThreads() >= 0) {
+                peakThreads.record(exit.peakThreads());
+            }
+            if (exit.peakOpenFiles() >= 0) {
+                peakOpenFiles.record(exit.peakOpenFiles());
+            }
+            if (!exit.cpuTime().isNegative()) {
+                cpuTime.record(exit.cpuTime().toNanos() / 1e9);
+            }
+            Counter.builder("game.server.process.exits")
+                    .description("Exited game server processes per exit code")
+                    .tag("exit.code", Integer.toString(exitCode))
+                    .register(meterRegistry)
+                    .increment();
+        }
+
+        synchronized (recentExits) {
+            recentExits.addFirst(exit);
+            while (recentExits.size() > recentExitsCapacity) {
+                recentExits.removeLast();
+            }
+        }
+        log.debug("Game server process {} of lobby {} exited with code {} after {}, peak RSS {} bytes, peak threads {}, CPU time {}",
+                exit.pid(), lobbyId, exitCode, exit.lifetime(), exit.peakRssBytes(), exit.peakThreads(), exit.cpuTime());
+    }
+
+    /**
+     * Drops a lobby from the peaks of its game server, returning whether it was the last one.
+     */
+    private boolean release(long pid) {
+        return peaks.computeIfPresent(pid, (_, p) -> p.release() ? null : p) == null;
+    }
+
+    @Scheduled(fixedDelayString = "${game.server.telemetry.sample-interval-millis:5000}")
+    public void sample() {
+        for (var trackedProcess : tracked.values()) {
+            trackedProcess.update(read(trackedProcess));
+        }
+    }
+
+    private Sample read(TrackedProcess trackedProcess) {
+        var pid = trackedProcess.process.pid();
+        var cpu = trackedProcess.process.info().totalCpuDuration().orElse(Duration.ofNanos(UNKNOWN));
+
+        long rss = UNKNOWN;
+        int threads = UNKNOWN;
+        try (var lines = Files.lines(procRoot.resolve(Long.toString(pid)).resolve("status"))) {
+            for (var line : (Iterable<String>) lines::iterator) {
+                if (line.startsWith("VmRSS:")) {
+                    rss = Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+                } else if (line.startsWith("Threads:")) {
+                    threads = Integer.parseInt(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException | RuntimeException _) {
+            // the process may have exited in the meantime or there is no /proc
+        }
+
+        int openFiles = UNKNOWN;
+        try (var fds = Files.list(procRoot.resolve(Long.toString(pid)).resolve("fd"))) {
+            openFiles = (int) fds.count();
+        } catch (IOException | RuntimeException _) {
+            // the process may have exited in the meantime, there is no /proc or it is not readable
+        }
+
+        return new Sample(trackedProcess.lobbyId, pid, cpu, UNKNOWN, rss, threads, openFiles);
+    }
+
+    private void registerLobbyGauges(TrackedProcess trackedProcess) {
+        var lobby = Long.toString(trackedProcess.lobbyId);
+        trackedProcess.meters.add(Gauge.builder("game.server.lobby.process.cpu.usage", trackedProcess, p -> p.lastSample().cpuUsage())
+                .description("CPU cores used by the game server process of a lobby")
+                .tag("lobby", lobby)
+                .register(meterRegistry));
+        trackedProcess.meters.add(Gauge.builder("game.server.lobby.process.memory.rss", trackedProcess, p -> p.lastSample().rssBytes())
+                .description("Resident memory of the game server process of a lobby")
+                .baseUnit("bytes")
+                .tag("lobby", lobby)
+                .register(meterRegistry));
+        trackedProcess.meters.add(Gauge.builder("game.server.lobby.process.threads", trackedProcess, p -> p.lastSample().threads())
+                .description("Threads of the game server process of a lobby")
+                .tag("lobby", lobby)
+                .register(meterRegistry));
+        trackedProcess.meters.add(Gauge.builder("game.server.lobby.process.open.files", trackedProcess, p -> p.lastSample().openFiles())
+                .description("Open file descriptors of the game server process of a lobby")
+                .tag("lobby", lobby)
+                .register(meterRegistry));
+    }
+
+    public List<Sample> samples() {
+        return tracked.values().stream().map(TrackedProcess::lastSample).toList();
+    }
+
+    public Optional<Sample> sample(long lobbyId) {
+        return Optional.ofNullable(tracked.get(lobbyId)).map(TrackedProcess::lastSample);
+    }
+
+    public List<Exit> recentExits() {
+        synchronized (recentExits) {
+            return new ArrayList<>(recentExits);
+        }
+    }
+
+    private static final class TrackedProcess {
+
+        private final long lobbyId;
+        private final ProcessHandle process;
+        private final ProcessPeaks peaks;
+        private final long startedAt;
+        private final List<Meter> meters = new ArrayList<>();
+        private volatile Sample lastSample;
+        private long sampledAt;
+
+        private TrackedProcess(long lobbyId, ProcessHandle process, ProcessPeaks peaks, long startedAt) {
+            this.lobbyId = lobbyId;
+            this.process = process;
+            this.peaks = peaks;
+            this.startedAt = startedAt;
+            this.sampledAt = startedAt;
+        }
+
+        /**
+         * Stores a sample, deriving the CPU usage from the CPU time spent since the previous sample.
+         */
+        private synchronized void update(Sample sample) {
+            var now = System.nanoTime();
+            var previous = lastSample;
+            if (previous != null && !sample.cpuTime().isNegative() && !previous.cpuTime().isNegative() && now > sampledAt) {
+                var cpuUsage = (double) sample.cpuTime().minus(previous.cpuTime()).toNanos() / (now - sampledAt);
+                sample = new Sample(sample.lobbyId(), sample.pid(), sample.cpuTime(), cpuUsage, sample.rssBytes(),
+                        sample.threads(), sample.openFiles());
+            }
+            sampledAt = now;
+            lastSample = sample;
+            peaks.update(sample);
+        }
+
+        private Sample lastSample() {
+            return lastSample;
+        }
+
+        private synchronized Exit exit(int exitCode) {
+            synchronized (peaks) {
+                return new Exit(lobbyId, process.pid(), exitCode, Duration.ofNanos(System.nanoTime() - startedAt),
+                        lastSample.cpuTime(), peaks.rssBytes, peaks.threads, peaks.openFiles);
+            }
+        }
+    }
+
+    private static final class ProcessPeaks {
+
+        private int lobbies;
+        private long rssBytes = UNKNOWN;
+        private int threads = UNKNOWN;
+        private int openFiles = UNKNOWN;
+
+        private ProcessPeaks retain() {
+            lobbies++;
+            return this;
+        }
+
+        private boolean release() {
+            return --lobbies == 0;
+        }
+
+        private synchronized void update(Sample sample) {
+            rssBytes = Math.max(rssBytes, sample.rssBytes());
+            threads = Math.max(threads, sample.threads());
+            openFiles = Math.max(openFiles, sample.openFiles());
+        }
+    }
+
+    /**
+     * The latest resource usage of a game server process. {@code cpuUsage} is the number of cores used since the
+     * previous sample. Negative values are unknown.
+     */
+    public record Sample(long lobbyId, long pid, Duration cpuTime, double cpuUsage, long rssBytes, int threads,
+                         int openFiles) {
+    }
+
+    /**
+     * The lifetime resource usage of an exited game server process. Negative values are unknown.
+     */
+    public record Exit(long lobbyId, long pid, int exitCode, Duration lifetime, Duration cpuTime, long peakRssBytes,
+                       int peakThreads, int peakOpenFiles) {
+    }
+}
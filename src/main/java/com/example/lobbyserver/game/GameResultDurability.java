@@ -0,0 +1,20 @@
+package com.example.lobbyserver.game;
+
+/**
+ * When storing a game result is acknowledged to the player that submitted it.
+ */
+public enum GameResultDurability {
+    /**
+     * Once the result was queued. Queued results are written within the flush interval and on shutdown, a crash loses
+     * those not yet written.
+     */
+    BUFFERED,
+    /**
+     * Once the batch holding the result was committed, so concurrent results share one transaction.
+     */
+    COMMITTED,
+    /**
+     * Once the result was written in a transaction of its own, without queueing.
+     */
+    SYNC
+}
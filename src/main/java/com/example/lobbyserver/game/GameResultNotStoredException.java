@@ -0,0 +1,12 @@
+package com.example.lobbyserver.game;
+
+/**
+ * Thrown when a game result is not confirmed as durable as {@code game.results.durability} asks, either because its
+ * batch was not committed in time or because it was given up as a dead letter.
+ */
+public class GameResultNotStoredException extends RuntimeException {
+
+    public GameResultNotStoredException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
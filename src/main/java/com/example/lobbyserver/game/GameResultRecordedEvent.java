@@ -0,0 +1,7 @@
+package com.example.lobbyserver.game;
+
+/**
+ * Published when a player left a lobby with their game result. {@code matchOver} is set for the last player to leave.
+ */
+public record GameResultRecordedEvent(long lobbyId, String username, long score, boolean matchOver) {
+}
@@ -0,0 +1,9 @@
+package com.example.lobbyserver.game;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published when a game result was stored, so views of the results can be updated without reading them back.
+ */
+public record GameResultSavedEvent(String username, long score, int level, int linesCleared, long time, LocalDateTime dateTime) {
+}
@@ -0,0 +1,309 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.game.db.GameResult;
+import com.example.lobbyserver.game.db.GameResultRepository;
+import com.example.lobbyserver.user.db.User;
+import com.example.lobbyserver.user.db.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Stores game results behind the requests that submit them. Results are queued in a buffer of
+ * {@code game.results.buffer-capacity} and written every {@code game.results.flush-interval-millis} in transactions of
+ * up to {@code game.results.batch-size} results, which Hibernate sends as JDBC batches. The end of a full match thus
+ * costs one transaction instead of one per player.
+ * <p>
+ * {@code game.results.durability} chooses when a submitted result is acknowledged, see {@link GameResultDurability},
+ * and {@code game.results.synchronous-commit} sets Postgres' {@code synchronous_commit} for the flush transactions. A
+ * result that finds the buffer full is written by the submitting thread, so a slow database slows down submissions
+ * instead of losing results. The buffer is flushed on shutdown, after the web server stopped taking requests, and a
+ * failed batch is retried on the next flush. A batch that failed {@code game.results.max-attempts} times is split into
+ * single results, so one bad result cannot hold back the others, and a single result that keeps failing is given up as
+ * a dead letter. A {@link GameResultSavedEvent} is published for every result within the transaction that stores it,
+ * followed by one {@link GameResultsSavedEvent} for all of them.
+ */
+@Component
+public class GameResultWriter implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(GameResultWriter.class);
+
+    @Value("${game.results.durability:buffered}")
+    private GameResultDurability durability;
+
+    @Value("${game.results.buffer-capacity:10000}")
+    private int bufferCapacity;
+
+    @Value("${game.results.batch-size:50}")
+    private int batchSize;
+
+    @Value("${game.results.commit-timeout-millis:5000}")
+    private long commitTimeoutMillis;
+
+    @Value("${game.results.synchronous-commit:on}")
+    private String synchronousCommit;
+
+    @Value("${game.results.max-attempts:3}")
+    private int maxAttempts;
+
+    private final GameResultRepository gameResultRepository;
+    private final UserRepository userRepository;
+    private final TransactionOperations transactionOperations;
+    private final ApplicationEventPublisher eventPublisher;
+    private BlockingQueue<PendingResult> queue;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // failed batches, retried before the queue; only touched while holding the flush lock
+    private final Deque<FailedBatch> failed = new ArrayDeque<>();
+    private volatile boolean running = false;
+
+    private final Timer flushDuration;
+    private final DistributionSummary flushSize;
+    private final Counter flushFailures;
+    private final Counter overflows;
+    private final Counter dropped;
+    private final Counter deadLettered;
+
+    public GameResultWriter(GameResultRepository gameResultRepository,
+                            UserRepository userRepository,
+                            TransactionOperations transactionOperations,
+                            ApplicationEventPublisher eventPublisher,
+                            MeterRegistry meterRegistry) {
+        this.gameResultRepository = gameResultRepository;
+        this.userRepository = userRepository;
+        this.transactionOperations = transactionOperations;
+        this.eventPublisher = eventPublisher;
+
+        this.flushDuration = Timer.builder("game.results.flush")
+                .description("Time to write a batch of game results to the database")
+                .register(meterRegistry);
+        this.flushSize = DistributionSummary.builder("game.results.flush.size")
+                .description("Game results written per batch")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("game.results.flush.failures")
+                .description("Batches of game results that failed to be written and were retried")
+                .register(meterRegistry);
+        this.overflows = Counter.builder("game.results.overflow")
+                .description("Game results written by the submitting thread because the buffer was full")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("game.results.dropped")
+                .description("Game results discarded because their user no longer exists")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("game.results.dead-lettered")
+                .description("Game results given up after failing to be written on their own")
+                .register(meterRegistry);
+        Gauge.builder("game.results.queued", this, GameResultWriter::queued)
+                .description("Game results waiting to be written to the database")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(bufferCapacity);
+    }
+
+    /**
+     * Stores the result of a finished game, returning once it is as durable as {@code game.results.durability} asks.
+     *
+     * @throws GameResultNotStoredException if a {@code committed} result was not committed in time or was given up
+     */
+    public void write(String username, long score, int level, int linesCleared, long time, LocalDateTime dateTime) {
+        var result = new PendingResult(username, score, level, linesCleared, time, dateTime, new CompletableFuture<>());
+        if (durability == GameResultDurability.SYNC || !running) {
+            transactionOperations.executeWithoutResult(_ -> store(List.of(result)));
+            return;
+        }
+        if (!queue.offer(result)) {
+            overflows.increment();
+            transactionOperations.executeWithoutResult(_ -> store(List.of(result)));
+            return;
+        }
+        if (durability == GameResultDurability.COMMITTED) {
+            awaitCommit(result);
+        }
+    }
+
+    private void awaitCommit(PendingResult result) {
+        try {
+            result.stored().get(commitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // the result stays queued, but the caller must not report it as committed
+            log.warn("Game result of {} was not committed within {} ms", result.username(), commitTimeoutMillis);
+            throw new GameResultNotStoredException(
+                    "Game result of " + result.username() + " was not committed within " + commitTimeoutMillis + " ms", e);
+        } catch (ExecutionException e) {
+            throw new GameResultNotStoredException("Game result of " + result.username() + " was not stored", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GameResultNotStoredException("Interrupted while waiting for the game result of " + result.username(), e);
+        }
+    }
+
+    /**
+     * Writes the queued results to the database, one transaction per batch. A failed batch is retried on the next
+     * flush.
+     */
+    @Scheduled(fixedDelayString = "${game.results.flush-interval-millis:100}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            while (!failed.isEmpty()) {
+                var batch = failed.removeFirst();
+                if (!flushBatch(batch.results()) && !retry(new FailedBatch(batch.results(), batch.attempts() + 1))) {
+                    return;
+                }
+            }
+            while (!queue.isEmpty()) {
+                var batch = new ArrayList<PendingResult>(batchSize);
+                queue.drainTo(batch, batchSize);
+                if (!flushBatch(batch)) {
+                    retry(new FailedBatch(batch, 1));
+                    return;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Puts a failed batch back in front of the retries, or splits it into single results once it used up its attempts.
+     * A single result that used up its attempts is given up. Returns whether the flush can go on with the next batch.
+     */
+    private boolean retry(FailedBatch batch) {
+        if (batch.attempts() < maxAttempts) {
+            failed.addFirst(batch);
+            return false;
+        }
+        if (batch.results().size() > 1) {
+            log.warn("Splitting a batch of {} game results that failed {} times", batch.results().size(), batch.attempts());
+            for (var result : batch.results().reversed()) {
+                failed.addFirst(new FailedBatch(List.of(result), 0));
+            }
+            return true;
+        }
+        var result = batch.results().getFirst();
+        log.error("Giving up the game result of {} after {} attempts: score {}, level {}, lines cleared {}, time {}, "
+                        + "played at {}", result.username(), batch.attempts(), result.score(), result.level(),
+                result.linesCleared(), result.time(), result.dateTime());
+        deadLettered.increment();
+        result.stored().completeExceptionally(
+                new IllegalStateException("Game result failed to be written " + batch.attempts() + " times"));
+        return true;
+    }
+
+    private boolean flushBatch(List<PendingResult> batch) {
+        try {
+            flushDuration.record(() -> transactionOperations.executeWithoutResult(_ -> {
+                gameResultRepository.synchronousCommit(synchronousCommit);
+                store(batch);
+            }));
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Failed to write {} game results, retrying on the next flush", batch.size(), e);
+            flushFailures.increment();
+            return false;
+        }
+        flushSize.record(batch.size());
+        batch.forEach(result -> result.stored().complete(null));
+        return true;
+    }
+
+    private void store(List<PendingResult> results) {
+        var usernames = results.stream().map(PendingResult::username).collect(Collectors.toSet());
+        var users = userRepository.findAllWithAuthoritiesByUsernameIn(usernames)
+                .stream()
+                .collect(Collectors.toMap(User::getUsername, Function.identity()));
+
+        var gameResults = new ArrayList<GameResult>(results.size());
+        var stored = new ArrayList<PendingResult>(results.size());
+        for (var result : results) {
+            var user = users.get(result.username());
+            if (user == null) {
+                log.warn("Dropping the game result of {}, the user no longer exists", result.username());
+                dropped.increment();
+                continue;
+            }
+            gameResults.add(new GameResult(null, user, result.score(), result.level(), result.linesCleared(),
+                    result.time(), result.dateTime()));
+            stored.add(result);
+        }
+        gameResultRepository.saveAll(gameResults);
+        var events = new ArrayList<GameResultSavedEvent>(stored.size());
+        for (var result : stored) {
+            var event = new GameResultSavedEvent(result.username(), result.score(), result.level(),
+                    result.linesCleared(), result.time(), result.dateTime());
+            eventPublisher.publishEvent(event);
+            events.add(event);
+        }
+        if (!events.isEmpty()) {
+            eventPublisher.publishEvent(new GameResultsSavedEvent(events));
+        }
+    }
+
+    private int queued() {
+        return queue.size();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * Writes the results still queued.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        flush();
+        if (!queue.isEmpty() || !failed.isEmpty()) {
+            log.error("Shutting down with {} game results that could not be written",
+                    queue.size() + failed.stream().mapToInt(batch -> batch.results().size()).sum());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // flush after the web server stopped taking results
+        return DEFAULT_PHASE - 4096;
+    }
+
+    private record PendingResult(String username, long score, int level, int linesCleared, long time,
+                                 LocalDateTime dateTime, CompletableFuture<Void> stored) {
+    }
+
+    private record FailedBatch(List<PendingResult> results, int attempts) {
+    }
+}
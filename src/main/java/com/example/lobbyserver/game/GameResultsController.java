@@ -1,13 +1,22 @@
 package com.example.lobbyserver.game;
 
+import com.example.lobbyserver.game.db.GameResult;
 import com.example.lobbyserver.game.db.GameResultRepository;
+import com.example.lobbyserver.paging.CountMode;
+import com.example.lobbyserver.paging.CursorPage;
+import com.example.lobbyserver.paging.Cursors;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @RestController
@@ -26,4 +35,57 @@ public class GameResultsController {
                 .orElseGet(() -> gameResultRepository.findAll(pageable))
                 .map(GameResultDao::fromGameResult);
     }
+
+    /**
+     * The game results newest first, starting after the cursor of the previous page. Every page is found through the
+     * {@code (dateTime, id)} index, so deep pages cost the same as the first one.
+     */
+    @GetMapping(params = "cursor")
+    public CursorPage<GameResultDao> getGameResultsAfter(@RequestParam String cursor,
+                                                         Pageable pageable,
+                                                         @RequestParam("username") Optional<String> usernameOptional,
+                                                         @RequestParam(defaultValue = "none") String count) {
+        var countMode = CountMode.parse(count);
+        var limit = Limit.of(pageable.getPageSize() + 1);
+        List<GameResult> results;
+        if (cursor.isEmpty()) {
+            results = usernameOptional.map(username -> gameResultRepository.findNewestOfUser(username, limit))
+                    .orElseGet(() -> gameResultRepository.findNewest(limit));
+        } else {
+            var after = Cursors.decode(cursor, 2, keys -> new ResultKey(LocalDateTime.parse(keys[0]), Long.parseLong(keys[1])));
+            results = usernameOptional.map(username -> gameResultRepository.findOlderOfUserThan(username, after.dateTime(), after.id(), limit))
+                    .orElseGet(() -> gameResultRepository.findOlderThan(after.dateTime(), after.id(), limit));
+        }
+
+        String next = null;
+        if (results.size() > pageable.getPageSize()) {
+            results = results.subList(0, pageable.getPageSize());
+            var last = results.getLast();
+            next = Cursors.encode(last.getDateTime(), last.getId());
+        }
+        return new CursorPage<>(results.stream().map(GameResultDao::fromGameResult).toList(), next,
+                count(countMode, usernameOptional));
+    }
+
+    private Long count(CountMode countMode, Optional<String> usernameOptional) {
+        return switch (countMode) {
+            case NONE -> null;
+            // a user's results are counted on the username index, statistics only cover the whole table
+            case ESTIMATE -> usernameOptional.map(gameResultRepository::countByUser_Username)
+                    .orElseGet(() -> {
+                        var estimate = gameResultRepository.estimateCount();
+                        return estimate == null || estimate < 0 ? null : estimate;
+                    });
+            case EXACT -> usernameOptional.map(gameResultRepository::countByUser_Username)
+                    .orElseGet(gameResultRepository::count);
+        };
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Void> handleMalformedRequest() {
+        return ResponseEntity.badRequest().build();
+    }
+
+    private record ResultKey(LocalDateTime dateTime, long id) {
+    }
 }
@@ -0,0 +1,14 @@
+package com.example.lobbyserver.game;
+
+import java.util.List;
+
+/**
+ * Published once per transaction that stored game results, after the {@link GameResultSavedEvent} of every result, so
+ * views aggregating over the results can be updated once per batch.
+ */
+public record GameResultsSavedEvent(List<GameResultSavedEvent> results) {
+
+    public GameResultsSavedEvent {
+        results = List.copyOf(results);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.lobbyserver.game;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A game server serving one game instance, either running as a process on the lobby server
+ * ({@link ConnectedGameServer}, or {@link AdoptedGameServer} after a restart) or on a remote game host
+ * ({@link RemoteGameServer}).
+ */
+interface GameServer {
+
+    /**
+     * Host name players use to connect to the game server.
+     */
+    String host();
+
+    /**
+     * Tells the game server its lobby size and completes with the port it accepts player connections on.
+     */
+    CompletableFuture<Integer> assignLobby(int lobbySize);
+
+    /**
+     * Completes with the exit code once the game server has exited.
+     */
+    CompletableFuture<Integer> onExit();
+
+    /**
+     * The game server process if it runs on the lobby server itself.
+     */
+    Optional<ProcessHandle> localProcess();
+
+    boolean isAlive();
+
+    void destroy();
+
+    void destroyForcibly();
+}
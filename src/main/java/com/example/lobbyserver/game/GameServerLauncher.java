@@ -0,0 +1,115 @@
+package com.example.lobbyserver.game;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Starts game servers and waits for them to connect back to the lobby server. The returned
+ * {@link ConnectedGameServer} has not been assigned a lobby yet.
+ * <p>
+ * {@code game.server.launcher} selects the implementation: {@code process} (the default) spawns the native game
+ * server executable, {@code simulated} runs a {@link SimulatedGameServer} inside the lobby server.
+ */
+public abstract class GameServerLauncher {
+
+    private static final Logger log = LoggerFactory.getLogger(GameServerLauncher.class);
+
+    @Value("${game.server.instance.host}")
+    private String gameServerInstanceHost;
+
+    private final HandshakeListener handshakeListener;
+    private final PortAllocator portAllocator;
+
+    protected GameServerLauncher(HandshakeListener handshakeListener, PortAllocator portAllocator) {
+        this.handshakeListener = handshakeListener;
+        this.portAllocator = portAllocator;
+    }
+
+    /**
+     * Starts a game server. The returned future completes once the game server has connected, or exceptionally if
+     * it could not be started or did not connect in time; the game server is destroyed in that case. The game port
+     * allocated for the game server is released once it exits, or as soon as the game server reports another port.
+     */
+    CompletableFuture<ConnectedGameServer> launch(File logFile) {
+        PendingHandshake handshake = null;
+        int gamePort = 0;
+        try {
+            handshake = handshakeListener.expectConnection();
+            gamePort = portAllocator.allocate();
+            var process = start(handshake, gamePort, logFile);
+            var ports = new GamePorts(gamePort);
+            process.onExit().whenComplete((_, _) -> ports.release());
+
+            return handshake.connection()
+                    .thenApply(connection -> new ConnectedGameServer(process, connection, gameServerInstanceHost, logFile,
+                            ports::reported))
+                    .whenComplete((_, e) -> {
+                        if (e != null) {
+                            process.destroy();
+                        }
+                    });
+        } catch (IOException | RuntimeException e) {
+            if (handshake != null) {
+                handshake.cancel();
+            }
+            portAllocator.release(gamePort);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Starts a game server that connects to the given handshake and writes its output to the log file. The game
+     * server should accept player connections on {@code gamePort}, or on a port of its choice if it is {@code 0}.
+     */
+    abstract Process start(PendingHandshake handshake, int gamePort, File logFile) throws IOException;
+
+    /**
+     * The ports of the managed range held by one game server process. Game servers that pick their own port (the
+     * native executable ignores the allocated one) give the allocated port back on their first report, and the ports
+     * they report are claimed instead, so they are not handed out to another game server while in use.
+     */
+    private final class GamePorts {
+
+        private final int allocated;
+        private final AtomicBoolean holdsAllocated;
+        private final AtomicBoolean firstReport = new AtomicBoolean(true);
+        private final Set<Integer> claimed = ConcurrentHashMap.newKeySet();
+
+        GamePorts(int allocated) {
+            this.allocated = allocated;
+            this.holdsAllocated = new AtomicBoolean(allocated > 0);
+        }
+
+        void reported(int port) {
+            if (allocated == 0 || port == allocated || claimed.contains(port)) {
+                firstReport.set(false);
+                return;
+            }
+            if (firstReport.compareAndSet(true, false) && holdsAllocated.compareAndSet(true, false)) {
+                log.debug("Game server reported port {} instead of the allocated port {}", port, allocated);
+                portAllocator.release(allocated);
+            }
+            if (portAllocator.claim(port)) {
+                claimed.add(port);
+            } else if (portAllocator.isInRange(port)) {
+                log.warn("Game server reported port {} of the game server port range, which is allocated to another "
+                        + "game server", port);
+            }
+        }
+
+        void release() {
+            if (holdsAllocated.compareAndSet(true, false)) {
+                portAllocator.release(allocated);
+            }
+            claimed.forEach(portAllocator::release);
+        }
+    }
+}
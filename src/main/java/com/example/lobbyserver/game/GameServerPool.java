@@ -0,0 +1,197 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a configurable number of game servers spawned and connected, waiting to be assigned a lobby size. Claiming
+ * a pooled server skips the process start and handshake wait of a cold launch. The pool is refilled in the
+ * background after every claim.
+ */
+@Component
+public class GameServerPool implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(GameServerPool.class);
+
+    @Value("${game.server.pool.size:0}")
+    private int poolSize;
+
+    private final GameServerLauncher gameServerLauncher;
+    private final ServerLogsService serverLogsService;
+    private final Executor taskScheduler;
+
+    private final BlockingQueue<ConnectedGameServer> idleServers = new LinkedBlockingQueue<>();
+    private final AtomicInteger pendingRefills = new AtomicInteger();
+    private volatile boolean running = false;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter refillFailures;
+    private final Timer refillLatency;
+
+    public GameServerPool(GameServerLauncher gameServerLauncher, ServerLogsService serverLogsService, Executor taskScheduler, MeterRegistry meterRegistry) {
+        this.gameServerLauncher = gameServerLauncher;
+        this.serverLogsService = serverLogsService;
+        this.taskScheduler = taskScheduler;
+
+        this.hits = Counter.builder("game.server.pool.claims")
+                .description("Lobby creations served by a pre-warmed game server")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("game.server.pool.claims")
+                .description("Lobby creations that had to cold-start a game server")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.refillFailures = Counter.builder("game.server.pool.refill.failures")
+                .description("Pooled game servers that failed to start or connect")
+                .register(meterRegistry);
+        this.refillLatency = Timer.builder("game.server.pool.refill")
+                .description("Time to spawn a pooled game server until it is connected")
+                .register(meterRegistry);
+        Gauge.builder("game.server.pool.idle", idleServers, BlockingQueue::size)
+                .description("Pre-warmed game servers waiting for a lobby")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a pre-warmed game server out of the pool and moves its log file to the given lobby. Returns an empty
+     * optional if the pool is disabled or currently exhausted, in which case the caller has to launch a game server
+     * itself.
+     */
+    Optional<ConnectedGameServer> claim(long lobbyId) {
+        if (poolSize <= 0) {
+            return Optional.empty();
+        }
+
+        try {
+            ConnectedGameServer gameServer;
+            while ((gameServer = idleServers.poll()) != null) {
+                if (!gameServer.isAlive()) {
+                    log.warn("Discarding pooled game server {}, it exited while idle", gameServer.process());
+                    gameServer.close();
+                    continue;
+                }
+
+                hits.increment();
+                log.debug("Claimed pooled game server {} for lobby {}", gameServer.process(), lobbyId);
+                assignLogFile(gameServer, lobbyId);
+                return Optional.of(gameServer);
+            }
+
+            misses.increment();
+            log.debug("Game server pool exhausted, cold-starting game server for lobby {}", lobbyId);
+            return Optional.empty();
+        } finally {
+            refill();
+        }
+    }
+
+    /**
+     * The processes of the pre-warmed game servers that wait for a lobby.
+     */
+    List<ProcessHandle> idleProcesses() {
+        return idleServers.stream()
+                .flatMap(gameServer -> gameServer.localProcess().stream())
+                .toList();
+    }
+
+    private void assignLogFile(ConnectedGameServer gameServer, long lobbyId) {
+        try {
+            gameServer.setLogFile(serverLogsService.assignLogFileToLobby(gameServer.logFile(), lobbyId));
+        } catch (IOException e) {
+            log.warn("Could not move log file {} to lobby {}", gameServer.logFile(), lobbyId, e);
+        }
+    }
+
+    private void refill() {
+        if (!running) {
+            return;
+        }
+
+        int pending;
+        int missing;
+        do {
+            pending = pendingRefills.get();
+            missing = poolSize - idleServers.size() - pending;
+            if (missing <= 0) {
+                return;
+            }
+        } while (!pendingRefills.compareAndSet(pending, pending + missing));
+
+        for (int i = 0; i < missing; i++) {
+            taskScheduler.execute(this::spawnIdleServer);
+        }
+    }
+
+    private void spawnIdleServer() {
+        var sample = Timer.start();
+        launchIdleServer().whenComplete((gameServer, e) -> {
+            try {
+                if (e != null) {
+                    // no immediate retry, the next claim triggers another refill attempt
+                    refillFailures.increment();
+                    log.warn("Failed to start pooled game server", e);
+                    return;
+                }
+                sample.stop(refillLatency);
+
+                idleServers.add(gameServer);
+                // stop() may have drained the pool while this server was starting
+                if (!running && idleServers.remove(gameServer)) {
+                    gameServer.destroy();
+                    return;
+                }
+                log.debug("Pooled game server {} is ready", gameServer.process());
+            } finally {
+                pendingRefills.decrementAndGet();
+            }
+        });
+    }
+
+    private CompletableFuture<ConnectedGameServer> launchIdleServer() {
+        try {
+            return gameServerLauncher.launch(serverLogsService.createLogFileForPooledServer());
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (poolSize > 0) {
+            log.info("Pre-warming {} game servers", poolSize);
+            refill();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        ConnectedGameServer gameServer;
+        while ((gameServer = idleServers.poll()) != null) {
+            gameServer.destroy();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
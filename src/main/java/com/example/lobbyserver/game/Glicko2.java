@@ -0,0 +1,88 @@
+package com.example.lobbyserver.game;
+
+import java.util.List;
+
+/**
+ * The Glicko-2 rating update (Glickman, "Example of the Glicko-2 system"), with every match as its own rating period.
+ */
+final class Glicko2 {
+
+    private static final double SCALE = 173.7178;
+    private static final double CONVERGENCE = 0.000001;
+
+    private Glicko2() {
+    }
+
+    /**
+     * Rates a player against the opponents of one match, {@code scores} holds the player's result against each of
+     * them: {@code 1} for a win, {@code 0.5} for a draw and {@code 0} for a loss.
+     */
+    static Rating rate(Rating player, List<Rating> opponents, List<Double> scores, double tau) {
+        if (opponents.isEmpty()) {
+            return player;
+        }
+        var mu = (player.rating() - Rating.INITIAL.rating()) / SCALE;
+        var phi = player.deviation() / SCALE;
+
+        var inverseVariance = 0.0;
+        var improvement = 0.0;
+        for (int i = 0; i < opponents.size(); i++) {
+            var opponent = opponents.get(i);
+            var g = g(opponent.deviation() / SCALE);
+            var expected = 1.0 / (1.0 + Math.exp(-g * (mu - (opponent.rating() - Rating.INITIAL.rating()) / SCALE)));
+            inverseVariance += g * g * expected * (1.0 - expected);
+            improvement += g * (scores.get(i) - expected);
+        }
+        var variance = 1.0 / inverseVariance;
+        var delta = variance * improvement;
+
+        var volatility = volatility(phi, player.volatility(), variance, delta, tau);
+        var phiStar = Math.sqrt(phi * phi + volatility * volatility);
+        var newPhi = 1.0 / Math.sqrt(1.0 / (phiStar * phiStar) + 1.0 / variance);
+        var newMu = mu + newPhi * newPhi * improvement;
+        return new Rating(newMu * SCALE + Rating.INITIAL.rating(), newPhi * SCALE, volatility, player.games() + 1);
+    }
+
+    private static double g(double phi) {
+        return 1.0 / Math.sqrt(1.0 + 3.0 * phi * phi / (Math.PI * Math.PI));
+    }
+
+    /**
+     * Finds the new volatility with the Illinois variant of regula falsi.
+     */
+    private static double volatility(double phi, double sigma, double variance, double delta, double tau) {
+        var a = Math.log(sigma * sigma);
+        var lower = a;
+        double upper;
+        if (delta * delta > phi * phi + variance) {
+            upper = Math.log(delta * delta - phi * phi - variance);
+        } else {
+            var k = 1;
+            while (f(a - k * tau, a, phi, variance, delta, tau) < 0) {
+                k++;
+            }
+            upper = a - k * tau;
+        }
+        var fLower = f(lower, a, phi, variance, delta, tau);
+        var fUpper = f(upper, a, phi, variance, delta, tau);
+        while (Math.abs(upper - lower) > CONVERGENCE) {
+            var c = lower + (lower - upper) * fLower / (fUpper - fLower);
+            var fC = f(c, a, phi, variance, delta, tau);
+            if (fC * fUpper <= 0) {
+                lower = upper;
+                fLower = fUpper;
+            } else {
+                fLower /= 2;
+            }
+            upper = c;
+            fUpper = fC;
+        }
+        return Math.exp(lower / 2);
+    }
+
+    private static double f(double x, double a, double phi, double variance, double delta, double tau) {
+        var ex = Math.exp(x);
+        var denominator = phi * phi + variance + ex;
+        return ex * (delta * delta - phi * phi - variance - ex) / (2 * denominator * denominator) - (x - a) / (tau * tau);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.lobbyserver.game;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The accepted lobby connection of a game server. It is kept open for the lifetime of the game server.
+ */
+final class HandshakeConnection {
+
+    private static final Logger log = LoggerFactory.getLogger(HandshakeConnection.class);
+
+    private final HandshakeListener listener;
+    private final SocketChannel channel;
+
+    HandshakeConnection(HandshakeListener listener, SocketChannel channel) {
+        this.listener = listener;
+        this.channel = channel;
+    }
+
+    /**
+     * Sends the lobby size to the game server and completes with the port it accepts player connections on.
+     */
+    CompletableFuture<Integer> exchange(int lobbySize) {
+        return listener.exchange(channel, lobbySize);
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close game server lobby connection", e);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Accepts the connections of freshly spawned game servers and performs the lobby size / port exchange on a single
+ * selector thread, so no thread is blocked per launch.
+ * <p>
+ * With {@code game.server.handshake.shared-endpoint=true} all game servers connect to one listening port and
+ * identify themselves by sending the 8 byte token they were started with. Game server binaries that do not support
+ * tokens get a dedicated listening channel per launch instead, which is registered with the same selector.
+ * <p>
+ * Futures handed out by this class are always completed on the task executor, never on the selector thread, so
+ * callers may chain blocking work onto them.
+ */
+@Component
+public class HandshakeListener implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(HandshakeListener.class);
+    private static final long SELECT_TIMEOUT_MILLIS = 500;
+
+    @Value("${game.server.handshake.shared-endpoint:false}")
+    private boolean sharedEndpoint;
+
+    @Value("${game.server.handshake.port:0}")
+    private int sharedEndpointPort;
+
+    @Value("${game.server.handshake.timeout-millis:2000}")
+    private long timeoutMillis;
+
+    private final Executor taskScheduler;
+    private final PortAllocator portAllocator;
+    private final SecureRandom tokenGenerator = new SecureRandom();
+
+    private final Map<Long, PendingHandshake> pendingByToken = new ConcurrentHashMap<>();
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private volatile Selector selector;
+    private volatile ServerSocketChannel sharedChannel;
+    private volatile boolean running = false;
+
+    private final Timer handshakeDuration;
+    private final Counter handshakeFailures;
+
+    public HandshakeListener(Executor taskScheduler, PortAllocator portAllocator, MeterRegistry meterRegistry) {
+        this.taskScheduler = taskScheduler;
+        this.portAllocator = portAllocator;
+        this.handshakeDuration = Timer.builder("game.server.handshake")
+                .description("Time from game server launch until its connection was accepted")
+                .register(meterRegistry);
+        this.handshakeFailures = Counter.builder("game.server.handshake.failures")
+                .description("Game servers that did not connect in time or sent an unknown token")
+                .register(meterRegistry);
+        Gauge.builder("game.server.handshake.pending", pendingByToken, Map::size)
+                .description("Launched game servers that have not connected yet (shared endpoint only)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Prepares for a game server to connect. The returned handshake tells which arguments the game server has to be
+     * started with and completes once it has connected.
+     */
+    PendingHandshake expectConnection() throws IOException {
+        if (!running) {
+            throw new IllegalStateException("Handshake listener is not running");
+        }
+
+        PendingHandshake handshake;
+        if (sharedEndpoint) {
+            long token;
+            do {
+                token = tokenGenerator.nextLong();
+            } while (token == 0 || pendingByToken.containsKey(token));
+            handshake = new PendingHandshake(sharedChannel.socket().getLocalPort(), token);
+            pendingByToken.put(token, handshake);
+        } else {
+            var channel = portAllocator.bind(HandshakeListener::openDedicatedChannel);
+            var port = channel.socket().getLocalPort();
+            handshake = new PendingHandshake(port, 0);
+            runOnSelector(() -> register(channel, SelectionKey.OP_ACCEPT, new DedicatedAcceptor(channel, handshake)));
+            handshake.connection().whenComplete((_, _) -> {
+                closeQuietly(channel);
+                portAllocator.release(port);
+            });
+        }
+
+        var sample = Timer.start();
+        failAfterTimeout(handshake.connection(), "Game server did not connect within " + timeoutMillis + " ms");
+        handshake.connection().whenComplete((_, e) -> {
+            if (e == null) {
+                sample.stop(handshakeDuration);
+            } else {
+                handshakeFailures.increment();
+            }
+            pendingByToken.remove(handshake.token(), handshake);
+        });
+        return handshake;
+    }
+
+    private static ServerSocketChannel openDedicatedChannel(int port) throws IOException {
+        var channel = ServerSocketChannel.open();
+        try {
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+            return channel;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Sends the lobby size over an accepted connection and completes with the game port reported back.
+     */
+    CompletableFuture<Integer> exchange(SocketChannel channel, int lobbySize) {
+        var result = new CompletableFuture<Integer>();
+        runOnSelector(() -> register(channel, SelectionKey.OP_WRITE, new PortExchange(lobbySize, result)));
+        failAfterTimeout(result, "Game server did not report its port within " + timeoutMillis + " ms");
+        return result;
+    }
+
+    private void register(SelectableChannel channel, int ops, SelectorHandler handler) {
+        try {
+            channel.register(selector, ops, handler);
+        } catch (ClosedChannelException | CancelledKeyException e) {
+            handler.fail(e);
+        }
+    }
+
+    private void runOnSelector(Runnable task) {
+        selectorTasks.add(task);
+        selector.wakeup();
+    }
+
+    private void failAfterTimeout(CompletableFuture<?> future, String message) {
+        CompletableFuture.delayedExecutor(timeoutMillis, TimeUnit.MILLISECONDS, taskScheduler)
+                .execute(() -> future.completeExceptionally(new TimeoutException(message)));
+    }
+
+    private <T> void completeOffSelector(CompletableFuture<T> future, T value) {
+        taskScheduler.execute(() -> future.complete(value));
+    }
+
+    private void failOffSelector(CompletableFuture<?> future, Throwable e) {
+        taskScheduler.execute(() -> future.completeExceptionally(e));
+    }
+
+    private void runSelectorLoop() {
+        var nextExpiry = System.nanoTime();
+        while (running) {
+            try {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) {
+                    task.run();
+                }
+
+                var keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    var key = keys.next();
+                    keys.remove();
+                    var handler = (SelectorHandler) key.attachment();
+                    try {
+                        if (key.isValid()) {
+                            handler.handle(key);
+                        }
+                    } catch (IOException | CancelledKeyException e) {
+                        key.cancel();
+                        closeQuietly(key.channel());
+                        handler.fail(e);
+                    }
+                }
+
+                var now = System.nanoTime();
+                if (now - nextExpiry >= 0) {
+                    expireUnidentifiedConnections(now);
+                    nextExpiry = now + TimeUnit.MILLISECONDS.toNanos(SELECT_TIMEOUT_MILLIS);
+                }
+            } catch (IOException e) {
+                log.error("Handshake selector failed", e);
+            }
+        }
+        closeSelector();
+    }
+
+    private void closeSelector() {
+        try {
+            for (var key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            selector.close();
+        } catch (IOException e) {
+            log.warn("Failed to close game server handshake listener", e);
+        }
+    }
+
+    private void expireUnidentifiedConnections(long now) {
+        for (var key : selector.keys()) {
+            if (key.attachment() instanceof TokenReader reader && reader.isExpired(now)) {
+                log.warn("Closing game server connection that did not send a handshake token in time");
+                handshakeFailures.increment();
+                key.cancel();
+                closeQuietly(key.channel());
+            }
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close handshake channel", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        try {
+            selector = Selector.open();
+            if (sharedEndpoint) {
+                sharedChannel = ServerSocketChannel.open();
+                sharedChannel.bind(new InetSocketAddress(sharedEndpointPort));
+                sharedChannel.configureBlocking(false);
+                sharedChannel.register(selector, SelectionKey.OP_ACCEPT, new SharedAcceptor());
+                log.info("Accepting game server handshakes on shared port {}", sharedChannel.socket().getLocalPort());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open game server handshake listener", e);
+        }
+
+        running = true;
+        Thread.ofPlatform()
+                .name("game-server-handshake")
+                .daemon()
+                .start(this::runSelectorLoop);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        pendingByToken.values().forEach(handshake ->
+                handshake.connection().completeExceptionally(new IllegalStateException("Handshake listener stopped")));
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // start before and stop after the services that launch game servers
+        return DEFAULT_PHASE - 1;
+    }
+
+    private sealed interface SelectorHandler permits DedicatedAcceptor, SharedAcceptor, TokenReader, PortExchange {
+        void handle(SelectionKey key) throws IOException;
+
+        void fail(Throwable e);
+    }
+
+    private final class DedicatedAcceptor implements SelectorHandler {
+        private final ServerSocketChannel serverChannel;
+        private final PendingHandshake handshake;
+
+        private DedicatedAcceptor(ServerSocketChannel serverChannel, PendingHandshake handshake) {
+            this.serverChannel = serverChannel;
+            this.handshake = handshake;
+        }
+
+        @Override
+        public void handle(SelectionKey key) throws IOException {
+            var channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            key.cancel();
+            channel.configureBlocking(false);
+            completeHandshake(handshake, channel);
+        }
+
+        @Override
+        public void fail(Throwable e) {
+            failOffSelector(handshake.connection(), e);
+        }
+    }
+
+    private final class SharedAcceptor implements SelectorHandler {
+        @Override
+        public void handle(SelectionKey key) throws IOException {
+            SocketChannel channel;
+            while ((channel = sharedChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, new TokenReader(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)));
+            }
+        }
+
+        @Override
+        public void fail(Throwable e) {
+            log.error("Shared game server handshake endpoint failed", e);
+        }
+    }
+
+    private final class TokenReader implements SelectorHandler {
+        private final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        private final long deadline;
+
+        private TokenReader(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void handle(SelectionKey key) throws IOException {
+            var channel = (SocketChannel) key.channel();
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Game server closed connection before sending its handshake token");
+            }
+            if (buffer.hasRemaining()) {
+                return;
+            }
+
+            key.cancel();
+            var handshake = pendingByToken.remove(buffer.getLong(0));
+            if (handshake == null) {
+                log.warn("Game server connected with unknown handshake token");
+                handshakeFailures.increment();
+                closeQuietly(channel);
+                return;
+            }
+            completeHandshake(handshake, channel);
+        }
+
+        @Override
+        public void fail(Throwable e) {
+            log.debug("Unidentified game server connection failed", e);
+        }
+
+        boolean isExpired(long now) {
+            return now - deadline > 0;
+        }
+    }
+
+    private final class PortExchange implements SelectorHandler {
+        private final ByteBuffer out = ByteBuffer.allocate(Short.BYTES);
+        private final ByteBuffer in = ByteBuffer.allocate(Short.BYTES);
+        private final CompletableFuture<Integer> result;
+
+        private PortExchange(int lobbySize, CompletableFuture<Integer> result) {
+            this.out.putShort((short) lobbySize).flip();
+            this.result = result;
+        }
+
+        @Override
+        public void handle(SelectionKey key) throws IOException {
+            var channel = (SocketChannel) key.channel();
+            if (out.hasRemaining()) {
+                channel.write(out);
+                if (!out.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+                return;
+            }
+
+            if (channel.read(in) < 0) {
+                throw new EOFException("Game server closed connection before reporting its port");
+            }
+            if (!in.hasRemaining()) {
+                // the connection stays open for the lifetime of the game server, but is no longer watched
+                key.cancel();
+                completeOffSelector(result, in.getShort(0) & 0xFFFF);
+            }
+        }
+
+        @Override
+        public void fail(Throwable e) {
+            failOffSelector(result, e);
+        }
+    }
+
+    private void completeHandshake(PendingHandshake handshake, SocketChannel channel) {
+        var connection = new HandshakeConnection(this, channel);
+        taskScheduler.execute(() -> {
+            if (!handshake.connection().complete(connection)) {
+                // the handshake timed out in the meantime
+                connection.close();
+            }
+        });
+    }
+}
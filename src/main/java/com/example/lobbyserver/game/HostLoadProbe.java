@@ -0,0 +1,88 @@
+package com.example.lobbyserver.game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Samples the host load from {@code /proc}. CPU utilization is derived from the difference between two consecutive
+ * samples of {@code /proc/stat}, so the first sample reports no utilization. Values that cannot be read (for example
+ * on hosts without {@code /proc}) are reported as {@link HostLoad#UNKNOWN} and never cause throttling.
+ */
+final class HostLoadProbe {
+
+    private final Path procRoot;
+    private long previousIdle = -1;
+    private long previousTotal = -1;
+
+    HostLoadProbe(Path procRoot) {
+        this.procRoot = procRoot;
+    }
+
+    synchronized HostLoad sample() {
+        return new HostLoad(readCpuUtilization(), readLoadAverage(), readAvailableMemoryBytes());
+    }
+
+    private double readCpuUtilization() {
+        try {
+            var fields = firstLine(procRoot.resolve("stat")).trim().split("\\s+");
+            long total = 0;
+            for (int i = 1; i < fields.length; i++) {
+                total += Long.parseLong(fields[i]);
+            }
+            // idle + iowait
+            long idle = Long.parseLong(fields[4]) + (fields.length > 5 ? Long.parseLong(fields[5]) : 0);
+
+            var deltaTotal = total - previousTotal;
+            var deltaIdle = idle - previousIdle;
+            var first = previousTotal < 0;
+            previousTotal = total;
+            previousIdle = idle;
+            if (first || deltaTotal <= 0) {
+                return HostLoad.UNKNOWN;
+            }
+            return 1.0 - (double) deltaIdle / deltaTotal;
+        } catch (IOException | RuntimeException _) {
+            return HostLoad.UNKNOWN;
+        }
+    }
+
+    private double readLoadAverage() {
+        try {
+            return Double.parseDouble(firstLine(procRoot.resolve("loadavg")).split("\\s+")[0]);
+        } catch (IOException | RuntimeException _) {
+            return HostLoad.UNKNOWN;
+        }
+    }
+
+    private long readAvailableMemoryBytes() {
+        try (var lines = Files.lines(procRoot.resolve("meminfo"))) {
+            return lines.filter(line -> line.startsWith("MemAvailable:"))
+                    .findFirst()
+                    .map(line -> Long.parseLong(line.replaceAll("\\D", "")) * 1024)
+                    .orElse((long) HostLoad.UNKNOWN);
+        } catch (IOException | RuntimeException _) {
+            return (long) HostLoad.UNKNOWN;
+        }
+    }
+
+    private static String firstLine(Path file) throws IOException {
+        try (var reader = Files.newBufferedReader(file)) {
+            var line = reader.readLine();
+            if (line == null) {
+                throw new IOException(file + " is empty");
+            }
+            return line;
+        }
+    }
+
+    /**
+     * A host load sample. Negative values mean the value is unknown.
+     */
+    record HostLoad(double cpuUtilization, double loadAverage, long availableMemoryBytes) {
+
+        static final int UNKNOWN = -1;
+
+        static final HostLoad NONE = new HostLoad(UNKNOWN, UNKNOWN, UNKNOWN);
+    }
+}
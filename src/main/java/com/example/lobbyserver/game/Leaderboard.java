@@ -0,0 +1,81 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.game.db.LeaderboardEntry;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The best value of the top {@code size} players within a window, best first. Only a player's best value counts, so
+ * offering a value is idempotent: a player pushed off the board can only come back with a value above the board's
+ * lowest, which rises monotonically until the window moves on.
+ * <p>
+ * Every change publishes a new immutable list, so reads never wait for writes.
+ */
+final class Leaderboard {
+
+    private static final Comparator<LeaderboardEntry> RANKING = Comparator.comparingLong(LeaderboardEntry::value)
+            .reversed()
+            .thenComparing(LeaderboardEntry::username);
+
+    private final int size;
+    private final TreeSet<LeaderboardEntry> ranking = new TreeSet<>(RANKING);
+    private final Map<String, LeaderboardEntry> byUsername = new HashMap<>();
+    private LocalDateTime start;
+    private volatile List<LeaderboardEntry> top = List.of();
+
+    Leaderboard(int size, LocalDateTime start) {
+        this.size = size;
+        this.start = start;
+    }
+
+    List<LeaderboardEntry> top() {
+        return top;
+    }
+
+    /**
+     * Ranks the value if it was achieved within the window, returns whether the board changed.
+     */
+    synchronized boolean offer(String username, long value, LocalDateTime dateTime) {
+        if (dateTime.isBefore(start)) {
+            return false;
+        }
+        var entry = new LeaderboardEntry(username, value);
+        var previous = byUsername.get(username);
+        if (previous != null) {
+            if (previous.value() >= value) {
+                return false;
+            }
+            ranking.remove(previous);
+        } else if (ranking.size() >= size) {
+            if (RANKING.compare(entry, ranking.last()) >= 0) {
+                return false;
+            }
+            byUsername.remove(ranking.pollLast().username());
+        }
+        ranking.add(entry);
+        byUsername.put(username, entry);
+        top = List.copyOf(ranking);
+        return true;
+    }
+
+    /**
+     * Empties the board if the window starting at {@code windowStart} has replaced the current one.
+     */
+    synchronized void moveTo(LocalDateTime windowStart) {
+        if (windowStart.isAfter(start)) {
+            start = windowStart;
+            ranking.clear();
+            byUsername.clear();
+            top = List.of();
+        }
+    }
+
+    synchronized LocalDateTime start() {
+        return start;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.game.db.LeaderboardEntry;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/leaderboards")
+public class LeaderboardController {
+
+    private final Leaderboards leaderboards;
+
+    public LeaderboardController(Leaderboards leaderboards) {
+        this.leaderboards = leaderboards;
+    }
+
+    @GetMapping("/{metric}")
+    public List<LeaderboardEntry> getLeaderboard(@PathVariable String metric,
+                                                 @RequestParam(defaultValue = "all-time") String window,
+                                                 @RequestParam(defaultValue = "10") int limit) {
+        return leaderboards.top(LeaderboardMetric.parse(metric), LeaderboardWindow.parse(window), Math.max(limit, 0));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Void> handleUnknownLeaderboard() {
+        return ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.lobbyserver.game;
+
+import java.util.Locale;
+
+/**
+ * The value of a game result a leaderboard ranks players by.
+ */
+public enum LeaderboardMetric {
+    SCORE,
+    LINES_CLEARED,
+    LEVEL;
+
+    long of(GameResultSavedEvent result) {
+        return switch (this) {
+            case SCORE -> result.score();
+            case LINES_CLEARED -> result.linesCleared();
+            case LEVEL -> result.level();
+        };
+    }
+
+    /**
+     * The metric named in a path, e.g. {@code lines-cleared}.
+     */
+    public static LeaderboardMetric parse(String metric) {
+        return valueOf(metric.replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.lobbyserver.game;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+
+/**
+ * The period of time whose game results a leaderboard ranks. Daily and weekly windows start at midnight, weeks on
+ * Monday; all-time starts at the epoch.
+ */
+public enum LeaderboardWindow {
+    ALL_TIME,
+    DAILY,
+    WEEKLY;
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    LocalDateTime start(LocalDateTime now) {
+        return switch (this) {
+            case ALL_TIME -> EPOCH;
+            case DAILY -> now.toLocalDate().atStartOfDay();
+            case WEEKLY -> now.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).atStartOfDay();
+        };
+    }
+
+    /**
+     * The window named in a request, e.g. {@code all-time}.
+     */
+    public static LeaderboardWindow parse(String window) {
+        return valueOf(window.replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.game.db.GameResultRepository;
+import com.example.lobbyserver.game.db.LeaderboardEntry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the top {@code leaderboard.size} players by score, lines cleared and level, each for all time, the current day
+ * and the current week, in memory. Every stored game result updates the boards incrementally, and reading a board
+ * returns a prepared list, so the cost does not depend on the size of the {@code game_result} table. The boards are
+ * rebuilt from the table on startup, and a daily or weekly board starts over once its window has passed.
+ */
+@Component
+public class Leaderboards {
+
+    private static final Logger log = LoggerFactory.getLogger(Leaderboards.class);
+
+    @Value("${leaderboard.size:100}")
+    private int size;
+
+    private final GameResultRepository gameResultRepository;
+    private final Supplier<LocalDateTime> now;
+    private final Map<LeaderboardMetric, Map<LeaderboardWindow, Leaderboard>> boards = new EnumMap<>(LeaderboardMetric.class);
+
+    private final Counter changes;
+
+    @Autowired
+    public Leaderboards(GameResultRepository gameResultRepository, MeterRegistry meterRegistry) {
+        this(gameResultRepository, LocalDateTime::now, meterRegistry);
+    }
+
+    Leaderboards(GameResultRepository gameResultRepository, Supplier<LocalDateTime> now, MeterRegistry meterRegistry) {
+        this.gameResultRepository = gameResultRepository;
+        this.now = now;
+
+        this.changes = Counter.builder("leaderboards.changes")
+                .description("Game results that changed a leaderboard")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        var current = now.get();
+        for (var metric : LeaderboardMetric.values()) {
+            var windows = new EnumMap<LeaderboardWindow, Leaderboard>(LeaderboardWindow.class);
+            for (var window : LeaderboardWindow.values()) {
+                windows.put(window, new Leaderboard(size, window.start(current)));
+            }
+            boards.put(metric, windows);
+        }
+    }
+
+    /**
+     * Fills the boards with the best results stored in the current windows. Loaded values are merged into the boards,
+     * so results stored meanwhile are not lost.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        var limit = Limit.of(size);
+        boards.forEach((metric, windows) -> windows.forEach((window, board) -> {
+            var since = board.start();
+            var best = switch (metric) {
+                case SCORE -> gameResultRepository.findBestScoresSince(since, limit);
+                case LINES_CLEARED -> gameResultRepository.findBestLinesClearedSince(since, limit);
+                case LEVEL -> gameResultRepository.findBestLevelsSince(since, limit);
+            };
+            best.forEach(entry -> board.offer(entry.username(), entry.value(), since));
+        }));
+        log.debug("Rebuilt the leaderboards from the stored game results");
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void gameResultSaved(GameResultSavedEvent result) {
+        var current = now.get();
+        var changed = false;
+        for (var metric : LeaderboardMetric.values()) {
+            for (var window : LeaderboardWindow.values()) {
+                var board = boards.get(metric).get(window);
+                board.moveTo(window.start(current));
+                changed |= board.offer(result.username(), metric.of(result), result.dateTime());
+            }
+        }
+        if (changed) {
+            changes.increment();
+        }
+    }
+
+    /**
+     * The best {@code limit} players of the board, best first.
+     */
+    public List<LeaderboardEntry> top(LeaderboardMetric metric, LeaderboardWindow window, int limit) {
+        var board = boards.get(metric).get(window);
+        board.moveTo(window.start(now.get()));
+        var top = board.top();
+        return top.subList(0, Math.min(limit, top.size()));
+    }
+}
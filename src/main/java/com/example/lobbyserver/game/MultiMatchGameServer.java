@@ -0,0 +1,172 @@
+package com.example.lobbyserver.game;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * A game server process that hosts several matches at once. Every lobby packed onto the process gets a
+ * {@link Match}, whose lobby size / port exchange runs over the lobby connection of the process, one exchange after
+ * the other. Every game server binary plays the first match of its process; if a later exchange fails, the binary
+ * is reported as not supporting multiple matches.
+ * <p>
+ * A match ends when its lobby releases it ({@link Match#destroy()}) or when the process exits. The process is
+ * destroyed once its last match has been released, and it is retired (no new matches are packed onto it) as soon as
+ * an exchange fails, since its lobby connection is out of step from then on.
+ */
+final class MultiMatchGameServer {
+
+    private final int capacity;
+    private final Consumer<Throwable> unsupported;
+    private final CompletableFuture<ConnectedGameServer> connected = new CompletableFuture<>();
+    private CompletableFuture<?> lastExchange = CompletableFuture.completedFuture(null);
+    private int matches = 0;
+    private int assigned = 0;
+    private boolean retired = false;
+
+    MultiMatchGameServer(int capacity, Consumer<Throwable> unsupported) {
+        this.capacity = capacity;
+        this.unsupported = unsupported;
+    }
+
+    /**
+     * Completes with the connected game server process, which may still be starting.
+     */
+    CompletableFuture<ConnectedGameServer> connected() {
+        return connected;
+    }
+
+    void launched(CompletableFuture<ConnectedGameServer> launch) {
+        launch.whenComplete((gameServer, e) -> {
+            if (e != null) {
+                retire();
+                connected.completeExceptionally(e);
+            } else {
+                gameServer.onExit().whenComplete((_, _) -> retire());
+                connected.complete(gameServer);
+            }
+        });
+    }
+
+    /**
+     * Reserves a match on the process. Returns {@code false} if it is full or retired.
+     */
+    synchronized boolean tryReserve() {
+        if (retired || matches >= capacity) {
+            return false;
+        }
+        matches++;
+        return true;
+    }
+
+    /**
+     * Frees a match. Returns {@code true} if it was the last one, in which case the process has been retired and
+     * should be destroyed.
+     */
+    private synchronized boolean release() {
+        matches--;
+        if (matches > 0) {
+            return false;
+        }
+        retired = true;
+        return true;
+    }
+
+    synchronized void retire() {
+        retired = true;
+    }
+
+    synchronized boolean isRetired() {
+        return retired;
+    }
+
+    synchronized int matches() {
+        return matches;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Queues a lobby size / port exchange behind the ones already in flight and completes with the port.
+     */
+    private synchronized CompletableFuture<Integer> exchange(ConnectedGameServer gameServer, int lobbySize) {
+        var first = assigned++ == 0;
+        var exchange = lastExchange
+                .handle((_, _) -> null)
+                .thenCompose(_ -> gameServer.assignLobby(lobbySize));
+        exchange.whenComplete((_, e) -> {
+            if (e != null) {
+                retire();
+                if (!first) {
+                    unsupported.accept(e);
+                }
+            }
+        });
+        lastExchange = exchange;
+        return exchange;
+    }
+
+    /**
+     * The view of one lobby on a {@link MultiMatchGameServer}.
+     */
+    static final class Match implements GameServer {
+
+        private final MultiMatchGameServer owner;
+        private final ConnectedGameServer gameServer;
+        private final CompletableFuture<Integer> exit = new CompletableFuture<>();
+
+        Match(MultiMatchGameServer owner, ConnectedGameServer gameServer) {
+            this.owner = owner;
+            this.gameServer = gameServer;
+            gameServer.onExit().thenAccept(exit::complete);
+        }
+
+        @Override
+        public String host() {
+            return gameServer.host();
+        }
+
+        @Override
+        public CompletableFuture<Integer> assignLobby(int lobbySize) {
+            return owner.exchange(gameServer, lobbySize);
+        }
+
+        /**
+         * Completes with the exit code of the process, or with {@code 0} once the match has been released.
+         */
+        @Override
+        public CompletableFuture<Integer> onExit() {
+            return exit;
+        }
+
+        @Override
+        public Optional<ProcessHandle> localProcess() {
+            return gameServer.localProcess();
+        }
+
+        @Override
+        public boolean isAlive() {
+            return !exit.isDone();
+        }
+
+        /**
+         * Releases the match. The process is destroyed along with its last match.
+         */
+        @Override
+        public void destroy() {
+            if (exit.complete(0) && owner.release()) {
+                gameServer.destroy();
+            }
+        }
+
+        /**
+         * Kills the process, which ends every match on it.
+         */
+        @Override
+        public void destroyForcibly() {
+            gameServer.destroyForcibly();
+        }
+    }
+}
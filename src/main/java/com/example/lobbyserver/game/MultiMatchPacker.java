@@ -0,0 +1,118 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Packs lobbies onto local game server processes that can host several matches, to save the process start and memory
+ * of one process per lobby. {@code game.server.multi-match.max-matches} sets the number of matches per process; the
+ * default of {@code 1} keeps one process per lobby for game server binaries that only play one match.
+ * <p>
+ * A new lobby goes to the process with the most matches that still has room, so lightly used processes empty out and
+ * exit. If a game server fails to report the port of its second match, the binary is taken to not support multiple
+ * matches, and the lobby server falls back to one process per lobby until it is restarted.
+ */
+@Component
+public class MultiMatchPacker {
+
+    private static final Logger log = LoggerFactory.getLogger(MultiMatchPacker.class);
+
+    @Value("${game.server.multi-match.max-matches:1}")
+    private int maxMatches;
+
+    private final List<MultiMatchGameServer> processes = new ArrayList<>();
+    private volatile boolean unsupported = false;
+
+    private final Counter packed;
+    private final Counter fallbacks;
+
+    public MultiMatchPacker(MeterRegistry meterRegistry) {
+        this.packed = Counter.builder("game.server.multi-match.packed")
+                .description("Lobbies packed onto a game server process that was already running")
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("game.server.multi-match.fallbacks")
+                .description("Times the game server binary turned out not to support multiple matches per process")
+                .register(meterRegistry);
+        Gauge.builder("game.server.multi-match.processes", this, MultiMatchPacker::processCount)
+                .description("Game server processes hosting several matches")
+                .register(meterRegistry);
+        Gauge.builder("game.server.multi-match.matches", this, MultiMatchPacker::matchCount)
+                .description("Matches on game server processes hosting several matches")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether lobbies are packed onto shared processes. If not, every lobby gets a process of its own.
+     */
+    boolean isEnabled() {
+        return maxMatches > 1 && !unsupported;
+    }
+
+    /**
+     * Reserves a match for the lobby on a process with room for it, or on a new process obtained from
+     * {@code launch}. The returned game server is a {@link MultiMatchGameServer.Match}.
+     */
+    CompletableFuture<GameServer> claim(long lobbyId, Supplier<CompletableFuture<ConnectedGameServer>> launch) {
+        MultiMatchGameServer target = null;
+        var launching = false;
+        synchronized (processes) {
+            processes.removeIf(MultiMatchGameServer::isRetired);
+            for (var process : processes) {
+                if (process.matches() < process.capacity()
+                        && (target == null || process.matches() > target.matches())) {
+                    target = process;
+                }
+            }
+            if (target == null || !target.tryReserve()) {
+                target = new MultiMatchGameServer(maxMatches, this::notSupported);
+                target.tryReserve();
+                processes.add(target);
+                launching = true;
+            }
+        }
+
+        if (launching) {
+            log.debug("Starting game server process for lobby {} with room for {} matches", lobbyId, maxMatches);
+            target.launched(launch.get());
+        } else {
+            packed.increment();
+            log.debug("Packing lobby {} onto a game server process with {} matches", lobbyId, target.matches() - 1);
+        }
+
+        var owner = target;
+        return target.connected().thenApply(gameServer -> new MultiMatchGameServer.Match(owner, gameServer));
+    }
+
+    private void notSupported(Throwable e) {
+        if (!unsupported) {
+            unsupported = true;
+            fallbacks.increment();
+            log.warn("Game server did not report the port of a second match, falling back to one process per lobby", e);
+        }
+    }
+
+    private int processCount() {
+        synchronized (processes) {
+            return (int) processes.stream().filter(process -> !process.isRetired()).count();
+        }
+    }
+
+    private int matchCount() {
+        synchronized (processes) {
+            return processes.stream()
+                    .filter(process -> !process.isRetired())
+                    .mapToInt(MultiMatchGameServer::matches)
+                    .sum();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.lobbyserver.game;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A launch that is waiting for its game server to connect to the {@link HandshakeListener}.
+ */
+final class PendingHandshake {
+
+    private final int port;
+    private final long token;
+    private final CompletableFuture<HandshakeConnection> connected = new CompletableFuture<>();
+
+    PendingHandshake(int port, long token) {
+        this.port = port;
+        this.token = token;
+    }
+
+    int port() {
+        return port;
+    }
+
+    /**
+     * The token the game server identifies itself with on the shared endpoint, {@code 0} for a dedicated endpoint.
+     */
+    long token() {
+        return token;
+    }
+
+    /**
+     * Command line arguments that tell the game server where to connect to.
+     */
+    List<String> launchArguments() {
+        if (token == 0) {
+            return List.of(Integer.toString(port));
+        }
+        return List.of(Integer.toString(port), Long.toString(token));
+    }
+
+    CompletableFuture<HandshakeConnection> connection() {
+        return connected;
+    }
+
+    void cancel() {
+        connected.cancel(false);
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.game.db.RatingRecord;
+import com.example.lobbyserver.game.db.RatingRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps a Glicko-2 {@link Rating} of every player in memory, updated incrementally from the game results of each
+ * finished match. The results of a lobby are collected until its last player left, or until no result arrived for
+ * {@code rating.match-idle-millis}, and every player is then rated against every other player of the match: a higher
+ * score wins, an equal score is a draw. Matches with a single result are not rated.
+ * <p>
+ * The ratings are indexed by a {@link RatingIndex}, so the players within a range of a rating are found without
+ * scanning, and changed ratings are written to the {@code player_rating} table every
+ * {@code rating.persist-interval-millis} and on shutdown. Players without a rating start at {@link Rating#INITIAL}.
+ */
+@Component
+public class PlayerRatings {
+
+    private static final Logger log = LoggerFactory.getLogger(PlayerRatings.class);
+    private static final int LOAD_BATCH_SIZE = 500;
+
+    @Value("${rating.tau:0.5}")
+    private double tau;
+
+    @Value("${rating.match-idle-millis:300000}")
+    private long matchIdleMillis;
+
+    private final RatingRecordRepository ratingRecordRepository;
+    private final LongSupplier nanoTime;
+    private final Map<String, Rating> ratings = new ConcurrentHashMap<>();
+    private final RatingIndex<String> index = new RatingIndex<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Long, Match> matches = new HashMap<>();
+    private final Set<String> dirty = new HashSet<>();
+
+    private final Counter ratedMatches;
+
+    @Autowired
+    public PlayerRatings(RatingRecordRepository ratingRecordRepository, MeterRegistry meterRegistry) {
+        this(ratingRecordRepository, System::nanoTime, meterRegistry);
+    }
+
+    PlayerRatings(RatingRecordRepository ratingRecordRepository, LongSupplier nanoTime, MeterRegistry meterRegistry) {
+        this.ratingRecordRepository = ratingRecordRepository;
+        this.nanoTime = nanoTime;
+
+        this.ratedMatches = Counter.builder("rating.matches")
+                .description("Matches whose results updated the player ratings")
+                .register(meterRegistry);
+        Gauge.builder("rating.players", index, RatingIndex::size)
+                .description("Players with a rating in memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads the persisted ratings, keeping those that were already updated since the lobby server started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        var after = "";
+        List<RatingRecord> batch;
+        do {
+            batch = ratingRecordRepository.findByUsernameGreaterThanOrderByUsernameAsc(after, Limit.of(LOAD_BATCH_SIZE));
+            lock.lock();
+            try {
+                for (var record : batch) {
+                    var rating = new Rating(record.getRating(), record.getDeviation(), record.getVolatility(), record.getGames());
+                    if (ratings.putIfAbsent(record.getUsername(), rating) == null) {
+                        index.put(record.getUsername(), rating.rating());
+                    }
+                    after = record.getUsername();
+                }
+            } finally {
+                lock.unlock();
+            }
+        } while (batch.size() == LOAD_BATCH_SIZE);
+        log.debug("Loaded {} player ratings", index.size());
+    }
+
+    /**
+     * The player's rating, or {@link Rating#INITIAL} if they have not finished a rated match yet.
+     */
+    public Rating get(String username) {
+        return ratings.getOrDefault(username, Rating.INITIAL);
+    }
+
+    /**
+     * The player's estimated skill.
+     */
+    public double rating(String username) {
+        return get(username).rating();
+    }
+
+    /**
+     * The players rated within {@code range} of {@code rating}, lowest rating first.
+     */
+    public List<String> playersWithin(double rating, double range) {
+        return index.within(rating, range);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void gameResultRecorded(GameResultRecordedEvent event) {
+        Match finished = null;
+        lock.lock();
+        try {
+            var match = matches.computeIfAbsent(event.lobbyId(), _ -> new Match());
+            match.scores.put(event.username(), event.score());
+            match.lastResultAt = nanoTime.getAsLong();
+            if (event.matchOver()) {
+                finished = matches.remove(event.lobbyId());
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (finished != null) {
+            rate(event.lobbyId(), finished);
+        }
+    }
+
+    /**
+     * Rates the matches that stopped receiving results, e.g. because the lobby expired before all players left, and
+     * writes the changed ratings.
+     */
+    @Scheduled(fixedDelayString = "${rating.persist-interval-millis:10000}")
+    public void persist() {
+        var idle = new LinkedHashMap<Long, Match>();
+        lock.lock();
+        try {
+            var now = nanoTime.getAsLong();
+            matches.entrySet().removeIf(entry -> {
+                if (now - entry.getValue().lastResultAt < TimeUnit.MILLISECONDS.toNanos(matchIdleMillis)) {
+                    return false;
+                }
+                idle.put(entry.getKey(), entry.getValue());
+                return true;
+            });
+        } finally {
+            lock.unlock();
+        }
+        idle.forEach(this::rate);
+        flush();
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void flush() {
+        List<RatingRecord> records = new ArrayList<>();
+        lock.lock();
+        try {
+            for (var username : dirty) {
+                var rating = ratings.get(username);
+                records.add(new RatingRecord(username, rating.rating(), rating.deviation(), rating.volatility(), rating.games()));
+            }
+            dirty.clear();
+        } finally {
+            lock.unlock();
+        }
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            ratingRecordRepository.saveAll(records);
+            log.debug("Persisted {} player ratings", records.size());
+        } catch (DataAccessException e) {
+            log.warn("Failed to persist {} player ratings, retrying with the next round", records.size(), e);
+            lock.lock();
+            try {
+                records.forEach(record -> dirty.add(record.getUsername()));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void rate(long lobbyId, Match match) {
+        var scores = match.scores;
+        if (scores.size() < 2) {
+            return;
+        }
+        lock.lock();
+        try {
+            var before = new HashMap<String, Rating>();
+            scores.keySet().forEach(username -> before.put(username, get(username)));
+            for (var player : scores.entrySet()) {
+                var opponents = new ArrayList<Rating>();
+                var results = new ArrayList<Double>();
+                for (var opponent : scores.entrySet()) {
+                    if (opponent != player) {
+                        opponents.add(before.get(opponent.getKey()));
+                        results.add(0.5 + Math.signum(player.getValue() - opponent.getValue()) / 2);
+                    }
+                }
+                var rating = Glicko2.rate(before.get(player.getKey()), opponents, results, tau);
+                ratings.put(player.getKey(), rating);
+                index.put(player.getKey(), rating.rating());
+                dirty.add(player.getKey());
+            }
+        } finally {
+            lock.unlock();
+        }
+        ratedMatches.increment();
+        log.debug("Rated the match of lobby {} with {} players", lobbyId, scores.size());
+    }
+
+    private static final class Match {
+        private final Map<String, Long> scores = new LinkedHashMap<>();
+        private long lastResultAt;
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out the ports for game server handshakes and game servers from the range configured by
+ * {@code game.server.ports.range-start} and {@code game.server.ports.range-end}, so firewalls and container port
+ * mappings can be set up in advance. Without a range, the operating system picks ephemeral ports as before.
+ * <p>
+ * Free ports are kept in a ring buffer, so allocating and releasing is O(1). Released ports are quarantined for
+ * {@code game.server.ports.quarantine-millis} before they are handed out again, which keeps connections in TIME_WAIT
+ * from hitting the next game server. A port that cannot be bound is in use by another process; it is counted as a
+ * collision, quarantined and the next free port is tried.
+ */
+@Component
+public class PortAllocator {
+
+    private static final Logger log = LoggerFactory.getLogger(PortAllocator.class);
+
+    @Value("${game.server.ports.range-start:0}")
+    private int rangeStart;
+
+    @Value("${game.server.ports.range-end:0}")
+    private int rangeEnd;
+
+    @Value("${game.server.ports.quarantine-millis:60000}")
+    private long quarantineMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Counter collisions;
+    private final Counter exhausted;
+
+    // all three rings hold at most every port of the range once
+    private int[] free = new int[0];
+    private int freeHead = 0;
+    private int freeSize = 0;
+    private int[] quarantined = new int[0];
+    private long[] quarantinedAt = new long[0];
+    private int quarantineHead = 0;
+    private int quarantineSize = 0;
+    private boolean[] allocated = new boolean[0];
+    private int allocatedCount = 0;
+
+    public PortAllocator(MeterRegistry meterRegistry) {
+        this.collisions = Counter.builder("game.server.ports.collisions")
+                .description("Allocated ports that turned out to be in use by another process")
+                .register(meterRegistry);
+        this.exhausted = Counter.builder("game.server.ports.exhausted")
+                .description("Port allocations that failed because no port of the range was free")
+                .register(meterRegistry);
+        Gauge.builder("game.server.ports.allocated", this, PortAllocator::allocatedPorts)
+                .description("Ports of the managed range that are in use")
+                .register(meterRegistry);
+        Gauge.builder("game.server.ports.quarantined", this, PortAllocator::quarantinedPorts)
+                .description("Released ports of the managed range that are not handed out yet")
+                .register(meterRegistry);
+        Gauge.builder("game.server.ports.utilization", this, PortAllocator::utilization)
+                .description("Share of the managed port range that is in use")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        if (rangeStart < 1 || rangeEnd > 65535) {
+            throw new IllegalStateException("Invalid game server port range " + rangeStart + "-" + rangeEnd);
+        }
+
+        var size = rangeEnd - rangeStart + 1;
+        lock.lock();
+        try {
+            free = new int[size];
+            for (int i = 0; i < size; i++) {
+                free[i] = rangeStart + i;
+            }
+            freeHead = 0;
+            freeSize = size;
+            quarantined = new int[size];
+            quarantinedAt = new long[size];
+            quarantineHead = 0;
+            quarantineSize = 0;
+            allocated = new boolean[size];
+            allocatedCount = 0;
+        } finally {
+            lock.unlock();
+        }
+        log.info("Allocating game server ports from {} to {}", rangeStart, rangeEnd);
+    }
+
+    public boolean isEnabled() {
+        return rangeEnd > 0 && rangeEnd >= rangeStart;
+    }
+
+    boolean isInRange(int port) {
+        return isEnabled() && port >= rangeStart && port <= rangeEnd;
+    }
+
+    /**
+     * Allocates a port and binds it with the given binder. Ports that cannot be bound are skipped as collisions.
+     * Without a managed range the binder is called with port {@code 0}.
+     *
+     * @throws IOException if no port of the range is free or binding failed for another reason
+     */
+    <T> T bind(PortBinder<T> binder) throws IOException {
+        if (!isEnabled()) {
+            return binder.bind(0);
+        }
+
+        // every port of the range is tried at most once
+        for (int attempt = 0; attempt <= rangeEnd - rangeStart; attempt++) {
+            var port = take();
+            try {
+                return binder.bind(port);
+            } catch (BindException e) {
+                collisions.increment();
+                log.warn("Port {} of the game server port range is in use by another process", port);
+                release(port);
+            } catch (IOException | RuntimeException e) {
+                release(port);
+                throw e;
+            }
+        }
+        exhausted.increment();
+        throw new IOException("No free port in the game server port range " + rangeStart + "-" + rangeEnd);
+    }
+
+    /**
+     * Allocates a port that is free at the moment, to be bound by a game server. Returns {@code 0} without a managed
+     * range, which lets the game server pick its own port.
+     */
+    int allocate() throws IOException {
+        if (!isEnabled()) {
+            return 0;
+        }
+        return bind(port -> {
+            try (var probe = new ServerSocket()) {
+                probe.bind(new InetSocketAddress(port));
+            }
+            return port;
+        });
+    }
+
+    /**
+     * Marks a port of the range as allocated that a game server bound on its own instead of the one allocated for it,
+     * so it is not handed out until it is released. Returns {@code false} if the port is outside the range or already
+     * allocated.
+     */
+    boolean claim(int port) {
+        if (!isInRange(port)) {
+            return false;
+        }
+        lock.lock();
+        try {
+            var index = port - rangeStart;
+            if (allocated[index]) {
+                return false;
+            }
+            // a port that is not allocated is either free or quarantined
+            if (!removeFree(port)) {
+                removeQuarantined(port);
+            }
+            allocated[index] = true;
+            allocatedCount++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a port from the free ring, moving the ports before it one slot up to close the gap. Linear, but only
+     * needed for game servers that ignore their allocated port.
+     */
+    private boolean removeFree(int port) {
+        for (int i = 0; i < freeSize; i++) {
+            if (free[(freeHead + i) % free.length] == port) {
+                for (int j = i; j > 0; j--) {
+                    free[(freeHead + j) % free.length] = free[(freeHead + j - 1) % free.length];
+                }
+                freeHead = (freeHead + 1) % free.length;
+                freeSize--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeQuarantined(int port) {
+        for (int i = 0; i < quarantineSize; i++) {
+            if (quarantined[(quarantineHead + i) % quarantined.length] == port) {
+                for (int j = i; j > 0; j--) {
+                    var to = (quarantineHead + j) % quarantined.length;
+                    var from = (quarantineHead + j - 1) % quarantined.length;
+                    quarantined[to] = quarantined[from];
+                    quarantinedAt[to] = quarantinedAt[from];
+                }
+                quarantineHead = (quarantineHead + 1) % quarantined.length;
+                quarantineSize--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns a port to the pool after the quarantine. Ports outside the managed range are ignored, as are ports
+     * that are not allocated, so releasing twice is harmless.
+     */
+    void release(int port) {
+        if (!isInRange(port)) {
+            return;
+        }
+        lock.lock();
+        try {
+            var index = port - rangeStart;
+            if (!allocated[index]) {
+                return;
+            }
+            allocated[index] = false;
+            allocatedCount--;
+            var tail = (quarantineHead + quarantineSize) % quarantined.length;
+            quarantined[tail] = port;
+            quarantinedAt[tail] = System.nanoTime();
+            quarantineSize++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int take() throws IOException {
+        lock.lock();
+        try {
+            endQuarantine();
+            if (freeSize == 0) {
+                exhausted.increment();
+                throw new IOException("No free port in the game server port range " + rangeStart + "-" + rangeEnd);
+            }
+            var port = free[freeHead];
+            freeHead = (freeHead + 1) % free.length;
+            freeSize--;
+            allocated[port - rangeStart] = true;
+            allocatedCount++;
+            return port;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the ports whose quarantine has ended to the free list. Ports leave the quarantine in release order, so
+     * only the head has to be checked.
+     */
+    private void endQuarantine() {
+        var cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(quarantineMillis);
+        while (quarantineSize > 0 && quarantinedAt[quarantineHead] - cutoff <= 0) {
+            var tail = (freeHead + freeSize) % free.length;
+            free[tail] = quarantined[quarantineHead];
+            freeSize++;
+            quarantineHead = (quarantineHead + 1) % quarantined.length;
+            quarantineSize--;
+        }
+    }
+
+    public int allocatedPorts() {
+        lock.lock();
+        try {
+            return allocatedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int quarantinedPorts() {
+        lock.lock();
+        try {
+            return quarantineSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double utilization() {
+        lock.lock();
+        try {
+            return allocated.length == 0 ? 0.0 : (double) allocatedCount / allocated.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    interface PortBinder<T> {
+
+        T bind(int port) throws IOException;
+    }
+}
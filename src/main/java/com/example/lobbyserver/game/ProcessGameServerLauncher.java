@@ -0,0 +1,69 @@
+package com.example.lobbyserver.game;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Objects;
+
+/**
+ * Spawns the native game server executable configured by {@code game.server.executable-name}. An allocated game port
+ * is passed in the {@code GAME_SERVER_PORT} environment variable, which executables that pick their own port ignore;
+ * {@link GameServerLauncher} then swaps the allocation for the port they report. The process is pinned to a CPU set
+ * and limited as configured in {@link GameProcessPlacement}.
+ */
+@Component
+@ConditionalOnProperty(name = "game.server.launcher", havingValue = "process", matchIfMissing = true)
+public class ProcessGameServerLauncher extends GameServerLauncher {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessGameServerLauncher.class);
+
+    @Value("${game.server.executable-name}")
+    private String gameServerExecutable;
+
+    static final String GAME_PORT_VARIABLE = "GAME_SERVER_PORT";
+
+    private final GameProcessPlacement placement;
+
+    public ProcessGameServerLauncher(HandshakeListener handshakeListener, PortAllocator portAllocator, GameProcessPlacement placement) {
+        super(handshakeListener, portAllocator);
+        this.placement = placement;
+    }
+
+    @Override
+    Process start(PendingHandshake handshake, int gamePort, File logFile) throws IOException {
+        var serverResource = new FileSystemResource(Objects.requireNonNull(gameServerExecutable));
+        if (!serverResource.exists()) {
+            throw new IllegalStateException("Game server executable not found at " + serverResource.getPath());
+        }
+
+        var command = new ArrayList<String>();
+        command.add(serverResource.getFile().getAbsolutePath());
+        command.addAll(handshake.launchArguments());
+
+        var placed = placement.place(command);
+        var processBuilder = new ProcessBuilder(placed.command())
+                .redirectErrorStream(true)
+                .redirectOutput(logFile);
+        if (gamePort > 0) {
+            processBuilder.environment().put(GAME_PORT_VARIABLE, Integer.toString(gamePort));
+        }
+        Process process;
+        try {
+            process = processBuilder.start();
+        } catch (IOException | RuntimeException e) {
+            placement.release(placed);
+            throw e;
+        }
+        process.onExit().whenComplete((_, _) -> placement.release(placed));
+        log.debug("Game server process {} started on CPUs {}, waiting for connection on port {}",
+                process.pid(), placed.cpuSet() != null ? placed.cpuSet() : "any", handshake.port());
+        return process;
+    }
+}
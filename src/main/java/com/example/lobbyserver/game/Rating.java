@@ -0,0 +1,10 @@
+package com.example.lobbyserver.game;
+
+/**
+ * A player's Glicko-2 rating on the Glicko scale: {@code rating} is the estimated skill, {@code deviation} how
+ * uncertain that estimate is, and {@code volatility} how erratic the player's results have been.
+ */
+public record Rating(double rating, double deviation, double volatility, int games) {
+
+    public static final Rating INITIAL = new Rating(1500.0, 350.0, 0.06, 0);
+}
@@ -0,0 +1,95 @@
+package com.example.lobbyserver.game;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keys ordered by rating in a skip list, so the keys rated within a range of a rating are found in O(log n) plus the
+ * number of keys returned. Keys with equal ratings keep the order they were put in.
+ * <p>
+ * Lookups may run concurrently with updates, but updates of the same key must not race each other.
+ */
+public class RatingIndex<K> {
+
+    private static final Comparator<Entry<?>> ORDER = Comparator.<Entry<?>>comparingDouble(Entry::rating)
+            .thenComparingLong(Entry::sequence);
+
+    private final ConcurrentSkipListSet<Entry<K>> entries = new ConcurrentSkipListSet<>(ORDER);
+    private final Map<K, Entry<K>> byKey = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Puts the key at the given rating, moving it if it is already indexed.
+     */
+    public void put(K key, double rating) {
+        var entry = new Entry<>(rating, sequence.getAndIncrement(), key);
+        var previous = byKey.put(key, entry);
+        if (previous != null) {
+            entries.remove(previous);
+        }
+        entries.add(entry);
+    }
+
+    public void remove(K key) {
+        var previous = byKey.remove(key);
+        if (previous != null) {
+            entries.remove(previous);
+        }
+    }
+
+    public boolean isEmpty() {
+        return byKey.isEmpty();
+    }
+
+    public int size() {
+        return byKey.size();
+    }
+
+    /**
+     * The keys rated within {@code range} of {@code rating}, lowest rating first.
+     */
+    public List<K> within(double rating, double range) {
+        var keys = new ArrayList<K>();
+        for (var entry : entries.subSet(lowerBound(rating - range), true, upperBound(rating + range), true)) {
+            keys.add(entry.key());
+        }
+        return keys;
+    }
+
+    /**
+     * Up to {@code limit} keys rated within {@code range} of {@code rating}, closest rating first.
+     */
+    public List<K> nearest(double rating, double range, int limit) {
+        var keys = new ArrayList<K>();
+        var below = entries.subSet(lowerBound(rating - range), true, lowerBound(rating), false).descendingIterator();
+        var above = entries.subSet(lowerBound(rating), true, upperBound(rating + range), true).iterator();
+        var nextBelow = below.hasNext() ? below.next() : null;
+        var nextAbove = above.hasNext() ? above.next() : null;
+        while (keys.size() < limit && (nextBelow != null || nextAbove != null)) {
+            if (nextBelow == null || nextAbove != null && nextAbove.rating() - rating <= rating - nextBelow.rating()) {
+                keys.add(nextAbove.key());
+                nextAbove = above.hasNext() ? above.next() : null;
+            } else {
+                keys.add(nextBelow.key());
+                nextBelow = below.hasNext() ? below.next() : null;
+            }
+        }
+        return keys;
+    }
+
+    private Entry<K> lowerBound(double rating) {
+        return new Entry<>(rating, Long.MIN_VALUE, null);
+    }
+
+    private Entry<K> upperBound(double rating) {
+        return new Entry<>(rating, Long.MAX_VALUE, null);
+    }
+
+    private record Entry<K>(double rating, long sequence, K key) {
+    }
+}
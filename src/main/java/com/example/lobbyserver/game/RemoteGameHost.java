@@ -0,0 +1,202 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.agent.AgentMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The lobby server side of a connected game host agent. Tracks the game servers launched on the agent and how much of
+ * its announced capacity is in use.
+ */
+final class RemoteGameHost implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RemoteGameHost.class);
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final String host;
+    private final int capacity;
+
+    private final AtomicInteger used = new AtomicInteger();
+    private final Map<Long, RemoteGameServer> gameServers = new ConcurrentHashMap<>();
+
+    private RemoteGameHost(Socket socket, DataInputStream in, DataOutputStream out, String host, int capacity) {
+        this.socket = socket;
+        this.in = in;
+        this.out = out;
+        this.host = host;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Reads the hello message of a freshly accepted agent connection and checks the agent's secret.
+     */
+    static RemoteGameHost accept(Socket socket, String secret) throws IOException {
+        socket.setTcpNoDelay(true);
+        var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        if (!(AgentMessage.read(in) instanceof AgentMessage.Hello(var version, var host, var capacity, var agentSecret))) {
+            throw new IOException("Game host agent did not introduce itself");
+        }
+        if (version != AgentMessage.PROTOCOL_VERSION) {
+            throw new IOException("Unsupported game host agent protocol version " + version);
+        }
+        if (!MessageDigest.isEqual(agentSecret.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8))) {
+            throw new IOException("Game host agent sent the wrong secret");
+        }
+        return new RemoteGameHost(socket, in, out, host, capacity);
+    }
+
+    String host() {
+        return host;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int used() {
+        return used.get();
+    }
+
+    int freeCapacity() {
+        return capacity - used.get();
+    }
+
+    boolean hasFreeCapacity() {
+        return freeCapacity() > 0;
+    }
+
+    double utilization() {
+        return capacity == 0 ? 1.0 : (double) used.get() / capacity;
+    }
+
+    /**
+     * Takes a slot for a game server that is launched later. Returns {@code false} if the host is full.
+     */
+    boolean reserve() {
+        while (true) {
+            var current = used.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (used.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a slot taken with {@link #reserve()} that was not used for a launch.
+     */
+    void release() {
+        used.decrementAndGet();
+    }
+
+    /**
+     * Asks the agent to start a game server in a slot taken with {@link #reserve()}. The slot is freed once the game
+     * server exits, or right away if the launch request cannot be sent.
+     */
+    RemoteGameServer launch(long lobbyId, int lobbySize) throws IOException {
+        var gameServer = new RemoteGameServer(this, lobbyId);
+        if (gameServers.putIfAbsent(lobbyId, gameServer) != null) {
+            release();
+            throw new IllegalStateException("Game host " + host + " already runs a game server for lobby " + lobbyId);
+        }
+        try {
+            send(new AgentMessage.Launch(lobbyId, lobbySize));
+        } catch (IOException e) {
+            remove(lobbyId);
+            throw e;
+        }
+        return gameServer;
+    }
+
+    void stop(long lobbyId, boolean force) {
+        try {
+            send(new AgentMessage.Stop(lobbyId, force));
+        } catch (IOException e) {
+            log.debug("Could not send stop for lobby {} to game host {}", lobbyId, host, e);
+        }
+    }
+
+    /**
+     * Processes agent messages until the connection is closed. All game servers of the agent are reported as exited
+     * afterwards, since the agent destroys them when it loses the connection.
+     */
+    void serve() {
+        try {
+            while (true) {
+                switch (AgentMessage.read(in)) {
+                    case AgentMessage.Launched(var lobbyId, var port) -> {
+                        var gameServer = gameServers.get(lobbyId);
+                        if (gameServer != null) {
+                            gameServer.launched(port);
+                        }
+                    }
+                    case AgentMessage.LaunchFailed(var lobbyId, var reason) -> {
+                        var gameServer = remove(lobbyId);
+                        if (gameServer != null) {
+                            gameServer.exited(-1, new IOException("Game host " + host + " failed to launch game server: " + reason));
+                        }
+                    }
+                    case AgentMessage.Exited(var lobbyId, var exitCode) -> {
+                        var gameServer = remove(lobbyId);
+                        if (gameServer != null) {
+                            gameServer.exited(exitCode, new IOException("Game server exited with code " + exitCode + " before reporting its port"));
+                        }
+                    }
+                    case AgentMessage message -> throw new IOException("Unexpected message " + message);
+                }
+            }
+        } catch (IOException e) {
+            log.info("Game host {} disconnected: {}", host, e.getMessage());
+        } finally {
+            close();
+            var lost = new IOException("Connection to game host " + host + " lost");
+            gameServers.keySet().forEach(lobbyId -> {
+                var gameServer = remove(lobbyId);
+                if (gameServer != null) {
+                    gameServer.exited(-1, lost);
+                }
+            });
+        }
+    }
+
+    private RemoteGameServer remove(long lobbyId) {
+        var gameServer = gameServers.remove(lobbyId);
+        if (gameServer != null) {
+            used.decrementAndGet();
+        }
+        return gameServer;
+    }
+
+    private void send(AgentMessage message) throws IOException {
+        synchronized (out) {
+            AgentMessage.write(out, message);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            log.debug("Failed to close connection to game host {}", host, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return host + " (" + used.get() + "/" + capacity + ")";
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.lobbyserver.game;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A game server started by a game host agent. The lobby size is sent along with the launch request, so
+ * {@link #assignLobby(int)} only waits for the agent to report the port.
+ */
+final class RemoteGameServer implements GameServer {
+
+    private final RemoteGameHost gameHost;
+    private final long lobbyId;
+    private final CompletableFuture<Integer> port = new CompletableFuture<>();
+    private final CompletableFuture<Integer> exit = new CompletableFuture<>();
+
+    RemoteGameServer(RemoteGameHost gameHost, long lobbyId) {
+        this.gameHost = gameHost;
+        this.lobbyId = lobbyId;
+    }
+
+    @Override
+    public String host() {
+        return gameHost.host();
+    }
+
+    @Override
+    public CompletableFuture<Integer> assignLobby(int lobbySize) {
+        return port;
+    }
+
+    @Override
+    public CompletableFuture<Integer> onExit() {
+        return exit;
+    }
+
+    @Override
+    public Optional<ProcessHandle> localProcess() {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean isAlive() {
+        return !exit.isDone();
+    }
+
+    @Override
+    public void destroy() {
+        gameHost.stop(lobbyId, false);
+    }
+
+    @Override
+    public void destroyForcibly() {
+        gameHost.stop(lobbyId, true);
+    }
+
+    void launched(int port) {
+        this.port.complete(port);
+    }
+
+    void exited(int exitCode, Throwable reason) {
+        port.completeExceptionally(reason);
+        exit.complete(exitCode);
+    }
+}
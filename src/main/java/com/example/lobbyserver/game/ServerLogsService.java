@@ -12,6 +12,7 @@ import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -56,6 +57,21 @@ public class ServerLogsService {
         return File.createTempFile(prefix, ".log", tempDirectory.toFile());
     }
 
+    public File createLogFileForPooledServer() throws IOException {
+        return File.createTempFile("pooled-game-server-", ".log", tempDirectory.toFile());
+    }
+
+    public File assignLogFileToLobby(File pooledLogFile, long lobbyId) throws IOException {
+        var lobbyLogFile = createLogFileForLobby(lobbyId);
+        try {
+            Files.move(pooledLogFile.toPath(), lobbyLogFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(lobbyLogFile.toPath());
+            throw e;
+        }
+        return lobbyLogFile;
+    }
+
     public File getLogFileForLobby(long lobbyId) throws IOException {
         try (var files = Files.walk(tempDirectory, 1)) {
             return files.map(Path::toFile)
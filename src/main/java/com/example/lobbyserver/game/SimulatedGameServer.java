@@ -0,0 +1,334 @@
+package com.example.lobbyserver.game;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A game server that runs on virtual threads inside the lobby server. It speaks the protocol of the native game
+ * server: it connects to the handshake endpoint (sending its token on a shared endpoint), reads the lobby size as a
+ * {@code short}, replies with the {@code short} port it accepts player connections on and exits once the match is
+ * over. The match ends when every player has disconnected or the match duration has passed after all players joined.
+ * With {@link Settings#multiMatch()} it hosts further matches requested over the lobby connection.
+ * <p>
+ * Startup failures and crashes during the match can be injected with a probability, to exercise the failure paths of
+ * the lobby server under load. It is a {@link Process} without a native handle, so {@link #pid()} and
+ * {@link #toHandle()} are not supported.
+ */
+final class SimulatedGameServer extends Process {
+
+    static final int EXIT_CRASHED = 1;
+    static final int EXIT_TERMINATED = 143;
+    static final int EXIT_KILLED = 137;
+
+    private final int handshakePort;
+    private final long token;
+    private final int gamePort;
+    private final Settings settings;
+    private final File logFile;
+
+    private final CompletableFuture<Process> exit = new CompletableFuture<>();
+    private final Set<Closeable> resources = ConcurrentHashMap.newKeySet();
+    private volatile int exitValue;
+    private volatile int destroyedWith = 0;
+    private volatile int port = -1;
+    private volatile boolean crashed = false;
+    private volatile Thread thread;
+
+    private SimulatedGameServer(int handshakePort, long token, int gamePort, Settings settings, File logFile) {
+        this.handshakePort = handshakePort;
+        this.token = token;
+        this.gamePort = gamePort;
+        this.settings = settings;
+        this.logFile = logFile;
+    }
+
+    /**
+     * Starts a simulated game server that accepts players on {@code gamePort}, or on an ephemeral port if it is
+     * {@code 0}.
+     */
+    static SimulatedGameServer start(int handshakePort, long token, int gamePort, Settings settings, File logFile) {
+        var gameServer = new SimulatedGameServer(handshakePort, token, gamePort, settings, logFile);
+        gameServer.thread = Thread.ofVirtual().name("simulated-game-server").start(gameServer::run);
+        return gameServer;
+    }
+
+    private void run() {
+        int exitCode = EXIT_CRASHED;
+        try (var out = new PrintStream(new FileOutputStream(logFile, true), true, StandardCharsets.UTF_8)) {
+            try {
+                exitCode = simulate(out);
+            } catch (IOException | InterruptedException e) {
+                if (destroyedWith == 0) {
+                    log(out, "error", "game server failed: " + e);
+                }
+            }
+            log(out, "info", "exiting with code " + (destroyedWith != 0 ? destroyedWith : exitCode));
+        } catch (IOException e) {
+            // the log file could not be opened, the game server fails like a native one without output
+        } finally {
+            closeResources();
+            finish(destroyedWith != 0 ? destroyedWith : exitCode);
+        }
+    }
+
+    private int simulate(PrintStream out) throws IOException, InterruptedException {
+        log(out, "info", "starting simulated gameserver");
+        Thread.sleep(settings.startupDelay());
+        if (ThreadLocalRandom.current().nextDouble() < settings.startupFailureRate()) {
+            log(out, "error", "injected startup failure");
+            return EXIT_CRASHED;
+        }
+
+        var lobby = register(new Socket(InetAddress.getLoopbackAddress(), handshakePort));
+        var lobbyIn = new DataInputStream(lobby.getInputStream());
+        var lobbyOut = new DataOutputStream(lobby.getOutputStream());
+        if (token != 0) {
+            lobbyOut.writeLong(token);
+            lobbyOut.flush();
+        }
+
+        int lobbySize = lobbyIn.readUnsignedShort();
+        var players = openMatch(lobbyOut, gamePort, lobbySize, out);
+        if (!settings.multiMatch()) {
+            return play(players, lobbySize, out);
+        }
+
+        // further matches are requested over the lobby connection until the lobby server closes it
+        startMatch(players, lobbySize, out);
+        while (true) {
+            try {
+                lobbySize = lobbyIn.readUnsignedShort();
+            } catch (EOFException e) {
+                log(out, "info", "lobby server closed the connection");
+                return crashed ? EXIT_CRASHED : 0;
+            }
+            startMatch(openMatch(lobbyOut, 0, lobbySize, out), lobbySize, out);
+        }
+    }
+
+    private ServerSocket openMatch(DataOutputStream lobbyOut, int matchPort, int lobbySize, PrintStream out) throws IOException {
+        var players = register(new ServerSocket(matchPort));
+        var localPort = players.getLocalPort();
+        if (port < 0) {
+            port = localPort;
+        }
+        lobbyOut.writeShort(localPort);
+        lobbyOut.flush();
+        log(out, "info", "lobby port = " + localPort);
+        log(out, "info", "expected player count: " + lobbySize);
+        return players;
+    }
+
+    /**
+     * Plays a match of a multi-match game server on its own thread. An injected crash takes the whole game server
+     * down by closing its lobby connection.
+     */
+    private void startMatch(ServerSocket players, int lobbySize, PrintStream out) {
+        Thread.ofVirtual().name("simulated-game-server-match").start(() -> {
+            try {
+                if (play(players, lobbySize, out) == EXIT_CRASHED) {
+                    crashed = true;
+                    closeResources();
+                }
+            } catch (IOException | InterruptedException e) {
+                if (destroyedWith == 0) {
+                    log(out, "error", "match failed: " + e);
+                }
+            } finally {
+                resources.remove(players);
+                closeQuietly(players);
+            }
+        });
+    }
+
+    private int play(ServerSocket players, int lobbySize, PrintStream out) throws IOException, InterruptedException {
+        var disconnected = new CountDownLatch(lobbySize);
+        for (int i = 0; i < lobbySize; i++) {
+            var player = register(players.accept());
+            Thread.ofVirtual().name("simulated-game-server-player").start(() -> readUntilClosed(player, disconnected));
+            log(out, "info", "player connected, number of clients: " + (i + 1));
+        }
+
+        var random = ThreadLocalRandom.current();
+        if (random.nextDouble() < settings.crashRate()) {
+            var crashAfter = (long) (random.nextDouble() * settings.matchDuration().toMillis());
+            if (!disconnected.await(crashAfter, TimeUnit.MILLISECONDS)) {
+                log(out, "error", "injected crash during match");
+                return EXIT_CRASHED;
+            }
+        } else if (!disconnected.await(settings.matchDuration().toMillis(), TimeUnit.MILLISECONDS)) {
+            log(out, "info", "match is over");
+        }
+        return 0;
+    }
+
+    private void readUntilClosed(Socket player, CountDownLatch disconnected) {
+        try (var in = player.getInputStream()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            // a reset connection counts as a disconnect
+        } finally {
+            resources.remove(player);
+            disconnected.countDown();
+        }
+    }
+
+    private static void log(PrintStream out, String level, String message) {
+        out.printf("[%s] [%s] %s%n", LocalDateTime.now(), level, message);
+    }
+
+    private <T extends Closeable> T register(T resource) throws IOException {
+        resources.add(resource);
+        if (destroyedWith != 0) {
+            closeResources();
+            throw new IOException("Simulated game server was destroyed");
+        }
+        return resource;
+    }
+
+    private void closeResources() {
+        resources.forEach(SimulatedGameServer::closeQuietly);
+        resources.clear();
+    }
+
+    private static void closeQuietly(Closeable resource) {
+        try {
+            resource.close();
+        } catch (IOException e) {
+            // nothing left to do with a socket that cannot be closed
+        }
+    }
+
+    private synchronized void finish(int exitCode) {
+        if (!exit.isDone()) {
+            exitValue = exitCode;
+            exit.complete(this);
+        }
+    }
+
+    private void terminate(int exitCode) {
+        if (exit.isDone()) {
+            return;
+        }
+        destroyedWith = exitCode;
+        closeResources();
+        var running = thread;
+        if (running != null) {
+            running.interrupt();
+        }
+    }
+
+    /**
+     * The port players connect to, {@code -1} until the lobby size has been received.
+     */
+    int port() {
+        return port;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return OutputStream.nullOutputStream();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return InputStream.nullInputStream();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return InputStream.nullInputStream();
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        try {
+            exit.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        return exitValue;
+    }
+
+    @Override
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            exit.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int exitValue() {
+        if (!exit.isDone()) {
+            throw new IllegalThreadStateException("Simulated game server has not exited");
+        }
+        return exitValue;
+    }
+
+    @Override
+    public CompletableFuture<Process> onExit() {
+        return exit.copy();
+    }
+
+    @Override
+    public boolean isAlive() {
+        return !exit.isDone();
+    }
+
+    @Override
+    public boolean supportsNormalTermination() {
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        terminate(EXIT_TERMINATED);
+    }
+
+    @Override
+    public Process destroyForcibly() {
+        terminate(EXIT_KILLED);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "SimulatedGameServer[port=" + port + ", alive=" + isAlive() + "]";
+    }
+
+    /**
+     * With {@code multiMatch}, the game server keeps reading lobby sizes from the lobby connection after its first
+     * match and opens a match on a port of its choice for each of them, like a game server that supports
+     * {@linkplain MultiMatchGameServer multiple matches}. It exits once the lobby server closes the connection.
+     */
+    record Settings(Duration startupDelay, double startupFailureRate, double crashRate, Duration matchDuration,
+                    boolean multiMatch) {
+    }
+}
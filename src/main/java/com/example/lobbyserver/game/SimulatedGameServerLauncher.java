@@ -0,0 +1,53 @@
+package com.example.lobbyserver.game;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.time.Duration;
+
+/**
+ * Runs {@link SimulatedGameServer}s inside the lobby server instead of spawning the native executable, so the lobby
+ * server can be load tested on its own.
+ */
+@Component
+@ConditionalOnProperty(name = "game.server.launcher", havingValue = "simulated")
+public class SimulatedGameServerLauncher extends GameServerLauncher {
+
+    private static final Logger log = LoggerFactory.getLogger(SimulatedGameServerLauncher.class);
+
+    @Value("${game.server.simulated.startup-delay-millis:0}")
+    private long startupDelayMillis;
+
+    @Value("${game.server.simulated.startup-failure-rate:0.0}")
+    private double startupFailureRate;
+
+    @Value("${game.server.simulated.crash-rate:0.0}")
+    private double crashRate;
+
+    @Value("${game.server.simulated.match-duration-millis:60000}")
+    private long matchDurationMillis;
+
+    @Value("${game.server.simulated.multi-match:false}")
+    private boolean multiMatch;
+
+    public SimulatedGameServerLauncher(HandshakeListener handshakeListener, PortAllocator portAllocator) {
+        super(handshakeListener, portAllocator);
+    }
+
+    @Override
+    Process start(PendingHandshake handshake, int gamePort, File logFile) {
+        var settings = new SimulatedGameServer.Settings(
+                Duration.ofMillis(startupDelayMillis),
+                startupFailureRate,
+                crashRate,
+                Duration.ofMillis(matchDurationMillis),
+                multiMatch);
+        var gameServer = SimulatedGameServer.start(handshake.port(), handshake.token(), gamePort, settings, logFile);
+        log.debug("Simulated game server started, waiting for connection on port {}", handshake.port());
+        return gameServer;
+    }
+}
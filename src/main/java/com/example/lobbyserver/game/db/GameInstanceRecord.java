@@ -0,0 +1,43 @@
+package com.example.lobbyserver.game.db;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * Persisted state of a running game instance, used to re-adopt its game server after a lobby server restart.
+ * {@code pid} and {@code processStart} are only set for game servers running on the lobby server itself.
+ */
+@Entity
+@Table(name = "game_instance")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@SuppressWarnings("unused")
+public class GameInstanceRecord {
+
+    @Id
+    private Long lobbyId;
+
+    private Long pid;
+
+    private Instant processStart;
+
+    @Column(nullable = false)
+    private String host;
+
+    @Column(nullable = false)
+    private Integer port;
+
+    @Column(nullable = false)
+    private Integer playersRemaining;
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt;
+}
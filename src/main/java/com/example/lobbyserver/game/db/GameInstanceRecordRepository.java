@@ -0,0 +1,14 @@
+package com.example.lobbyserver.game.db;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface GameInstanceRecordRepository extends JpaRepository<GameInstanceRecord, Long> {
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update GameInstanceRecord r set r.playersRemaining = ?2 where r.lobbyId = ?1")
+    void updatePlayersRemainingByLobbyId(Long lobbyId, Integer playersRemaining);
+}
@@ -9,15 +9,20 @@ import lombok.Setter;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "game_result")
+@Table(name = "game_result", indexes = {
+        @Index(name = "ix_game_result_date_time_id", columnList = "dateTime,id"),
+        @Index(name = "ix_game_result_username_date_time_id", columnList = "username,dateTime,id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @SuppressWarnings("unused")
 public class GameResult {
 
+    // ids are taken from the sequence in blocks, so inserts are not needed to learn them and can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "game_result_id")
+    @SequenceGenerator(name = "game_result_id", sequenceName = "game_result_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -1,9 +1,62 @@
 package com.example.lobbyserver.game.db;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface GameResultRepository extends JpaRepository<GameResult, Long> {
     Page<GameResult> findByUser_Username(String username, Pageable pageable);
+
+    @Query("select r from GameResult r join fetch r.user order by r.dateTime desc, r.id desc")
+    List<GameResult> findNewest(Limit limit);
+
+    // the redundant dateTime bound lets the (dateTime, id) index start at the cursor
+    @Query("""
+            select r from GameResult r join fetch r.user
+            where r.dateTime <= ?1 and (r.dateTime < ?1 or r.id < ?2)
+            order by r.dateTime desc, r.id desc""")
+    List<GameResult> findOlderThan(LocalDateTime dateTime, Long id, Limit limit);
+
+    @Query("select r from GameResult r join fetch r.user where r.user.username = ?1 order by r.dateTime desc, r.id desc")
+    List<GameResult> findNewestOfUser(String username, Limit limit);
+
+    @Query("""
+            select r from GameResult r join fetch r.user
+            where r.user.username = ?1 and r.dateTime <= ?2 and (r.dateTime < ?2 or r.id < ?3)
+            order by r.dateTime desc, r.id desc""")
+    List<GameResult> findOlderOfUserThan(String username, LocalDateTime dateTime, Long id, Limit limit);
+
+    long countByUser_Username(String username);
+
+    @Query("""
+            select new com.example.lobbyserver.game.db.LeaderboardEntry(r.user.username, max(r.score)) from GameResult r
+            where r.dateTime >= ?1 group by r.user.username order by max(r.score) desc, r.user.username""")
+    List<LeaderboardEntry> findBestScoresSince(LocalDateTime since, Limit limit);
+
+    @Query("""
+            select new com.example.lobbyserver.game.db.LeaderboardEntry(r.user.username, cast(max(r.linesCleared) as Long)) from GameResult r
+            where r.dateTime >= ?1 group by r.user.username order by max(r.linesCleared) desc, r.user.username""")
+    List<LeaderboardEntry> findBestLinesClearedSince(LocalDateTime since, Limit limit);
+
+    @Query("""
+            select new com.example.lobbyserver.game.db.LeaderboardEntry(r.user.username, cast(max(r.level) as Long)) from GameResult r
+            where r.dateTime >= ?1 group by r.user.username order by max(r.level) desc, r.user.username""")
+    List<LeaderboardEntry> findBestLevelsSince(LocalDateTime since, Limit limit);
+
+    /**
+     * The row count Postgres estimated when it last analyzed the table, negative if it never did.
+     */
+    @Query(value = "select cast(reltuples as bigint) from pg_class where oid = to_regclass('game_result')", nativeQuery = true)
+    Long estimateCount();
+
+    /**
+     * Sets Postgres' {@code synchronous_commit} for the rest of the current transaction.
+     */
+    @Query(value = "select set_config('synchronous_commit', ?1, true)", nativeQuery = true)
+    String synchronousCommit(String mode);
 }
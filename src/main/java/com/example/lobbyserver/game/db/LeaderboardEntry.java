@@ -0,0 +1,7 @@
+package com.example.lobbyserver.game.db;
+
+/**
+ * A player's best value on a leaderboard.
+ */
+public record LeaderboardEntry(String username, long value) {
+}
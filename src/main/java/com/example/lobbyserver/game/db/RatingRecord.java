@@ -0,0 +1,35 @@
+package com.example.lobbyserver.game.db;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Persisted Glicko-2 rating of a player, written behind the ratings kept in memory.
+ */
+@Entity
+@Table(name = "player_rating")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@SuppressWarnings("unused")
+public class RatingRecord {
+
+    @Id
+    private String username;
+
+    @Column(nullable = false)
+    private Double rating;
+
+    @Column(nullable = false)
+    private Double deviation;
+
+    @Column(nullable = false)
+    private Double volatility;
+
+    @Column(nullable = false)
+    private Integer games;
+}
@@ -0,0 +1,11 @@
+package com.example.lobbyserver.game.db;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface RatingRecordRepository extends JpaRepository<RatingRecord, String> {
+
+    List<RatingRecord> findByUsernameGreaterThanOrderByUsernameAsc(String username, Limit limit);
+}
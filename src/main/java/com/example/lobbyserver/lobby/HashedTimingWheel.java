@@ -0,0 +1,123 @@
+package com.example.lobbyserver.lobby;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A hashed timing wheel: deadlines are hashed into a fixed ring of buckets by the tick they expire on, and every tick
+ * only looks at the deadlines of its own bucket. Scheduling and cancelling are O(1), and the cost of a tick depends on
+ * the number of deadlines per bucket rather than on the number of pending deadlines, so large numbers of long
+ * deadlines cost next to nothing until they are due. Deadlines further away than one revolution of the wheel carry
+ * the number of revolutions they still have to wait.
+ * <p>
+ * The wheel does not keep time itself, {@link #advance(long)} is called with the current time and returns the
+ * deadlines that passed. A deadline never expires early, but it may expire up to one tick late.
+ */
+final class HashedTimingWheel<T> {
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final List<Set<Timeout<T>>> buckets;
+    private final int mask;
+    private long tick = 0;
+    private int size = 0;
+
+    /**
+     * @param wheelSize number of buckets, rounded up to a power of two
+     */
+    HashedTimingWheel(long tickNanos, int wheelSize, long startNanos) {
+        if (tickNanos <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+        }
+        var bucketCount = Integer.highestOneBit(wheelSize) == wheelSize ? wheelSize : Integer.highestOneBit(wheelSize) << 1;
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+        this.mask = bucketCount - 1;
+        this.buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * Schedules {@code task} to expire once {@link #advance(long)} reaches {@code deadlineNanos}. Deadlines in the
+     * past expire on the next advance.
+     */
+    synchronized Timeout<T> schedule(T task, long deadlineNanos) {
+        var expiresOnTick = Math.max(Math.ceilDiv(deadlineNanos - startNanos, tickNanos), tick);
+        var timeout = new Timeout<>(this, task, (expiresOnTick - tick) / buckets.size(), buckets.get((int) (expiresOnTick & mask)));
+        timeout.bucket.add(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Processes every tick up to {@code nowNanos} and returns the deadlines that expired, in tick order.
+     */
+    synchronized List<Timeout<T>> advance(long nowNanos) {
+        var expired = new ArrayList<Timeout<T>>();
+        var lastTick = Math.floorDiv(nowNanos - startNanos, tickNanos);
+        for (; tick <= lastTick; tick++) {
+            var iterator = buckets.get((int) (tick & mask)).iterator();
+            while (iterator.hasNext()) {
+                var timeout = iterator.next();
+                if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                    continue;
+                }
+                iterator.remove();
+                timeout.expired = true;
+                size--;
+                expired.add(timeout);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * The number of pending deadlines.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    private synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout.expired || !timeout.bucket.remove(timeout)) {
+            return false;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * A pending deadline.
+     */
+    static final class Timeout<T> {
+
+        private final HashedTimingWheel<T> wheel;
+        private final T task;
+        private final Set<Timeout<T>> bucket;
+        private long remainingRounds;
+        private boolean expired = false;
+
+        private Timeout(HashedTimingWheel<T> wheel, T task, long remainingRounds, Set<Timeout<T>> bucket) {
+            this.wheel = wheel;
+            this.task = task;
+            this.remainingRounds = remainingRounds;
+            this.bucket = bucket;
+        }
+
+        T task() {
+            return task;
+        }
+
+        /**
+         * Removes the deadline from the wheel. Returns {@code false} if it already expired or was cancelled.
+         */
+        boolean cancel() {
+            return wheel.cancel(this);
+        }
+    }
+}
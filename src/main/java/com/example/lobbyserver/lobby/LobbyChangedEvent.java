@@ -0,0 +1,7 @@
+package com.example.lobbyserver.lobby;
+
+/**
+ * Published when a lobby was created, joined, left or deleted, so views of the lobby list can refresh it.
+ */
+public record LobbyChangedEvent(long lobbyId) {
+}
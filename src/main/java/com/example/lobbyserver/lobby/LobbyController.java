@@ -1,24 +1,48 @@
 package com.example.lobbyserver.lobby;
 
+import com.example.lobbyserver.game.GameInstanceAdmissionException;
+import com.example.lobbyserver.game.GameInstanceDrainingException;
+import com.example.lobbyserver.game.GameResultNotStoredException;
+import com.example.lobbyserver.paging.CursorPage;
+import com.example.lobbyserver.paging.Cursors;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.util.concurrent.CancellationException;
+
 @RestController
 @RequestMapping("/lobby")
 public class LobbyController {
 
     private static final Logger log = LoggerFactory.getLogger(LobbyController.class);
     private final LobbyService lobbyService;
+    private final LobbySnapshots lobbySnapshots;
+    private final LobbyEventStream lobbyEventStream;
+    private final QuickPlayMatchmaker quickPlayMatchmaker;
+
+    @Value("${lobby.quickplay.timeout-millis:60000}")
+    private long quickPlayTimeoutMillis;
 
-    public LobbyController(LobbyService lobbyService) {
+    public LobbyController(LobbyService lobbyService, LobbySnapshots lobbySnapshots, LobbyEventStream lobbyEventStream, QuickPlayMatchmaker quickPlayMatchmaker) {
         this.lobbyService = lobbyService;
+        this.lobbySnapshots = lobbySnapshots;
+        this.lobbyEventStream = lobbyEventStream;
+        this.quickPlayMatchmaker = quickPlayMatchmaker;
     }
 
     @PostMapping("/create")
@@ -35,8 +59,54 @@ public class LobbyController {
     }
 
     @GetMapping
-    public Page<LobbyDao> listAllLobbies(Pageable pageable) {
-        return lobbyService.getOpenLobbies(pageable);
+    public Page<LobbyDao> listAllLobbies(Pageable pageable, WebRequest request) {
+        var snapshot = lobbySnapshots.current();
+        if (request.checkNotModified(snapshot.etag())) {
+            return null;
+        }
+        return snapshot.page(pageable);
+    }
+
+    /**
+     * The open lobbies by id, starting after the cursor of the previous page, so lobbies that close while a client
+     * pages through the list do not shift later pages.
+     */
+    @GetMapping(params = {"cursor", "!since"})
+    public CursorPage<LobbyDao> listLobbiesAfter(@RequestParam String cursor, Pageable pageable, WebRequest request) {
+        var snapshot = lobbySnapshots.current();
+        if (request.checkNotModified(snapshot.etag())) {
+            return null;
+        }
+        var afterId = cursor.isEmpty() ? Long.MIN_VALUE : Cursors.decode(cursor, 1, keys -> Long.parseLong(keys[0]));
+        var lobbies = snapshot.after(afterId, pageable.getPageSize() + 1);
+        String next = null;
+        if (lobbies.size() > pageable.getPageSize()) {
+            lobbies = lobbies.subList(0, pageable.getPageSize());
+            next = Cursors.encode(lobbies.getLast().id());
+        }
+        return new CursorPage<>(lobbies, next, (long) snapshot.lobbies().size());
+    }
+
+    @GetMapping(params = {"since", "!cursor"})
+    public LobbyDelta listChangedLobbies(@RequestParam long since, WebRequest request) {
+        var delta = lobbySnapshots.changesSince(since);
+        if (request.checkNotModified("\"" + delta.version() + "\"")) {
+            return null;
+        }
+        return delta;
+    }
+
+    /**
+     * A cursor page and a delta are different views of the list, a request cannot ask for both.
+     */
+    @GetMapping(params = {"cursor", "since"})
+    public ResponseEntity<Void> listLobbiesAfterAndSince() {
+        return ResponseEntity.badRequest().build();
+    }
+
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter lobbyEvents() {
+        return lobbyEventStream.subscribe();
     }
 
     @PostMapping("/join/{lobbyId}")
@@ -49,14 +119,64 @@ public class LobbyController {
                 .orElse(ResponseEntity.badRequest().build());
     }
 
+    /**
+     * Waits until the matchmaker joined the user into a lobby of the requested size. Answers {@code 408} if no match
+     * was found in time, so the client can queue again.
+     */
+    @PostMapping("/quickplay")
+    public DeferredResult<ResponseEntity<GameConnectionDetails>> quickPlay(@Valid @RequestBody QuickPlayRequest request, Authentication auth) {
+        var username = auth.getName();
+        log.debug("User {} queued for quick play with lobby size {}", username, request.lobbySize());
+
+        var result = new DeferredResult<ResponseEntity<GameConnectionDetails>>(quickPlayTimeoutMillis,
+                () -> ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build());
+        var matched = quickPlayMatchmaker.enqueue(username, request.lobbySize());
+        result.onCompletion(() -> quickPlayMatchmaker.cancel(username, matched));
+        matched.whenComplete((details, e) -> {
+            if (details != null) {
+                result.setResult(ResponseEntity.ok(details));
+            } else if (!(e instanceof CancellationException)) {
+                result.setResult(ResponseEntity.badRequest().build());
+            }
+        });
+        return result;
+    }
+
     @PostMapping("/leave/{lobbyId}")
     public ResponseEntity<Void> leaveLobby(@PathVariable Long lobbyId, @Valid @RequestBody GameResultRequest result, Authentication auth) {
         var username = auth.getName();
         log.debug("User {} attempted to leave lobby {}", username, lobbyId);
 
-        lobbyService.removePlayerFromLobby(lobbyId, username);
-        lobbyService.saveGameResult(username, result);
+        lobbyService.leaveLobby(lobbyId, username, result);
 
         return ResponseEntity.ok().build();
     }
+
+    @ExceptionHandler(GameInstanceAdmissionException.class)
+    public ResponseEntity<Void> handleAdmissionRejected(GameInstanceAdmissionException e) {
+        log.debug("Rejected lobby creation: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfter().toSeconds()))
+                .build();
+    }
+
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<Void> handleContention(ConcurrencyFailureException e) {
+        log.debug("Lobby is too contended: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    @ExceptionHandler(GameResultNotStoredException.class)
+    public ResponseEntity<Void> handleResultNotStored(GameResultNotStoredException e) {
+        log.warn("Game result was not stored: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+
+    @ExceptionHandler(GameInstanceDrainingException.class)
+    public ResponseEntity<Void> handleDraining(GameInstanceDrainingException e) {
+        log.debug("Rejected lobby creation: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfter().toSeconds()))
+                .build();
+    }
 }
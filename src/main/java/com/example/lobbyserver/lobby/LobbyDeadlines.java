@@ -0,0 +1,237 @@
+package com.example.lobbyserver.lobby;
+
+import com.example.lobbyserver.game.GameInstanceService;
+import com.example.lobbyserver.lobby.db.Lobby;
+import com.example.lobbyserver.lobby.db.LobbyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Tears down lobbies that outlive their deadlines:
+ * <ul>
+ *     <li>{@link Kind#FILL}: a lobby that does not fill up within {@code lobby.deadlines.fill-timeout-millis}</li>
+ *     <li>{@link Kind#MATCH}: a match that runs longer than {@code lobby.deadlines.match-timeout-millis}</li>
+ *     <li>{@link Kind#IDLE}: a started match whose remaining players do not leave within
+ *     {@code lobby.deadlines.idle-timeout-millis} of the last player that left</li>
+ * </ul>
+ * The deadlines are kept in a {@link HashedTimingWheel} that is advanced every {@code lobby.deadlines.tick-millis}, so
+ * pending deadlines cost no scheduled task of their own. An expired lobby is deleted (from the {@link LobbyRegistry} if
+ * it is enabled) and its game instance abandoned, which shuts down its game server. A timeout of {@code 0} disables the deadline.
+ */
+@Component
+public class LobbyDeadlines {
+
+    private static final Logger log = LoggerFactory.getLogger(LobbyDeadlines.class);
+    private static final int WHEEL_SIZE = 512;
+    private static final int ARM_BATCH_SIZE = 500;
+
+    @Value("${lobby.deadlines.fill-timeout-millis:600000}")
+    private long fillTimeoutMillis;
+
+    @Value("${lobby.deadlines.match-timeout-millis:7200000}")
+    private long matchTimeoutMillis;
+
+    @Value("${lobby.deadlines.idle-timeout-millis:300000}")
+    private long idleTimeoutMillis;
+
+    @Value("${lobby.deadlines.tick-millis:1000}")
+    private long tickMillis;
+
+    private final LobbyRepository lobbyRepository;
+    private final GameInstanceService gameInstanceService;
+    private final LobbyRegistry lobbyRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LongSupplier nanoTime;
+    private final Map<Deadline, HashedTimingWheel.Timeout<Deadline>> pending = new ConcurrentHashMap<>();
+    private final Map<Kind, Counter> expired = new EnumMap<>(Kind.class);
+    private final MeterRegistry meterRegistry;
+    private HashedTimingWheel<Deadline> wheel;
+
+    @Autowired
+    public LobbyDeadlines(LobbyRepository lobbyRepository, GameInstanceService gameInstanceService, LobbyRegistry lobbyRegistry, ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        this(lobbyRepository, gameInstanceService, lobbyRegistry, eventPublisher, System::nanoTime, meterRegistry);
+    }
+
+    LobbyDeadlines(LobbyRepository lobbyRepository, GameInstanceService gameInstanceService, LobbyRegistry lobbyRegistry, ApplicationEventPublisher eventPublisher, LongSupplier nanoTime, MeterRegistry meterRegistry) {
+        this.lobbyRepository = lobbyRepository;
+        this.gameInstanceService = gameInstanceService;
+        this.lobbyRegistry = lobbyRegistry;
+        this.eventPublisher = eventPublisher;
+        this.nanoTime = nanoTime;
+        this.meterRegistry = meterRegistry;
+        for (var kind : Kind.values()) {
+            expired.put(kind, Counter.builder("lobby.deadlines.expired")
+                    .description("Lobbies torn down because a deadline passed")
+                    .tag("kind", kind.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        wheel = new HashedTimingWheel<>(TimeUnit.MILLISECONDS.toNanos(tickMillis), WHEEL_SIZE, nanoTime.getAsLong());
+        Gauge.builder("lobby.deadlines.pending", this, deadlines -> deadlines.wheel.size())
+                .description("Lobby deadlines waiting to pass")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Arms the deadlines of the lobbies that survived a restart.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void armExistingLobbies() {
+        var after = 0L;
+        List<Lobby> batch;
+        do {
+            batch = lobbyRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(ARM_BATCH_SIZE));
+            for (var lobby : batch) {
+                if (lobby.notStarted()) {
+                    lobbyCreated(lobby.getId());
+                } else {
+                    lobbyFilled(lobby.getId());
+                }
+                after = lobby.getId();
+            }
+        } while (batch.size() == ARM_BATCH_SIZE);
+    }
+
+    /**
+     * A new lobby has to fill up before its fill deadline.
+     */
+    public void lobbyCreated(long lobbyId) {
+        arm(new Deadline(lobbyId, Kind.FILL), fillTimeoutMillis);
+    }
+
+    /**
+     * A full lobby starts its match, which has to end before the match deadline.
+     */
+    public void lobbyFilled(long lobbyId) {
+        disarm(new Deadline(lobbyId, Kind.FILL));
+        arm(new Deadline(lobbyId, Kind.MATCH), matchTimeoutMillis);
+    }
+
+    /**
+     * Once a player left a started match, the others have to follow before the idle deadline, which restarts with
+     * every player that leaves.
+     */
+    public void playerLeft(long lobbyId, boolean gameStarted) {
+        if (gameStarted) {
+            arm(new Deadline(lobbyId, Kind.IDLE), idleTimeoutMillis);
+        }
+    }
+
+    /**
+     * Drops the deadlines of a lobby that was deleted.
+     */
+    public void lobbyClosed(long lobbyId) {
+        for (var kind : Kind.values()) {
+            disarm(new Deadline(lobbyId, kind));
+        }
+    }
+
+    public void clear() {
+        pending.values().forEach(HashedTimingWheel.Timeout::cancel);
+        pending.clear();
+    }
+
+    private void arm(Deadline deadline, long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            return;
+        }
+        var timeout = wheel.schedule(deadline, nanoTime.getAsLong() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        var previous = pending.put(deadline, timeout);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void disarm(Deadline deadline) {
+        var timeout = pending.remove(deadline);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Advances the timing wheel and tears down the lobbies whose deadlines passed.
+     */
+    @Scheduled(fixedRateString = "${lobby.deadlines.tick-millis:1000}")
+    public void expireDeadlines() {
+        for (var timeout : wheel.advance(nanoTime.getAsLong())) {
+            var deadline = timeout.task();
+            // a deadline that was re-armed in the meantime is no longer the pending one
+            if (pending.remove(deadline, timeout)) {
+                expire(deadline);
+            }
+        }
+    }
+
+    private void expire(Deadline deadline) {
+        var lobbyId = deadline.lobbyId();
+        if (lobbyRegistry.isEnabled()) {
+            var removed = deadline.kind() == Kind.FILL
+                    ? lobbyRegistry.removeIfNotStarted(lobbyId)
+                    : lobbyRegistry.remove(lobbyId);
+            if (!removed) {
+                return;
+            }
+        } else if (!deleteLobby(deadline)) {
+            return;
+        }
+        log.info("Lobby {} passed its {} deadline, tearing it down", lobbyId, deadline.kind());
+        lobbyClosed(lobbyId);
+        eventPublisher.publishEvent(new LobbyChangedEvent(lobbyId));
+        gameInstanceService.abandon(lobbyId);
+        expired.get(deadline.kind()).increment();
+    }
+
+    private boolean deleteLobby(Deadline deadline) {
+        var lobbyId = deadline.lobbyId();
+        try {
+            var lobby = lobbyRepository.findById(lobbyId);
+            if (lobby.isEmpty()) {
+                lobbyClosed(lobbyId);
+                gameInstanceService.abandon(lobbyId);
+                return false;
+            }
+            if (deadline.kind() == Kind.FILL && !lobby.get().notStarted()) {
+                return false;
+            }
+            lobbyRepository.delete(lobby.get());
+            return true;
+        } catch (DataAccessException e) {
+            // a player joined or left in the meantime, try again on the next tick
+            log.debug("Could not tear down lobby {} after its {} deadline passed", lobbyId, deadline.kind(), e);
+            arm(deadline, tickMillis);
+            return false;
+        }
+    }
+
+    public enum Kind {
+        FILL, MATCH, IDLE
+    }
+
+    private record Deadline(long lobbyId, Kind kind) {
+    }
+}
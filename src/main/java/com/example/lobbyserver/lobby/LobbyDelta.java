@@ -0,0 +1,15 @@
+package com.example.lobbyserver.lobby;
+
+import java.util.List;
+
+/**
+ * The open lobbies that were created or updated, and the lobbies that were filled or removed, since a version of the
+ * lobby list. If {@code full} is set, the version was too old and {@code changed} holds all open lobbies instead.
+ */
+public record LobbyDelta(long version, boolean full, List<LobbyDao> changed, List<Long> removed) {
+
+    public LobbyDelta {
+        changed = List.copyOf(changed);
+        removed = List.copyOf(removed);
+    }
+}
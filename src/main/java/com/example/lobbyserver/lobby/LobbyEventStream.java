@@ -0,0 +1,418 @@
+package com.example.lobbyserver.lobby;
+
+import com.example.lobbyserver.game.GameInstanceReadyEvent;
+import com.example.lobbyserver.lobby.db.Lobby;
+import com.example.lobbyserver.lobby.db.LobbyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * Streams the changes of the lobby list to subscribed clients as Server-Sent Events, so lobby browsers do not have to
+ * poll {@code GET /lobby}. A new subscriber first receives a {@code snapshot} event with all open lobbies, followed by
+ * {@code created}, {@code updated}, {@code filled} and {@code removed} events.
+ * <p>
+ * Changed lobbies are collected and looked up once every {@code lobby.events.coalesce-millis}, so a burst of joins to
+ * the same lobby results in a single event. While there are subscribers the open lobbies are kept in memory and
+ * compared with the database every {@code lobby.events.resync-interval-millis}, to pick up lobbies changed by other
+ * components. The database cost is the same for one subscriber as for thousands, and nothing without subscribers.
+ * <p>
+ * Every subscriber has a queue of its own, again coalesced per lobby, that is sent on a virtual thread. A subscriber
+ * that falls more than {@code lobby.events.max-pending} lobbies behind is disconnected and receives a fresh snapshot
+ * when it reconnects.
+ */
+@Component
+public class LobbyEventStream {
+
+    private static final Logger log = LoggerFactory.getLogger(LobbyEventStream.class);
+
+    @Value("${lobby.events.max-pending:256}")
+    private int maxPending;
+
+    @Value("${lobby.events.timeout-millis:1800000}")
+    private long timeoutMillis;
+
+    private final LobbyRepository lobbyRepository;
+    private final LobbyRegistry lobbyRegistry;
+    private final Executor sender;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+    private final Map<Long, LobbyDao> openLobbies = new HashMap<>();
+    private boolean loaded = false;
+    // subscribers still loading their snapshot; the lobbies are tracked while there are any or any subscribers
+    private int subscribing = 0;
+    private volatile boolean tracking = false;
+
+    private final Counter sentEvents;
+    private final Counter droppedSubscribers;
+
+    @Autowired
+    public LobbyEventStream(LobbyRepository lobbyRepository, LobbyRegistry lobbyRegistry, MeterRegistry meterRegistry) {
+        this(lobbyRepository, lobbyRegistry, task -> Thread.ofVirtual().name("lobby-events").start(task), meterRegistry);
+    }
+
+    LobbyEventStream(LobbyRepository lobbyRepository, LobbyRegistry lobbyRegistry, Executor sender, MeterRegistry meterRegistry) {
+        this.lobbyRepository = lobbyRepository;
+        this.lobbyRegistry = lobbyRegistry;
+        this.sender = sender;
+
+        this.sentEvents = Counter.builder("lobby.events.sent")
+                .description("Lobby events sent to subscribers")
+                .register(meterRegistry);
+        this.droppedSubscribers = Counter.builder("lobby.events.dropped")
+                .description("Subscribers disconnected because they fell too far behind")
+                .register(meterRegistry);
+        Gauge.builder("lobby.events.subscribers", subscribers, Set::size)
+                .description("Clients subscribed to lobby events")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(SseEmitter emitter) {
+        var subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(_ -> unsubscribe(subscriber));
+
+        boolean load;
+        synchronized (this) {
+            // collect the changes from now on, so none made while the lobbies are loaded is lost
+            subscribing++;
+            tracking = true;
+            load = !loaded;
+        }
+        try {
+            var open = load ? loadOpenLobbies() : null;
+            synchronized (this) {
+                if (open != null && !loaded) {
+                    openLobbies.putAll(open);
+                    loaded = true;
+                }
+                subscriber.snapshot(openLobbies.values()
+                        .stream()
+                        .sorted(Comparator.comparing(LobbyDao::id))
+                        .toList());
+                subscribers.add(subscriber);
+            }
+        } finally {
+            synchronized (this) {
+                subscribing--;
+                stopTrackingIfIdle();
+            }
+        }
+        dispatch(subscriber);
+        return emitter;
+    }
+
+    private synchronized void unsubscribe(Subscriber subscriber) {
+        subscriber.close();
+        if (subscribers.remove(subscriber)) {
+            stopTrackingIfIdle();
+        }
+    }
+
+    private void stopTrackingIfIdle() {
+        if (subscribers.isEmpty() && subscribing == 0) {
+            // nobody is watching, so stop tracking the lobbies until the next subscriber
+            tracking = false;
+            changed.clear();
+            openLobbies.clear();
+            loaded = false;
+        }
+    }
+
+    /**
+     * Marks a lobby as changed. Its new state is looked up and published with the next batch.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void lobbyChanged(LobbyChangedEvent event) {
+        lobbyChanged(event.lobbyId());
+    }
+
+    @EventListener
+    public void gameInstanceReady(GameInstanceReadyEvent event) {
+        lobbyChanged(event.lobbyId());
+    }
+
+    private void lobbyChanged(long lobbyId) {
+        if (tracking) {
+            changed.add(lobbyId);
+        }
+    }
+
+    /**
+     * Looks up the lobbies changed since the last batch and sends their events to the subscribers.
+     */
+    @Scheduled(fixedDelayString = "${lobby.events.coalesce-millis:250}")
+    public void publish() {
+        // changes made while the first subscriber loads its snapshot are kept until it is subscribed
+        if (changed.isEmpty() || subscribers.isEmpty()) {
+            return;
+        }
+        var ids = new HashSet<Long>();
+        for (var iterator = changed.iterator(); iterator.hasNext(); ) {
+            ids.add(iterator.next());
+            iterator.remove();
+        }
+        try {
+            var open = new HashMap<Long, LobbyDao>();
+            var existing = new HashSet<Long>();
+            if (lobbyRegistry.isEnabled()) {
+                for (var id : ids) {
+                    if (lobbyRegistry.contains(id)) {
+                        existing.add(id);
+                        lobbyRegistry.openLobby(id).ifPresent(lobby -> open.put(id, lobby));
+                    }
+                }
+            } else {
+                for (var lobby : lobbyRepository.findAllById(ids)) {
+                    existing.add(lobby.getId());
+                    if (isOpen(lobby)) {
+                        open.put(lobby.getId(), LobbyDao.fromLobby(lobby));
+                    }
+                }
+            }
+            apply(ids, open, existing);
+        } catch (DataAccessException e) {
+            log.warn("Failed to look up {} changed lobbies, retrying with the next batch", ids.size(), e);
+            changed.addAll(ids);
+        }
+    }
+
+    /**
+     * Compares the open lobbies with the database, for lobbies that were changed without a {@link LobbyChangedEvent}.
+     */
+    @Scheduled(fixedDelayString = "${lobby.events.resync-interval-millis:30000}")
+    public void resync() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        try {
+            var open = loadOpenLobbies();
+            Set<Long> ids;
+            synchronized (this) {
+                ids = new HashSet<>(openLobbies.keySet());
+            }
+            ids.removeAll(open.keySet());
+            var existing = new HashSet<Long>();
+            if (!ids.isEmpty()) {
+                if (lobbyRegistry.isEnabled()) {
+                    ids.stream().filter(lobbyRegistry::contains).forEach(existing::add);
+                } else {
+                    lobbyRepository.findAllById(ids).forEach(lobby -> existing.add(lobby.getId()));
+                }
+            }
+            ids.addAll(open.keySet());
+            apply(ids, open, existing);
+        } catch (DataAccessException e) {
+            log.warn("Failed to resync the lobby events", e);
+        }
+    }
+
+    private Map<Long, LobbyDao> loadOpenLobbies() {
+        var open = lobbyRegistry.isEnabled()
+                ? lobbyRegistry.openLobbies(Pageable.unpaged()).getContent()
+                : lobbyRepository.findOpenLobbies(Pageable.unpaged()).map(LobbyDao::fromLobby).getContent();
+        return open.stream().collect(Collectors.toMap(LobbyDao::id, lobby -> lobby));
+    }
+
+    private static boolean isOpen(Lobby lobby) {
+        return lobby.getNumberOfPlayers() < lobby.getMaxPlayers()
+                && lobby.getGameServerHost() != null
+                && lobby.getGameServerPort() != null;
+    }
+
+    /**
+     * Updates the open lobbies with the looked up state of the given lobbies and queues the differences for every
+     * subscriber.
+     */
+    private void apply(Set<Long> ids, Map<Long, LobbyDao> open, Set<Long> existing) {
+        var events = new ArrayList<LobbyEvent>();
+        List<Subscriber> overflowing = new ArrayList<>();
+        synchronized (this) {
+            if (!loaded) {
+                return;
+            }
+            for (var id : ids) {
+                var before = openLobbies.get(id);
+                var after = open.get(id);
+                if (after != null) {
+                    openLobbies.put(id, after);
+                    if (before == null) {
+                        events.add(new LobbyEvent(LobbyEvent.Type.CREATED, id, after));
+                    } else if (!before.equals(after)) {
+                        events.add(new LobbyEvent(LobbyEvent.Type.UPDATED, id, after));
+                    }
+                } else if (before != null) {
+                    openLobbies.remove(id);
+                    var type = existing.contains(id) ? LobbyEvent.Type.FILLED : LobbyEvent.Type.REMOVED;
+                    events.add(new LobbyEvent(type, id, null));
+                }
+            }
+            if (events.isEmpty()) {
+                return;
+            }
+            for (var subscriber : subscribers) {
+                if (!subscriber.offer(events)) {
+                    overflowing.add(subscriber);
+                }
+            }
+        }
+        for (var subscriber : overflowing) {
+            log.debug("Lobby event subscriber fell more than {} lobbies behind, disconnecting", maxPending);
+            droppedSubscribers.increment();
+            unsubscribe(subscriber);
+            subscriber.emitter.complete();
+        }
+        subscribers.forEach(this::dispatch);
+    }
+
+    private void dispatch(Subscriber subscriber) {
+        if (subscriber.startSending()) {
+            sender.execute(subscriber::send);
+        }
+    }
+
+    @PreDestroy
+    void completeAll() {
+        for (var subscriber : subscribers) {
+            subscriber.close();
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * A change of the lobby list. {@code lobby} is set for {@link Type#CREATED} and {@link Type#UPDATED}.
+     */
+    public record LobbyEvent(Type type, long lobbyId, LobbyDao lobby) {
+
+        public enum Type {
+            CREATED, UPDATED, FILLED, REMOVED
+        }
+
+        /**
+         * Combines this event with a later event of the same lobby, or {@code null} if they cancel each other out.
+         */
+        LobbyEvent then(LobbyEvent next) {
+            if (type != Type.CREATED) {
+                return next;
+            }
+            return next.type == Type.UPDATED ? new LobbyEvent(Type.CREATED, lobbyId, next.lobby) : null;
+        }
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final LinkedHashMap<Long, LobbyEvent> queue = new LinkedHashMap<>();
+        private List<LobbyDao> snapshot;
+        private boolean sending = false;
+        private boolean closed = false;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        synchronized void snapshot(List<LobbyDao> lobbies) {
+            snapshot = List.copyOf(lobbies);
+        }
+
+        /**
+         * Queues the events, merged with the queued events of the same lobbies. Returns {@code false} if the
+         * subscriber is too far behind.
+         */
+        synchronized boolean offer(List<LobbyEvent> events) {
+            for (var event : events) {
+                var queued = queue.remove(event.lobbyId());
+                var merged = queued == null ? event : queued.then(event);
+                if (merged != null) {
+                    queue.put(event.lobbyId(), merged);
+                }
+            }
+            return queue.size() <= maxPending;
+        }
+
+        synchronized boolean startSending() {
+            if (sending || closed || (snapshot == null && queue.isEmpty())) {
+                return false;
+            }
+            sending = true;
+            return true;
+        }
+
+        synchronized void close() {
+            closed = true;
+            queue.clear();
+        }
+
+        private synchronized List<SseEmitter.SseEventBuilder> take() {
+            var events = new ArrayList<SseEmitter.SseEventBuilder>();
+            if (closed) {
+                sending = false;
+                return events;
+            }
+            if (snapshot != null) {
+                events.add(SseEmitter.event().name("snapshot").data(snapshot, MediaType.APPLICATION_JSON));
+                snapshot = null;
+            }
+            for (var event : queue.values()) {
+                var name = event.type().name().toLowerCase(Locale.ROOT);
+                events.add(SseEmitter.event().name(name).data(event, MediaType.APPLICATION_JSON));
+            }
+            queue.clear();
+            if (events.isEmpty()) {
+                sending = false;
+            }
+            return events;
+        }
+
+        void send() {
+            for (var events = take(); !events.isEmpty(); events = take()) {
+                try {
+                    for (var event : events) {
+                        emitter.send(event);
+                        sentEvents.increment();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("Lobby event subscriber disconnected", e);
+                    unsubscribe(this);
+                    emitter.completeWithError(e);
+                    synchronized (this) {
+                        sending = false;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.lobbyserver.lobby;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorts and pages lobbies held in memory, like the repository would.
+ */
+final class LobbyPages {
+
+    private static final Map<String, Comparator<LobbyDao>> SORTABLE = Map.of(
+            "id", Comparator.comparing(LobbyDao::id),
+            "name", Comparator.comparing(LobbyDao::name),
+            "numberOfPlayers", Comparator.comparingInt(LobbyDao::numberOfPlayers),
+            "maxPlayers", Comparator.comparingInt(LobbyDao::maxPlayers),
+            "owner", Comparator.comparing(LobbyDao::owner)
+    );
+
+    private LobbyPages() {
+    }
+
+    static Page<LobbyDao> page(List<LobbyDao> lobbies, Pageable pageable) {
+        var sorted = lobbies.stream()
+                .sorted(comparator(pageable.getSort()))
+                .toList();
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(sorted, pageable, sorted.size());
+        }
+        var from = (int) Math.min(pageable.getOffset(), sorted.size());
+        var to = Math.min(from + pageable.getPageSize(), sorted.size());
+        return new PageImpl<>(sorted.subList(from, to), pageable, sorted.size());
+    }
+
+    private static Comparator<LobbyDao> comparator(Sort sort) {
+        var comparator = Comparator.<LobbyDao>comparingInt(_ -> 0);
+        for (var order : sort) {
+            var property = SORTABLE.get(order.getProperty());
+            if (property != null) {
+                comparator = comparator.thenComparing(order.isAscending() ? property : property.reversed());
+            }
+        }
+        return comparator.thenComparing(SORTABLE.get("id"));
+    }
+}
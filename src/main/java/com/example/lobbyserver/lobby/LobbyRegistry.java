@@ -0,0 +1,434 @@
+package com.example.lobbyserver.lobby;
+
+import com.example.lobbyserver.game.GameInstanceReadyEvent;
+import com.example.lobbyserver.lobby.db.Lobby;
+import com.example.lobbyserver.lobby.db.LobbyRepository;
+import com.example.lobbyserver.user.db.User;
+import com.example.lobbyserver.user.db.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the lobbies in memory as the source of truth for their player counts and membership, so joining, leaving and
+ * listing lobbies does not touch the database. Every lobby has a lock of its own, so joins to different lobbies never
+ * contend. Changed lobbies are written to the {@code lobby} and {@code lobby_players} tables in batches every
+ * {@code lobby.registry.flush-interval-millis}, where several changes to the same lobby collapse into one write.
+ * <p>
+ * The registry is loaded from the database on startup and flushed on shutdown. It is only authoritative if a single
+ * lobby server uses the database, so it is disabled unless {@code lobby.registry.enabled} is set. Lobbies deleted by
+ * other components (e.g. the {@link com.example.lobbyserver.game.GameInstanceReconciler}) are dropped from the
+ * registry once their row has been missing on two resyncs in a row.
+ */
+@Component
+public class LobbyRegistry implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(LobbyRegistry.class);
+    private static final int LOAD_BATCH_SIZE = 500;
+
+    @Value("${lobby.registry.enabled:false}")
+    private boolean enabled;
+
+    private final LobbyRepository lobbyRepository;
+    private final UserRepository userRepository;
+    private final TransactionOperations transactionOperations;
+
+    private final Map<Long, RegisteredLobby> lobbies = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    // the lobby of every player, a player is in at most one lobby like in the lobby_players table
+    private final Map<String, Long> memberships = new ConcurrentHashMap<>();
+    private volatile Set<Long> missingRows = Set.of();
+    private volatile boolean running = false;
+
+    private final Timer flushDuration;
+    private final Counter flushedRows;
+    private final Counter flushFailures;
+
+    public LobbyRegistry(LobbyRepository lobbyRepository, UserRepository userRepository, TransactionOperations transactionOperations, MeterRegistry meterRegistry) {
+        this.lobbyRepository = lobbyRepository;
+        this.userRepository = userRepository;
+        this.transactionOperations = transactionOperations;
+
+        this.flushDuration = Timer.builder("lobby.registry.flush")
+                .description("Time to write a batch of changed lobbies to the database")
+                .register(meterRegistry);
+        this.flushedRows = Counter.builder("lobby.registry.flushed")
+                .description("Changed lobbies written to the database")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("lobby.registry.flush.failures")
+                .description("Batches of changed lobbies that failed to be written and were retried")
+                .register(meterRegistry);
+        Gauge.builder("lobby.registry.lobbies", lobbies, Map::size)
+                .description("Lobbies held in the lobby registry")
+                .register(meterRegistry);
+        Gauge.builder("lobby.registry.dirty", dirty, Set::size)
+                .description("Changed lobbies waiting to be written to the database")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds a lobby that was just inserted into the database.
+     */
+    public void register(Lobby lobby) {
+        if (!enabled) {
+            return;
+        }
+        var registered = new RegisteredLobby(lobby);
+        registered.players.forEach(username -> memberships.put(username, registered.id));
+        lobbies.put(registered.id, registered);
+    }
+
+    /**
+     * Joins a lobby with a ready game server that is neither full nor started. Empty if the lobby cannot be joined.
+     *
+     * @throws IllegalStateException if the user is already in this or another lobby
+     */
+    public Optional<Joined> join(long lobbyId, String username) {
+        var lobby = lobbies.get(lobbyId);
+        if (lobby == null) {
+            return Optional.empty();
+        }
+        synchronized (lobby) {
+            if (lobby.removed || !lobby.isGameActive() || lobby.isFull() || lobby.started) {
+                return Optional.empty();
+            }
+            if (memberships.putIfAbsent(username, lobbyId) != null) {
+                throw new IllegalStateException("User is already in the lobby");
+            }
+            lobby.players.add(username);
+            lobby.numberOfPlayers++;
+            if (lobby.isFull()) {
+                lobby.started = true;
+            }
+            dirty.add(lobbyId);
+            return Optional.of(new Joined(new GameConnectionDetails(lobby.host, lobby.port), lobby.started));
+        }
+    }
+
+    /**
+     * Takes the user out of the lobby and returns whether its match has started. Only one of several concurrent leaves
+     * of the same user succeeds, the others fail as if the user was never in the lobby.
+     *
+     * @throws IllegalArgumentException if the lobby does not exist
+     * @throws IllegalStateException    if the user is not in the lobby
+     */
+    public boolean leave(long lobbyId, String username) {
+        var lobby = lobbies.get(lobbyId);
+        if (lobby == null) {
+            throw new IllegalArgumentException("Lobby not found");
+        }
+        synchronized (lobby) {
+            if (lobby.removed) {
+                throw new IllegalArgumentException("Lobby not found");
+            }
+            if (!lobby.players.remove(username)) {
+                throw new IllegalStateException("User is not in the lobby");
+            }
+            memberships.remove(username, lobbyId);
+            dirty.add(lobbyId);
+            return lobby.started;
+        }
+    }
+
+    /**
+     * Removes a lobby. Its row is deleted on the next flush. Returns {@code false} if the lobby does not exist.
+     */
+    public boolean remove(long lobbyId) {
+        return remove(lobbyId, false);
+    }
+
+    /**
+     * Removes a lobby unless its match has started.
+     */
+    public boolean removeIfNotStarted(long lobbyId) {
+        return remove(lobbyId, true);
+    }
+
+    private boolean remove(long lobbyId, boolean onlyIfNotStarted) {
+        var lobby = lobbies.get(lobbyId);
+        if (lobby == null) {
+            return false;
+        }
+        synchronized (lobby) {
+            if (lobby.removed || (onlyIfNotStarted && lobby.started)) {
+                return false;
+            }
+            lobby.removed = true;
+            forgetMembers(lobby);
+        }
+        lobbies.remove(lobbyId, lobby);
+        dirty.add(lobbyId);
+        return true;
+    }
+
+    /**
+     * Forgets all lobbies without writing them, after the lobby table has been cleared.
+     */
+    public void clear() {
+        lobbies.clear();
+        memberships.clear();
+        dirty.clear();
+    }
+
+    private void forgetMembers(RegisteredLobby lobby) {
+        lobby.players.forEach(username -> memberships.remove(username, lobby.id));
+    }
+
+    public boolean contains(long lobbyId) {
+        return lobbies.containsKey(lobbyId);
+    }
+
+    /**
+     * The lobby if it has a ready game server and still has room.
+     */
+    public Optional<LobbyDao> openLobby(long lobbyId) {
+        var lobby = lobbies.get(lobbyId);
+        return lobby == null ? Optional.empty() : lobby.openView();
+    }
+
+    /**
+     * The lobbies with a ready game server that still have room, like {@link LobbyRepository#findOpenLobbies}.
+     */
+    public Page<LobbyDao> openLobbies(Pageable pageable) {
+        var open = lobbies.values()
+                .stream()
+                .map(RegisteredLobby::openView)
+                .flatMap(Optional::stream)
+                .toList();
+        return LobbyPages.page(open, pageable);
+    }
+
+    @EventListener
+    public void gameInstanceReady(GameInstanceReadyEvent event) {
+        var lobby = lobbies.get(event.lobbyId());
+        if (lobby == null) {
+            return;
+        }
+        // the address has already been stored by the game instance service
+        synchronized (lobby) {
+            lobby.host = event.host();
+            lobby.port = event.port();
+        }
+    }
+
+    /**
+     * Writes the changed lobbies to the database in one transaction. A failed batch is retried on the next flush.
+     */
+    @Scheduled(fixedDelayString = "${lobby.registry.flush-interval-millis:200}")
+    public void flush() {
+        if (!enabled || dirty.isEmpty()) {
+            return;
+        }
+        var ids = new HashSet<Long>();
+        for (var iterator = dirty.iterator(); iterator.hasNext(); ) {
+            ids.add(iterator.next());
+            iterator.remove();
+        }
+        try {
+            flushDuration.record(() -> transactionOperations.executeWithoutResult(_ -> write(ids)));
+            flushedRows.increment(ids.size());
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Failed to write {} changed lobbies, retrying on the next flush", ids.size(), e);
+            flushFailures.increment();
+            dirty.addAll(ids);
+        }
+    }
+
+    private void write(Set<Long> ids) {
+        var rows = lobbyRepository.findAllById(ids);
+        var usernames = new HashSet<String>();
+        var states = new HashMap<Long, LobbyState>();
+        for (var row : rows) {
+            var lobby = lobbies.get(row.getId());
+            if (lobby != null) {
+                var state = lobby.state();
+                states.put(row.getId(), state);
+                usernames.addAll(state.players());
+            }
+        }
+        var users = userRepository.findAllById(usernames)
+                .stream()
+                .collect(Collectors.toMap(User::getUsername, Function.identity()));
+
+        for (var row : rows) {
+            var state = states.get(row.getId());
+            if (state == null) {
+                lobbyRepository.delete(row);
+                continue;
+            }
+            row.setNumberOfPlayers(state.numberOfPlayers());
+            row.setGameStarted(state.started());
+            for (var player : row.getPlayers()) {
+                if (!state.players().contains(player.getUsername())) {
+                    row.removePlayer(player);
+                }
+            }
+            for (var username : state.players()) {
+                var user = users.get(username);
+                if (user != null && !row.containsUser(username)) {
+                    row.addPlayer(user);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the lobbies whose rows have been deleted behind the registry's back.
+     */
+    @Scheduled(fixedDelayString = "${lobby.registry.resync-interval-millis:10000}")
+    public void resync() {
+        if (!enabled || !running) {
+            return;
+        }
+        try {
+            var rows = new HashSet<>(lobbyRepository.findAllIds());
+            var missing = new HashSet<Long>();
+            for (var id : lobbies.keySet()) {
+                if (rows.contains(id) || dirty.contains(id)) {
+                    continue;
+                }
+                if (missingRows.contains(id)) {
+                    log.debug("Lobby {} was deleted from the database, dropping it from the registry", id);
+                    var lobby = lobbies.remove(id);
+                    if (lobby != null) {
+                        synchronized (lobby) {
+                            forgetMembers(lobby);
+                        }
+                    }
+                } else {
+                    missing.add(id);
+                }
+            }
+            missingRows = missing;
+        } catch (DataAccessException e) {
+            log.warn("Failed to resync the lobby registry", e);
+        }
+    }
+
+    /**
+     * Loads the lobbies from the database.
+     */
+    @Override
+    public void start() {
+        if (enabled) {
+            transactionOperations.executeWithoutResult(_ -> {
+                var after = 0L;
+                List<Lobby> batch;
+                do {
+                    batch = lobbyRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(LOAD_BATCH_SIZE));
+                    for (var lobby : batch) {
+                        register(lobby);
+                        after = lobby.getId();
+                    }
+                } while (batch.size() == LOAD_BATCH_SIZE);
+            });
+            log.info("Loaded {} lobbies into the lobby registry", lobbies.size());
+        }
+        running = true;
+    }
+
+    /**
+     * Writes the last changes to the database.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // load before and flush after the web server serves requests
+        return DEFAULT_PHASE - 4096;
+    }
+
+    /**
+     * The outcome of a successful join. {@code filled} is set if the player filled up the lobby and started the match.
+     */
+    public record Joined(GameConnectionDetails connectionDetails, boolean filled) {
+    }
+
+    private record LobbyState(int numberOfPlayers, boolean started, Set<String> players) {
+        private LobbyState {
+            players = Set.copyOf(players);
+        }
+    }
+
+    private static final class RegisteredLobby {
+        private final long id;
+        private final String name;
+        private final int maxPlayers;
+        private final String owner;
+        private final Set<String> players = new LinkedHashSet<>();
+        private int numberOfPlayers;
+        private boolean started;
+        private boolean removed = false;
+        private String host;
+        private Integer port;
+
+        private RegisteredLobby(Lobby lobby) {
+            this.id = lobby.getId();
+            this.name = lobby.getName();
+            this.maxPlayers = lobby.getMaxPlayers();
+            this.owner = lobby.getOwner().getUsername();
+            lobby.getPlayers().forEach(player -> players.add(player.getUsername()));
+            this.numberOfPlayers = lobby.getNumberOfPlayers();
+            this.started = lobby.getGameStarted();
+            this.host = lobby.getGameServerHost();
+            this.port = lobby.getGameServerPort();
+        }
+
+        synchronized boolean isGameActive() {
+            return host != null && port != null;
+        }
+
+        synchronized boolean isFull() {
+            return numberOfPlayers >= maxPlayers;
+        }
+
+        synchronized LobbyState state() {
+            return new LobbyState(numberOfPlayers, started, players);
+        }
+
+        synchronized Optional<LobbyDao> openView() {
+            if (removed || isFull() || !isGameActive()) {
+                return Optional.empty();
+            }
+            return Optional.of(new LobbyDao(id, name, numberOfPlayers, maxPlayers, owner));
+        }
+    }
+}
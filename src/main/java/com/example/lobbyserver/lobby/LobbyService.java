@@ -1,24 +1,37 @@
 package com.example.lobbyserver.lobby;
 
+import com.example.lobbyserver.game.GameInstanceNotFoundException;
 import com.example.lobbyserver.game.GameInstanceService;
-import com.example.lobbyserver.game.db.GameResult;
-import com.example.lobbyserver.game.db.GameResultRepository;
+import com.example.lobbyserver.game.GameResultNotStoredException;
+import com.example.lobbyserver.game.GameResultRecordedEvent;
+import com.example.lobbyserver.game.GameResultWriter;
 import com.example.lobbyserver.lobby.db.Lobby;
 import com.example.lobbyserver.lobby.db.LobbyRepository;
+import com.example.lobbyserver.lobby.db.LobbySeat;
 import com.example.lobbyserver.user.db.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
-import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.validation.annotation.Validated;
 
 import java.time.LocalDateTime;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 @Service
 @Validated
@@ -28,13 +41,41 @@ public class LobbyService {
     private final LobbyRepository lobbyRepository;
     private final GameInstanceService gameInstanceService;
     private final UserRepository userRepository;
-    private final GameResultRepository gameResultRepository;
+    private final GameResultWriter gameResultWriter;
+    private final LobbyDeadlines lobbyDeadlines;
+    private final LobbyRegistry lobbyRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate membershipTransaction;
+    private final MeterRegistry meterRegistry;
+    private final Counter rejectedJoins;
+    private final Timer joinDuration;
 
-    public LobbyService(LobbyRepository lobbyRepository, GameInstanceService gameInstanceService, UserRepository userRepository, GameResultRepository gameResultRepository) {
+    @Value("${lobby.membership.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${lobby.membership.retry-backoff-millis:10}")
+    private long retryBackoffMillis;
+
+    public LobbyService(LobbyRepository lobbyRepository, GameInstanceService gameInstanceService, UserRepository userRepository, GameResultWriter gameResultWriter, LobbyDeadlines lobbyDeadlines, LobbyRegistry lobbyRegistry, ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
         this.lobbyRepository = lobbyRepository;
         this.gameInstanceService = gameInstanceService;
         this.userRepository = userRepository;
-        this.gameResultRepository = gameResultRepository;
+        this.gameResultWriter = gameResultWriter;
+        this.lobbyDeadlines = lobbyDeadlines;
+        this.lobbyRegistry = lobbyRegistry;
+        this.eventPublisher = eventPublisher;
+
+        // joins and leaves that go to the database need their own transaction, those served by the registry need none
+        this.membershipTransaction = new TransactionTemplate(transactionManager);
+        membershipTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        this.meterRegistry = meterRegistry;
+        this.rejectedJoins = Counter.builder("lobby.join.rejected")
+                .description("Joins that found the lobby full, started or without a ready game server")
+                .register(meterRegistry);
+        this.joinDuration = Timer.builder("lobby.join")
+                .description("Time to join a lobby in the database, including retries")
+                .register(meterRegistry);
     }
 
     @Transactional
@@ -51,79 +92,179 @@ public class LobbyService {
         var savedLobby = lobbyRepository.save(lobbyToCreate);
 
         gameInstanceService.startNewGameInstance(savedLobby.getId(), savedLobby.getMaxPlayers());
+        lobbyRegistry.register(savedLobby);
+        lobbyDeadlines.lobbyCreated(savedLobby.getId());
+        eventPublisher.publishEvent(new LobbyChangedEvent(savedLobby.getId()));
 
         return LobbyDao.fromLobby(savedLobby);
     }
 
     public Page<LobbyDao> getOpenLobbies(Pageable pageable) {
+        if (lobbyRegistry.isEnabled()) {
+            return lobbyRegistry.openLobbies(pageable);
+        }
         return lobbyRepository.findOpenLobbies(pageable)
                 .map(LobbyDao::fromLobby);
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW, isolation = Isolation.REPEATABLE_READ)
     public Optional<GameConnectionDetails> tryJoinLobby(Long lobbyId, String username) {
-        var lobbyOptional = lobbyRepository.findById(lobbyId);
-
-        return lobbyOptional
-                .filter(Lobby::isGameActive)
-                .filter(Lobby::isNotFull)
-                .filter(Lobby::notStarted)
-                .map(lobby -> {
-                    lobby.setNumberOfPlayers(lobby.getNumberOfPlayers() + 1);
-                    var user = userRepository.findById(username).orElseThrow();
-                    if (lobby.getPlayers().contains(user)) {
-                        throw new IllegalStateException("User is already in the lobby");
-                    }
-
-                    lobby.addPlayer(user);
-                    log.debug("User {} joined lobby {}", username, lobbyId);
-
-                    if (lobby.isFull()) {
-                        lobby.setGameStarted(true);
-                        log.debug("Lobby {} is now full", lobbyId);
-                    }
-
-                    lobbyRepository.save(lobby);
-
-                    return new GameConnectionDetails(lobby.getGameServerHost(), lobby.getGameServerPort());
-                });
+        if (lobbyRegistry.isEnabled()) {
+            return lobbyRegistry.join(lobbyId, username)
+                    .map(joined -> {
+                        log.debug("User {} joined lobby {}", username, lobbyId);
+                        eventPublisher.publishEvent(new LobbyChangedEvent(lobbyId));
+                        if (joined.filled()) {
+                            gameInstanceService.gameStarted(lobbyId);
+                            lobbyDeadlines.lobbyFilled(lobbyId);
+                            log.debug("Lobby {} is now full", lobbyId);
+                        }
+                        return joined.connectionDetails();
+                    });
+        }
+        return joinDuration.record(() -> Objects.requireNonNull(
+                withRetry("join", () -> membershipTransaction.execute(_ -> joinLobbyInDatabase(lobbyId, username)))));
+    }
+
+    /**
+     * Takes a seat and adds the membership with one conditional statement each, so concurrent joins to the same lobby
+     * wait for each other's row lock instead of failing on a stale version.
+     */
+    private Optional<GameConnectionDetails> joinLobbyInDatabase(Long lobbyId, String username) {
+        if (lobbyRepository.claimSeat(lobbyId) == 0) {
+            rejectedJoins.increment();
+            return Optional.empty();
+        }
+        if (lobbyRepository.claimMembership(lobbyId, username) == 0) {
+            // rolls back the seat
+            throw new IllegalStateException("User is already in the lobby");
+        }
+        log.debug("User {} joined lobby {}", username, lobbyId);
+        eventPublisher.publishEvent(new LobbyChangedEvent(lobbyId));
+
+        var seat = lobbyRepository.findSeatById(lobbyId).orElseThrow();
+        if (seat.gameStarted()) {
+            gameInstanceService.gameStarted(lobbyId);
+            lobbyDeadlines.lobbyFilled(lobbyId);
+            log.debug("Lobby {} is now full", lobbyId);
+        }
+        return Optional.of(new GameConnectionDetails(seat.gameServerHost(), seat.gameServerPort()));
     }
 
     public void removePlayerFromLobby(Long lobbyId, String username) {
-        var lobby = lobbyRepository.findById(lobbyId)
-                .orElseThrow(() -> new IllegalArgumentException("Lobby not found"));
-        if (!lobby.containsUser(username)) {
-            throw new IllegalStateException("User is not in the lobby");
+        leave(lobbyId, username, null);
+    }
+
+    /**
+     * Removes the player from the lobby and hands their game result to the {@link GameResultWriter} once the player is
+     * out of the lobby.
+     *
+     * @throws GameResultNotStoredException if the result is not as durable as {@code game.results.durability} asks
+     */
+    public void leaveLobby(Long lobbyId, String username, @Valid GameResultRequest result) {
+        leave(lobbyId, username, result);
+    }
+
+    private void leave(Long lobbyId, String username, GameResultRequest result) {
+        if (lobbyRegistry.isEnabled()) {
+            // the membership goes first, a concurrent second leave of the same user must not count as a leaving player
+            var started = lobbyRegistry.leave(lobbyId, username);
+            var remaining = playerLeftGame(lobbyId);
+            log.debug("User {} left lobby {}", username, lobbyId);
+            eventPublisher.publishEvent(new LobbyChangedEvent(lobbyId));
+            if (remaining == 0) {
+                lobbyRegistry.remove(lobbyId);
+                lobbyDeadlines.lobbyClosed(lobbyId);
+            } else {
+                lobbyDeadlines.playerLeft(lobbyId, started);
+            }
+            if (result != null) {
+                resultRecorded(lobbyId, username, result, remaining);
+                saveGameResult(username, result);
+            }
+            return;
         }
 
-        var remaining = gameInstanceService.playerLeftGame(lobbyId);
+        withRetry("leave", () -> membershipTransaction.execute(_ -> {
+            if (lobbyRepository.releaseMembership(lobbyId, username) == 0) {
+                if (!lobbyRepository.existsById(lobbyId)) {
+                    throw new IllegalArgumentException("Lobby not found");
+                }
+                throw new IllegalStateException("User is not in the lobby");
+            }
+            return null;
+        }));
+
+        // the game instance is only told once the membership is gone for good, retries must not count a player twice
+        var remaining = playerLeftGame(lobbyId);
         log.debug("User {} left lobby {}", username, lobbyId);
+        eventPublisher.publishEvent(new LobbyChangedEvent(lobbyId));
         if (remaining == 0) {
             log.debug("Lobby {} is now empty, deleting from database", lobbyId);
-            lobbyRepository.delete(lobby);
+            withRetry("leave", () -> membershipTransaction.execute(_ -> {
+                lobbyRepository.findById(lobbyId).ifPresent(lobbyRepository::delete);
+                return null;
+            }));
+            lobbyDeadlines.lobbyClosed(lobbyId);
         } else {
-            log.debug("Removing user {} from users-lobby databse for lobby {}", username, lobbyId);
-            var user = userRepository.findById(username).orElseThrow();
-            lobby.removePlayer(user);
-            lobbyRepository.save(lobby);
+            var started = lobbyRepository.findSeatById(lobbyId).map(LobbySeat::gameStarted).orElse(false);
+            lobbyDeadlines.playerLeft(lobbyId, started);
+        }
+        // stored last, a result that is not committed in time must not leave the lobby half updated
+        if (result != null) {
+            resultRecorded(lobbyId, username, result, remaining);
+            saveGameResult(username, result);
+        }
+    }
+
+    private void resultRecorded(Long lobbyId, String username, GameResultRequest result, int remaining) {
+        eventPublisher.publishEvent(new GameResultRecordedEvent(lobbyId, username, result.score(), remaining == 0));
+    }
+
+    /**
+     * Runs a membership change, retrying it a bounded number of times if it lost a lock to a concurrent change
+     * (deadlock, lock timeout or serialization failure).
+     */
+    private <T> T withRetry(String operation, Supplier<T> attempt) {
+        for (int i = 1; ; i++) {
+            try {
+                return attempt.get();
+            } catch (ConcurrencyFailureException e) {
+                if (i >= maxAttempts) {
+                    meterRegistry.counter("lobby.membership.failures", "operation", operation).increment();
+                    throw e;
+                }
+                meterRegistry.counter("lobby.membership.retries", "operation", operation).increment();
+                log.debug("Lobby {} attempt {} lost a lock, retrying", operation, i, e);
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(retryBackoffMillis * i + 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private int playerLeftGame(Long lobbyId) {
+        try {
+            return gameInstanceService.playerLeftGame(lobbyId);
+        } catch (GameInstanceNotFoundException e) {
+            // the game server is gone, so the lobby cannot be played anymore
+            log.warn("Lobby {} has no game instance anymore", lobbyId);
+            return 0;
         }
     }
 
     public void saveGameResult(String username, @Valid GameResultRequest result) {
-        gameResultRepository.save(new GameResult(
-                null,
-                userRepository.getReferenceById(username),
-                result.score(),
-                result.level(),
-                result.linesCleared(),
-                result.time(),
-                LocalDateTime.now()
-        ));
+        gameResultWriter.write(username, result.score(), result.level(), result.linesCleared(), result.time(),
+                LocalDateTime.now());
     }
 
     public long deleteAll() {
         var count = lobbyRepository.count();
         lobbyRepository.deleteAll();
+        lobbyRegistry.clear();
+        lobbyDeadlines.clear();
         return count;
     }
 }
@@ -0,0 +1,41 @@
+package com.example.lobbyserver.lobby;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * An immutable list of the open lobbies, ordered by id. The version increases with every change of the list.
+ */
+public record LobbySnapshot(long version, List<LobbyDao> lobbies) {
+
+    public LobbySnapshot {
+        lobbies = List.copyOf(lobbies);
+    }
+
+    public String etag() {
+        return "\"" + version + "\"";
+    }
+
+    public Page<LobbyDao> page(Pageable pageable) {
+        return LobbyPages.page(lobbies, pageable);
+    }
+
+    /**
+     * Up to {@code size} lobbies with an id greater than {@code afterId}, found by binary search on the ids.
+     */
+    public List<LobbyDao> after(long afterId, int size) {
+        int low = 0;
+        int high = lobbies.size();
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+            if (lobbies.get(middle).id() <= afterId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return lobbies.subList(low, Math.min(low + size, lobbies.size()));
+    }
+}
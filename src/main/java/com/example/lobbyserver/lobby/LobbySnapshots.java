@@ -0,0 +1,192 @@
+package com.example.lobbyserver.lobby;
+
+import com.example.lobbyserver.game.GameInstanceReadyEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Serves the open lobbies to polling clients from an immutable {@link LobbySnapshot}. The snapshot is only rebuilt on
+ * the first request after a {@link LobbyChangedEvent}, or once it is older than {@code lobby.snapshots.max-age-millis}
+ * to pick up lobbies changed by other components, and keeps its version if nothing changed. Polls between two changes
+ * therefore cost no query at all, and can be answered with {@code 304 Not Modified}.
+ * <p>
+ * Every new version records the lobbies it changed in a change log bounded to {@code lobby.snapshots.change-log-size}
+ * entries, from which {@link #changesSince} answers with the lobbies changed since a version the client already has.
+ * Versions start at the time the lobby server started, so a version from before a restart is never mistaken for one
+ * of the current run.
+ */
+@Component
+public class LobbySnapshots {
+
+    private static final Logger log = LoggerFactory.getLogger(LobbySnapshots.class);
+
+    @Value("${lobby.snapshots.change-log-size:1024}")
+    private int changeLogSize;
+
+    @Value("${lobby.snapshots.max-age-millis:5000}")
+    private long maxAgeMillis;
+
+    private final LobbyService lobbyService;
+    private final LongSupplier nanoTime;
+    private final long initialVersion;
+    private final AtomicBoolean changed = new AtomicBoolean(true);
+    private final Deque<Change> changeLog = new ArrayDeque<>();
+    private volatile LobbySnapshot snapshot;
+    private volatile long builtAtNanos;
+    private long horizon;
+
+    private final Counter rebuilds;
+
+    @Autowired
+    public LobbySnapshots(LobbyService lobbyService, MeterRegistry meterRegistry) {
+        this(lobbyService, System::nanoTime, System.currentTimeMillis(), meterRegistry);
+    }
+
+    LobbySnapshots(LobbyService lobbyService, LongSupplier nanoTime, long initialVersion, MeterRegistry meterRegistry) {
+        this.lobbyService = lobbyService;
+        this.nanoTime = nanoTime;
+        this.initialVersion = initialVersion;
+        this.horizon = initialVersion;
+
+        this.rebuilds = Counter.builder("lobby.snapshots.rebuilds")
+                .description("Rebuilds of the open lobby snapshot")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void lobbyChanged(LobbyChangedEvent event) {
+        changed.set(true);
+    }
+
+    @EventListener
+    public void gameInstanceReady(GameInstanceReadyEvent event) {
+        changed.set(true);
+    }
+
+    /**
+     * The current snapshot, rebuilt first if a lobby changed since it was built.
+     */
+    public LobbySnapshot current() {
+        var current = snapshot;
+        if (current != null && isFresh()) {
+            return current;
+        }
+        return rebuild();
+    }
+
+    /**
+     * The lobbies changed since the given version, or all open lobbies if the change log does not reach back that far.
+     */
+    public LobbyDelta changesSince(long since) {
+        var current = current();
+        synchronized (this) {
+            if (since < horizon || since > current.version()) {
+                return new LobbyDelta(current.version(), true, current.lobbies(), List.of());
+            }
+            var latest = new LinkedHashMap<Long, Change>();
+            for (var change : changeLog) {
+                if (change.version() > since && change.version() <= current.version()) {
+                    latest.remove(change.lobbyId());
+                    latest.put(change.lobbyId(), change);
+                }
+            }
+            var updated = new ArrayList<LobbyDao>();
+            var removed = new ArrayList<Long>();
+            for (var change : latest.values()) {
+                if (change.lobby() != null) {
+                    updated.add(change.lobby());
+                } else {
+                    removed.add(change.lobbyId());
+                }
+            }
+            return new LobbyDelta(current.version(), false, updated, removed);
+        }
+    }
+
+    private boolean isFresh() {
+        return !changed.get() && nanoTime.getAsLong() - builtAtNanos < TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+    }
+
+    private synchronized LobbySnapshot rebuild() {
+        var previous = snapshot;
+        // another request may have rebuilt it while this one waited
+        if (previous != null && isFresh()) {
+            return previous;
+        }
+        changed.set(false);
+        var now = nanoTime.getAsLong();
+        Map<Long, LobbyDao> lobbies;
+        try {
+            lobbies = lobbyService.getOpenLobbies(Pageable.unpaged())
+                    .stream()
+                    .sorted(Comparator.comparing(LobbyDao::id))
+                    .collect(Collectors.toMap(LobbyDao::id, Function.identity(), (a, _) -> a, LinkedHashMap::new));
+        } catch (DataAccessException e) {
+            changed.set(true);
+            if (previous == null) {
+                throw e;
+            }
+            log.warn("Failed to rebuild the lobby snapshot, serving version {}", previous.version(), e);
+            return previous;
+        }
+        builtAtNanos = now;
+        rebuilds.increment();
+        if (previous == null) {
+            snapshot = new LobbySnapshot(initialVersion, new ArrayList<>(lobbies.values()));
+            return snapshot;
+        }
+
+        var version = previous.version() + 1;
+        var changes = new ArrayList<Change>();
+        for (var lobby : previous.lobbies()) {
+            if (!lobbies.containsKey(lobby.id())) {
+                changes.add(new Change(version, lobby.id(), null));
+            }
+        }
+        var before = previous.lobbies()
+                .stream()
+                .collect(Collectors.toMap(LobbyDao::id, Function.identity()));
+        for (var lobby : lobbies.values()) {
+            if (!lobby.equals(before.get(lobby.id()))) {
+                changes.add(new Change(version, lobby.id(), lobby));
+            }
+        }
+        if (changes.isEmpty()) {
+            return previous;
+        }
+        changeLog.addAll(changes);
+        while (changeLog.size() > changeLogSize) {
+            horizon = changeLog.removeFirst().version();
+        }
+        snapshot = new LobbySnapshot(version, new ArrayList<>(lobbies.values()));
+        return snapshot;
+    }
+
+    /**
+     * A lobby changed in a version, {@code lobby} is {@code null} if it was filled or removed.
+     */
+    private record Change(long version, long lobbyId, LobbyDao lobby) {
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.lobbyserver.lobby;
+
+import com.example.lobbyserver.game.GameInstanceAdmissionException;
+import com.example.lobbyserver.game.PlayerRatings;
+import com.example.lobbyserver.game.RatingIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SequencedSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Matches players that asked for a quick play into lobbies of the size they asked for. Every
+ * {@code lobby.quickplay.interval-millis} the waiting players are joined into the open lobbies of their size, the
+ * lobbies with the fewest free seats first, so matches start as early as possible. Players left over get new lobbies,
+ * which are joined once their game server is ready. Open lobbies are taken from the {@link LobbySnapshots}, so a round
+ * without changes costs no query.
+ * <p>
+ * A lobby is offered to the waiting players whose {@link PlayerRatings rating} is closest to its owner's, within
+ * {@code lobby.quickplay.rating-range}. Players that waited longer than {@code lobby.quickplay.rating-relax-millis}
+ * take any free seat, so a player far from everyone else still gets a match.
+ * <p>
+ * A player waits in the queue until they are matched or cancel; enqueuing again replaces the previous request.
+ */
+@Component
+public class QuickPlayMatchmaker {
+
+    private static final Logger log = LoggerFactory.getLogger(QuickPlayMatchmaker.class);
+    private static final String LOBBY_NAME_PREFIX = "Quick Play ";
+
+    @Value("${lobby.quickplay.launch-timeout-millis:30000}")
+    private long launchTimeoutMillis;
+
+    @Value("${lobby.quickplay.rating-range:200}")
+    private double ratingRange;
+
+    @Value("${lobby.quickplay.rating-relax-millis:10000}")
+    private long ratingRelaxMillis;
+
+    private final LobbyService lobbyService;
+    private final LobbySnapshots lobbySnapshots;
+    private final PlayerRatings playerRatings;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Integer, Deque<Ticket>> queues = new HashMap<>();
+    private final Map<String, Ticket> tickets = new HashMap<>();
+    private final Map<Long, Launch> launches = new HashMap<>();
+
+    private final Timer waitTime;
+    private final Counter createdLobbies;
+
+    public QuickPlayMatchmaker(LobbyService lobbyService, LobbySnapshots lobbySnapshots, PlayerRatings playerRatings, MeterRegistry meterRegistry) {
+        this.lobbyService = lobbyService;
+        this.lobbySnapshots = lobbySnapshots;
+        this.playerRatings = playerRatings;
+
+        this.waitTime = Timer.builder("lobby.quickplay.wait")
+                .description("Time players waited for a quick play match")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.createdLobbies = Counter.builder("lobby.quickplay.created")
+                .description("Lobbies created for players waiting for a quick play match")
+                .register(meterRegistry);
+        Gauge.builder("lobby.quickplay.waiting", this, QuickPlayMatchmaker::waiting)
+                .description("Players waiting for a quick play match")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the player for a lobby of the given size. The returned future completes with the connection details of
+     * the lobby the player was joined into.
+     */
+    public CompletableFuture<GameConnectionDetails> enqueue(String username, int lobbySize) {
+        var ticket = new Ticket(username, lobbySize, playerRatings.rating(username), new CompletableFuture<>(), System.nanoTime());
+        lock.lock();
+        try {
+            var previous = tickets.put(username, ticket);
+            if (previous != null) {
+                queues.get(previous.lobbySize()).remove(previous);
+                previous.matched().cancel(false);
+            }
+            queues.computeIfAbsent(lobbySize, _ -> new ArrayDeque<>()).addLast(ticket);
+        } finally {
+            lock.unlock();
+        }
+        return ticket.matched();
+    }
+
+    /**
+     * Takes the player out of the queue, unless they were already matched.
+     */
+    public void cancel(String username, CompletableFuture<GameConnectionDetails> matched) {
+        lock.lock();
+        try {
+            var ticket = tickets.get(username);
+            if (ticket != null && ticket.matched() == matched) {
+                tickets.remove(username);
+                queues.get(ticket.lobbySize()).remove(ticket);
+            }
+        } finally {
+            lock.unlock();
+        }
+        matched.cancel(false);
+    }
+
+    /**
+     * Joins the waiting players into open lobbies and creates lobbies for those left over.
+     */
+    @Scheduled(fixedDelayString = "${lobby.quickplay.interval-millis:500}")
+    public void match() {
+        var waiting = new HashMap<Integer, Waiting>();
+        lock.lock();
+        try {
+            if (tickets.isEmpty()) {
+                return;
+            }
+            queues.forEach((size, queue) -> {
+                if (!queue.isEmpty()) {
+                    var players = new Waiting();
+                    queue.forEach(players::add);
+                    waiting.put(size, players);
+                    queue.clear();
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+
+        var open = lobbySnapshots.current().lobbies();
+        var now = System.nanoTime();
+        waiting.forEach((size, queue) -> {
+            var lobbies = open.stream()
+                    .filter(lobby -> lobby.maxPlayers() == size)
+                    .sorted(Comparator.comparingInt((LobbyDao lobby) -> lobby.maxPlayers() - lobby.numberOfPlayers())
+                            .thenComparing(LobbyDao::id))
+                    .toList();
+            for (var lobby : lobbies) {
+                fill(lobby, queue, now);
+                if (queue.isEmpty()) {
+                    break;
+                }
+            }
+            createLobbies(size, queue, lobbies, now);
+        });
+
+        lock.lock();
+        try {
+            waiting.forEach((size, queue) -> {
+                var pending = queues.get(size);
+                // players that are still waiting go before those that queued during this round
+                for (var ticket : queue.queue.reversed()) {
+                    if (tickets.get(ticket.username()) == ticket) {
+                        pending.addFirst(ticket);
+                    }
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fill(LobbyDao lobby, Waiting queue, long now) {
+        var freeSeats = lobby.maxPlayers() - lobby.numberOfPlayers();
+        var candidates = new LinkedHashSet<>(queue.byRating.nearest(playerRatings.rating(lobby.owner()), ratingRange, freeSeats));
+        for (var ticket : queue.queue) {
+            if (candidates.size() >= freeSeats || now - ticket.enqueuedAt() < TimeUnit.MILLISECONDS.toNanos(ratingRelaxMillis)) {
+                break;
+            }
+            candidates.add(ticket);
+        }
+        for (var ticket : candidates) {
+            if (ticket.matched().isDone()) {
+                queue.remove(ticket);
+                continue;
+            }
+            try {
+                var joined = lobbyService.tryJoinLobby(lobby.id(), ticket.username());
+                if (joined.isEmpty()) {
+                    // the lobby filled up or closed since the snapshot was taken
+                    return;
+                }
+                queue.remove(ticket);
+                matched(ticket, lobby.id(), joined.get());
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                log.debug("Quick play for {} failed to join lobby {}", ticket.username(), lobby.id(), e);
+                queue.remove(ticket);
+                forget(ticket);
+                ticket.matched().completeExceptionally(e);
+            } catch (DataAccessException e) {
+                log.warn("Quick play for {} failed to join lobby {}", ticket.username(), lobby.id(), e);
+                return;
+            }
+        }
+    }
+
+    private void matched(Ticket ticket, long lobbyId, GameConnectionDetails details) {
+        forget(ticket);
+        if (!ticket.matched().complete(details)) {
+            // the player stopped waiting while they were joined
+            lobbyService.removePlayerFromLobby(lobbyId, ticket.username());
+            return;
+        }
+        waitTime.record(System.nanoTime() - ticket.enqueuedAt(), TimeUnit.NANOSECONDS);
+        log.debug("Quick play matched {} into lobby {}", ticket.username(), lobbyId);
+    }
+
+    private void forget(Ticket ticket) {
+        lock.lock();
+        try {
+            tickets.remove(ticket.username(), ticket);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Creates lobbies for the players that are left over and not already covered by lobbies that are still starting.
+     * The players are spread over the new lobbies in rating order, so each lobby draws players of similar skill.
+     */
+    private void createLobbies(int size, Waiting queue, List<LobbyDao> open, long now) {
+        var seatsStarting = 0;
+        lock.lock();
+        try {
+            open.forEach(lobby -> launches.remove(lobby.id()));
+            launches.values().removeIf(launch -> now - launch.createdAt() > TimeUnit.MILLISECONDS.toNanos(launchTimeoutMillis));
+            for (var launch : launches.values()) {
+                if (launch.lobbySize() == size) {
+                    seatsStarting += size;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        var waiting = new ArrayList<>(queue.queue);
+        waiting.sort(Comparator.comparingDouble(Ticket::rating));
+        for (int i = seatsStarting; i < waiting.size(); i += size) {
+            var owner = waiting.get(i).username();
+            try {
+                var lobby = lobbyService.createNewLobby(new LobbyCreationRequest(lobbyName(), size), owner);
+                lock.lock();
+                try {
+                    launches.put(lobby.id(), new Launch(size, now));
+                } finally {
+                    lock.unlock();
+                }
+                createdLobbies.increment();
+                log.debug("Quick play created lobby {} for {} waiting players", lobby.id(), waiting.size() - i);
+            } catch (GameInstanceAdmissionException | DataAccessException e) {
+                log.debug("Quick play could not create a lobby, retrying with the next round", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * A name for a new quick play lobby. Lobby names are unique, so every quick play lobby gets a random suffix.
+     */
+    public static String lobbyName() {
+        return LOBBY_NAME_PREFIX + UUID.randomUUID();
+    }
+
+    private int waiting() {
+        lock.lock();
+        try {
+            return tickets.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Ticket(String username, int lobbySize, double rating, CompletableFuture<GameConnectionDetails> matched, long enqueuedAt) {
+    }
+
+    /**
+     * The players of one lobby size waiting in a round, in queue order and by rating.
+     */
+    private static final class Waiting {
+        private final SequencedSet<Ticket> queue = new LinkedHashSet<>();
+        private final RatingIndex<Ticket> byRating = new RatingIndex<>();
+
+        private void add(Ticket ticket) {
+            queue.add(ticket);
+            byRating.put(ticket, ticket.rating());
+        }
+
+        private void remove(Ticket ticket) {
+            queue.remove(ticket);
+            byRating.remove(ticket);
+        }
+
+        private boolean isEmpty() {
+            return queue.isEmpty();
+        }
+    }
+
+    private record Launch(int lobbySize, long createdAt) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.lobbyserver.lobby;
+
+import jakarta.validation.constraints.NotNull;
+import org.hibernate.validator.constraints.Range;
+
+public record QuickPlayRequest(
+        @NotNull
+        @Range(min = 1, max = 6)
+        Integer lobbySize
+) {
+}
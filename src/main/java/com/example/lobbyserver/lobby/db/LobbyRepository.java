@@ -1,5 +1,6 @@
 package com.example.lobbyserver.lobby.db;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -7,6 +8,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface LobbyRepository extends JpaRepository<Lobby, Long> {
@@ -19,10 +21,55 @@ public interface LobbyRepository extends JpaRepository<Lobby, Long> {
             """)
     Page<Lobby> findOpenLobbies(Pageable pageable);
 
+    /**
+     * Stores the address of the lobby's game server. Returns {@code 0} if the lobby does not exist (anymore).
+     */
     @Transactional
     @Modifying
     @Query("update Lobby l set l.gameServerHost = ?1, l.gameServerPort = ?2 where l.id = ?3")
-    void updateGameServerHostAndGameServerPortById(String gameServerHost, Integer gameServerPort, Long id);
+    int updateGameServerHostAndGameServerPortById(String gameServerHost, Integer gameServerPort, Long id);
+
+    /**
+     * Takes a seat in a lobby with a ready game server that is neither full nor started, and starts the match if the
+     * seat was the last one. Returns {@code 0} if there was no seat to take.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update versioned Lobby l
+            set l.numberOfPlayers = l.numberOfPlayers + 1,
+                l.gameStarted = case when l.numberOfPlayers + 1 >= l.maxPlayers then true else false end
+            where l.id = ?1
+                and l.numberOfPlayers < l.maxPlayers
+                and l.gameStarted = false
+                and l.gameServerHost is not null
+                and l.gameServerPort is not null
+            """)
+    int claimSeat(Long id);
+
+    /**
+     * Adds a player to a lobby. Returns {@code 0} if the player already is in a lobby.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into lobby_players (lobby_id, username) values (?1, ?2) on conflict do nothing", nativeQuery = true)
+    int claimMembership(Long lobbyId, String username);
+
+    /**
+     * Removes a player from a lobby. Returns {@code 0} if the player was not in the lobby.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "delete from lobby_players where lobby_id = ?1 and username = ?2", nativeQuery = true)
+    int releaseMembership(Long lobbyId, String username);
+
+    @Query("select new com.example.lobbyserver.lobby.db.LobbySeat(l.gameServerHost, l.gameServerPort, l.gameStarted) from Lobby l where l.id = ?1")
+    Optional<LobbySeat> findSeatById(Long id);
 
     Optional<Lobby> findByName(String name);
+
+    List<Lobby> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @Query("select l.id from Lobby l")
+    List<Long> findAllIds();
 }
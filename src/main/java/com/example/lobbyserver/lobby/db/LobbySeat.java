@@ -0,0 +1,7 @@
+package com.example.lobbyserver.lobby.db;
+
+/**
+ * The game server address and start flag of a lobby, read back after a seat in it was claimed.
+ */
+public record LobbySeat(String gameServerHost, Integer gameServerPort, boolean gameStarted) {
+}
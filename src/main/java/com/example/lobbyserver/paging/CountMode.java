@@ -0,0 +1,25 @@
+package com.example.lobbyserver.paging;
+
+import java.util.Locale;
+
+/**
+ * How the total of a keyset paginated list is counted.
+ */
+public enum CountMode {
+    /**
+     * Not counted, a page costs the same no matter how long the list is.
+     */
+    NONE,
+    /**
+     * Estimated from the database statistics where possible.
+     */
+    ESTIMATE,
+    /**
+     * Counted exactly, which scans the whole list.
+     */
+    EXACT;
+
+    public static CountMode parse(String mode) {
+        return valueOf(mode.toUpperCase(Locale.ROOT));
+    }
+}
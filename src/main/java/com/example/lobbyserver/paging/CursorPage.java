@@ -0,0 +1,14 @@
+package com.example.lobbyserver.paging;
+
+import java.util.List;
+
+/**
+ * A page of a keyset paginated list. {@code next} is the cursor of the following page, or {@code null} on the last
+ * page; {@code totalElements} is only set if a count was requested.
+ */
+public record CursorPage<T>(List<T> content, String next, Long totalElements) {
+
+    public CursorPage {
+        content = List.copyOf(content);
+    }
+}
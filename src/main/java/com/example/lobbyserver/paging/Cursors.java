@@ -0,0 +1,44 @@
+package com.example.lobbyserver.paging;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Function;
+
+/**
+ * Encodes the sort keys of the last element of a page into an opaque cursor, so clients cannot depend on its layout.
+ * An empty cursor asks for the first page.
+ */
+public final class Cursors {
+
+    private static final String SEPARATOR = "|";
+
+    private Cursors() {
+    }
+
+    public static String encode(Object... keys) {
+        var joined = new StringBuilder();
+        for (var key : keys) {
+            if (!joined.isEmpty()) {
+                joined.append(SEPARATOR);
+            }
+            joined.append(key);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(joined.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the {@code count} keys of the cursor and parses them, throws {@link MalformedCursorException} if the
+     * cursor was not created by {@link #encode} with keys the parser accepts.
+     */
+    public static <T> T decode(String cursor, int count, Function<String[], T> parser) {
+        try {
+            var keys = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+            if (keys.length != count) {
+                throw new IllegalArgumentException("Expected " + count + " keys but got " + keys.length);
+            }
+            return parser.apply(keys);
+        } catch (RuntimeException e) {
+            throw new MalformedCursorException("Malformed cursor", e);
+        }
+    }
+}
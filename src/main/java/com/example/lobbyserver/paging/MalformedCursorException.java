@@ -0,0 +1,11 @@
+package com.example.lobbyserver.paging;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class MalformedCursorException extends IllegalArgumentException {
+    public MalformedCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -42,6 +42,7 @@ public class SecurityConfiguration {
                         .requestMatchers(HttpMethod.POST, "/user/register").permitAll()
                         .requestMatchers("/verify").permitAll()
                         .requestMatchers("/game-results").permitAll()
+                        .requestMatchers("/leaderboards/*").permitAll()
                         .requestMatchers("/csrf").permitAll()
                         .requestMatchers("/error/**").permitAll()
                         .requestMatchers(
@@ -21,10 +21,12 @@ import org.springframework.web.util.UriComponentsBuilder;
 public class UserController {
 
     private final UserService userService;
+    private final UserStatsService userStatsService;
     private final MailVerificationService mailVerificationService;
 
-    public UserController(UserService userService, MailVerificationService mailVerificationService) {
+    public UserController(UserService userService, UserStatsService userStatsService, MailVerificationService mailVerificationService) {
         this.userService = userService;
+        this.userStatsService = userStatsService;
         this.mailVerificationService = mailVerificationService;
     }
 
@@ -51,6 +53,33 @@ public class UserController {
         return ResponseEntity.of(userService.getUser(currentUser));
     }
 
+    @Operation(
+            summary = "Get current user statistics",
+            description = "Returns the aggregated game results of the currently authenticated user.",
+            security = @SecurityRequirement(name = "basicAuth")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Statistics found",
+                    content = @Content(schema = @Schema(implementation = UserStatsDao.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Unauthorized (invalid or missing credentials)",
+                    content = @Content(schema = @Schema())
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "The user has no stored game results",
+                    content = @Content(schema = @Schema())
+            )
+    })
+    @GetMapping("/stats")
+    public ResponseEntity<UserStatsDao> getUserStats(Authentication authentication) {
+        return ResponseEntity.of(userStatsService.getStats(authentication.getName()));
+    }
+
     @Operation(
             summary = "Register a new user",
             description = "Creates a new user account and sends a verification email. Returns 201 if successful."
@@ -0,0 +1,42 @@
+package com.example.lobbyserver.user;
+
+import com.example.lobbyserver.user.db.UserStats;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+@Schema(description = "Aggregated game results of a user")
+public record UserStatsDao(
+        @Schema(description = "Username", example = "Alice")
+        String username,
+
+        @Schema(description = "Number of stored game results", example = "42")
+        long gamesPlayed,
+
+        @Schema(description = "Best score of all games", example = "125000")
+        long bestScore,
+
+        @Schema(description = "Average score of all games", example = "48210.5")
+        double averageScore,
+
+        @Schema(description = "Lines cleared in all games", example = "3150")
+        long totalLinesCleared,
+
+        @Schema(description = "Time played in all games, in milliseconds", example = "7560000")
+        long totalPlayTime,
+
+        @Schema(description = "Time the last game result was stored")
+        LocalDateTime lastPlayed) {
+
+    public static UserStatsDao fromUserStats(UserStats stats) {
+        return new UserStatsDao(
+                stats.getUsername(),
+                stats.getGamesPlayed(),
+                stats.getBestScore(),
+                (double) stats.getTotalScore() / stats.getGamesPlayed(),
+                stats.getTotalLinesCleared(),
+                stats.getTotalPlayTime(),
+                stats.getLastPlayed()
+        );
+    }
+}
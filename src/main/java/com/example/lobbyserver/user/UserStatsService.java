@@ -0,0 +1,213 @@
+package com.example.lobbyserver.user;
+
+import com.example.lobbyserver.game.GameResultSavedEvent;
+import com.example.lobbyserver.game.GameResultsSavedEvent;
+import com.example.lobbyserver.user.db.UserStatsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the aggregated game results of every player in the {@code user_stats} table. Each batch of stored game results
+ * is added to its players' rows in the transaction that stores it, with one upsert of all players in the order of their
+ * names, so concurrent batches lock the rows in the same order. Reading the statistics of a player is a single lookup by
+ * primary key, whatever the number of games they played. The most recently read statistics are cached, up to
+ * {@code user.stats.cache-size} players, and dropped once a new result of the player was committed.
+ * <p>
+ * Results stored before the table existed are added by a {@link #backfill()}, which runs on startup if the table is
+ * still empty.
+ */
+@Service
+public class UserStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserStatsService.class);
+
+    @Value("${user.stats.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${user.stats.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    private final UserStatsRepository userStatsRepository;
+    private final TransactionTemplate backfillTransaction;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, UserStatsDao> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, UserStatsDao> eldest) {
+            return size() > cacheSize;
+        }
+    };
+    // bumped whenever cached statistics go stale, so a read that overlapped a change does not cache what it read
+    private long generation;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    public UserStatsService(UserStatsRepository userStatsRepository,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry) {
+        this.userStatsRepository = userStatsRepository;
+        this.backfillTransaction = new TransactionTemplate(transactionManager);
+
+        this.cacheHits = Counter.builder("user.stats.cache")
+                .tag("result", "hit")
+                .description("Reads of user statistics by cache result")
+                .register(meterRegistry);
+        this.cacheMisses = Counter.builder("user.stats.cache")
+                .tag("result", "miss")
+                .description("Reads of user statistics by cache result")
+                .register(meterRegistry);
+        Gauge.builder("user.stats.cache.size", this, UserStatsService::cached)
+                .description("User statistics in the cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The statistics of the player, or empty if they have no stored game result.
+     */
+    public Optional<UserStatsDao> getStats(String username) {
+        long readGeneration;
+        lock.lock();
+        try {
+            var cached = cache.get(username);
+            if (cached != null) {
+                cacheHits.increment();
+                return Optional.of(cached);
+            }
+            readGeneration = generation;
+        } finally {
+            lock.unlock();
+        }
+
+        cacheMisses.increment();
+        var stats = userStatsRepository.findById(username).map(UserStatsDao::fromUserStats);
+        stats.ifPresent(dao -> {
+            lock.lock();
+            try {
+                if (generation == readGeneration) {
+                    cache.put(username, dao);
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+        return stats;
+    }
+
+    /**
+     * Adds the results to their players' statistics, within the transaction that stored them.
+     */
+    @EventListener
+    public void gameResultsSaved(GameResultsSavedEvent saved) {
+        var players = new TreeMap<String, PlayerGames>();
+        for (var result : saved.results()) {
+            players.merge(result.username(), PlayerGames.of(result), PlayerGames::plus);
+        }
+        var count = players.size();
+        var usernames = new String[count];
+        var gamesPlayed = new long[count];
+        var bestScores = new long[count];
+        var totalScores = new long[count];
+        var linesCleared = new long[count];
+        var playTimes = new long[count];
+        var lastPlayed = new LocalDateTime[count];
+        var i = 0;
+        for (var player : players.entrySet()) {
+            var games = player.getValue();
+            usernames[i] = player.getKey();
+            gamesPlayed[i] = games.gamesPlayed();
+            bestScores[i] = games.bestScore();
+            totalScores[i] = games.totalScore();
+            linesCleared[i] = games.linesCleared();
+            playTimes[i] = games.playTime();
+            lastPlayed[i] = games.lastPlayed();
+            i++;
+        }
+        userStatsRepository.recordGames(usernames, gamesPlayed, bestScores, totalScores, linesCleared, playTimes,
+                lastPlayed);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void gameResultCommitted(GameResultSavedEvent result) {
+        evict(result.username());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (backfillOnStartup && !userStatsRepository.existsAny()) {
+            backfill();
+        }
+    }
+
+    /**
+     * Recomputes the statistics of every player from the stored game results. Storing game results waits until the
+     * backfill has finished, so no result is counted twice or missed. Returns the number of players.
+     */
+    public int backfill() {
+        log.info("Computing the user statistics from the stored game results");
+        var players = Objects.requireNonNull(backfillTransaction.execute(_ -> {
+            userStatsRepository.lockGameResults();
+            return userStatsRepository.recomputeAll();
+        }));
+        lock.lock();
+        try {
+            cache.clear();
+            generation++;
+        } finally {
+            lock.unlock();
+        }
+        log.info("Computed the user statistics of {} players", players);
+        return players;
+    }
+
+    private void evict(String username) {
+        lock.lock();
+        try {
+            cache.remove(username);
+            generation++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int cached() {
+        lock.lock();
+        try {
+            return cache.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record PlayerGames(long gamesPlayed, long bestScore, long totalScore, long linesCleared, long playTime,
+                               LocalDateTime lastPlayed) {
+
+        static PlayerGames of(GameResultSavedEvent result) {
+            return new PlayerGames(1, result.score(), result.score(), result.linesCleared(), result.time(),
+                    result.dateTime());
+        }
+
+        PlayerGames plus(PlayerGames other) {
+            return new PlayerGames(gamesPlayed + other.gamesPlayed, Math.max(bestScore, other.bestScore),
+                    totalScore + other.totalScore, linesCleared + other.linesCleared, playTime + other.playTime,
+                    lastPlayed.isAfter(other.lastPlayed) ? lastPlayed : other.lastPlayed);
+        }
+    }
+}
@@ -6,6 +6,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.lang.NonNull;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface UserRepository extends JpaRepository<User, String> {
     @Transactional
     @Modifying
@@ -18,4 +21,10 @@ public interface UserRepository extends JpaRepository<User, String> {
     @Modifying
     @Query("update User u set u.enabled = ?1 where u.email = ?2")
     void updateEnabledByEmail(boolean enabled, String email);
+
+    /**
+     * The users with their authorities, read in a single query.
+     */
+    @Query("select distinct u from User u left join fetch u.authorities where u.username in ?1")
+    List<User> findAllWithAuthoritiesByUsernameIn(Collection<String> usernames);
 }
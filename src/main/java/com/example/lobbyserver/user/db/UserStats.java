@@ -0,0 +1,43 @@
+package com.example.lobbyserver.user.db;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Aggregates of all game results of a player, kept up to date whenever a result is stored.
+ */
+@Entity
+@Table(name = "user_stats")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@SuppressWarnings("unused")
+public class UserStats {
+
+    @Id
+    private String username;
+
+    @Column(nullable = false)
+    private Long gamesPlayed;
+
+    @Column(nullable = false)
+    private Long bestScore;
+
+    @Column(nullable = false)
+    private Long totalScore;
+
+    @Column(nullable = false)
+    private Long totalLinesCleared;
+
+    @Column(nullable = false)
+    private Long totalPlayTime;
+
+    @Column(nullable = false)
+    private LocalDateTime lastPlayed;
+}
@@ -0,0 +1,64 @@
+package com.example.lobbyserver.user.db;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface UserStatsRepository extends JpaRepository<UserStats, String> {
+
+    /**
+     * Adds game results to the aggregates of their players in one statement, creating them with the first results. The
+     * arrays hold one entry per player, aggregated over their new results, and must not name a player twice. The rows
+     * are locked in the order of the arrays.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            insert into user_stats (username, games_played, best_score, total_score, total_lines_cleared, total_play_time, last_played)
+            select * from unnest(cast(?1 as varchar[]), cast(?2 as bigint[]), cast(?3 as bigint[]), cast(?4 as bigint[]),
+                                 cast(?5 as bigint[]), cast(?6 as bigint[]), cast(?7 as timestamp[]))
+            on conflict (username) do update set
+                games_played = user_stats.games_played + excluded.games_played,
+                best_score = greatest(user_stats.best_score, excluded.best_score),
+                total_score = user_stats.total_score + excluded.total_score,
+                total_lines_cleared = user_stats.total_lines_cleared + excluded.total_lines_cleared,
+                total_play_time = user_stats.total_play_time + excluded.total_play_time,
+                last_played = greatest(user_stats.last_played, excluded.last_played)
+            """, nativeQuery = true)
+    int recordGames(String[] usernames, long[] gamesPlayed, long[] bestScores, long[] totalScores, long[] linesCleared,
+                    long[] playTimes, LocalDateTime[] lastPlayed);
+
+    @Query(value = "select exists (select 1 from user_stats)", nativeQuery = true)
+    boolean existsAny();
+
+    /**
+     * Blocks storing game results until the end of the transaction, so aggregates computed from the table cannot miss
+     * a result that is added meanwhile.
+     */
+    @Modifying
+    @Query(value = "lock table game_result in share mode", nativeQuery = true)
+    void lockGameResults();
+
+    /**
+     * Computes the aggregates of every player from the stored game results, replacing those already present. Returns
+     * the number of players.
+     */
+    @Modifying
+    @Query(value = """
+            insert into user_stats (username, games_played, best_score, total_score, total_lines_cleared, total_play_time, last_played)
+            select r.username, count(*), max(r.score), sum(r.score), sum(r.lines_cleared), sum(r."time"), max(r.date_time)
+            from game_result r
+            group by r.username
+            on conflict (username) do update set
+                games_played = excluded.games_played,
+                best_score = excluded.best_score,
+                total_score = excluded.total_score,
+                total_lines_cleared = excluded.total_lines_cleared,
+                total_play_time = excluded.total_play_time,
+                last_played = excluded.last_played
+            """, nativeQuery = true)
+    int recomputeAll();
+}
@@ -0,0 +1,43 @@
+package com.example.lobbyserver.agent;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.*;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AgentMessageTest {
+
+    static Stream<AgentMessage> messages() {
+        return Stream.of(
+                new AgentMessage.Hello(AgentMessage.PROTOCOL_VERSION, "game-host-1", 16, "s3cret"),
+                new AgentMessage.Launch(42L, 4),
+                new AgentMessage.Launched(42L, 65000),
+                new AgentMessage.LaunchFailed(42L, "executable not found"),
+                new AgentMessage.Stop(42L, true),
+                new AgentMessage.Exited(42L, -1)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("messages")
+    void testThatMessagesSurviveRoundTrip(AgentMessage message) throws IOException {
+        var buffer = new ByteArrayOutputStream();
+        AgentMessage.write(new DataOutputStream(buffer), message);
+
+        var read = AgentMessage.read(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+
+        assertThat(read).isEqualTo(message);
+    }
+
+    @ParameterizedTest
+    @MethodSource("messages")
+    void testThatMessagesAreCompact(AgentMessage message) throws IOException {
+        var buffer = new ByteArrayOutputStream();
+        AgentMessage.write(new DataOutputStream(buffer), message);
+
+        assertThat(buffer.size()).isLessThanOrEqualTo(32);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.agent.GameHostAgent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.BDDMockito.*;
+
+class GameHostRegistryTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    GameHostRegistry gameHostRegistry = new GameHostRegistry(meterRegistry);
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    List<GameHostAgent> agents = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(gameHostRegistry, "port", 0);
+        ReflectionTestUtils.setField(gameHostRegistry, "placement", "least-loaded");
+        ReflectionTestUtils.setField(gameHostRegistry, "secret", "s3cret");
+        gameHostRegistry.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (var agent : agents) {
+            agent.close();
+        }
+        gameHostRegistry.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testThatGameServerIsLaunchedOnAgent() {
+        connectAgent("game-host-1", 2);
+
+        var gameServer = gameHostRegistry.launch(1L, 4).orElseThrow().join();
+
+        assertThat(gameServer.host()).isEqualTo("game-host-1");
+        assertThat(gameServer.assignLobby(4).join()).isEqualTo(4001);
+        assertThat(meterRegistry.get("game.hosts.slots").tag("state", "used").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testThatLeastLoadedPlacementSpreadsGameServers() {
+        connectAgent("game-host-1", 4);
+        connectAgent("game-host-2", 4);
+
+        var first = gameHostRegistry.launch(1L, 2).orElseThrow().join();
+        var second = gameHostRegistry.launch(2L, 2).orElseThrow().join();
+
+        assertThat(first.host()).isNotEqualTo(second.host());
+    }
+
+    @Test
+    void testThatBinPackingPlacementFillsHostsFirst() {
+        ReflectionTestUtils.setField(gameHostRegistry, "placement", "bin-packing");
+        connectAgent("game-host-1", 2);
+        connectAgent("game-host-2", 2);
+
+        var first = gameHostRegistry.launch(1L, 2).orElseThrow().join();
+        var second = gameHostRegistry.launch(2L, 2).orElseThrow().join();
+        var third = gameHostRegistry.launch(3L, 2).orElseThrow().join();
+
+        assertThat(second.host()).isEqualTo(first.host());
+        assertThat(third.host()).isNotEqualTo(first.host());
+    }
+
+    @Test
+    void testThatLaunchIsNotPlacedWithoutFreeCapacity() {
+        connectAgent("game-host-1", 1);
+
+        assertThat(gameHostRegistry.launch(1L, 2)).isPresent();
+        assertThat(gameHostRegistry.launch(2L, 2)).isEmpty();
+    }
+
+    @Test
+    void testThatReleasedReservationFreesItsSlot() {
+        connectAgent("game-host-1", 1);
+
+        var reservation = gameHostRegistry.reserve().orElseThrow();
+        assertThat(gameHostRegistry.reserve()).isEmpty();
+        reservation.release();
+        reservation.release();
+
+        assertThat(meterRegistry.get("game.hosts.slots").tag("state", "used").gauge().value()).isZero();
+        assertThat(gameHostRegistry.reserve()).isPresent();
+    }
+
+    @Test
+    void testThatAgentWithWrongSecretIsRejected() {
+        var agent = new GameHostAgent("game-host-1", 1, "wrong", (_, _) -> {
+            throw new IOException("not launched");
+        });
+
+        try {
+            // returns once the registry closed the connection
+            agent.run("localhost", gameHostRegistry.port());
+        } catch (IOException _) {
+            // connection reset by the registry
+        }
+
+        assertThat(gameHostRegistry.gameHosts()).isEmpty();
+    }
+
+    @Test
+    void testThatAgentsAreNotAcceptedWithoutSecret() {
+        gameHostRegistry.stop();
+        ReflectionTestUtils.setField(gameHostRegistry, "secret", "");
+
+        assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> gameHostRegistry.start());
+    }
+
+    @Test
+    void testThatDestroyedGameServerFreesItsSlot() {
+        connectAgent("game-host-1", 1);
+        var gameServer = gameHostRegistry.launch(1L, 2).orElseThrow().join();
+        gameServer.assignLobby(2).join();
+
+        gameServer.destroy();
+
+        assertThat(gameServer.onExit().join()).isZero();
+        await(() -> gameHostRegistry.launch(2L, 2).isPresent());
+    }
+
+    @Test
+    void testThatLosingAgentTerminatesItsGameServers() throws IOException {
+        var agent = connectAgent("game-host-1", 1);
+        var gameServer = gameHostRegistry.launch(1L, 2).orElseThrow().join();
+        gameServer.assignLobby(2).join();
+
+        agent.close();
+
+        assertThat(gameServer.onExit().join()).isEqualTo(-1);
+        await(() -> gameHostRegistry.gameHosts().isEmpty());
+    }
+
+    private GameHostAgent connectAgent(String host, int capacity) {
+        var agent = new GameHostAgent(host, capacity, "s3cret", (lobbyId, _) ->
+                new GameHostAgent.StartedGameServer(fakeProcess(), 4000 + (int) lobbyId));
+        agents.add(agent);
+        var connected = gameHostRegistry.gameHosts().size() + 1;
+        executor.execute(() -> {
+            try {
+                agent.run("localhost", gameHostRegistry.port());
+            } catch (IOException _) {
+                // connection closed by the test
+            }
+        });
+        await(() -> gameHostRegistry.gameHosts().size() == connected);
+        return agent;
+    }
+
+    private static Process fakeProcess() {
+        var process = mock(Process.class);
+        var exit = new CompletableFuture<Process>();
+        given(process.onExit()).willReturn(exit);
+        given(process.exitValue()).willReturn(0);
+        willAnswer(_ -> exit.complete(process)).given(process).destroy();
+        return process;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        var deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.BDDMockito.*;
+
+class GameInstanceAdmissionTest {
+
+    HostLoadProbe hostLoadProbe = mock(HostLoadProbe.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    GameInstanceAdmission admission = new GameInstanceAdmission(hostLoadProbe, meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(admission, "maxInstances", 1);
+        ReflectionTestUtils.setField(admission, "queueCapacity", 2);
+        ReflectionTestUtils.setField(admission, "maxWaitMillis", 30000L);
+        ReflectionTestUtils.setField(admission, "maxCpuUtilization", 0.9);
+        ReflectionTestUtils.setField(admission, "maxLoadPerCpu", 0.0);
+        ReflectionTestUtils.setField(admission, "minAvailableMemoryMb", 256L);
+        ReflectionTestUtils.setField(admission, "retryAfterSeconds", 5L);
+        given(hostLoadProbe.sample()).willReturn(HostLoadProbe.HostLoad.NONE);
+    }
+
+    @Test
+    void testThatLaunchIsAdmittedImmediatelyWithCapacity() {
+        assertThat(admission.admit()).isCompleted();
+        assertThat(admission.activeInstances()).isEqualTo(1);
+    }
+
+    @Test
+    void testThatWaitingLaunchesAreAdmittedInOrder() {
+        var running = admission.admit().join();
+        var first = admission.admit();
+        var second = admission.admit();
+        assertThat(admission.queueDepth()).isEqualTo(2);
+
+        running.release();
+        assertThat(first).isCompleted();
+        assertThat(second).isNotCompleted();
+
+        first.join().release();
+        assertThat(second).isCompleted();
+        assertThat(meterRegistry.get("game.server.admission.wait").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void testThatReleasingTwiceFreesOnlyOneSlot() {
+        var permit = admission.admit().join();
+        permit.release();
+        permit.release();
+
+        assertThat(admission.activeInstances()).isZero();
+    }
+
+    @Test
+    void testThatRemotePermitsDoNotTakeLocalSlots() {
+        var running = admission.admit().join();
+
+        var remote = admission.admitRemote();
+        remote.release();
+
+        assertThat(admission.activeInstances()).isEqualTo(1);
+        running.release();
+        assertThat(admission.activeInstances()).isZero();
+        admission.close();
+        assertThatExceptionOfType(GameInstanceDrainingException.class)
+                .isThrownBy(() -> admission.admitRemote());
+    }
+
+    @Test
+    void testThatFullQueueRejectsWithRetryAfter() {
+        admission.admit();
+        admission.admit();
+        admission.admit();
+
+        assertThatExceptionOfType(GameInstanceAdmissionException.class)
+                .isThrownBy(() -> admission.admit())
+                .satisfies(e -> assertThat(e.getRetryAfter()).isEqualTo(Duration.ofSeconds(5)));
+        assertThat(meterRegistry.get("game.server.admission.rejections").tag("reason", "queue-full").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void testThatQueuedLaunchesTimeOut() {
+        ReflectionTestUtils.setField(admission, "maxWaitMillis", 0L);
+        admission.admit();
+        var queued = admission.admit();
+
+        admission.poll();
+
+        assertThatExceptionOfType(CompletionException.class)
+                .isThrownBy(queued::join)
+                .withCauseInstanceOf(GameInstanceAdmissionException.class);
+        assertThat(admission.queueDepth()).isZero();
+    }
+
+    @Test
+    void testThatOverloadedHostHoldsBackLaunchesUntilLoadDrops() {
+        ReflectionTestUtils.setField(admission, "maxInstances", 0);
+        given(hostLoadProbe.sample()).willReturn(new HostLoadProbe.HostLoad(0.95, 1.0, 8L << 30));
+        admission.poll();
+
+        var queued = admission.admit();
+        assertThat(admission.isHostOverloaded()).isTrue();
+        assertThat(queued).isNotCompleted();
+
+        given(hostLoadProbe.sample()).willReturn(new HostLoadProbe.HostLoad(0.5, 1.0, 8L << 30));
+        admission.poll();
+        assertThat(queued).isCompleted();
+    }
+
+    @Test
+    void testThatLowMemoryOverloadsHost() {
+        given(hostLoadProbe.sample()).willReturn(new HostLoadProbe.HostLoad(0.1, 0.1, 100L << 20));
+        admission.poll();
+
+        assertThat(admission.isHostOverloaded()).isTrue();
+    }
+
+    @Test
+    void testThatClosingRejectsQueuedAndNewLaunches() {
+        var running = admission.admit().join();
+        var queued = admission.admit();
+
+        admission.close();
+
+        assertThatExceptionOfType(CompletionException.class)
+                .isThrownBy(queued::join)
+                .withCauseInstanceOf(GameInstanceDrainingException.class);
+        assertThatExceptionOfType(GameInstanceDrainingException.class)
+                .isThrownBy(() -> admission.admit());
+
+        running.release();
+        assertThat(admission.activeInstances()).isZero();
+        assertThat(admission.queueDepth()).isZero();
+    }
+}
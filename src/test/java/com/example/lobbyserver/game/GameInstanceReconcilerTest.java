@@ -0,0 +1,164 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.lobby.db.Lobby;
+import com.example.lobbyserver.lobby.db.LobbyRepository;
+import com.example.lobbyserver.user.db.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.*;
+
+class GameInstanceReconcilerTest {
+
+    private static final User DUMMY_USER = new User("user", "password", "email", true, Set.of());
+
+    LobbyRepository lobbyRepository = mock(LobbyRepository.class);
+    GameInstanceService gameInstanceService = mock(GameInstanceService.class);
+    GameServerPool gameServerPool = mock(GameServerPool.class);
+    List<ProcessHandle> children = new ArrayList<>();
+    List<Process> spawned = new ArrayList<>();
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    GameInstanceReconciler reconciler = new GameInstanceReconciler(lobbyRepository, gameInstanceService, gameServerPool,
+            () -> children.stream(), meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(reconciler, "batchSize", 2);
+        ReflectionTestUtils.setField(reconciler, "gameServerExecutable", "");
+        given(gameInstanceService.snapshot()).willReturn(List.of());
+        given(lobbyRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class))).willReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        spawned.forEach(Process::destroyForcibly);
+    }
+
+    @Test
+    void testThatLobbyWithoutGameInstanceIsDeletedOnSecondSighting() {
+        var dead = lobby(3L, false);
+        givenLobbies(lobby(1L, false), lobby(2L, true), dead);
+        given(gameInstanceService.snapshot()).willReturn(List.of(instance(1L, GameInstanceState.READY),
+                instance(2L, GameInstanceState.RUNNING)));
+
+        var first = reconciler.reconcileOnce();
+        verify(lobbyRepository, never()).delete(any());
+        var second = reconciler.reconcileOnce();
+
+        assertThat(first.lobbiesScanned()).isEqualTo(3);
+        assertThat(second.deletedLobbies()).isEqualTo(1);
+        verify(lobbyRepository).delete(dead);
+        verify(lobbyRepository, times(2)).findByIdGreaterThanOrderByIdAsc(2L, Limit.of(2));
+        assertThat(meterRegistry.get("game.reconciler.repairs").tag("kind", "lobby").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testThatOpenLobbyOfCrashedGameServerIsDeleted() {
+        var crashed = lobby(1L, false);
+        givenLobbies(crashed, lobby(2L, true));
+        given(gameInstanceService.snapshot()).willReturn(List.of(instance(1L, GameInstanceState.TERMINATED),
+                instance(2L, GameInstanceState.TERMINATED)));
+
+        reconciler.reconcileOnce();
+        var report = reconciler.reconcileOnce();
+
+        assertThat(report.deletedLobbies()).isEqualTo(1);
+        verify(lobbyRepository).delete(crashed);
+        verify(gameInstanceService).abandon(1L);
+    }
+
+    @Test
+    void testThatLobbyThatRecoveredIsNotDeleted() {
+        var lobby = lobby(1L, false);
+        givenLobbies(lobby);
+
+        reconciler.reconcileOnce();
+        given(gameInstanceService.snapshot()).willReturn(List.of(instance(1L, GameInstanceState.READY)));
+        var report = reconciler.reconcileOnce();
+
+        assertThat(report.repairs()).isZero();
+        verify(lobbyRepository, never()).delete(any());
+    }
+
+    @Test
+    void testThatGameInstanceWithoutLobbyIsAbandoned() {
+        given(gameInstanceService.snapshot()).willReturn(List.of(instance(7L, GameInstanceState.RUNNING),
+                instance(8L, GameInstanceState.TERMINATED)));
+
+        assertThat(reconciler.reconcileOnce().abandonedInstances()).isZero();
+        assertThat(meterRegistry.get("game.reconciler.suspects").tag("kind", "instance").gauge().value()).isEqualTo(1.0);
+        assertThat(reconciler.reconcileOnce().abandonedInstances()).isEqualTo(1);
+
+        verify(gameInstanceService).abandon(7L);
+        verify(gameInstanceService, never()).abandon(8L);
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void testThatOrphanedGameServerProcessIsDestroyed() throws IOException {
+        ReflectionTestUtils.setField(reconciler, "gameServerExecutable", "/usr/local/bin/sleep");
+        var orphan = spawn();
+        var pooled = spawn();
+        children.add(orphan.toHandle());
+        children.add(pooled.toHandle());
+        given(gameServerPool.idleProcesses()).willReturn(List.of(pooled.toHandle()));
+
+        assertThat(reconciler.reconcileOnce().killedProcesses()).isZero();
+        assertThat(reconciler.reconcileOnce().killedProcesses()).isEqualTo(1);
+
+        assertThat(orphan.onExit()).succeedsWithin(Duration.ofSeconds(5));
+        assertThat(pooled.isAlive()).isTrue();
+    }
+
+    @Test
+    void testThatOtherChildProcessesAreLeftAlone() {
+        ReflectionTestUtils.setField(reconciler, "gameServerExecutable", "server.exe");
+        var other = mock(ProcessHandle.class, RETURNS_DEEP_STUBS);
+        given(other.info().command()).willReturn(Optional.of("/usr/bin/docker"));
+        children.add(other);
+
+        reconciler.reconcileOnce();
+        reconciler.reconcileOnce();
+
+        verify(other, never()).destroy();
+    }
+
+    private Process spawn() throws IOException {
+        var process = new ProcessBuilder("sleep", "30").start();
+        spawned.add(process);
+        return process;
+    }
+
+    private void givenLobbies(Lobby... lobbies) {
+        var all = List.of(lobbies);
+        given(lobbyRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class))).willAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            Limit limit = invocation.getArgument(1);
+            return all.stream().filter(lobby -> lobby.getId() > after).limit(limit.max()).toList();
+        });
+    }
+
+    private static GameInstance instance(long lobbyId, GameInstanceState state) {
+        return new GameInstance(lobbyId, 2, state, (_, _, _) -> {
+        });
+    }
+
+    private static Lobby lobby(long id, boolean started) {
+        return new Lobby(id, "Lobby " + id, 2, 4, DUMMY_USER, Set.of(DUMMY_USER), "localhost", 9999, started, null);
+    }
+}
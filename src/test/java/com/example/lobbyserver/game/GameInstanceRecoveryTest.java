@@ -0,0 +1,116 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.game.db.GameInstanceRecord;
+import com.example.lobbyserver.game.db.GameInstanceRecordRepository;
+import com.example.lobbyserver.lobby.db.Lobby;
+import com.example.lobbyserver.lobby.db.LobbyRepository;
+import com.example.lobbyserver.user.db.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.*;
+
+class GameInstanceRecoveryTest {
+
+    private static final User DUMMY_USER = new User("user", "password", "email", true, Set.of());
+    private static final int PORT = 9999;
+
+    GameInstanceRecordRepository gameInstanceRecordRepository = mock(GameInstanceRecordRepository.class);
+    LobbyRepository lobbyRepository = mock(LobbyRepository.class);
+    GameInstanceRecovery gameInstanceRecovery = new GameInstanceRecovery(gameInstanceRecordRepository, lobbyRepository);
+
+    @Test
+    void testThatLiveGameServerIsAdopted() {
+        var current = ProcessHandle.current();
+        var lobby = lobby(1L, true);
+        given(gameInstanceRecordRepository.findAll()).willReturn(List.of(
+                record(1L, current.pid(), current.info().startInstant().orElse(null))));
+        given(lobbyRepository.findById(1L)).willReturn(Optional.of(lobby));
+        given(lobbyRepository.findAll()).willReturn(List.of(lobby));
+
+        var adopted = gameInstanceRecovery.recover();
+
+        assertThat(adopted).singleElement().satisfies(instance -> {
+            assertThat(instance.lobbyId()).isEqualTo(1L);
+            assertThat(instance.playersRemaining()).isEqualTo(2);
+            assertThat(instance.started()).isTrue();
+            assertThat(instance.gameServer().localProcess()).contains(current);
+        });
+        verify(lobbyRepository, never()).delete(any());
+        verify(gameInstanceRecordRepository, never()).delete(any());
+    }
+
+    @Test
+    void testThatExitedGameServerIsCleanedUp() throws Exception {
+        var exited = new ProcessBuilder(ProcessHandle.current().info().command().orElse("java"), "-version").start();
+        exited.waitFor(10, TimeUnit.SECONDS);
+        var record = record(1L, exited.pid(), null);
+        var lobby = lobby(1L, false);
+        given(gameInstanceRecordRepository.findAll()).willReturn(List.of(record));
+        given(lobbyRepository.findById(1L)).willReturn(Optional.of(lobby));
+
+        assertThat(gameInstanceRecovery.recover()).isEmpty();
+
+        verify(gameInstanceRecordRepository).delete(record);
+        verify(lobbyRepository).delete(lobby);
+    }
+
+    @Test
+    void testThatReusedPidIsNotAdopted() {
+        var current = ProcessHandle.current();
+        var record = record(1L, current.pid(), Instant.EPOCH);
+        given(gameInstanceRecordRepository.findAll()).willReturn(List.of(record));
+        given(lobbyRepository.findById(1L)).willReturn(Optional.of(lobby(1L, false)));
+
+        // our own process must not be destroyed as it does not match the recorded start time
+        assertThat(gameInstanceRecovery.recover()).isEmpty();
+        verify(gameInstanceRecordRepository).delete(record);
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void testThatGameServerWithoutLobbyIsDestroyed() throws IOException, InterruptedException {
+        var orphan = new ProcessBuilder("sleep", "30").start();
+        try {
+            var record = record(1L, orphan.pid(), orphan.toHandle().info().startInstant().orElse(null));
+            given(gameInstanceRecordRepository.findAll()).willReturn(List.of(record));
+            given(lobbyRepository.findById(1L)).willReturn(Optional.empty());
+
+            assertThat(gameInstanceRecovery.recover()).isEmpty();
+
+            assertThat(orphan.waitFor(5, TimeUnit.SECONDS)).isTrue();
+            verify(gameInstanceRecordRepository).delete(record);
+        } finally {
+            orphan.destroyForcibly();
+        }
+    }
+
+    @Test
+    void testThatLobbiesWithoutTrackedGameServerAreDeleted() {
+        var lobby = lobby(2L, false);
+        given(gameInstanceRecordRepository.findAll()).willReturn(List.of());
+        given(lobbyRepository.findAll()).willReturn(List.of(lobby));
+
+        gameInstanceRecovery.recover();
+
+        verify(lobbyRepository).delete(lobby);
+    }
+
+    private static GameInstanceRecord record(long lobbyId, Long pid, Instant processStart) {
+        return new GameInstanceRecord(lobbyId, pid, processStart, "localhost", PORT, 2, LocalDateTime.now());
+    }
+
+    private static Lobby lobby(long id, boolean started) {
+        return new Lobby(id, "Lobby " + id, 2, 4, DUMMY_USER, Set.of(DUMMY_USER), "localhost", PORT, started, null);
+    }
+}
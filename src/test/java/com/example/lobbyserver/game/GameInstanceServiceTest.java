@@ -1,6 +1,9 @@
 package com.example.lobbyserver.game;
 
+import com.example.lobbyserver.agent.GameHostAgent;
 import com.example.lobbyserver.lobby.db.LobbyRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -14,17 +17,23 @@ import org.springframework.context.annotation.Import;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.BDDMockito.*;
 
-@SpringBootTest(classes = GameInstanceService.class)
-@Import(TaskExecutionAutoConfiguration.class)
+@SpringBootTest(classes = {GameInstanceService.class, ProcessGameServerLauncher.class, GameServerPool.class, MultiMatchPacker.class, GameProcessSupervisor.class, GameProcessTelemetry.class, GameHostRegistry.class, GameInstanceAdmission.class, HandshakeListener.class, PortAllocator.class, GameProcessPlacement.class})
+@Import({TaskExecutionAutoConfiguration.class, SimpleMeterRegistry.class})
 @ExtendWith(OutputCaptureExtension.class)
 @ActiveProfiles("test")
 class GameInstanceServiceTest {
@@ -32,13 +41,27 @@ class GameInstanceServiceTest {
     @Autowired
     GameInstanceService gameInstanceService;
 
+    @Autowired
+    GameServerLauncher gameServerLauncher;
+
+    @Autowired
+    GameHostRegistry gameHostRegistry;
+
+    @Autowired
+    GameInstanceAdmission gameInstanceAdmission;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
     @MockitoBean
-    @SuppressWarnings("unused")
     LobbyRepository lobbyRepository;
 
     @MockitoBean
     ServerLogsService serverLogsService;
 
+    @MockitoBean
+    GameInstanceRecovery gameInstanceRecovery;
+
     File tempFile;
 
     @BeforeEach
@@ -47,6 +70,8 @@ class GameInstanceServiceTest {
         tempFile.deleteOnExit();
         given(serverLogsService.createLogFileForLobby(anyLong()))
                 .willReturn(tempFile);
+        given(lobbyRepository.updateGameServerHostAndGameServerPortById(anyString(), anyInt(), anyLong()))
+                .willReturn(1);
     }
 
     @Test
@@ -58,7 +83,7 @@ class GameInstanceServiceTest {
     @Tag("CI-skip")
     @DirtiesContext
     void testThatStartNewGameInstanceGeneratesCorrectOutput(CapturedOutput output) {
-        gameInstanceService.startNewGameInstance(1, 2);
+        gameInstanceService.launchGameInstance(1, 2).join();
 
         assertThat(output).contains("Game server connected for lobby 1");
         assertThat(output).containsPattern("Game server port for lobby 1 is *");
@@ -68,7 +93,7 @@ class GameInstanceServiceTest {
     @Tag("CI-skip")
     @DirtiesContext
     void testThatStartingTheSameGameTwiceThrowsException() {
-        gameInstanceService.startNewGameInstance(1, 2);
+        gameInstanceService.launchGameInstance(1, 2).join();
 
         assertThatExceptionOfType(IllegalStateException.class)
                 .isThrownBy(() -> gameInstanceService.startNewGameInstance(1, 2))
@@ -82,11 +107,28 @@ class GameInstanceServiceTest {
                 .withMessage("Game instance for lobby 1 does not exist");
     }
 
+    @Test
+    @DirtiesContext
+    void testThatFailedLaunchIsCleanedUp() {
+        ReflectionTestUtils.setField(gameServerLauncher, "gameServerExecutable", "does-not-exist.exe");
+
+        assertThatExceptionOfType(CompletionException.class)
+                .isThrownBy(() -> gameInstanceService.launchGameInstance(1, 2).join());
+
+        assertThat(gameInstanceService.getInstanceCountsByState()).allSatisfy((_, count) -> assertThat(count).isZero());
+        assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> gameInstanceService.playerLeftGame(1L))
+                .withMessage("Game instance for lobby 1 does not exist");
+        verify(gameInstanceRecovery, timeout(5000)).forget(1L);
+        assertThat(meterRegistry.get("game.instances.state.duration").tag("state", "STARTING").tag("next", "FAILED")
+                .timer().count()).isEqualTo(1);
+    }
+
     @Test
     @Tag("CI-skip")
     @DirtiesContext
     void testThatLeavingGameWorks(CapturedOutput output) {
-        gameInstanceService.startNewGameInstance(1, 3);
+        gameInstanceService.launchGameInstance(1, 3).join();
 
         var remaining = gameInstanceService.playerLeftGame(1L);
         assertThat(remaining).isEqualTo(2);
@@ -98,5 +140,83 @@ class GameInstanceServiceTest {
         assertThat(remaining).isZero();
 
         assertThat(output).contains("All players left the game 1, shutting down server");
+        assertThat(gameInstanceService.getInstanceCountsByState().get(GameInstanceState.DRAINING)).isEqualTo(1L);
+    }
+
+    @Test
+    @DirtiesContext
+    void testThatLaunchWaitsForTheLobbyToBeCommitted() throws IOException {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            gameInstanceService.startNewGameInstance(1, 2);
+
+            assertThat(gameInstanceService.getInstanceCountsByState().get(GameInstanceState.QUEUED)).isEqualTo(1L);
+            verify(serverLogsService, never()).createLogFileForLobby(anyLong());
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(gameInstanceService.getInstanceCountsByState()).allSatisfy((_, count) -> assertThat(count).isZero());
+        verify(serverLogsService, never()).createLogFileForLobby(anyLong());
+    }
+
+    @Test
+    @DirtiesContext
+    void testThatGameServerOnAgentSkipsLocalAdmission() {
+        ReflectionTestUtils.setField(gameHostRegistry, "port", 0);
+        ReflectionTestUtils.setField(gameHostRegistry, "secret", "s3cret");
+        gameHostRegistry.start();
+        var process = mock(Process.class);
+        given(process.onExit()).willReturn(new CompletableFuture<>());
+        var agent = new GameHostAgent("game-host-1", 1, "s3cret", (lobbyId, _) ->
+                new GameHostAgent.StartedGameServer(process, 4000 + (int) lobbyId));
+        Thread.ofVirtual().start(() -> {
+            try {
+                agent.run("localhost", gameHostRegistry.port());
+            } catch (IOException _) {
+                // closed with the context
+            }
+        });
+        var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (gameHostRegistry.gameHosts().isEmpty() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        ReflectionTestUtils.setField(gameInstanceAdmission, "maxInstances", 1);
+        ReflectionTestUtils.setField(gameInstanceAdmission, "queueCapacity", 0);
+        gameInstanceAdmission.admit();
+
+        gameInstanceService.launchGameInstance(1, 2).join();
+
+        verify(lobbyRepository).updateGameServerHostAndGameServerPortById("game-host-1", 4001, 1L);
+        assertThat(gameInstanceAdmission.activeInstances()).isEqualTo(1);
+        assertThatExceptionOfType(GameInstanceAdmissionException.class)
+                .isThrownBy(() -> gameInstanceService.startNewGameInstance(2, 2));
+    }
+
+    @Test
+    @DirtiesContext
+    void testThatDrainingRejectsNewGameInstances() {
+        var drain = gameInstanceService.drain(Duration.ofMinutes(10));
+
+        assertThat(drain.completion()).succeedsWithin(Duration.ofSeconds(5));
+        assertThatExceptionOfType(GameInstanceDrainingException.class)
+                .isThrownBy(() -> gameInstanceService.startNewGameInstance(1, 2));
+        assertThat(gameInstanceService.getInstanceCountsByState()).allSatisfy((_, count) -> assertThat(count).isZero());
+    }
+
+    @Test
+    @DirtiesContext
+    void testThatDrainingAgainOnlyShortensTheDeadline() {
+        var drain = gameInstanceService.drain(Duration.ofMinutes(10));
+        var deadline = drain.deadline();
+
+        assertThat(gameInstanceService.drain(Duration.ofMinutes(20))).isSameAs(drain);
+        assertThat(drain.deadline()).isEqualTo(deadline);
+
+        gameInstanceService.drain(Duration.ofMinutes(1));
+        assertThat(drain.deadline()).isBefore(deadline);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package com.example.lobbyserver.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.lobbyserver.game.GameInstanceState.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class GameInstanceTest {
+
+    List<String> transitions = new ArrayList<>();
+    GameInstance gameInstance = new GameInstance(1L, 2, (from, to, _) -> transitions.add(from + "->" + to));
+
+    @Test
+    void testThatNewInstanceIsQueued() {
+        assertThat(gameInstance.state()).isEqualTo(QUEUED);
+        assertThat(gameInstance.playersRemaining()).isEqualTo(2);
+    }
+
+    @Test
+    void testThatHappyPathTransitionsAreReported() {
+        assertThat(gameInstance.transition(QUEUED, STARTING)).isTrue();
+        assertThat(gameInstance.transition(STARTING, HANDSHAKING)).isTrue();
+        assertThat(gameInstance.transition(HANDSHAKING, READY)).isTrue();
+        assertThat(gameInstance.transition(READY, RUNNING)).isTrue();
+        assertThat(gameInstance.transition(RUNNING, DRAINING)).isTrue();
+        assertThat(gameInstance.transitionTo(TERMINATED)).isTrue();
+
+        assertThat(gameInstance.state()).isEqualTo(TERMINATED);
+        assertThat(transitions).containsExactly(
+                "QUEUED->STARTING", "STARTING->HANDSHAKING", "HANDSHAKING->READY", "READY->RUNNING", "RUNNING->DRAINING", "DRAINING->TERMINATED");
+    }
+
+    @Test
+    void testThatTransitionFromUnexpectedStateIsRejected() {
+        assertThat(gameInstance.transition(HANDSHAKING, READY)).isFalse();
+        assertThat(gameInstance.state()).isEqualTo(QUEUED);
+        assertThat(transitions).isEmpty();
+    }
+
+    @Test
+    void testThatInvalidTransitionThrowsException() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> gameInstance.transition(QUEUED, RUNNING))
+                .withMessage("Invalid game instance transition QUEUED -> RUNNING");
+    }
+
+    @Test
+    void testThatTerminalStatesCannotBeLeft() {
+        assertThat(gameInstance.transitionTo(FAILED)).isTrue();
+
+        assertThat(gameInstance.transitionTo(TERMINATED)).isFalse();
+        assertThat(gameInstance.transitionTo(HANDSHAKING)).isFalse();
+        assertThat(gameInstance.state()).isEqualTo(FAILED);
+    }
+
+    @Test
+    void testThatProcessExitBeforeReadyCannotTerminate() {
+        gameInstance.transition(QUEUED, STARTING);
+        gameInstance.transition(STARTING, HANDSHAKING);
+
+        assertThat(gameInstance.transitionTo(TERMINATED)).isFalse();
+        assertThat(gameInstance.transitionTo(FAILED)).isTrue();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class GameProcessPlacementTest {
+
+    private static final List<String> COMMAND = List.of("/opt/server.exe", "-port", "4000");
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    GameProcessPlacement placement = new GameProcessPlacement(_ -> true, meterRegistry);
+
+    @Test
+    void testThatCommandIsUnchangedWithoutConfiguration() {
+        configure("", 1);
+
+        var placed = placement.place(COMMAND);
+
+        assertThat(placed.command()).isEqualTo(COMMAND);
+        assertThat(placed.cpuSet()).isNull();
+    }
+
+    @Test
+    void testThatGameServersArePinnedRoundRobinToTheLeastUsedCpuSet() {
+        configure("2-5", 2);
+
+        var first = placement.place(COMMAND);
+        var second = placement.place(COMMAND);
+        var third = placement.place(COMMAND);
+        placement.release(second);
+        var fourth = placement.place(COMMAND);
+
+        assertThat(placement.cpuSets()).containsExactly("2,3", "4,5");
+        assertThat(first.command()).startsWith("taskset", "--cpu-list", "2,3").endsWith(COMMAND.toArray(String[]::new));
+        assertThat(second.cpuSet()).isEqualTo("4,5");
+        assertThat(third.cpuSet()).isEqualTo("2,3");
+        assertThat(fourth.cpuSet()).isEqualTo("4,5");
+        assertThat(meterRegistry.get("game.server.placement.instances").tag("cpus", "2,3").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    void testThatLimitsAndNiceLevelWrapTheCommand() {
+        ReflectionTestUtils.setField(placement, "memoryBytes", 1073741824L);
+        ReflectionTestUtils.setField(placement, "openFiles", 1024L);
+        ReflectionTestUtils.setField(placement, "nice", 5);
+        configure("1", 1);
+
+        var placed = placement.place(COMMAND);
+
+        assertThat(placed.command()).containsExactly("taskset", "--cpu-list", "1",
+                "prlimit", "--as=1073741824", "--nofile=1024",
+                "nice", "-n", "5",
+                "/opt/server.exe", "-port", "4000");
+    }
+
+    @Test
+    void testThatMissingToolsAreSkipped() {
+        placement = new GameProcessPlacement(tool -> !tool.equals(GameProcessPlacement.TASKSET), meterRegistry);
+        ReflectionTestUtils.setField(placement, "nice", 10);
+        configure("0-3", 1);
+
+        var placed = placement.place(COMMAND);
+
+        assertThat(placed.cpuSet()).isNull();
+        assertThat(placed.command()).containsExactly("nice", "-n", "10", "/opt/server.exe", "-port", "4000");
+    }
+
+    @Test
+    void testThatCpuListsAreParsed() {
+        assertThat(GameProcessPlacement.parseCpuList(" 0, 2-4 ,7")).containsExactly(0, 2, 3, 4, 7);
+        assertThat(GameProcessPlacement.parseCpuList("")).isEmpty();
+        assertThatIllegalStateException().isThrownBy(() -> GameProcessPlacement.parseCpuList("4-2"));
+        assertThatIllegalStateException().isThrownBy(() -> GameProcessPlacement.parseCpuList("a-b"));
+    }
+
+    private void configure(String cpus, int cpusPerInstance) {
+        ReflectionTestUtils.setField(placement, "cpus", cpus);
+        ReflectionTestUtils.setField(placement, "cpusPerInstance", cpusPerInstance);
+        placement.init();
+    }
+}
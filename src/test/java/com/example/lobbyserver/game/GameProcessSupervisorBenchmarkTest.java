@@ -0,0 +1,161 @@
+package com.example.lobbyserver.game;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares the thread and memory cost of running game servers end to end: {@link SimulatedGameServer}s launched
+ * through the {@link SimulatedGameServerLauncher} and its handshake, supervised either with one parked thread per game
+ * server (the previous {@code waitFor()} approach) or with {@link GameProcessSupervisor}. Every game server holds three
+ * file descriptors while it waits for its lobby, so sizes that do not fit in {@code ulimit -n} are skipped. Run with
+ * {@code ./mvnw test -Dgroups=benchmark -Dtest=GameProcessSupervisorBenchmarkTest}.
+ */
+@Tag("benchmark")
+class GameProcessSupervisorBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(GameProcessSupervisorBenchmarkTest.class);
+    private static final int FILE_DESCRIPTORS_PER_INSTANCE = 3;
+
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    HandshakeListener handshakeListener = new HandshakeListener(executor, new PortAllocator(new SimpleMeterRegistry()), new SimpleMeterRegistry());
+    SimulatedGameServerLauncher launcher = new SimulatedGameServerLauncher(handshakeListener, new PortAllocator(new SimpleMeterRegistry()));
+    List<CompletableFuture<ConnectedGameServer>> launches = new ArrayList<>();
+    File logFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        logFile = Files.createTempFile("simulated-game-server", ".log").toFile();
+        logFile.deleteOnExit();
+        ReflectionTestUtils.setField(handshakeListener, "timeoutMillis", 60000L);
+        ReflectionTestUtils.setField(handshakeListener, "sharedEndpoint", true);
+        ReflectionTestUtils.setField(launcher, "gameServerInstanceHost", "localhost");
+        handshakeListener.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        launches.forEach(launch -> launch.thenAccept(ConnectedGameServer::destroy));
+        handshakeListener.stop();
+        executor.shutdownNow();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1_000, 5_000, 10_000})
+    void benchmarkThreadPerInstance(int instances) throws InterruptedException {
+        assumeFileDescriptorsFor(instances);
+        var before = Snapshot.take();
+        var gameServers = launch(instances);
+        var launched = Snapshot.take();
+        var threads = new ArrayList<Thread>(instances);
+        for (var gameServer : gameServers) {
+            threads.add(Thread.ofPlatform().start(() -> gameServer.onExit().join()));
+        }
+        var during = Snapshot.take();
+
+        gameServers.forEach(ConnectedGameServer::destroy);
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        log.info("thread-per-instance {} instances: {} in total, {} for supervision", instances,
+                during.minus(before), during.minus(launched));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1_000, 5_000, 10_000})
+    void benchmarkSupervisor(int instances) {
+        assumeFileDescriptorsFor(instances);
+        var supervisor = new GameProcessSupervisor(new SimpleMeterRegistry());
+
+        var before = Snapshot.take();
+        var gameServers = launch(instances);
+        var launched = Snapshot.take();
+        for (var gameServer : gameServers) {
+            supervisor.supervise(gameServer.onExit(), _ -> {
+            });
+        }
+        var during = Snapshot.take();
+
+        var allExited = supervisor.awaitAll();
+        gameServers.forEach(ConnectedGameServer::destroy);
+
+        log.info("supervisor {} instances: {} in total, {} for supervision", instances,
+                during.minus(before), during.minus(launched));
+        assertThat(allExited).succeedsWithin(Duration.ofMinutes(1));
+        assertThat(during.threads - launched.threads).isLessThan(10);
+    }
+
+    private List<ConnectedGameServer> launch(int instances) {
+        for (int i = 0; i < instances; i++) {
+            launches.add(launcher.launch(logFile));
+        }
+        return launches.stream().map(CompletableFuture::join).toList();
+    }
+
+    private static void assumeFileDescriptorsFor(int instances) {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof UnixOperatingSystemMXBean os) {
+            var free = os.getMaxFileDescriptorCount() - os.getOpenFileDescriptorCount();
+            assumeTrue(free > (long) instances * FILE_DESCRIPTORS_PER_INSTANCE,
+                    () -> instances + " game servers need more than " + free + " free file descriptors");
+        }
+    }
+
+    private record Snapshot(int threads, long heapBytes, long residentBytes, long fileDescriptors) {
+
+        static Snapshot take() {
+            System.gc();
+            var heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            var fileDescriptors = ManagementFactory.getOperatingSystemMXBean() instanceof UnixOperatingSystemMXBean os
+                    ? os.getOpenFileDescriptorCount()
+                    : 0L;
+            return new Snapshot(ManagementFactory.getThreadMXBean().getThreadCount(), heap, readResidentBytes(),
+                    fileDescriptors);
+        }
+
+        // thread stacks live outside the heap, so the resident set size is the more telling number on Linux
+        private static long readResidentBytes() {
+            try (var lines = Files.lines(Path.of("/proc/self/status"))) {
+                return lines.filter(line -> line.startsWith("VmRSS:"))
+                        .map(line -> Long.parseLong(line.replaceAll("\\D", "")) * 1024)
+                        .findFirst()
+                        .orElse(0L);
+            } catch (IOException _) {
+                return 0L;
+            }
+        }
+
+        Snapshot minus(Snapshot other) {
+            return new Snapshot(threads - other.threads, heapBytes - other.heapBytes, residentBytes - other.residentBytes,
+                    fileDescriptors - other.fileDescriptors);
+        }
+
+        @Override
+        public String toString() {
+            return "%+d threads, %+d KiB heap, %+d KiB resident, %+d file descriptors"
+                    .formatted(threads, heapBytes / 1024, residentBytes / 1024, fileDescriptors);
+        }
+    }
+}
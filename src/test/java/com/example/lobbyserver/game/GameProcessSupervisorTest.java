@@ -0,0 +1,67 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GameProcessSupervisorTest {
+
+    GameProcessSupervisor supervisor = new GameProcessSupervisor(new SimpleMeterRegistry());
+
+    @Test
+    void testThatExitHandlerRunsWhenInstanceExits() {
+        var exit = new CompletableFuture<Integer>();
+        var exitCode = new AtomicInteger(-1);
+
+        supervisor.supervise(exit, exitCode::set);
+        assertThat(supervisor.supervisedCount()).isEqualTo(1);
+
+        exit.complete(3);
+        assertThat(exitCode).hasValue(3);
+        assertThat(supervisor.supervisedCount()).isZero();
+    }
+
+    @Test
+    void testThatAlreadyExitedInstancesAreNotTracked() {
+        supervisor.supervise(CompletableFuture.completedFuture(0), _ -> {
+        });
+
+        assertThat(supervisor.supervisedCount()).isZero();
+        assertThat(supervisor.awaitAll()).isDone();
+    }
+
+    @Test
+    void testThatAwaitAllCompletesAfterAllInstancesExited() {
+        var first = new CompletableFuture<Integer>();
+        var second = new CompletableFuture<Integer>();
+        supervisor.supervise(first, _ -> {
+        });
+        supervisor.supervise(second, _ -> {
+        });
+
+        var allExited = supervisor.awaitAll();
+        first.complete(0);
+        assertThat(allExited).isNotDone();
+
+        second.complete(0);
+        assertThat(allExited).isDone();
+    }
+
+    @Test
+    void testThatFailingExitHandlerStillReleasesInstance() {
+        var exit = new CompletableFuture<Integer>();
+        supervisor.supervise(exit, _ -> {
+            throw new IllegalStateException("handler failed");
+        });
+
+        var allExited = supervisor.awaitAll();
+        exit.complete(0);
+
+        assertThat(allExited).isDone();
+        assertThat(supervisor.supervisedCount()).isZero();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GameProcessTelemetryTest {
+
+    private static final ProcessHandle PROCESS = ProcessHandle.current();
+
+    @TempDir
+    Path procRoot;
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    GameProcessTelemetry telemetry;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        telemetry = new GameProcessTelemetry(procRoot, meterRegistry);
+        ReflectionTestUtils.setField(telemetry, "recentExitsCapacity", 100);
+        Files.createDirectories(procRoot.resolve(Long.toString(PROCESS.pid())).resolve("fd"));
+        writeProcess(2048, 4, 3);
+    }
+
+    @Test
+    void testThatTrackedProcessIsSampled() {
+        telemetry.track(1L, PROCESS);
+
+        assertThat(telemetry.sample(1L)).hasValueSatisfying(sample -> {
+            assertThat(sample.pid()).isEqualTo(PROCESS.pid());
+            assertThat(sample.rssBytes()).isEqualTo(2048 * 1024);
+            assertThat(sample.threads()).isEqualTo(4);
+            assertThat(sample.openFiles()).isEqualTo(3);
+        });
+        assertThat(meterRegistry.get("game.server.process.memory.rss").gauge().value()).isEqualTo(2048 * 1024);
+        assertThat(meterRegistry.get("game.server.process.threads").gauge().value()).isEqualTo(4);
+    }
+
+    @Test
+    void testThatExitRecordsPeaksAndExitCode() throws IOException {
+        telemetry.track(1L, PROCESS);
+        writeProcess(8192, 9, 5);
+        telemetry.sample();
+        writeProcess(1024, 2, 1);
+        telemetry.sample();
+
+        telemetry.exited(1L, 137);
+
+        assertThat(telemetry.samples()).isEmpty();
+        assertThat(telemetry.recentExits()).singleElement().satisfies(exit -> {
+            assertThat(exit.exitCode()).isEqualTo(137);
+            assertThat(exit.peakRssBytes()).isEqualTo(8192 * 1024);
+            assertThat(exit.peakThreads()).isEqualTo(9);
+            assertThat(exit.peakOpenFiles()).isEqualTo(5);
+        });
+        assertThat(meterRegistry.get("game.server.process.peak.memory.rss").summary().max()).isEqualTo(8192 * 1024);
+        assertThat(meterRegistry.get("game.server.process.exits").tag("exit.code", "137").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testThatPeaksOfGameServerWithSeveralLobbiesAreRecordedOnce() throws IOException {
+        telemetry.track(1L, PROCESS);
+        telemetry.track(2L, PROCESS);
+        writeProcess(8192, 9, 5);
+        telemetry.sample();
+
+        telemetry.exited(1L, 0);
+        assertThat(meterRegistry.get("game.server.process.peak.memory.rss").summary().count()).isZero();
+        assertThat(meterRegistry.get("game.server.process.memory.rss").gauge().value()).isEqualTo(8192 * 1024);
+
+        telemetry.exited(2L, 0);
+
+        var peakRss = meterRegistry.get("game.server.process.peak.memory.rss").summary();
+        assertThat(peakRss.count()).isEqualTo(1);
+        assertThat(peakRss.max()).isEqualTo(8192 * 1024);
+        assertThat(meterRegistry.get("game.server.process.exits").tag("exit.code", "0").counter().count()).isEqualTo(1.0);
+        assertThat(telemetry.recentExits()).extracting(GameProcessTelemetry.Exit::peakThreads).containsExactly(9, 9);
+    }
+
+    @Test
+    void testThatPerLobbyGaugesAreRemovedOnExit() {
+        ReflectionTestUtils.setField(telemetry, "perLobbyMetrics", true);
+        telemetry.track(1L, PROCESS);
+        assertThat(meterRegistry.get("game.server.lobby.process.memory.rss").tag("lobby", "1").gauge().value())
+                .isEqualTo(2048 * 1024);
+
+        telemetry.exited(1L, 0);
+
+        assertThat(meterRegistry.find("game.server.lobby.process.memory.rss").gauges()).isEmpty();
+    }
+
+    @Test
+    void testThatMissingProcFilesAreReportedAsUnknown() {
+        var telemetryWithoutProc = new GameProcessTelemetry(procRoot.resolve("missing"), new SimpleMeterRegistry());
+        telemetryWithoutProc.track(1L, PROCESS);
+
+        assertThat(telemetryWithoutProc.sample(1L)).hasValueSatisfying(sample -> {
+            assertThat(sample.rssBytes()).isEqualTo(-1);
+            assertThat(sample.threads()).isEqualTo(-1);
+            assertThat(sample.openFiles()).isEqualTo(-1);
+        });
+    }
+
+    private void writeProcess(long rssKb, int threads, int openFiles) throws IOException {
+        var processDir = procRoot.resolve(Long.toString(PROCESS.pid()));
+        Files.writeString(processDir.resolve("status"), "Name:\tserver%nVmRSS:\t%d kB%nThreads:\t%d%n".formatted(rssKb, threads));
+        try (var fds = Files.list(processDir.resolve("fd"))) {
+            for (var fd : fds.toList()) {
+                Files.delete(fd);
+            }
+        }
+        for (int i = 0; i < openFiles; i++) {
+            Files.createFile(processDir.resolve("fd").resolve(Integer.toString(i)));
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.game.db.GameResult;
+import com.example.lobbyserver.game.db.GameResultRepository;
+import com.example.lobbyserver.user.db.User;
+import com.example.lobbyserver.user.db.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.*;
+
+class GameResultWriterTest {
+
+    private static final LocalDateTime DATE_TIME = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    GameResultRepository gameResultRepository = mock(GameResultRepository.class);
+    UserRepository userRepository = mock(UserRepository.class);
+    ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    GameResultWriter writer = new GameResultWriter(gameResultRepository, userRepository,
+            TransactionOperations.withoutTransaction(), eventPublisher, meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(writer, "durability", GameResultDurability.BUFFERED);
+        ReflectionTestUtils.setField(writer, "bufferCapacity", 10);
+        ReflectionTestUtils.setField(writer, "batchSize", 2);
+        ReflectionTestUtils.setField(writer, "commitTimeoutMillis", 5000L);
+        ReflectionTestUtils.setField(writer, "synchronousCommit", "off");
+        ReflectionTestUtils.setField(writer, "maxAttempts", 2);
+        writer.init();
+        writer.start();
+
+        given(userRepository.findAllWithAuthoritiesByUsernameIn(anyCollection())).willAnswer(invocation -> {
+            Collection<String> usernames = invocation.getArgument(0);
+            return usernames.stream().map(username -> new User(username, "password", "email", true, Set.of())).toList();
+        });
+    }
+
+    @Test
+    void testThatQueuedResultsAreWrittenInBatches() {
+        write("a", 100L);
+        write("b", 200L);
+        write("c", 300L);
+        verifyNoInteractions(gameResultRepository);
+        assertThat(meterRegistry.get("game.results.queued").gauge().value()).isEqualTo(3.0);
+
+        writer.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Iterable<GameResult>> batches = ArgumentCaptor.forClass(Iterable.class);
+        verify(gameResultRepository, times(2)).saveAll(batches.capture());
+        assertThat(batches.getAllValues().getFirst()).extracting(GameResult::getScore).containsExactly(100L, 200L);
+        assertThat(batches.getAllValues().getLast()).extracting(GameResult::getScore).containsExactly(300L);
+        verify(gameResultRepository, times(2)).synchronousCommit("off");
+        verify(eventPublisher).publishEvent(new GameResultSavedEvent("c", 300L, 3, 30, 60000L, DATE_TIME));
+        verify(eventPublisher).publishEvent(new GameResultsSavedEvent(List.of(
+                new GameResultSavedEvent("a", 100L, 1, 10, 60000L, DATE_TIME),
+                new GameResultSavedEvent("b", 200L, 2, 20, 60000L, DATE_TIME))));
+        assertThat(meterRegistry.get("game.results.queued").gauge().value()).isZero();
+        assertThat(meterRegistry.get("game.results.flush.size").summary().totalAmount()).isEqualTo(3.0);
+    }
+
+    @Test
+    void testThatFailedBatchIsRetriedFirst() {
+        given(gameResultRepository.saveAll(anyIterable()))
+                .willThrow(new QueryTimeoutException("timeout"))
+                .willReturn(List.of());
+        write("a", 100L);
+        write("b", 200L);
+
+        writer.flush();
+        verify(eventPublisher, never()).publishEvent(any(GameResultSavedEvent.class));
+        assertThat(meterRegistry.get("game.results.flush.failures").counter().count()).isEqualTo(1.0);
+
+        write("c", 300L);
+        writer.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Iterable<GameResult>> batches = ArgumentCaptor.forClass(Iterable.class);
+        verify(gameResultRepository, times(3)).saveAll(batches.capture());
+        assertThat(batches.getAllValues().get(1)).extracting(GameResult::getScore).containsExactly(100L, 200L);
+        assertThat(batches.getAllValues().get(2)).extracting(GameResult::getScore).containsExactly(300L);
+    }
+
+    @Test
+    void testThatBatchIsRetriedWhenNoTransactionCanBeStarted() {
+        var down = new AtomicBoolean(true);
+        var writer = new GameResultWriter(gameResultRepository, userRepository, new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                if (down.get()) {
+                    throw new CannotCreateTransactionException("connection refused");
+                }
+                return TransactionOperations.withoutTransaction().execute(action);
+            }
+        }, eventPublisher, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writer, "durability", GameResultDurability.BUFFERED);
+        ReflectionTestUtils.setField(writer, "bufferCapacity", 10);
+        ReflectionTestUtils.setField(writer, "batchSize", 2);
+        ReflectionTestUtils.setField(writer, "maxAttempts", 2);
+        writer.init();
+        writer.start();
+        writer.write("a", 100L, 1, 10, 60000L, DATE_TIME);
+
+        writer.flush();
+        verifyNoInteractions(gameResultRepository);
+        down.set(false);
+        writer.flush();
+
+        verify(gameResultRepository).saveAll(anyIterable());
+        verify(eventPublisher).publishEvent(new GameResultSavedEvent("a", 100L, 1, 10, 60000L, DATE_TIME));
+    }
+
+    @Test
+    void testThatBatchFailingRepeatedlyIsSplitAndItsBadResultGivenUp() {
+        given(gameResultRepository.saveAll(anyIterable())).willAnswer(invocation -> {
+            Iterable<GameResult> results = invocation.getArgument(0);
+            for (var result : results) {
+                if (result.getScore() == 666L) {
+                    throw new QueryTimeoutException("timeout");
+                }
+            }
+            return List.of();
+        });
+        write("a", 100L);
+        write("bad", 666L);
+        write("c", 300L);
+
+        writer.flush();
+        writer.flush();
+        verify(eventPublisher).publishEvent(new GameResultSavedEvent("a", 100L, 1, 10, 60000L, DATE_TIME));
+        verify(eventPublisher, never()).publishEvent(new GameResultSavedEvent("c", 300L, 3, 30, 60000L, DATE_TIME));
+        writer.flush();
+
+        verify(eventPublisher).publishEvent(new GameResultSavedEvent("c", 300L, 3, 30, 60000L, DATE_TIME));
+        verify(eventPublisher, never()).publishEvent(new GameResultSavedEvent("bad", 666L, 6, 66, 60000L, DATE_TIME));
+        assertThat(meterRegistry.get("game.results.dead-lettered").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("game.results.queued").gauge().value()).isZero();
+    }
+
+    @Test
+    void testThatResultsOfDeletedUsersAreDropped() {
+        given(userRepository.findAllWithAuthoritiesByUsernameIn(anyCollection())).willReturn(List.of());
+        write("gone", 100L);
+
+        writer.flush();
+
+        verify(eventPublisher, never()).publishEvent(any(GameResultSavedEvent.class));
+        assertThat(meterRegistry.get("game.results.dropped").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testThatFullBufferIsBypassed() {
+        ReflectionTestUtils.setField(writer, "bufferCapacity", 1);
+        writer.init();
+
+        write("a", 100L);
+        write("b", 200L);
+
+        verify(gameResultRepository, times(1)).saveAll(anyIterable());
+        verify(eventPublisher).publishEvent(new GameResultSavedEvent("b", 200L, 2, 20, 60000L, DATE_TIME));
+        assertThat(meterRegistry.get("game.results.overflow").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testThatSyncDurabilityWritesRightAway() {
+        ReflectionTestUtils.setField(writer, "durability", GameResultDurability.SYNC);
+
+        write("a", 100L);
+
+        verify(gameResultRepository).saveAll(anyIterable());
+        verify(gameResultRepository, never()).synchronousCommit(anyString());
+        verify(eventPublisher).publishEvent(new GameResultSavedEvent("a", 100L, 1, 10, 60000L, DATE_TIME));
+    }
+
+    @Test
+    void testThatCommittedDurabilityWaitsForTheFlush() {
+        ReflectionTestUtils.setField(writer, "durability", GameResultDurability.COMMITTED);
+
+        var written = CompletableFuture.runAsync(() -> write("a", 100L));
+        var queued = meterRegistry.get("game.results.queued").gauge();
+        var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (queued.value() == 0.0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(queued.value()).isEqualTo(1.0);
+        assertThat(written).isNotDone();
+
+        writer.flush();
+
+        assertThat(written).succeedsWithin(Duration.ofSeconds(5));
+        verify(gameResultRepository).saveAll(anyIterable());
+    }
+
+    @Test
+    void testThatCommittedDurabilityFailsWhenTheFlushIsLate() {
+        ReflectionTestUtils.setField(writer, "durability", GameResultDurability.COMMITTED);
+        ReflectionTestUtils.setField(writer, "commitTimeoutMillis", 10L);
+
+        assertThatExceptionOfType(GameResultNotStoredException.class)
+                .isThrownBy(() -> write("a", 100L));
+
+        assertThat(meterRegistry.get("game.results.queued").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testThatStopWritesTheQueuedResults() {
+        write("a", 100L);
+
+        writer.stop();
+
+        verify(gameResultRepository).saveAll(anyIterable());
+        assertThat(writer.isRunning()).isFalse();
+    }
+
+    private void write(String username, long score) {
+        writer.write(username, score, (int) score / 100, (int) score / 10, 60000L, DATE_TIME);
+    }
+}
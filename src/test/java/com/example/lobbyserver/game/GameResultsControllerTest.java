@@ -12,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -134,4 +135,34 @@ class GameResultsControllerTest {
         verify(gameResultRepository).findByUser_Username(eq("user1"), any());
         verifyNoMoreInteractions(gameResultRepository);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testThatGameResultsArePagedByCursor() throws Exception {
+        given(gameResultRepository.findNewest(Limit.of(3))).willReturn(DUMMY_RESULTS.subList(0, 3));
+        given(gameResultRepository.findOlderThan(DUMMY_DATE, 2L, Limit.of(3))).willReturn(DUMMY_RESULTS.subList(2, 4));
+        given(gameResultRepository.estimateCount()).willReturn(4L);
+
+        var next = JsonPath.read(mockMvc.perform(get("/game-results").param("cursor", "").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(2))
+                .andExpect(jsonPath("$.totalElements").doesNotExist())
+                .andReturn().getResponse().getContentAsString(), "$.next").toString();
+
+        mockMvc.perform(get("/game-results").param("cursor", next).param("size", "2").param("count", "estimate"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(2))
+                .andExpect(jsonPath("$.content[1].username").value("user3"))
+                .andExpect(jsonPath("$.next").doesNotExist())
+                .andExpect(jsonPath("$.totalElements").value(4));
+
+        verify(gameResultRepository, never()).count();
+        verify(gameResultRepository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void testThatMalformedCursorReturns400() throws Exception {
+        mockMvc.perform(get("/game-results").param("cursor", "bm90IGEgY3Vyc29y"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(gameResultRepository);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.*;
+
+class GameServerPoolTest {
+
+    GameServerLauncher gameServerLauncher = mock(GameServerLauncher.class);
+    ServerLogsService serverLogsService = mock(ServerLogsService.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    GameServerPool gameServerPool = new GameServerPool(gameServerLauncher, serverLogsService, Runnable::run, meterRegistry);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        var logFile = new File("pooled-game-server.log");
+        given(serverLogsService.createLogFileForPooledServer()).willReturn(logFile);
+        given(serverLogsService.assignLogFileToLobby(any(), anyLong())).willReturn(logFile);
+        given(gameServerLauncher.launch(any())).willAnswer(_ -> CompletableFuture.completedFuture(connectedGameServer(true)));
+    }
+
+    @Test
+    void testThatDisabledPoolNeverLaunchesGameServers() {
+        gameServerPool.start();
+
+        assertThat(gameServerPool.claim(1L)).isEmpty();
+        verify(gameServerLauncher, never()).launch(any());
+    }
+
+    @Test
+    void testThatStartFillsPool() {
+        ReflectionTestUtils.setField(gameServerPool, "poolSize", 2);
+        gameServerPool.start();
+
+        verify(gameServerLauncher, times(2)).launch(any());
+        assertThat(meterRegistry.get("game.server.pool.idle").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    void testThatClaimReturnsPooledServerAndRefills() throws IOException {
+        ReflectionTestUtils.setField(gameServerPool, "poolSize", 2);
+        gameServerPool.start();
+
+        assertThat(gameServerPool.claim(1L)).isPresent();
+
+        verify(gameServerLauncher, times(3)).launch(any());
+        verify(serverLogsService).assignLogFileToLobby(any(), eq(1L));
+        assertThat(meterRegistry.get("game.server.pool.claims").tag("result", "hit").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("game.server.pool.idle").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    void testThatDeadPooledServersAreDiscarded() {
+        ReflectionTestUtils.setField(gameServerPool, "poolSize", 1);
+        given(gameServerLauncher.launch(any())).willAnswer(_ -> CompletableFuture.completedFuture(connectedGameServer(false)));
+        gameServerPool.start();
+
+        assertThat(gameServerPool.claim(1L)).isEmpty();
+        assertThat(meterRegistry.get("game.server.pool.claims").tag("result", "miss").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testThatFailedRefillsAreCounted() {
+        ReflectionTestUtils.setField(gameServerPool, "poolSize", 1);
+        given(gameServerLauncher.launch(any())).willAnswer(_ -> CompletableFuture.failedFuture(new IOException("handshake timed out")));
+        gameServerPool.start();
+
+        assertThat(gameServerPool.claim(1L)).isEmpty();
+        assertThat(meterRegistry.get("game.server.pool.refill.failures").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void testThatStopDestroysIdleServers() {
+        ReflectionTestUtils.setField(gameServerPool, "poolSize", 1);
+        gameServerPool.start();
+        gameServerPool.stop();
+
+        assertThat(gameServerPool.isRunning()).isFalse();
+        assertThat(meterRegistry.get("game.server.pool.idle").gauge().value()).isZero();
+    }
+
+    private static ConnectedGameServer connectedGameServer(boolean alive) {
+        var process = mock(Process.class);
+        given(process.isAlive()).willReturn(alive);
+        return new ConnectedGameServer(process, mock(HandshakeConnection.class), "localhost", new File("pooled-game-server.log"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class HandshakeListenerTest {
+
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    HandshakeListener handshakeListener = new HandshakeListener(executor, new PortAllocator(new SimpleMeterRegistry()), new SimpleMeterRegistry());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(handshakeListener, "timeoutMillis", 2000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        handshakeListener.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testThatDedicatedEndpointHandshakeWorks() throws IOException {
+        handshakeListener.start();
+        var handshake = handshakeListener.expectConnection();
+        assertThat(handshake.launchArguments()).containsExactly(Integer.toString(handshake.port()));
+
+        try (var gameServer = new Socket("localhost", handshake.port())) {
+            var connection = handshake.connection().join();
+            var port = connection.exchange(3);
+
+            var lobbySize = new DataInputStream(gameServer.getInputStream()).readShort();
+            new DataOutputStream(gameServer.getOutputStream()).writeShort(40000);
+
+            assertThat(lobbySize).isEqualTo((short) 3);
+            assertThat(port.join()).isEqualTo(40000);
+        }
+    }
+
+    @Test
+    void testThatSharedEndpointMatchesGameServersByToken() throws IOException {
+        ReflectionTestUtils.setField(handshakeListener, "sharedEndpoint", true);
+        handshakeListener.start();
+        var first = handshakeListener.expectConnection();
+        var second = handshakeListener.expectConnection();
+        assertThat(first.port()).isEqualTo(second.port());
+        assertThat(first.token()).isNotEqualTo(second.token());
+
+        try (var secondServer = new Socket("localhost", second.port());
+             var firstServer = new Socket("localhost", first.port())) {
+            new DataOutputStream(secondServer.getOutputStream()).writeLong(second.token());
+            var secondPort = second.connection().join().exchange(2);
+            new DataInputStream(secondServer.getInputStream()).readShort();
+            new DataOutputStream(secondServer.getOutputStream()).writeShort(2222);
+
+            new DataOutputStream(firstServer.getOutputStream()).writeLong(first.token());
+            var firstPort = first.connection().join().exchange(4);
+            new DataInputStream(firstServer.getInputStream()).readShort();
+            new DataOutputStream(firstServer.getOutputStream()).writeShort(1111);
+
+            assertThat(secondPort.join()).isEqualTo(2222);
+            assertThat(firstPort.join()).isEqualTo(1111);
+        }
+    }
+
+    @Test
+    void testThatHandshakeTimesOut() throws IOException {
+        ReflectionTestUtils.setField(handshakeListener, "timeoutMillis", 100L);
+        handshakeListener.start();
+        var handshake = handshakeListener.expectConnection();
+
+        assertThatExceptionOfType(CompletionException.class)
+                .isThrownBy(() -> handshake.connection().join())
+                .withCauseInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void testThatExpectingConnectionRequiresRunningListener() {
+        assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> handshakeListener.expectConnection())
+                .withMessage("Handshake listener is not running");
+    }
+}
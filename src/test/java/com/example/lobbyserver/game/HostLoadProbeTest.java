@@ -0,0 +1,44 @@
+package com.example.lobbyserver.game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HostLoadProbeTest {
+
+    @TempDir
+    Path procRoot;
+
+    @Test
+    void testThatHostLoadIsReadFromProc() throws IOException {
+        Files.writeString(procRoot.resolve("loadavg"), "1.50 1.20 0.80 2/345 6789\n");
+        Files.writeString(procRoot.resolve("meminfo"), """
+                MemTotal:       16000000 kB
+                MemFree:         1000000 kB
+                MemAvailable:    4000000 kB
+                """);
+        Files.writeString(procRoot.resolve("stat"), "cpu  100 0 100 700 100 0 0 0 0 0\n");
+        var probe = new HostLoadProbe(procRoot);
+
+        var first = probe.sample();
+        assertThat(first.loadAverage()).isEqualTo(1.5);
+        assertThat(first.availableMemoryBytes()).isEqualTo(4000000L * 1024);
+        assertThat(first.cpuUtilization()).isNegative();
+
+        Files.writeString(procRoot.resolve("stat"), "cpu  400 0 400 900 100 0 0 0 0 0\n");
+        assertThat(probe.sample().cpuUtilization()).isCloseTo(0.75, within(0.001));
+    }
+
+    @Test
+    void testThatMissingProcReportsUnknownLoad() {
+        var load = new HostLoadProbe(procRoot.resolve("missing")).sample();
+
+        assertThat(load).isEqualTo(HostLoadProbe.HostLoad.NONE);
+    }
+}
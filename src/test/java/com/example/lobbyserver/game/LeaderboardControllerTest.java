@@ -0,0 +1,48 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.config.ApplicationConfiguration;
+import com.example.lobbyserver.game.db.LeaderboardEntry;
+import com.example.lobbyserver.security.SecurityConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.BDDMockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(LeaderboardController.class)
+@Import({ApplicationConfiguration.class, SecurityConfiguration.class})
+@ActiveProfiles("test")
+class LeaderboardControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockitoBean
+    Leaderboards leaderboards;
+
+    @Test
+    void testThatLeaderboardIsPublic() throws Exception {
+        given(leaderboards.top(LeaderboardMetric.LINES_CLEARED, LeaderboardWindow.WEEKLY, 5))
+                .willReturn(List.of(new LeaderboardEntry("user1", 120L)));
+
+        mockMvc.perform(get("/leaderboards/lines-cleared").param("window", "weekly").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].username").value("user1"))
+                .andExpect(jsonPath("$[0].value").value(120));
+    }
+
+    @Test
+    void testThatUnknownLeaderboardReturns404() throws Exception {
+        mockMvc.perform(get("/leaderboards/deaths"))
+                .andExpect(status().isNotFound());
+        verify(leaderboards, never()).top(any(), any(), anyInt());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.game.db.GameResultRepository;
+import com.example.lobbyserver.game.db.LeaderboardEntry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.*;
+
+class LeaderboardsTest {
+
+    // a Wednesday
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 15, 12, 0);
+
+    GameResultRepository gameResultRepository = mock(GameResultRepository.class);
+    LocalDateTime now = NOW;
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    Leaderboards leaderboards = new Leaderboards(gameResultRepository, () -> now, meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(leaderboards, "size", 2);
+        leaderboards.init();
+    }
+
+    @Test
+    void testThatBoardKeepsTheBestResultOfTheTopPlayers() {
+        saved("a", 100L, NOW);
+        saved("b", 300L, NOW);
+        saved("a", 50L, NOW);
+        saved("c", 200L, NOW);
+        saved("a", 400L, NOW);
+
+        assertThat(leaderboards.top(LeaderboardMetric.SCORE, LeaderboardWindow.ALL_TIME, 10))
+                .containsExactly(new LeaderboardEntry("a", 400L), new LeaderboardEntry("b", 300L));
+        assertThat(leaderboards.top(LeaderboardMetric.SCORE, LeaderboardWindow.ALL_TIME, 1))
+                .containsExactly(new LeaderboardEntry("a", 400L));
+        assertThat(meterRegistry.get("leaderboards.changes").counter().count()).isEqualTo(4.0);
+    }
+
+    @Test
+    void testThatEveryMetricHasItsOwnBoard() {
+        saved("a", 100L, NOW);
+
+        assertThat(leaderboards.top(LeaderboardMetric.LEVEL, LeaderboardWindow.DAILY, 10))
+                .containsExactly(new LeaderboardEntry("a", 10L));
+        assertThat(leaderboards.top(LeaderboardMetric.LINES_CLEARED, LeaderboardWindow.WEEKLY, 10))
+                .containsExactly(new LeaderboardEntry("a", 20L));
+    }
+
+    @Test
+    void testThatWindowsOnlyRankTheirOwnResults() {
+        saved("monday", 100L, NOW.minusDays(2));
+        saved("today", 50L, NOW);
+
+        assertThat(leaderboards.top(LeaderboardMetric.SCORE, LeaderboardWindow.DAILY, 10))
+                .containsExactly(new LeaderboardEntry("today", 50L));
+        assertThat(leaderboards.top(LeaderboardMetric.SCORE, LeaderboardWindow.WEEKLY, 10))
+                .containsExactly(new LeaderboardEntry("monday", 100L), new LeaderboardEntry("today", 50L));
+
+        // the next day starts over
+        now = NOW.plusDays(1);
+
+        assertThat(leaderboards.top(LeaderboardMetric.SCORE, LeaderboardWindow.DAILY, 10)).isEmpty();
+        assertThat(leaderboards.top(LeaderboardMetric.SCORE, LeaderboardWindow.WEEKLY, 10)).hasSize(2);
+    }
+
+    @Test
+    void testThatBoardsAreRebuiltFromTheStoredResults() {
+        given(gameResultRepository.findBestScoresSince(any(), any())).willReturn(List.of());
+        given(gameResultRepository.findBestScoresSince(LocalDateTime.of(1970, 1, 1, 0, 0), Limit.of(2)))
+                .willReturn(List.of(new LeaderboardEntry("old", 900L), new LeaderboardEntry("a", 100L)));
+        saved("a", 500L, NOW);
+
+        leaderboards.rebuild();
+
+        assertThat(leaderboards.top(LeaderboardMetric.SCORE, LeaderboardWindow.ALL_TIME, 10))
+                .containsExactly(new LeaderboardEntry("old", 900L), new LeaderboardEntry("a", 500L));
+        verify(gameResultRepository).findBestScoresSince(NOW.toLocalDate().atStartOfDay(), Limit.of(2));
+        verify(gameResultRepository).findBestScoresSince(LocalDateTime.of(2024, 5, 13, 0, 0), Limit.of(2));
+    }
+
+    private void saved(String username, long score, LocalDateTime dateTime) {
+        leaderboards.gameResultSaved(new GameResultSavedEvent(username, score, (int) score / 10, (int) score / 5, 60000L, dateTime));
+    }
+}
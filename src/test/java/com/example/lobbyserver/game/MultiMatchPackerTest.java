@@ -0,0 +1,115 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MultiMatchPackerTest {
+
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    HandshakeListener handshakeListener = new HandshakeListener(executor, new PortAllocator(new SimpleMeterRegistry()), new SimpleMeterRegistry());
+    SimulatedGameServerLauncher launcher = new SimulatedGameServerLauncher(handshakeListener, new PortAllocator(new SimpleMeterRegistry()));
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    MultiMatchPacker packer = new MultiMatchPacker(meterRegistry);
+    AtomicInteger launches = new AtomicInteger();
+    File logFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        logFile = Files.createTempFile("multi-match-game-server", ".log").toFile();
+        logFile.deleteOnExit();
+        ReflectionTestUtils.setField(handshakeListener, "timeoutMillis", 500L);
+        ReflectionTestUtils.setField(launcher, "gameServerInstanceHost", "localhost");
+        ReflectionTestUtils.setField(launcher, "matchDurationMillis", 60000L);
+        ReflectionTestUtils.setField(launcher, "multiMatch", true);
+        ReflectionTestUtils.setField(packer, "maxMatches", 2);
+        handshakeListener.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        handshakeListener.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testThatLobbiesArePackedUntilTheProcessIsFull() {
+        var first = packer.claim(1L, this::launch).join();
+        var second = packer.claim(2L, this::launch).join();
+        var third = packer.claim(3L, this::launch).join();
+
+        int firstPort = first.assignLobby(2).join();
+        int secondPort = second.assignLobby(4).join();
+        third.assignLobby(2).join();
+
+        assertThat(launches).hasValue(2);
+        assertThat(firstPort).isNotEqualTo(secondPort);
+        assertThat(first.localProcess()).isEqualTo(second.localProcess());
+        assertThat(meterRegistry.get("game.server.multi-match.packed").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("game.server.multi-match.matches").gauge().value()).isEqualTo(3.0);
+    }
+
+    @Test
+    void testThatProcessIsDestroyedWithItsLastMatch() throws IOException {
+        var first = (MultiMatchGameServer.Match) packer.claim(1L, this::launch).join();
+        var second = packer.claim(2L, this::launch).join();
+        first.assignLobby(1).join();
+        int port = second.assignLobby(1).join();
+
+        first.destroy();
+        assertThat(first.onExit()).succeedsWithin(Duration.ofSeconds(1)).isEqualTo(0);
+        try (var _ = new Socket("localhost", port)) {
+            assertThat(second.isAlive()).isTrue();
+        }
+
+        second.destroy();
+        assertThat(second.onExit()).succeedsWithin(Duration.ofSeconds(1)).isEqualTo(0);
+        assertThat(packer.claim(3L, this::launch).join().assignLobby(1)).succeedsWithin(Duration.ofSeconds(5));
+        assertThat(launches).hasValue(2);
+    }
+
+    @Test
+    void testThatMatchesEndWhenTheProcessExits() {
+        var first = packer.claim(1L, this::launch).join();
+        var second = packer.claim(2L, this::launch).join();
+        first.assignLobby(1).join();
+        second.assignLobby(1).join();
+
+        first.destroyForcibly();
+
+        assertThat(first.onExit()).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(SimulatedGameServer.EXIT_KILLED);
+        assertThat(second.onExit()).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(SimulatedGameServer.EXIT_KILLED);
+    }
+
+    @Test
+    void testThatSingleMatchGameServersFallBackToOneProcessPerLobby() {
+        ReflectionTestUtils.setField(launcher, "multiMatch", false);
+        var first = packer.claim(1L, this::launch).join();
+        var second = packer.claim(2L, this::launch).join();
+
+        assertThat(first.assignLobby(1)).succeedsWithin(Duration.ofSeconds(5));
+        assertThat(second.assignLobby(1)).failsWithin(Duration.ofSeconds(5));
+
+        assertThat(packer.isEnabled()).isFalse();
+        assertThat(meterRegistry.get("game.server.multi-match.fallbacks").counter().count()).isEqualTo(1.0);
+    }
+
+    private CompletableFuture<ConnectedGameServer> launch() {
+        launches.incrementAndGet();
+        return launcher.launch(logFile);
+    }
+}
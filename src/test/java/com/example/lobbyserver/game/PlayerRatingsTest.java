@@ -0,0 +1,94 @@
+package com.example.lobbyserver.game;
+
+import com.example.lobbyserver.game.db.RatingRecord;
+import com.example.lobbyserver.game.db.RatingRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.BDDMockito.*;
+
+class PlayerRatingsTest {
+
+    RatingRecordRepository ratingRecordRepository = mock(RatingRecordRepository.class);
+    long now = 0;
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    PlayerRatings ratings = new PlayerRatings(ratingRecordRepository, () -> now, meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(ratings, "tau", 0.5);
+        ReflectionTestUtils.setField(ratings, "matchIdleMillis", 1000L);
+    }
+
+    @Test
+    void testThatRatingFollowsTheGlicko2Example() {
+        var player = new Rating(1500.0, 200.0, 0.06, 0);
+        var opponents = List.of(new Rating(1400.0, 30.0, 0.06, 0), new Rating(1550.0, 100.0, 0.06, 0), new Rating(1700.0, 300.0, 0.06, 0));
+
+        var rated = Glicko2.rate(player, opponents, List.of(1.0, 0.0, 0.0), 0.5);
+
+        assertThat(rated.rating()).isCloseTo(1464.06, within(0.01));
+        assertThat(rated.deviation()).isCloseTo(151.52, within(0.01));
+        assertThat(rated.volatility()).isCloseTo(0.05999, within(0.00001));
+        assertThat(rated.games()).isEqualTo(1);
+    }
+
+    @Test
+    void testThatMatchIsRatedOnceTheLastPlayerLeft() {
+        ratings.gameResultRecorded(new GameResultRecordedEvent(1L, "winner", 300L, false));
+        ratings.gameResultRecorded(new GameResultRecordedEvent(1L, "middle", 200L, false));
+        assertThat(ratings.get("winner")).isEqualTo(Rating.INITIAL);
+
+        ratings.gameResultRecorded(new GameResultRecordedEvent(1L, "loser", 100L, true));
+
+        assertThat(ratings.rating("winner")).isGreaterThan(ratings.rating("middle"));
+        assertThat(ratings.rating("middle")).isCloseTo(1500.0, within(0.01));
+        assertThat(ratings.rating("loser")).isLessThan(1500.0);
+        assertThat(ratings.playersWithin(ratings.rating("winner"), 0.0)).containsExactly("winner");
+        assertThat(meterRegistry.get("rating.matches").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testThatSinglePlayerMatchIsNotRated() {
+        ratings.gameResultRecorded(new GameResultRecordedEvent(1L, "alone", 300L, true));
+
+        assertThat(ratings.get("alone")).isEqualTo(Rating.INITIAL);
+        assertThat(ratings.playersWithin(1500.0, 1000.0)).isEmpty();
+    }
+
+    @Test
+    void testThatIdleMatchIsRatedAndChangedRatingsArePersisted() {
+        ratings.gameResultRecorded(new GameResultRecordedEvent(1L, "a", 300L, false));
+        ratings.gameResultRecorded(new GameResultRecordedEvent(1L, "b", 100L, false));
+        ratings.persist();
+        verify(ratingRecordRepository, never()).saveAll(anyIterable());
+
+        now += TimeUnit.SECONDS.toNanos(1);
+        ratings.persist();
+        ratings.persist();
+
+        verify(ratingRecordRepository).saveAll(argThat(records -> ((List<?>) records).size() == 2));
+        assertThat(ratings.rating("a")).isGreaterThan(ratings.rating("b"));
+    }
+
+    @Test
+    void testThatPersistedRatingsAreLoaded() {
+        given(ratingRecordRepository.findByUsernameGreaterThanOrderByUsernameAsc("", Limit.of(500)))
+                .willReturn(List.of(new RatingRecord("a", 1700.0, 80.0, 0.06, 12)));
+
+        ratings.load();
+
+        assertThat(ratings.get("a")).isEqualTo(new Rating(1700.0, 80.0, 0.06, 12));
+        assertThat(ratings.playersWithin(1650.0, 100.0)).containsExactly("a");
+        assertThat(meterRegistry.get("rating.players").gauge().value()).isEqualTo(1.0);
+    }
+}
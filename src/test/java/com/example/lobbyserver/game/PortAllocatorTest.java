@@ -0,0 +1,121 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class PortAllocatorTest {
+
+    private static final int RANGE_START = 47100;
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    PortAllocator portAllocator = new PortAllocator(meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(portAllocator, "rangeStart", RANGE_START);
+        ReflectionTestUtils.setField(portAllocator, "rangeEnd", RANGE_START + 2);
+        ReflectionTestUtils.setField(portAllocator, "quarantineMillis", 60000L);
+        portAllocator.init();
+    }
+
+    @Test
+    void testThatWithoutRangeTheOperatingSystemPicksThePort() throws IOException {
+        var disabled = new PortAllocator(new SimpleMeterRegistry());
+        disabled.init();
+
+        assertThat(disabled.isEnabled()).isFalse();
+        int port = disabled.bind(candidate -> candidate);
+        assertThat(port).isZero();
+        assertThat(disabled.allocate()).isZero();
+    }
+
+    @Test
+    void testThatRangeIsAllocatedUntilExhausted() throws IOException {
+        var ports = new ArrayList<Integer>();
+        for (int i = 0; i < 3; i++) {
+            ports.add(bindAny());
+        }
+
+        assertThat(ports).containsExactly(RANGE_START, RANGE_START + 1, RANGE_START + 2);
+        assertThat(portAllocator.utilization()).isEqualTo(1.0);
+        assertThatExceptionOfType(IOException.class).isThrownBy(() -> bindAny());
+        assertThat(meterRegistry.get("game.server.ports.exhausted").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testThatReleasedPortsAreQuarantined() throws IOException {
+        var first = bindAny();
+        portAllocator.release(first);
+        portAllocator.release(first);
+
+        assertThat(portAllocator.quarantinedPorts()).isEqualTo(1);
+        assertThat(portAllocator.allocatedPorts()).isZero();
+        assertThat(bindAny()).isEqualTo(RANGE_START + 1);
+        assertThat(bindAny()).isEqualTo(RANGE_START + 2);
+        assertThatExceptionOfType(IOException.class).isThrownBy(() -> bindAny());
+    }
+
+    @Test
+    void testThatClaimedPortsAreNotHandedOut() throws IOException {
+        var first = bindAny();
+        portAllocator.release(first);
+
+        assertThat(portAllocator.claim(RANGE_START + 1)).isTrue();
+        assertThat(portAllocator.claim(first)).isTrue();
+        assertThat(portAllocator.claim(first)).isFalse();
+        assertThat(portAllocator.claim(RANGE_START + 3)).isFalse();
+
+        assertThat(portAllocator.quarantinedPorts()).isZero();
+        assertThat(bindAny()).isEqualTo(RANGE_START + 2);
+        assertThatExceptionOfType(IOException.class).isThrownBy(() -> bindAny());
+        portAllocator.release(RANGE_START + 1);
+        assertThat(portAllocator.quarantinedPorts()).isEqualTo(1);
+    }
+
+    @Test
+    void testThatPortsReturnAfterQuarantine() throws IOException {
+        ReflectionTestUtils.setField(portAllocator, "quarantineMillis", 0L);
+        for (int i = 0; i < 3; i++) {
+            bindAny();
+        }
+
+        portAllocator.release(RANGE_START + 1);
+
+        assertThat(bindAny()).isEqualTo(RANGE_START + 1);
+    }
+
+    @Test
+    void testThatPortInUseIsSkippedAsCollision() throws IOException {
+        int port = portAllocator.bind(candidate -> {
+            if (candidate == RANGE_START) {
+                throw new BindException("Address already in use");
+            }
+            return candidate;
+        });
+
+        assertThat(port).isEqualTo(RANGE_START + 1);
+        assertThat(portAllocator.allocatedPorts()).isEqualTo(1);
+        assertThat(portAllocator.quarantinedPorts()).isEqualTo(1);
+        assertThat(meterRegistry.get("game.server.ports.collisions").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testThatPortsOutsideTheRangeAreIgnoredOnRelease() {
+        portAllocator.release(RANGE_START - 1);
+
+        assertThat(portAllocator.quarantinedPorts()).isZero();
+    }
+
+    private int bindAny() throws IOException {
+        return portAllocator.bind(port -> port);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.lobbyserver.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RatingIndexTest {
+
+    RatingIndex<String> index = new RatingIndex<>();
+
+    @Test
+    void testThatKeysWithinRangeAreFoundInRatingOrder() {
+        index.put("c", 1700.0);
+        index.put("a", 1400.0);
+        index.put("b", 1500.0);
+        index.put("d", 1500.0);
+        index.put("e", 1901.0);
+
+        assertThat(index.within(1600.0, 100.0)).containsExactly("b", "d", "c");
+        assertThat(index.within(1000.0, 100.0)).isEmpty();
+    }
+
+    @Test
+    void testThatNearestKeysComeClosestFirst() {
+        index.put("a", 1400.0);
+        index.put("b", 1480.0);
+        index.put("c", 1530.0);
+        index.put("d", 1620.0);
+
+        assertThat(index.nearest(1500.0, 150.0, 3)).containsExactly("b", "c", "a");
+        assertThat(index.nearest(1500.0, 50.0, 10)).containsExactly("b", "c");
+    }
+
+    @Test
+    void testThatUpdatedKeyMoves() {
+        index.put("a", 1400.0);
+        index.put("a", 1800.0);
+        index.put("b", 1450.0);
+        index.remove("b");
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.within(1400.0, 100.0)).isEmpty();
+        assertThat(index.within(1800.0, 0.0)).containsExactly("a");
+    }
+}
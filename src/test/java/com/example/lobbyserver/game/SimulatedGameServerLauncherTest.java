@@ -0,0 +1,158 @@
+package com.example.lobbyserver.game;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimulatedGameServerLauncherTest {
+
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    HandshakeListener handshakeListener = new HandshakeListener(executor, new PortAllocator(new SimpleMeterRegistry()), new SimpleMeterRegistry());
+    PortAllocator portAllocator = new PortAllocator(new SimpleMeterRegistry());
+    SimulatedGameServerLauncher launcher = new SimulatedGameServerLauncher(handshakeListener, portAllocator);
+    File logFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        logFile = Files.createTempFile("simulated-game-server", ".log").toFile();
+        logFile.deleteOnExit();
+        ReflectionTestUtils.setField(handshakeListener, "timeoutMillis", 2000L);
+        ReflectionTestUtils.setField(handshakeListener, "sharedEndpoint", true);
+        ReflectionTestUtils.setField(launcher, "gameServerInstanceHost", "localhost");
+        ReflectionTestUtils.setField(launcher, "matchDurationMillis", 60000L);
+        handshakeListener.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        handshakeListener.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testThatGameServerExitsWhenAllPlayersLeft() throws IOException {
+        var gameServer = launcher.launch(logFile).join();
+        int port = gameServer.assignLobby(2).join();
+
+        try (var _ = new Socket("localhost", port); var _ = new Socket("localhost", port)) {
+            assertThat(gameServer.isAlive()).isTrue();
+        }
+
+        assertThat(gameServer.onExit()).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(0);
+        assertThat(gameServer.localProcess()).isEmpty();
+        assertThat(Files.readString(logFile.toPath())).contains("lobby port = " + port);
+    }
+
+    @Test
+    void testThatGameServerExitsAfterMatchDuration() throws IOException {
+        ReflectionTestUtils.setField(launcher, "matchDurationMillis", 100L);
+        var gameServer = launcher.launch(logFile).join();
+        int port = gameServer.assignLobby(1).join();
+
+        try (var _ = new Socket("localhost", port)) {
+            assertThat(gameServer.onExit()).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(0);
+        }
+    }
+
+    @Test
+    void testThatDestroyedGameServerExitsLikeTerminatedProcess() {
+        var gameServer = launcher.launch(logFile).join();
+        gameServer.assignLobby(2).join();
+
+        gameServer.destroy();
+
+        assertThat(gameServer.onExit()).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(SimulatedGameServer.EXIT_TERMINATED);
+    }
+
+    @Test
+    void testThatAllocatedGamePortIsUsedAndReleasedOnExit() throws IOException {
+        ReflectionTestUtils.setField(portAllocator, "rangeStart", 47200);
+        ReflectionTestUtils.setField(portAllocator, "rangeEnd", 47209);
+        portAllocator.init();
+
+        var gameServer = launcher.launch(logFile).join();
+        int port = gameServer.assignLobby(1).join();
+        assertThat(port).isBetween(47200, 47209);
+        assertThat(portAllocator.allocatedPorts()).isEqualTo(1);
+
+        try (var _ = new Socket("localhost", port)) {
+            gameServer.destroy();
+            assertThat(gameServer.onExit()).succeedsWithin(Duration.ofSeconds(5));
+        }
+        awaitPortsReleased();
+        assertThat(portAllocator.allocatedPorts()).isZero();
+    }
+
+    @Test
+    void testThatPortReportedInsteadOfTheAllocatedOneIsClaimed() throws IOException {
+        ReflectionTestUtils.setField(portAllocator, "rangeStart", 47200);
+        ReflectionTestUtils.setField(portAllocator, "rangeEnd", 47209);
+        portAllocator.init();
+        // like the native executable, which binds a port of its own choice
+        var ignoringLauncher = new SimulatedGameServerLauncher(handshakeListener, portAllocator) {
+            @Override
+            Process start(PendingHandshake handshake, int gamePort, File logFile) {
+                return super.start(handshake, 47209, logFile);
+            }
+        };
+        ReflectionTestUtils.setField(ignoringLauncher, "gameServerInstanceHost", "localhost");
+        ReflectionTestUtils.setField(ignoringLauncher, "matchDurationMillis", 60000L);
+
+        var gameServer = ignoringLauncher.launch(logFile).join();
+        int port = gameServer.assignLobby(1).join();
+
+        assertThat(port).isEqualTo(47209);
+        assertThat(portAllocator.allocatedPorts()).isEqualTo(1);
+        assertThat(portAllocator.quarantinedPorts()).isEqualTo(1);
+        assertThat(portAllocator.claim(47209)).isFalse();
+        try (var _ = new Socket("localhost", port)) {
+            gameServer.destroy();
+            assertThat(gameServer.onExit()).succeedsWithin(Duration.ofSeconds(5));
+        }
+        awaitPortsReleased();
+        assertThat(portAllocator.allocatedPorts()).isZero();
+    }
+
+    @Test
+    void testThatStartupFailureCanBeInjected() throws InterruptedException {
+        var settings = new SimulatedGameServer.Settings(Duration.ZERO, 1.0, 0.0, Duration.ofMinutes(1), false);
+        var gameServer = SimulatedGameServer.start(1, 0, 0, settings, logFile);
+
+        assertThat(gameServer.waitFor(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(gameServer.exitValue()).isEqualTo(SimulatedGameServer.EXIT_CRASHED);
+        assertThat(gameServer.port()).isEqualTo(-1);
+    }
+
+    @Test
+    void testThatCrashCanBeInjected() throws IOException {
+        ReflectionTestUtils.setField(launcher, "crashRate", 1.0);
+        ReflectionTestUtils.setField(launcher, "matchDurationMillis", 100L);
+        var gameServer = launcher.launch(logFile).join();
+        int port = gameServer.assignLobby(1).join();
+
+        try (var _ = new Socket("localhost", port)) {
+            assertThat(gameServer.onExit()).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(SimulatedGameServer.EXIT_CRASHED);
+        }
+    }
+
+    private void awaitPortsReleased() {
+        // the ports are released by another exit callback of the process, which may run after the test's own
+        var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (portAllocator.allocatedPorts() > 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
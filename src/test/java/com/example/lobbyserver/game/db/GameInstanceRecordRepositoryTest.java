@@ -0,0 +1,53 @@
+package com.example.lobbyserver.game.db;
+
+import com.example.lobbyserver.TestcontainersConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TestcontainersConfiguration.class)
+@DirtiesContext
+@ActiveProfiles("test")
+class GameInstanceRecordRepositoryTest {
+
+    private static final Instant PROCESS_START = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @Autowired
+    GameInstanceRecordRepository gameInstanceRecordRepository;
+
+    @BeforeEach
+    void setUp() {
+        gameInstanceRecordRepository.save(
+                new GameInstanceRecord(1L, 4242L, PROCESS_START, "localhost", 9999, 3, LocalDateTime.now()));
+    }
+
+    @Test
+    void testThatRecordIsPersisted() {
+        var record = gameInstanceRecordRepository.findById(1L).orElseThrow();
+
+        assertThat(record.getPid()).isEqualTo(4242L);
+        assertThat(record.getProcessStart()).isEqualTo(PROCESS_START);
+        assertThat(record.getPort()).isEqualTo(9999);
+    }
+
+    @Test
+    void testThatPlayersRemainingCanBeUpdated() {
+        gameInstanceRecordRepository.updatePlayersRemainingByLobbyId(1L, 1);
+
+        var record = gameInstanceRecordRepository.findById(1L).orElseThrow();
+        assertThat(record.getPlayersRemaining()).isEqualTo(1);
+    }
+}
@@ -12,6 +12,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.factory.PasswordEncoderFactories;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -72,6 +73,35 @@ class GameResultRepositoryTest {
         );
     }
 
+    @Test
+    void testThatKeysetPagesContinueAfterTheCursor() {
+        var first = gameResultRepository.findNewest(Limit.of(2));
+        assertThat(first).hasSize(2);
+        assertThat(first.get(0).getId()).isGreaterThan(first.get(1).getId());
+
+        var last = first.getLast();
+        var rest = gameResultRepository.findOlderThan(last.getDateTime(), last.getId(), Limit.of(10));
+        assertThat(rest).hasSize(3);
+        assertThat(rest).allMatch(gameResult -> gameResult.getId() < last.getId());
+
+        var ofUser = gameResultRepository.findNewestOfUser("user1", Limit.of(10));
+        assertThat(ofUser).hasSize(3);
+        assertThat(gameResultRepository.findOlderOfUserThan("user1", ofUser.getFirst().getDateTime(), ofUser.getFirst().getId(), Limit.of(10)))
+                .hasSize(2);
+        assertThat(gameResultRepository.countByUser_Username("user1")).isEqualTo(3);
+    }
+
+    @Test
+    void testThatBestResultsAreGroupedByUser() {
+        var since = LocalDateTime.of(2021, 1, 1, 0, 0);
+
+        assertThat(gameResultRepository.findBestScoresSince(since, Limit.of(2)))
+                .containsExactly(new LeaderboardEntry("user1", 1000L), new LeaderboardEntry("user2", 1000L));
+        assertThat(gameResultRepository.findBestLinesClearedSince(since, Limit.of(10))).hasSize(3)
+                .allMatch(entry -> entry.value() == 6L);
+        assertThat(gameResultRepository.findBestLevelsSince(since.plusDays(1), Limit.of(10))).isEmpty();
+    }
+
     @TestConfiguration
     static class UserRepositoryTestConfiguration {
         @Bean
@@ -0,0 +1,80 @@
+package com.example.lobbyserver.lobby;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashedTimingWheelTest {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(100);
+
+    HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK, 8, 0);
+
+    @Test
+    void testThatDeadlinesExpireOnTheirTickAndNotEarlier() {
+        wheel.schedule("a", 250 * 1_000_000L);
+
+        assertThat(wheel.advance(299 * 1_000_000L)).isEmpty();
+        assertThat(wheel.advance(300 * 1_000_000L)).extracting(HashedTimingWheel.Timeout::task).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void testThatDeadlinesBeyondOneRevolutionWaitForTheirRound() {
+        wheel.schedule("later", 20 * TICK);
+        wheel.schedule("sooner", 4 * TICK);
+
+        assertThat(wheel.advance(4 * TICK)).extracting(HashedTimingWheel.Timeout::task).containsExactly("sooner");
+        assertThat(wheel.advance(12 * TICK)).isEmpty();
+        assertThat(wheel.advance(19 * TICK)).isEmpty();
+        assertThat(wheel.advance(20 * TICK)).extracting(HashedTimingWheel.Timeout::task).containsExactly("later");
+    }
+
+    @Test
+    void testThatCancelledDeadlinesDoNotExpire() {
+        var timeout = wheel.schedule("a", TICK);
+
+        assertThat(timeout.cancel()).isTrue();
+        assertThat(timeout.cancel()).isFalse();
+        assertThat(wheel.size()).isZero();
+        assertThat(wheel.advance(2 * TICK)).isEmpty();
+    }
+
+    @Test
+    void testThatPastDeadlinesExpireOnTheNextAdvance() {
+        wheel.advance(10 * TICK);
+        var timeout = wheel.schedule("late", 3 * TICK);
+
+        assertThat(wheel.advance(10 * TICK)).isEmpty();
+        assertThat(wheel.advance(11 * TICK)).containsExactly(timeout);
+        assertThat(timeout.cancel()).isFalse();
+    }
+
+    @Test
+    void testThatManyPendingDeadlinesAreCheapToTick() {
+        var large = new HashedTimingWheel<Integer>(TICK, 512, 0);
+        var timeouts = new ArrayList<HashedTimingWheel.Timeout<Integer>>();
+        // spread over one hour, like lobby fill deadlines
+        for (int i = 0; i < 100_000; i++) {
+            timeouts.add(large.schedule(i, TICK + (long) i * 36_000 * TICK / 100_000));
+        }
+        for (int i = 0; i < timeouts.size(); i += 2) {
+            timeouts.get(i).cancel();
+        }
+
+        var start = System.nanoTime();
+        var expired = 0;
+        for (long tick = 0; tick <= 600; tick++) {
+            expired += large.advance(tick * TICK).size();
+        }
+        var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // one minute of ticks
+        assertThat(expired).isEqualTo(832);
+        assertThat(large.size()).isEqualTo(50_000 - expired);
+        assertThat(elapsedMillis).isLessThan(1_000);
+    }
+}
@@ -1,23 +1,28 @@
 package com.example.lobbyserver.lobby;
 
 import com.example.lobbyserver.config.ApplicationConfiguration;
+import com.example.lobbyserver.game.GameInstanceAdmissionException;
+import com.example.lobbyserver.game.GameInstanceDrainingException;
+import com.example.lobbyserver.game.GameResultNotStoredException;
 import com.example.lobbyserver.security.SecurityConfiguration;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.*;
@@ -45,6 +50,15 @@ class LobbyControllerTest {
     @MockitoBean
     LobbyService lobbyService;
 
+    @MockitoBean
+    LobbySnapshots lobbySnapshots;
+
+    @MockitoBean
+    LobbyEventStream lobbyEventStream;
+
+    @MockitoBean
+    QuickPlayMatchmaker quickPlayMatchmaker;
+
     @Autowired
     ObjectMapper objectMapper;
 
@@ -63,11 +77,11 @@ class LobbyControllerTest {
     @WithMockUser
     void testThatGetLobbiesReturns200() throws Exception {
 
-        var openLobbies = new PageImpl<>(List.of(DUMMY_LOBBY), PageRequest.of(0, 10), 1);
-        given(lobbyService.getOpenLobbies(any())).willReturn(openLobbies);
+        given(lobbySnapshots.current()).willReturn(new LobbySnapshot(7L, List.of(DUMMY_LOBBY)));
 
         mockMvc.perform(get("/lobby"))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7\""))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.page.totalElements").value(1))
                 .andExpect(jsonPath("$.page.totalPages").value(1))
@@ -78,6 +92,119 @@ class LobbyControllerTest {
                 .andExpect(jsonPath("$.content[0].maxPlayers").value(4));
     }
 
+    @Test
+    @WithMockUser
+    void testThatUnchangedLobbiesReturn304() throws Exception {
+        given(lobbySnapshots.current()).willReturn(new LobbySnapshot(7L, List.of(DUMMY_LOBBY)));
+
+        mockMvc.perform(get("/lobby").header("If-None-Match", "\"7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @WithMockUser
+    void testThatGetLobbiesSinceVersionReturnsChangesOnly() throws Exception {
+        given(lobbySnapshots.changesSince(6L)).willReturn(new LobbyDelta(7L, false, List.of(DUMMY_LOBBY), List.of(2L)));
+
+        mockMvc.perform(get("/lobby").param("since", "6"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7\""))
+                .andExpect(jsonPath("$.version").value(7))
+                .andExpect(jsonPath("$.full").value(false))
+                .andExpect(jsonPath("$.changed[0].id").value(1))
+                .andExpect(jsonPath("$.removed[0]").value(2));
+    }
+
+    @Test
+    @WithMockUser
+    void testThatLobbiesArePagedByCursor() throws Exception {
+        var lobbies = List.of(DUMMY_LOBBY,
+                new LobbyDao(3L, "Lobby 3", 1, 4, "owner"),
+                new LobbyDao(5L, "Lobby 5", 1, 4, "owner"));
+        given(lobbySnapshots.current()).willReturn(new LobbySnapshot(7L, lobbies));
+
+        var next = JsonPath.read(mockMvc.perform(get("/lobby").param("cursor", "").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(2))
+                .andExpect(jsonPath("$.totalElements").value(3))
+                .andReturn().getResponse().getContentAsString(), "$.next").toString();
+
+        mockMvc.perform(get("/lobby").param("cursor", next).param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.content[0].id").value(5))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser
+    void testThatMalformedLobbyCursorReturns400() throws Exception {
+        given(lobbySnapshots.current()).willReturn(new LobbySnapshot(7L, List.of(DUMMY_LOBBY)));
+
+        mockMvc.perform(get("/lobby").param("cursor", "not a cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser
+    void testThatCursorAndSinceTogetherReturn400() throws Exception {
+        mockMvc.perform(get("/lobby").param("cursor", "").param("since", "6"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(lobbySnapshots);
+    }
+
+    /* Test @PostMapping("/quickplay") */
+
+    @Test
+    @WithMockUser(username = "player")
+    void testThatQuickPlayReturnsConnectionDetailsOnceMatched() throws Exception {
+        given(quickPlayMatchmaker.enqueue("player", 4))
+                .willReturn(CompletableFuture.completedFuture(new GameConnectionDetails("localhost", 9999)));
+
+        var result = mockMvc.perform(post("/lobby/quickplay")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(toJson(new QuickPlayRequest(4))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hostname").value("localhost"))
+                .andExpect(jsonPath("$.port").value(9999));
+    }
+
+    @Test
+    @WithMockUser
+    void testThatQuickPlayReturns400ForInvalidLobbySize() throws Exception {
+        mockMvc.perform(post("/lobby/quickplay")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(toJson(new QuickPlayRequest(7))))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(quickPlayMatchmaker);
+    }
+
+    /* Test @GetMapping("/events") */
+
+    @Test
+    void testThatLobbyEventsRequireAuthentication() throws Exception {
+        mockMvc.perform(get("/lobby/events"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser
+    void testThatLobbyEventsAreStreamed() throws Exception {
+        given(lobbyEventStream.subscribe()).willReturn(new SseEmitter());
+
+        mockMvc.perform(get("/lobby/events").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+    }
+
     /* Test @PostMapping("/create") */
 
     @Test
@@ -100,6 +227,47 @@ class LobbyControllerTest {
                 .andExpect(header().string("Location", "http://localhost/lobby/1"));
     }
 
+    @Test
+    @WithMockUser
+    void testThatCreatingLobbyReturns429WhenAdmissionQueueIsFull() throws Exception {
+        given(lobbyService.createNewLobby(any(), anyString()))
+                .willThrow(new GameInstanceAdmissionException("queue full", Duration.ofSeconds(5)));
+
+        mockMvc.perform(post("/lobby/create")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(toJson(new LobbyCreationRequest("Test Lobby", 4))))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "5"));
+    }
+
+    @Test
+    @WithMockUser
+    void testThatCreatingLobbyReturns503WhenDraining() throws Exception {
+        given(lobbyService.createNewLobby(any(), anyString()))
+                .willThrow(new GameInstanceDrainingException("draining", Duration.ofSeconds(5)));
+
+        mockMvc.perform(post("/lobby/create")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(toJson(new LobbyCreationRequest("Test Lobby", 4))))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"));
+    }
+
+    @Test
+    @WithMockUser
+    void testThatLeavingReturns503WhenGameResultIsNotCommitted() throws Exception {
+        willThrow(new GameResultNotStoredException("not committed", null))
+                .given(lobbyService).leaveLobby(eq(1L), anyString(), any());
+
+        mockMvc.perform(post("/lobby/leave/1")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(toJson(new GameResultRequest(100L, 1, 10, 60000L))))
+                .andExpect(status().isServiceUnavailable());
+    }
+
     @Test
     @WithMockUser
     void testThatCreateLobbyReturns400ForInvalidLobbyRequest() throws Exception {
@@ -0,0 +1,139 @@
+package com.example.lobbyserver.lobby;
+
+import com.example.lobbyserver.game.GameInstanceService;
+import com.example.lobbyserver.lobby.db.Lobby;
+import com.example.lobbyserver.lobby.db.LobbyRepository;
+import com.example.lobbyserver.user.db.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.*;
+
+class LobbyDeadlinesTest {
+
+    private static final User DUMMY_USER = new User("user", "password", "email", true, Set.of());
+    private static final long LOBBY_ID = 7L;
+
+    LobbyRepository lobbyRepository = mock(LobbyRepository.class);
+    GameInstanceService gameInstanceService = mock(GameInstanceService.class);
+    LobbyRegistry lobbyRegistry = mock(LobbyRegistry.class);
+    ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    AtomicLong now = new AtomicLong();
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    LobbyDeadlines deadlines = new LobbyDeadlines(lobbyRepository, gameInstanceService, lobbyRegistry, eventPublisher, now::get, meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(deadlines, "fillTimeoutMillis", 10_000L);
+        ReflectionTestUtils.setField(deadlines, "matchTimeoutMillis", 60_000L);
+        ReflectionTestUtils.setField(deadlines, "idleTimeoutMillis", 5_000L);
+        ReflectionTestUtils.setField(deadlines, "tickMillis", 1_000L);
+        deadlines.init();
+    }
+
+    @Test
+    void testThatUnfilledLobbyIsTornDown() {
+        var lobby = lobby(false);
+        given(lobbyRepository.findById(LOBBY_ID)).willReturn(Optional.of(lobby));
+        deadlines.lobbyCreated(LOBBY_ID);
+
+        advanceMillis(9_000);
+        verify(lobbyRepository, never()).delete(any());
+        advanceMillis(1_000);
+
+        verify(lobbyRepository).delete(lobby);
+        verify(gameInstanceService).abandon(LOBBY_ID);
+        verify(eventPublisher).publishEvent(new LobbyChangedEvent(LOBBY_ID));
+        assertThat(meterRegistry.get("lobby.deadlines.expired").tag("kind", "fill").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("lobby.deadlines.pending").gauge().value()).isZero();
+    }
+
+    @Test
+    void testThatFilledLobbyIsTornDownOnlyAfterTheMatchDeadline() {
+        var lobby = lobby(true);
+        given(lobbyRepository.findById(LOBBY_ID)).willReturn(Optional.of(lobby));
+        deadlines.lobbyCreated(LOBBY_ID);
+        advanceMillis(5_000);
+        deadlines.lobbyFilled(LOBBY_ID);
+
+        advanceMillis(59_000);
+        verify(lobbyRepository, never()).delete(any());
+        advanceMillis(1_000);
+
+        verify(lobbyRepository).delete(lobby);
+        assertThat(meterRegistry.get("lobby.deadlines.expired").tag("kind", "match").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testThatIdleDeadlineRestartsWithEveryPlayerThatLeaves() {
+        var lobby = lobby(true);
+        given(lobbyRepository.findById(LOBBY_ID)).willReturn(Optional.of(lobby));
+        deadlines.playerLeft(LOBBY_ID, false);
+        deadlines.playerLeft(LOBBY_ID, true);
+        advanceMillis(4_000);
+        deadlines.playerLeft(LOBBY_ID, true);
+
+        advanceMillis(4_000);
+        verify(lobbyRepository, never()).delete(any());
+        advanceMillis(1_000);
+
+        verify(lobbyRepository).delete(lobby);
+    }
+
+    @Test
+    void testThatClosedLobbyIsNotTornDown() {
+        deadlines.lobbyCreated(LOBBY_ID);
+        deadlines.lobbyClosed(LOBBY_ID);
+
+        advanceMillis(20_000);
+
+        verifyNoInteractions(lobbyRepository, gameInstanceService);
+    }
+
+    @Test
+    void testThatConcurrentlyChangedLobbyIsRetriedOnTheNextTick() {
+        var lobby = lobby(false);
+        given(lobbyRepository.findById(LOBBY_ID)).willReturn(Optional.of(lobby));
+        willThrow(new OptimisticLockingFailureException("changed")).willDoNothing().given(lobbyRepository).delete(lobby);
+        deadlines.lobbyCreated(LOBBY_ID);
+
+        advanceMillis(10_000);
+        verify(gameInstanceService, never()).abandon(LOBBY_ID);
+        advanceMillis(1_000);
+
+        verify(lobbyRepository, times(2)).delete(lobby);
+        verify(gameInstanceService).abandon(LOBBY_ID);
+    }
+
+    @Test
+    void testThatRegisteredLobbyIsRemovedFromTheRegistry() {
+        given(lobbyRegistry.isEnabled()).willReturn(true);
+        given(lobbyRegistry.removeIfNotStarted(LOBBY_ID)).willReturn(true);
+        deadlines.lobbyCreated(LOBBY_ID);
+
+        advanceMillis(10_000);
+
+        verify(lobbyRegistry).removeIfNotStarted(LOBBY_ID);
+        verify(gameInstanceService).abandon(LOBBY_ID);
+        verifyNoInteractions(lobbyRepository);
+    }
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+        deadlines.expireDeadlines();
+    }
+
+    private static Lobby lobby(boolean started) {
+        return new Lobby(LOBBY_ID, "Lobby", started ? 2 : 1, 2, DUMMY_USER, Set.of(DUMMY_USER), "localhost", 9999, started, null);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.lobbyserver.lobby;
+
+import com.example.lobbyserver.lobby.LobbyEventStream.LobbyEvent;
+import com.example.lobbyserver.lobby.db.Lobby;
+import com.example.lobbyserver.lobby.db.LobbyRepository;
+import com.example.lobbyserver.user.db.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.*;
+
+class LobbyEventStreamTest {
+
+    private static final User OWNER = new User("owner", "password", "email", true, Set.of());
+
+    LobbyRepository lobbyRepository = mock(LobbyRepository.class);
+    LobbyRegistry lobbyRegistry = mock(LobbyRegistry.class);
+    List<Runnable> pendingSends = new ArrayList<>();
+    Executor sender = Runnable::run;
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    LobbyEventStream stream = new LobbyEventStream(lobbyRepository, lobbyRegistry, task -> sender.execute(task), meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(stream, "maxPending", 2);
+        given(lobbyRepository.findOpenLobbies(Pageable.unpaged()))
+                .willReturn(new PageImpl<>(List.of(lobby(1L, 1))));
+    }
+
+    @Test
+    void testThatSubscriberStartsWithSnapshot() {
+        var emitter = new RecordingEmitter();
+        stream.subscribe(emitter);
+
+        assertThat(emitter.names).containsExactly("snapshot");
+        assertThat(emitter.data).containsExactly(List.of(LobbyDao.fromLobby(lobby(1L, 1))));
+    }
+
+    @Test
+    void testThatBurstOfChangesIsCoalescedIntoOneEvent() {
+        var emitter = new RecordingEmitter();
+        stream.subscribe(emitter);
+        given(lobbyRepository.findAllById(Set.of(1L))).willReturn(List.of(lobby(1L, 3)));
+
+        stream.lobbyChanged(new LobbyChangedEvent(1L));
+        stream.lobbyChanged(new LobbyChangedEvent(1L));
+        stream.lobbyChanged(new LobbyChangedEvent(1L));
+        stream.publish();
+
+        verify(lobbyRepository).findAllById(any());
+        assertThat(emitter.names).containsExactly("snapshot", "updated");
+        assertThat(emitter.data.get(1)).isEqualTo(new LobbyEvent(LobbyEvent.Type.UPDATED, 1L, LobbyDao.fromLobby(lobby(1L, 3))));
+    }
+
+    @Test
+    void testThatCreatedFilledAndRemovedLobbiesAreStreamed() {
+        var emitter = new RecordingEmitter();
+        stream.subscribe(emitter);
+        given(lobbyRepository.findAllById(Set.of(1L, 2L))).willReturn(List.of(lobby(1L, 4), lobby(2L, 1)));
+
+        stream.lobbyChanged(new LobbyChangedEvent(1L));
+        stream.lobbyChanged(new LobbyChangedEvent(2L));
+        stream.publish();
+        given(lobbyRepository.findAllById(Set.of(2L))).willReturn(List.of());
+        stream.lobbyChanged(new LobbyChangedEvent(2L));
+        stream.publish();
+
+        assertThat(emitter.names).containsExactly("snapshot", "filled", "created", "removed");
+    }
+
+    @Test
+    void testThatChangeWhileTheFirstSnapshotIsLoadedIsStreamed() {
+        given(lobbyRepository.findOpenLobbies(Pageable.unpaged())).willAnswer(_ -> {
+            // committed after the snapshot was read, but before the subscriber is added
+            stream.lobbyChanged(new LobbyChangedEvent(2L));
+            stream.publish();
+            return new PageImpl<>(List.of(lobby(1L, 1)));
+        });
+        given(lobbyRepository.findAllById(Set.of(2L))).willReturn(List.of(lobby(2L, 1)));
+        var emitter = new RecordingEmitter();
+
+        stream.subscribe(emitter);
+        stream.publish();
+
+        assertThat(emitter.names).containsExactly("snapshot", "created");
+    }
+
+    @Test
+    void testThatChangesWithoutSubscribersCostNothing() {
+        stream.lobbyChanged(new LobbyChangedEvent(1L));
+        stream.publish();
+        stream.resync();
+
+        verifyNoInteractions(lobbyRepository);
+    }
+
+    @Test
+    void testThatSlowSubscriberIsDisconnected() {
+        // the subscriber's sends never complete, so its events pile up
+        sender = pendingSends::add;
+        var slow = new RecordingEmitter();
+        stream.subscribe(slow);
+        var lobbies = List.of(lobby(2L, 1), lobby(3L, 1), lobby(4L, 1));
+        given(lobbyRepository.findAllById(Set.of(2L, 3L, 4L))).willReturn(lobbies);
+
+        lobbies.forEach(lobby -> stream.lobbyChanged(new LobbyChangedEvent(lobby.getId())));
+        stream.publish();
+        pendingSends.forEach(Runnable::run);
+
+        assertThat(slow.names).isEmpty();
+        assertThat(meterRegistry.get("lobby.events.dropped").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("lobby.events.subscribers").gauge().value()).isZero();
+    }
+
+    @Test
+    void testThatResyncPicksUpLobbiesChangedElsewhere() {
+        var emitter = new RecordingEmitter();
+        stream.subscribe(emitter);
+        given(lobbyRepository.findOpenLobbies(Pageable.unpaged())).willReturn(new PageImpl<>(List.of(lobby(5L, 1))));
+        given(lobbyRepository.findAllById(Set.of(1L))).willReturn(List.of());
+
+        stream.resync();
+
+        assertThat(emitter.names).containsExactly("snapshot", "removed", "created");
+    }
+
+    private static Lobby lobby(long id, int numberOfPlayers) {
+        return new Lobby(id, "Lobby " + id, numberOfPlayers, 4, OWNER, Set.of(), "localhost", 9999, numberOfPlayers == 4, null);
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+        private final List<String> names = new ArrayList<>();
+        private final List<Object> data = new ArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            for (var part : builder.build()) {
+                if (part.getData() instanceof String text && text.startsWith("event:")) {
+                    names.add(text.substring("event:".length(), text.indexOf('\n')));
+                } else if (!(part.getData() instanceof String)) {
+                    data.add(part.getData());
+                }
+            }
+        }
+    }
+}
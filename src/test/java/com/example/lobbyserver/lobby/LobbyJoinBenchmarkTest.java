@@ -0,0 +1,114 @@
+package com.example.lobbyserver.lobby;
+
+import com.example.lobbyserver.TestcontainersConfiguration;
+import com.example.lobbyserver.game.GameInstanceService;
+import com.example.lobbyserver.lobby.db.Lobby;
+import com.example.lobbyserver.lobby.db.LobbyRepository;
+import com.example.lobbyserver.user.db.User;
+import com.example.lobbyserver.user.db.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the throughput of joins when {@value CLIENTS} clients race for the seats of the same lobby, against a real
+ * Postgres database. Run with {@code ./mvnw test -Dgroups=benchmark -Dtest=LobbyJoinBenchmarkTest}.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({TestcontainersConfiguration.class, LobbyService.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ActiveProfiles("test")
+@Tag("benchmark")
+class LobbyJoinBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LobbyJoinBenchmarkTest.class);
+    private static final int CLIENTS = 6;
+    private static final int SEATS = 4;
+    private static final int ROUNDS = 200;
+
+    @Autowired
+    LobbyService lobbyService;
+
+    @Autowired
+    LobbyRepository lobbyRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @MockitoBean
+    @SuppressWarnings("unused")
+    GameInstanceService gameInstanceService;
+
+    @MockitoBean
+    @SuppressWarnings("unused")
+    LobbyDeadlines lobbyDeadlines;
+
+    @MockitoBean
+    @SuppressWarnings("unused")
+    LobbyRegistry lobbyRegistry;
+
+    @Test
+    void benchmarkClientsRacingForTheSameLobby() throws Exception {
+        var owner = userRepository.save(new User("owner", "password", "owner@example.com", true, Set.of()));
+        for (int i = 0; i < CLIENTS; i++) {
+            userRepository.save(new User("client" + i, "password", "client" + i + "@example.com", true, Set.of()));
+        }
+
+        var joins = 0;
+        var start = System.nanoTime();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int round = 0; round < ROUNDS; round++) {
+                var lobby = new Lobby("Lobby " + round, SEATS, owner);
+                lobby.setGameServerHost("localhost");
+                lobby.setGameServerPort(9999);
+                var lobbyId = lobbyRepository.save(lobby).getId();
+
+                var clients = new ArrayList<Callable<Boolean>>();
+                for (int i = 0; i < CLIENTS; i++) {
+                    var username = "client" + i;
+                    clients.add(() -> lobbyService.tryJoinLobby(lobbyId, username).isPresent());
+                }
+                var joined = 0;
+                for (var result : executor.invokeAll(clients)) {
+                    joined += result.get() ? 1 : 0;
+                }
+                assertThat(joined).isEqualTo(SEATS);
+                joins += joined;
+
+                // players can only be in one lobby at a time
+                lobbyRepository.deleteById(lobbyId);
+            }
+        }
+        var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        log.info("{} clients racing for {} seats: {} joins in {} ms ({} joins/s), {} rejected, {} retries, {} failures",
+                CLIENTS, SEATS, joins, elapsedMillis, joins * 1000L / Math.max(elapsedMillis, 1),
+                meterRegistry.counter("lobby.join.rejected").count(),
+                meterRegistry.counter("lobby.membership.retries", "operation", "join").count(),
+                meterRegistry.counter("lobby.membership.failures", "operation", "join").count());
+        assertThat(meterRegistry.counter("lobby.membership.failures", "operation", "join").count()).isZero();
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.lobbyserver.lobby;
+
+import com.example.lobbyserver.game.GameInstanceReadyEvent;
+import com.example.lobbyserver.lobby.db.Lobby;
+import com.example.lobbyserver.lobby.db.LobbyRepository;
+import com.example.lobbyserver.user.db.User;
+import com.example.lobbyserver.user.db.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.*;
+
+class LobbyRegistryTest {
+
+    private static final User OWNER = new User("owner", "password", "email", true, Set.of());
+
+    LobbyRepository lobbyRepository = mock(LobbyRepository.class);
+    UserRepository userRepository = mock(UserRepository.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    LobbyRegistry registry = new LobbyRegistry(lobbyRepository, userRepository, TransactionOperations.withoutTransaction(), meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(registry, "enabled", true);
+        given(lobbyRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class))).willReturn(List.of());
+        registry.start();
+    }
+
+    @Test
+    void testThatJoiningFillsAndStartsTheLobby() {
+        registry.register(lobby(1L, "Lobby", 2, Set.of()));
+
+        var first = registry.join(1L, "a");
+        assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> registry.join(1L, "a"))
+                .withMessage("User is already in the lobby");
+        var second = registry.join(1L, "b");
+
+        assertThat(first).hasValueSatisfying(joined -> {
+            assertThat(joined.connectionDetails()).isEqualTo(new GameConnectionDetails("localhost", 9999));
+            assertThat(joined.filled()).isFalse();
+        });
+        assertThat(second).hasValueSatisfying(joined -> assertThat(joined.filled()).isTrue());
+        assertThat(registry.join(1L, "c")).isEmpty();
+        assertThat(registry.leave(1L, "a")).isTrue();
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testThatUserCanOnlyBeInOneLobby() {
+        registry.register(lobby(1L, "First", 4, Set.of(OWNER)));
+        registry.register(lobby(2L, "Second", 4, Set.of()));
+
+        registry.join(1L, "a");
+
+        assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> registry.join(2L, "a"))
+                .withMessage("User is already in the lobby");
+        assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> registry.join(2L, "owner"))
+                .withMessage("User is already in the lobby");
+        assertThat(registry.openLobby(2L)).hasValueSatisfying(lobby -> assertThat(lobby.numberOfPlayers()).isZero());
+
+        registry.leave(1L, "a");
+        registry.remove(1L);
+        assertThat(registry.join(2L, "a")).isPresent();
+        assertThat(registry.join(2L, "owner")).isPresent();
+    }
+
+    @Test
+    void testThatOnlyOneLeaveOfTheSameUserSucceeds() {
+        registry.register(lobby(1L, "Lobby", 4, Set.of(OWNER)));
+
+        assertThat(registry.leave(1L, "owner")).isFalse();
+        assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> registry.leave(1L, "owner"))
+                .withMessage("User is not in the lobby");
+    }
+
+    @Test
+    void testThatConcurrentJoinsNeverOverfillTheLobby() throws Exception {
+        registry.register(lobby(1L, "Lobby", 4, Set.of()));
+
+        var joins = new ArrayList<Callable<Boolean>>();
+        for (int i = 0; i < 6; i++) {
+            var username = "player" + i;
+            joins.add(() -> registry.join(1L, username).isPresent());
+        }
+        int joined;
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            joined = 0;
+            for (Future<Boolean> result : executor.invokeAll(joins)) {
+                joined += result.get() ? 1 : 0;
+            }
+        }
+
+        assertThat(joined).isEqualTo(4);
+        assertThat(registry.openLobbies(PageRequest.of(0, 10)).getContent()).isEmpty();
+    }
+
+    @Test
+    void testThatOpenLobbiesArePagedAndSortedInMemory() {
+        registry.register(lobby(1L, "b", 2, Set.of()));
+        registry.register(lobby(2L, "a", 2, Set.of()));
+        registry.register(lobby(3L, "c", 2, Set.of()));
+        var launching = lobby(4L, "d", 2, Set.of());
+        launching.setGameServerHost(null);
+        launching.setGameServerPort(null);
+        registry.register(launching);
+
+        var page = registry.openLobbies(PageRequest.of(0, 2, Sort.by("name")));
+        assertThat(page.getContent()).extracting(LobbyDao::name).containsExactly("a", "b");
+        assertThat(page.getTotalElements()).isEqualTo(3);
+
+        registry.gameInstanceReady(new GameInstanceReadyEvent(4L, "localhost", 9998));
+        assertThat(registry.openLobbies(PageRequest.of(1, 2, Sort.by("name"))).getContent())
+                .extracting(LobbyDao::name).containsExactly("c", "d");
+        verify(lobbyRepository, never()).findOpenLobbies(any());
+    }
+
+    @Test
+    void testThatChangesAreWrittenInOneBatch() {
+        var other = new User("other", "password", "email", true, Set.of());
+        var stored = lobby(1L, "Lobby", 4, Set.of(OWNER));
+        var removed = lobby(2L, "Removed", 4, Set.of());
+        registry.register(lobby(1L, "Lobby", 4, Set.of(OWNER)));
+        registry.register(removed);
+        given(lobbyRepository.findAllById(Set.of(1L, 2L))).willReturn(List.of(stored, removed));
+        given(userRepository.findAllById(Set.of("other"))).willReturn(List.of(other));
+
+        registry.join(1L, "other");
+        registry.leave(1L, "owner");
+        registry.remove(2L);
+        registry.flush();
+        registry.flush();
+
+        verify(lobbyRepository).findAllById(any());
+        assertThat(stored.getNumberOfPlayers()).isEqualTo(2);
+        assertThat(stored.getPlayers()).extracting(User::getUsername).containsExactly("other");
+        verify(lobbyRepository).delete(removed);
+        assertThat(meterRegistry.get("lobby.registry.flushed").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void testThatFailedFlushIsRetried() {
+        registry.register(lobby(1L, "Lobby", 4, Set.of()));
+        given(lobbyRepository.findAllById(Set.of(1L)))
+                .willThrow(new QueryTimeoutException("timeout"))
+                .willReturn(List.of());
+
+        registry.join(1L, "a");
+        registry.flush();
+        assertThat(meterRegistry.get("lobby.registry.dirty").gauge().value()).isEqualTo(1.0);
+        registry.flush();
+
+        verify(lobbyRepository, times(2)).findAllById(Set.of(1L));
+        assertThat(meterRegistry.get("lobby.registry.dirty").gauge().value()).isZero();
+    }
+
+    @Test
+    void testThatFlushIsRetriedWhenNoTransactionCanBeStarted() {
+        var down = new AtomicBoolean(false);
+        var registry = new LobbyRegistry(lobbyRepository, userRepository, new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                if (down.get()) {
+                    throw new CannotCreateTransactionException("connection refused");
+                }
+                return TransactionOperations.withoutTransaction().execute(action);
+            }
+        }, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(registry, "enabled", true);
+        registry.start();
+        registry.register(lobby(1L, "Lobby", 4, Set.of()));
+        given(lobbyRepository.findAllById(Set.of(1L))).willReturn(List.of());
+
+        registry.join(1L, "a");
+        down.set(true);
+        registry.flush();
+        verify(lobbyRepository, never()).findAllById(Set.of(1L));
+        down.set(false);
+        registry.flush();
+
+        verify(lobbyRepository).findAllById(Set.of(1L));
+    }
+
+    @Test
+    void testThatLobbiesAreLoadedAndDroppedOnceTheirRowIsGone() {
+        given(lobbyRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(500)))
+                .willReturn(List.of(lobby(5L, "Stored", 2, Set.of(OWNER))));
+        registry.start();
+        given(lobbyRepository.findAllIds()).willReturn(List.of());
+
+        assertThat(registry.contains(5L)).isTrue();
+        registry.resync();
+        assertThat(registry.contains(5L)).isTrue();
+        registry.resync();
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> registry.leave(5L, "owner"))
+                .withMessage("Lobby not found");
+        registry.register(lobby(6L, "Other", 2, Set.of()));
+        assertThat(registry.join(6L, "owner")).isPresent();
+    }
+
+    private static Lobby lobby(long id, String name, int maxPlayers, Set<User> players) {
+        return new Lobby(id, name, players.size(), maxPlayers, OWNER, players, "localhost", 9999, false, null);
+    }
+}
@@ -1,12 +1,16 @@
 package com.example.lobbyserver.lobby;
 
+import com.example.lobbyserver.game.GameInstanceNotFoundException;
 import com.example.lobbyserver.game.GameInstanceService;
-import com.example.lobbyserver.game.db.GameResult;
-import com.example.lobbyserver.game.db.GameResultRepository;
+import com.example.lobbyserver.game.GameResultNotStoredException;
+import com.example.lobbyserver.game.GameResultRecordedEvent;
+import com.example.lobbyserver.game.GameResultWriter;
 import com.example.lobbyserver.lobby.db.Lobby;
 import com.example.lobbyserver.lobby.db.LobbyRepository;
+import com.example.lobbyserver.lobby.db.LobbySeat;
 import com.example.lobbyserver.user.db.User;
 import com.example.lobbyserver.user.db.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.validation.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -14,8 +18,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
 import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
@@ -26,7 +34,8 @@ import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.BDDMockito.*;
 import static org.mockito.Mockito.verify;
 
-@SpringBootTest(classes = LobbyService.class)
+@SpringBootTest(classes = {LobbyService.class, SimpleMeterRegistry.class})
+@RecordApplicationEvents
 @ImportAutoConfiguration(ValidationAutoConfiguration.class)
 @ActiveProfiles("test")
 class LobbyServiceTest {
@@ -48,7 +57,20 @@ class LobbyServiceTest {
     UserRepository userRepository;
 
     @MockitoBean
-    GameResultRepository gameResultRepository;
+    GameResultWriter gameResultWriter;
+
+    @MockitoBean
+    LobbyDeadlines lobbyDeadlines;
+
+    @MockitoBean
+    LobbyRegistry lobbyRegistry;
+
+    @Autowired
+    ApplicationEvents applicationEvents;
+
+    @MockitoBean
+    @SuppressWarnings("unused")
+    PlatformTransactionManager transactionManager;
 
     @Test
     void testThatCreateNewLobbyWorks() {
@@ -74,25 +96,16 @@ class LobbyServiceTest {
         assertThat(createdLobby.owner()).isEqualTo(username);
 
         verify(gameInstanceService).startNewGameInstance(1L, lobbyRequest.maxPlayers());
+        verify(lobbyDeadlines).lobbyCreated(1L);
     }
 
     @Test
     void testThatTryJoinLobbyReturnsConnectionResults() {
         var username = "user";
 
-        given(userRepository.findById(username)).willReturn(Optional.of(DUMMY_USER));
-        given(lobbyRepository.findById(LOBBY_ID)).willReturn(Optional.of(
-                new Lobby(LOBBY_ID,
-                        "Lobby 1",
-                        0,
-                        4,
-                        DUMMY_USER,
-                        Set.of(),
-                        HOSTNAME,
-                        PORT,
-                        false,
-                        null)
-        ));
+        given(lobbyRepository.claimSeat(LOBBY_ID)).willReturn(1);
+        given(lobbyRepository.claimMembership(LOBBY_ID, username)).willReturn(1);
+        given(lobbyRepository.findSeatById(LOBBY_ID)).willReturn(Optional.of(new LobbySeat(HOSTNAME, PORT, false)));
 
         var result = lobbyService.tryJoinLobby(LOBBY_ID, username);
         assertThat(result).isPresent();
@@ -100,25 +113,16 @@ class LobbyServiceTest {
         var connectionDetails = result.get();
         assertThat(connectionDetails.hostname()).isEqualTo(HOSTNAME);
         assertThat(connectionDetails.port()).isEqualTo(PORT);
+        verify(gameInstanceService, never()).gameStarted(anyLong());
+        assertThat(applicationEvents.stream(LobbyChangedEvent.class)).containsExactly(new LobbyChangedEvent(LOBBY_ID));
     }
 
     @Test
     void testThatTryingToJoinALobbyTwiceThrowsException() {
         var username = "user";
 
-        given(userRepository.findById(username)).willReturn(Optional.of(DUMMY_USER));
-        given(lobbyRepository.findById(LOBBY_ID)).willReturn(Optional.of(
-                new Lobby(LOBBY_ID,
-                        "Lobby 1",
-                        0,
-                        4,
-                        DUMMY_USER,
-                        Set.of(DUMMY_USER),
-                        HOSTNAME,
-                        PORT,
-                        false,
-                        null)
-        ));
+        given(lobbyRepository.claimSeat(LOBBY_ID)).willReturn(1);
+        given(lobbyRepository.claimMembership(LOBBY_ID, username)).willReturn(0);
 
         assertThatExceptionOfType(IllegalStateException.class)
                 .isThrownBy(() -> lobbyService.tryJoinLobby(LOBBY_ID, username))
@@ -129,22 +133,11 @@ class LobbyServiceTest {
     void testThatTryJoinLobbyReturnsEmptyForFullLobby() {
         var username = "user";
 
-        given(userRepository.findById(username)).willReturn(Optional.of(DUMMY_USER));
-        given(lobbyRepository.findById(LOBBY_ID)).willReturn(Optional.of(
-                new Lobby(LOBBY_ID,
-                        "Lobby 1",
-                        4,
-                        4,
-                        DUMMY_USER,
-                        Set.of(DUMMY_USER),
-                        HOSTNAME,
-                        PORT,
-                        true,
-                        null)
-        ));
+        given(lobbyRepository.claimSeat(LOBBY_ID)).willReturn(0);
 
         var result = lobbyService.tryJoinLobby(LOBBY_ID, username);
         assertThat(result).isEmpty();
+        verify(lobbyRepository, never()).claimMembership(anyLong(), any());
     }
 
     @Test
@@ -157,52 +150,47 @@ class LobbyServiceTest {
     void testThatFullLobbyGetsSetToGameStarted() {
         var username = "user2";
 
-        var capture = ArgumentCaptor.forClass(Lobby.class);
-        given(userRepository.findById(username)).willReturn(Optional.of(
-                new User(username, "password", "email@email.com", true, Set.of())
-        ));
-        given(lobbyRepository.findById(LOBBY_ID)).willReturn(Optional.of(
-                new Lobby(LOBBY_ID,
-                        "Lobby 1",
-                        1,
-                        2,
-                        DUMMY_USER,
-                        Set.of(DUMMY_USER),
-                        HOSTNAME,
-                        PORT,
-                        false,
-                        null)
-        ));
-        given(lobbyRepository.save(capture.capture())).willReturn(null);
+        given(lobbyRepository.claimSeat(LOBBY_ID)).willReturn(1);
+        given(lobbyRepository.claimMembership(LOBBY_ID, username)).willReturn(1);
+        given(lobbyRepository.findSeatById(LOBBY_ID)).willReturn(Optional.of(new LobbySeat(HOSTNAME, PORT, true)));
 
         var result = lobbyService.tryJoinLobby(LOBBY_ID, username);
 
         assertThat(result).isPresent();
-        assertThat(capture.getValue().getGameStarted()).isTrue();
+        verify(gameInstanceService).gameStarted(LOBBY_ID);
+        verify(lobbyDeadlines).lobbyFilled(LOBBY_ID);
     }
 
     @Test
     void testThatCannotJoinLobbyThatHasAlreadyStarted() {
         var username = "user2";
 
-        given(userRepository.findById(username)).willReturn(Optional.of(
-                new User(username, "password", "email@email.com", true, Set.of())
-        ));
-        given(lobbyRepository.findById(LOBBY_ID)).willReturn(Optional.of(
-                new Lobby(LOBBY_ID,
-                        "Lobby 1",
-                        1,
-                        2,
-                        DUMMY_USER,
-                        Set.of(DUMMY_USER),
-                        HOSTNAME,
-                        PORT,
-                        true,
-                        null)
-        ));
+        given(lobbyRepository.claimSeat(LOBBY_ID)).willReturn(0);
 
         var result = lobbyService.tryJoinLobby(LOBBY_ID, username);
         assertThat(result).isEmpty();
+        verify(gameInstanceService, never()).gameStarted(anyLong());
+    }
+
+    @Test
+    void testThatJoinIsRetriedWhenItLosesALock() {
+        given(lobbyRepository.claimSeat(LOBBY_ID))
+                .willThrow(new CannotAcquireLockException("deadlock"))
+                .willReturn(1);
+        given(lobbyRepository.claimMembership(LOBBY_ID, "user")).willReturn(1);
+        given(lobbyRepository.findSeatById(LOBBY_ID)).willReturn(Optional.of(new LobbySeat(HOSTNAME, PORT, false)));
+
+        assertThat(lobbyService.tryJoinLobby(LOBBY_ID, "user")).isPresent();
+        verify(lobbyRepository, times(2)).claimSeat(LOBBY_ID);
+    }
+
+    @Test
+    void testThatJoinGivesUpAfterBoundedRetries() {
+        given(lobbyRepository.claimSeat(LOBBY_ID)).willThrow(new CannotAcquireLockException("deadlock"));
+
+        assertThatExceptionOfType(CannotAcquireLockException.class)
+                .isThrownBy(() -> lobbyService.tryJoinLobby(LOBBY_ID, "user"));
+        verify(lobbyRepository, times(3)).claimSeat(LOBBY_ID);
     }
 
     @Test
@@ -216,54 +204,64 @@ class LobbyServiceTest {
     @Test
     void testThatSavingValidGameResultWorks() {
         var validGameResult = new GameResultRequest(9999L, 11, 123, 60000L);
-        var capture = ArgumentCaptor.forClass(GameResult.class);
         var dummyTime = LocalDateTime.of(2021, 1, 1, 0, 0);
 
-        given(gameResultRepository.save(capture.capture())).willReturn(null);
-        given(userRepository.getReferenceById("user")).willReturn(DUMMY_USER);
-
         try (var staticLocalDateTime = mockStatic(LocalDateTime.class)) {
             staticLocalDateTime.when(LocalDateTime::now).thenReturn(dummyTime);
             lobbyService.saveGameResult("user", validGameResult);
         }
 
-        var savedResult = capture.getValue();
-        assertThat(savedResult.getId()).isNull();
-        assertThat(savedResult.getUser().getUsername()).isEqualTo("user");
-        assertThat(savedResult.getScore()).isEqualTo(validGameResult.score());
-        assertThat(savedResult.getLevel()).isEqualTo(validGameResult.level());
-        assertThat(savedResult.getTime()).isEqualTo(validGameResult.time());
-        assertThat(savedResult.getDateTime()).isEqualTo(dummyTime);
+        verify(gameResultWriter).write("user", 9999L, 11, 123, 60000L, dummyTime);
     }
 
     @Test
     void testThatRemovingPlayerFromLobbyWorks() {
-        var otherUser = new User();
-        otherUser.setUsername("otherUser");
+        given(lobbyRepository.releaseMembership(LOBBY_ID, "user")).willReturn(1);
+        given(gameInstanceService.playerLeftGame(LOBBY_ID)).willReturn(1);
+        given(lobbyRepository.findSeatById(LOBBY_ID)).willReturn(Optional.of(new LobbySeat(HOSTNAME, PORT, true)));
 
-        var lobby = new Lobby(LOBBY_ID,
-                "Lobby 1",
-                2,
-                2,
-                DUMMY_USER,
-                Set.of(DUMMY_USER, otherUser),
-                HOSTNAME,
-                PORT,
-                true,
-                null);
+        lobbyService.removePlayerFromLobby(LOBBY_ID, "user");
 
-        var capture = ArgumentCaptor.forClass(Lobby.class);
+        verify(lobbyRepository).releaseMembership(LOBBY_ID, "user");
+        verify(lobbyRepository, never()).delete(any());
+        verify(lobbyDeadlines).playerLeft(LOBBY_ID, true);
+    }
 
-        given(lobbyRepository.findById(LOBBY_ID)).willReturn(Optional.of(lobby));
+    @Test
+    void testThatLeavingStoresTheGameResult() {
+        var result = new GameResultRequest(9999L, 11, 123, 60000L);
+        given(lobbyRepository.releaseMembership(LOBBY_ID, "user")).willReturn(1);
         given(gameInstanceService.playerLeftGame(LOBBY_ID)).willReturn(1);
-        given(userRepository.findById("user")).willReturn(Optional.of(DUMMY_USER));
-        given(lobbyRepository.save(capture.capture())).willReturn(null);
 
-        lobbyService.removePlayerFromLobby(LOBBY_ID, "user");
+        lobbyService.leaveLobby(LOBBY_ID, "user", result);
 
-        var updatedLobby = capture.getValue();
-        assertThat(updatedLobby.getNumberOfPlayers()).isEqualTo(2);
-        assertThat(updatedLobby.getPlayers()).noneMatch(user -> user.getUsername().equals("user"));
+        verify(gameResultWriter).write(eq("user"), eq(9999L), eq(11), eq(123), eq(60000L), any(LocalDateTime.class));
+        assertThat(applicationEvents.stream(GameResultRecordedEvent.class))
+                .containsExactly(new GameResultRecordedEvent(LOBBY_ID, "user", 9999L, false));
+    }
+
+    @Test
+    void testThatUncommittedGameResultStillLetsThePlayerLeave() {
+        var result = new GameResultRequest(9999L, 11, 123, 60000L);
+        given(lobbyRepository.releaseMembership(LOBBY_ID, "user")).willReturn(1);
+        given(gameInstanceService.playerLeftGame(LOBBY_ID)).willReturn(0);
+        willThrow(new GameResultNotStoredException("not committed", null))
+                .given(gameResultWriter).write(anyString(), anyLong(), anyInt(), anyInt(), anyLong(), any());
+
+        assertThatExceptionOfType(GameResultNotStoredException.class)
+                .isThrownBy(() -> lobbyService.leaveLobby(LOBBY_ID, "user", result));
+
+        verify(gameInstanceService).playerLeftGame(LOBBY_ID);
+        verify(lobbyDeadlines).lobbyClosed(LOBBY_ID);
+    }
+
+    @Test
+    void testThatLeavingALobbyTheUserIsNotInStoresNoGameResult() {
+        given(lobbyRepository.existsById(LOBBY_ID)).willReturn(true);
+
+        assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> lobbyService.leaveLobby(LOBBY_ID, "user", new GameResultRequest(1L, 1, 1, 1L)));
+        verifyNoInteractions(gameResultWriter, gameInstanceService);
     }
 
     @Test
@@ -275,18 +273,7 @@ class LobbyServiceTest {
 
     @Test
     void testThatRemovePlayerFromOtherLobbyThrowsException() {
-        given(lobbyRepository.findById(LOBBY_ID)).willReturn(Optional.of(
-                new Lobby(LOBBY_ID,
-                        "Lobby 1",
-                        0,
-                        2,
-                        DUMMY_USER,
-                        Set.of(),
-                        HOSTNAME,
-                        PORT,
-                        false,
-                        null)
-        ));
+        given(lobbyRepository.existsById(LOBBY_ID)).willReturn(true);
 
         assertThatExceptionOfType(IllegalStateException.class)
                 .isThrownBy(() -> lobbyService.removePlayerFromLobby(LOBBY_ID, "user"))
@@ -307,10 +294,76 @@ class LobbyServiceTest {
                 null);
 
         given(lobbyRepository.findById(LOBBY_ID)).willReturn(Optional.of(lobby));
+        given(lobbyRepository.releaseMembership(LOBBY_ID, "user")).willReturn(1);
         given(gameInstanceService.playerLeftGame(LOBBY_ID)).willReturn(0);
 
         lobbyService.removePlayerFromLobby(LOBBY_ID, "user");
 
         verify(lobbyRepository).delete(lobby);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testThatLobbyWithoutGameInstanceGetsDeletedWhenPlayerLeaves() {
+        var lobby = new Lobby(LOBBY_ID,
+                "Lobby 1",
+                2,
+                2,
+                DUMMY_USER,
+                Set.of(DUMMY_USER),
+                HOSTNAME,
+                PORT,
+                true,
+                null);
+
+        given(lobbyRepository.findById(LOBBY_ID)).willReturn(Optional.of(lobby));
+        given(lobbyRepository.releaseMembership(LOBBY_ID, "user")).willReturn(1);
+        given(gameInstanceService.playerLeftGame(LOBBY_ID)).willThrow(new GameInstanceNotFoundException(LOBBY_ID));
+
+        lobbyService.removePlayerFromLobby(LOBBY_ID, "user");
+
+        verify(lobbyRepository).delete(lobby);
+    }
+
+    @Test
+    void testThatJoiningThroughTheRegistryStartsTheFullLobby() {
+        given(lobbyRegistry.isEnabled()).willReturn(true);
+        given(lobbyRegistry.join(LOBBY_ID, "user")).willReturn(Optional.of(
+                new LobbyRegistry.Joined(new GameConnectionDetails(HOSTNAME, PORT), true)));
+
+        var result = lobbyService.tryJoinLobby(LOBBY_ID, "user");
+
+        assertThat(result).contains(new GameConnectionDetails(HOSTNAME, PORT));
+        verify(gameInstanceService).gameStarted(LOBBY_ID);
+        verify(lobbyDeadlines).lobbyFilled(LOBBY_ID);
+        verifyNoInteractions(lobbyRepository, userRepository);
+    }
+
+    @Test
+    void testThatLastPlayerLeavingRemovesTheLobbyFromTheRegistry() {
+        given(lobbyRegistry.isEnabled()).willReturn(true);
+        given(lobbyRegistry.leave(LOBBY_ID, "user")).willReturn(true);
+        given(gameInstanceService.playerLeftGame(LOBBY_ID)).willReturn(0);
+
+        lobbyService.removePlayerFromLobby(LOBBY_ID, "user");
+
+        verify(lobbyRegistry).remove(LOBBY_ID);
+        verify(lobbyDeadlines).lobbyClosed(LOBBY_ID);
+        verifyNoInteractions(lobbyRepository);
+    }
+
+    @Test
+    void testThatSecondLeaveFromTheRegistryDoesNotCountAsLeavingPlayer() {
+        given(lobbyRegistry.isEnabled()).willReturn(true);
+        given(lobbyRegistry.leave(LOBBY_ID, "user"))
+                .willReturn(true)
+                .willThrow(new IllegalStateException("User is not in the lobby"));
+        given(gameInstanceService.playerLeftGame(LOBBY_ID)).willReturn(1);
+
+        lobbyService.removePlayerFromLobby(LOBBY_ID, "user");
+        assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> lobbyService.removePlayerFromLobby(LOBBY_ID, "user"));
+
+        verify(gameInstanceService).playerLeftGame(LOBBY_ID);
+        verify(lobbyDeadlines).playerLeft(LOBBY_ID, true);
+    }
+}
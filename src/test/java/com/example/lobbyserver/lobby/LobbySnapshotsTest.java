@@ -0,0 +1,113 @@
+package com.example.lobbyserver.lobby;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.*;
+
+class LobbySnapshotsTest {
+
+    private static final long START = 1_000L;
+
+    LobbyService lobbyService = mock(LobbyService.class);
+    AtomicLong now = new AtomicLong();
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    LobbySnapshots snapshots = new LobbySnapshots(lobbyService, now::get, START, meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(snapshots, "changeLogSize", 4);
+        ReflectionTestUtils.setField(snapshots, "maxAgeMillis", 5_000L);
+        givenOpenLobbies(lobby(1L, 1), lobby(2L, 1));
+    }
+
+    @Test
+    void testThatSnapshotIsOnlyRebuiltAfterAChange() {
+        var first = snapshots.current();
+        var second = snapshots.current();
+        snapshots.lobbyChanged(new LobbyChangedEvent(2L));
+        givenOpenLobbies(lobby(1L, 1), lobby(2L, 2));
+        var third = snapshots.current();
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.version()).isEqualTo(START);
+        assertThat(third.version()).isEqualTo(START + 1);
+        assertThat(third.page(PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "numberOfPlayers"))).getContent())
+                .containsExactly(lobby(2L, 2));
+        verify(lobbyService, times(2)).getOpenLobbies(Pageable.unpaged());
+    }
+
+    @Test
+    void testThatRebuildWithoutChangesKeepsTheVersion() {
+        var first = snapshots.current();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+
+        assertThat(snapshots.current()).isSameAs(first);
+        assertThat(meterRegistry.get("lobby.snapshots.rebuilds").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void testThatChangesSinceReturnsOnlyChangedLobbies() {
+        var version = snapshots.current().version();
+        snapshots.lobbyChanged(new LobbyChangedEvent(1L));
+        givenOpenLobbies(lobby(1L, 2), lobby(2L, 1));
+        snapshots.current();
+        snapshots.lobbyChanged(new LobbyChangedEvent(2L));
+        givenOpenLobbies(lobby(1L, 3), lobby(3L, 1));
+
+        var delta = snapshots.changesSince(version);
+
+        assertThat(delta.version()).isEqualTo(version + 2);
+        assertThat(delta.full()).isFalse();
+        assertThat(delta.changed()).containsExactly(lobby(1L, 3), lobby(3L, 1));
+        assertThat(delta.removed()).containsExactly(2L);
+        assertThat(snapshots.changesSince(version + 2).changed()).isEmpty();
+    }
+
+    @Test
+    void testThatVersionsOutsideTheChangeLogGetAllLobbies() {
+        var version = snapshots.current().version();
+        for (int players = 2; players <= 4; players++) {
+            snapshots.lobbyChanged(new LobbyChangedEvent(1L));
+            givenOpenLobbies(lobby(1L, players), lobby(2L, players));
+            snapshots.current();
+        }
+
+        assertThat(snapshots.changesSince(version).full()).isTrue();
+        assertThat(snapshots.changesSince(version + 1).full()).isFalse();
+        assertThat(snapshots.changesSince(START - 100).full()).isTrue();
+        assertThat(snapshots.changesSince(version + 100).changed()).hasSize(2);
+    }
+
+    @Test
+    void testThatFailedRebuildServesThePreviousSnapshot() {
+        var first = snapshots.current();
+        snapshots.lobbyChanged(new LobbyChangedEvent(1L));
+        given(lobbyService.getOpenLobbies(Pageable.unpaged()))
+                .willThrow(new QueryTimeoutException("timeout"))
+                .willReturn(new PageImpl<>(List.of(lobby(1L, 2))));
+
+        assertThat(snapshots.current()).isSameAs(first);
+        assertThat(snapshots.current().version()).isEqualTo(START + 1);
+    }
+
+    private void givenOpenLobbies(LobbyDao... lobbies) {
+        given(lobbyService.getOpenLobbies(Pageable.unpaged())).willReturn(new PageImpl<>(List.of(lobbies)));
+    }
+
+    private static LobbyDao lobby(long id, int numberOfPlayers) {
+        return new LobbyDao(id, "Lobby " + id, numberOfPlayers, 6, "owner");
+    }
+}
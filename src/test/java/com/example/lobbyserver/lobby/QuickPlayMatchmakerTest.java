@@ -0,0 +1,181 @@
+package com.example.lobbyserver.lobby;
+
+import com.example.lobbyserver.game.GameInstanceAdmissionException;
+import com.example.lobbyserver.game.PlayerRatings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.*;
+
+class QuickPlayMatchmakerTest {
+
+    private static final GameConnectionDetails DETAILS = new GameConnectionDetails("localhost", 9999);
+
+    LobbyService lobbyService = mock(LobbyService.class);
+    LobbySnapshots lobbySnapshots = mock(LobbySnapshots.class);
+    PlayerRatings playerRatings = mock(PlayerRatings.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    QuickPlayMatchmaker matchmaker = new QuickPlayMatchmaker(lobbyService, lobbySnapshots, playerRatings, meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(matchmaker, "launchTimeoutMillis", 30_000L);
+        ReflectionTestUtils.setField(matchmaker, "ratingRange", 200.0);
+        ReflectionTestUtils.setField(matchmaker, "ratingRelaxMillis", 10_000L);
+        givenOpenLobbies();
+        given(lobbyService.tryJoinLobby(anyLong(), anyString())).willReturn(Optional.of(DETAILS));
+    }
+
+    @Test
+    void testThatNearlyFullLobbiesAreFilledFirst() {
+        givenOpenLobbies(lobby(1L, 1, 4), lobby(2L, 3, 4), lobby(3L, 0, 2));
+
+        var first = matchmaker.enqueue("a", 4);
+        var second = matchmaker.enqueue("b", 4);
+        matchmaker.match();
+
+        assertThat(first).isCompletedWithValue(DETAILS);
+        assertThat(second).isCompletedWithValue(DETAILS);
+        verify(lobbyService).tryJoinLobby(2L, "a");
+        verify(lobbyService).tryJoinLobby(1L, "b");
+        verify(lobbyService, never()).tryJoinLobby(eq(3L), anyString());
+        assertThat(meterRegistry.get("lobby.quickplay.waiting").gauge().value()).isZero();
+    }
+
+    @Test
+    void testThatPlayerWhoLostTheRaceMovesOnToTheNextLobby() {
+        givenOpenLobbies(lobby(1L, 3, 4), lobby(2L, 1, 4));
+        given(lobbyService.tryJoinLobby(1L, "a")).willReturn(Optional.empty());
+
+        var matched = matchmaker.enqueue("a", 4);
+        matchmaker.match();
+
+        assertThat(matched).isCompletedWithValue(DETAILS);
+        verify(lobbyService).tryJoinLobby(2L, "a");
+    }
+
+    @Test
+    void testThatPlayersClosestToTheOwnersRatingAreMatched() {
+        givenOpenLobbies(lobby(1L, 2, 4));
+        given(playerRatings.rating("owner")).willReturn(1500.0);
+        given(playerRatings.rating("far")).willReturn(2100.0);
+        given(playerRatings.rating("close")).willReturn(1450.0);
+        given(playerRatings.rating("closest")).willReturn(1520.0);
+        given(lobbyService.createNewLobby(any(), anyString())).willReturn(new LobbyDao(10L, "Quick Play 10", 0, 4, "far"));
+
+        var far = matchmaker.enqueue("far", 4);
+        var close = matchmaker.enqueue("close", 4);
+        var closest = matchmaker.enqueue("closest", 4);
+        matchmaker.match();
+
+        assertThat(closest).isCompletedWithValue(DETAILS);
+        assertThat(close).isCompletedWithValue(DETAILS);
+        assertThat(far).isNotDone();
+        verify(lobbyService, never()).tryJoinLobby(1L, "far");
+        verify(lobbyService).createNewLobby(argThat(quickPlay(4)), eq("far"));
+    }
+
+    @Test
+    void testThatPlayersWaitingLongTakeAnySeat() {
+        ReflectionTestUtils.setField(matchmaker, "ratingRelaxMillis", 0L);
+        givenOpenLobbies(lobby(1L, 3, 4));
+        given(playerRatings.rating("owner")).willReturn(1500.0);
+        given(playerRatings.rating("far")).willReturn(2100.0);
+
+        var far = matchmaker.enqueue("far", 4);
+        matchmaker.match();
+
+        assertThat(far).isCompletedWithValue(DETAILS);
+    }
+
+    @Test
+    void testThatLobbiesAreCreatedOnlyOnceForTheWaitingPlayers() {
+        given(lobbyService.createNewLobby(any(), anyString()))
+                .willReturn(new LobbyDao(10L, "Quick Play 10", 0, 2, "a"))
+                .willReturn(new LobbyDao(11L, "Quick Play 11", 0, 2, "c"));
+
+        var first = matchmaker.enqueue("a", 2);
+        matchmaker.enqueue("b", 2);
+        matchmaker.enqueue("c", 2);
+        matchmaker.match();
+        matchmaker.match();
+
+        var requests = ArgumentCaptor.forClass(LobbyCreationRequest.class);
+        verify(lobbyService).createNewLobby(requests.capture(), eq("a"));
+        verify(lobbyService).createNewLobby(requests.capture(), eq("c"));
+        assertThat(requests.getAllValues()).allMatch(quickPlay(2)::matches);
+        // lobby names are unique
+        assertThat(requests.getAllValues()).extracting(LobbyCreationRequest::name).doesNotHaveDuplicates();
+        assertThat(meterRegistry.get("lobby.quickplay.created").counter().count()).isEqualTo(2.0);
+
+        // the game server of the first lobby is ready
+        givenOpenLobbies(lobby(10L, 0, 2));
+        matchmaker.match();
+
+        assertThat(first).isCompletedWithValue(DETAILS);
+        verify(lobbyService).tryJoinLobby(10L, "a");
+        verify(lobbyService).tryJoinLobby(10L, "b");
+        verify(lobbyService, times(2)).createNewLobby(any(), anyString());
+    }
+
+    @Test
+    void testThatRejectedLobbyCreationIsRetried() {
+        given(lobbyService.createNewLobby(any(), anyString()))
+                .willThrow(new GameInstanceAdmissionException("queue full", Duration.ofSeconds(5)))
+                .willReturn(new LobbyDao(10L, "Quick Play 10", 0, 2, "a"));
+
+        matchmaker.enqueue("a", 2);
+        matchmaker.match();
+        matchmaker.match();
+
+        verify(lobbyService, times(2)).createNewLobby(argThat(quickPlay(2)), eq("a"));
+    }
+
+    @Test
+    void testThatCancelledPlayersAreNotMatched() {
+        givenOpenLobbies(lobby(1L, 0, 4));
+
+        var matched = matchmaker.enqueue("a", 4);
+        matchmaker.cancel("a", matched);
+        matchmaker.match();
+
+        assertThat(matched).isCancelled();
+        verifyNoInteractions(lobbyService);
+    }
+
+    @Test
+    void testThatQueueingAgainReplacesThePreviousRequest() {
+        givenOpenLobbies(lobby(1L, 0, 2));
+
+        var previous = matchmaker.enqueue("a", 4);
+        var current = matchmaker.enqueue("a", 2);
+        matchmaker.match();
+
+        assertThat(previous).isCancelled();
+        assertThat(current).isCompletedWithValue(DETAILS);
+        verify(lobbyService, never()).createNewLobby(any(), anyString());
+    }
+
+    private void givenOpenLobbies(LobbyDao... lobbies) {
+        given(lobbySnapshots.current()).willReturn(new LobbySnapshot(1L, List.of(lobbies)));
+    }
+
+    private static LobbyDao lobby(long id, int numberOfPlayers, int maxPlayers) {
+        return new LobbyDao(id, "Lobby " + id, numberOfPlayers, maxPlayers, "owner");
+    }
+
+    private static ArgumentMatcher<LobbyCreationRequest> quickPlay(int lobbySize) {
+        return request -> request.name().startsWith("Quick Play ") && request.maxPlayers() == lobbySize;
+    }
+}
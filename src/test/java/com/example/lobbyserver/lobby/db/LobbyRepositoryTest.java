@@ -1,6 +1,7 @@
 package com.example.lobbyserver.lobby.db;
 
 import com.example.lobbyserver.TestcontainersConfiguration;
+import com.example.lobbyserver.lobby.QuickPlayMatchmaker;
 import com.example.lobbyserver.user.db.User;
 import com.example.lobbyserver.user.db.UserRepository;
 import jakarta.persistence.EntityManager;
@@ -82,4 +83,50 @@ class LobbyRepositoryTest {
         assertThat(results).hasSize(1);
         assertThat(results.getFirst()).isEqualTo(0L);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testThatSeveralQuickPlayLobbiesCanExist() {
+        var owner = userRepository.findById("admin").orElseThrow();
+        for (int i = 0; i < 2; i++) {
+            var lobby = new Lobby();
+            lobby.setName(QuickPlayMatchmaker.lobbyName());
+            lobby.setNumberOfPlayers(0);
+            lobby.setMaxPlayers(2);
+            lobby.setOwner(owner);
+            lobby.setGameStarted(false);
+            lobbyRepository.saveAndFlush(lobby);
+        }
+
+        assertThat(lobbyRepository.findAll())
+                .filteredOn(lobby -> lobby.getName().startsWith("Quick Play "))
+                .hasSize(2);
+    }
+
+    @Test
+    void testThatSeatsAreOnlyClaimedInOpenLobbiesWithAGameServer() {
+        var lobby = lobbyRepository.findByName("Lobby 1").orElseThrow();
+        assertThat(lobbyRepository.claimSeat(lobby.getId())).isZero();
+
+        lobbyRepository.updateGameServerHostAndGameServerPortById("localhost", 9999, lobby.getId());
+        for (int i = 0; i < 4; i++) {
+            assertThat(lobbyRepository.claimSeat(lobby.getId())).isEqualTo(1);
+        }
+        assertThat(lobbyRepository.claimSeat(lobby.getId())).isZero();
+
+        entityManager.clear();
+        var seat = lobbyRepository.findSeatById(lobby.getId()).orElseThrow();
+        assertThat(seat.gameStarted()).isTrue();
+        assertThat(seat.gameServerPort()).isEqualTo(9999);
+        assertThat(lobbyRepository.findById(lobby.getId()).orElseThrow().getNumberOfPlayers()).isEqualTo(4);
+    }
+
+    @Test
+    void testThatPlayersAreAddedOnlyOnce() {
+        var lobby = lobbyRepository.findByName("Lobby 1").orElseThrow();
+
+        assertThat(lobbyRepository.claimMembership(lobby.getId(), "admin")).isEqualTo(1);
+        assertThat(lobbyRepository.claimMembership(lobby.getId(), "admin")).isZero();
+        assertThat(lobbyRepository.releaseMembership(lobby.getId(), "admin")).isEqualTo(1);
+        assertThat(lobbyRepository.releaseMembership(lobby.getId(), "admin")).isZero();
+    }
+}
@@ -14,6 +14,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -36,6 +37,9 @@ class UserControllerTest {
     @MockitoBean
     UserService userService;
 
+    @MockitoBean
+    UserStatsService userStatsService;
+
     @MockitoBean
     MailVerificationService mailVerificationService;
 
@@ -62,6 +66,36 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.username").value("user"));
     }
 
+    @Test
+    @WithMockUser
+    void testThatGetUserStatsReturnsTheStatsOfTheCurrentUser() throws Exception {
+        given(userStatsService.getStats("user")).willReturn(Optional.of(
+                new UserStatsDao("user", 4, 9000, 4500.5, 120, 600000, LocalDateTime.of(2024, 1, 1, 12, 0))));
+
+        mockMvc.perform(get("/user/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value("user"))
+                .andExpect(jsonPath("$.gamesPlayed").value(4))
+                .andExpect(jsonPath("$.bestScore").value(9000))
+                .andExpect(jsonPath("$.averageScore").value(4500.5));
+    }
+
+    @Test
+    @WithMockUser
+    void testThatGetUserStatsWithoutGamesReturns404() throws Exception {
+        given(userStatsService.getStats("user")).willReturn(Optional.empty());
+
+        mockMvc.perform(get("/user/stats"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testThatGetUserStatsRequiresAuthentication() throws Exception {
+        mockMvc.perform(get("/user/stats"))
+                .andExpect(status().isUnauthorized());
+        verify(userStatsService, never()).getStats(anyString());
+    }
+
     @Test
     void testThatCreateValidAccountWorks() throws Exception {
         var user = new UserDao("user", "password", "user@password.com");
@@ -0,0 +1,144 @@
+package com.example.lobbyserver.user;
+
+import com.example.lobbyserver.game.GameResultSavedEvent;
+import com.example.lobbyserver.game.GameResultsSavedEvent;
+import com.example.lobbyserver.user.db.UserStats;
+import com.example.lobbyserver.user.db.UserStatsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.*;
+
+class UserStatsServiceTest {
+
+    private static final LocalDateTime DATE_TIME = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    UserStatsRepository userStatsRepository = mock(UserStatsRepository.class);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    UserStatsService userStatsService = new UserStatsService(userStatsRepository, mock(PlatformTransactionManager.class), meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(userStatsService, "cacheSize", 2);
+        ReflectionTestUtils.setField(userStatsService, "backfillOnStartup", true);
+    }
+
+    @Test
+    void testThatStatsAreReadOnceAndServedFromTheCache() {
+        given(userStatsRepository.findById("user")).willReturn(Optional.of(stats("user", 4, 9000L, 18002L)));
+
+        var first = userStatsService.getStats("user");
+        var second = userStatsService.getStats("user");
+
+        assertThat(first).contains(new UserStatsDao("user", 4, 9000L, 4500.5, 120L, 600000L, DATE_TIME));
+        assertThat(second).isEqualTo(first);
+        verify(userStatsRepository, times(1)).findById("user");
+        assertThat(meterRegistry.get("user.stats.cache").tag("result", "hit").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testThatUsersWithoutGamesHaveNoStats() {
+        given(userStatsRepository.findById("user")).willReturn(Optional.empty());
+
+        assertThat(userStatsService.getStats("user")).isEmpty();
+        assertThat(userStatsService.getStats("user")).isEmpty();
+        verify(userStatsRepository, times(2)).findById("user");
+    }
+
+    @Test
+    void testThatSavedResultIsRecordedAndEvictedOnceCommitted() {
+        given(userStatsRepository.findById("user")).willReturn(Optional.of(stats("user", 1, 100L, 100L)));
+        userStatsService.getStats("user");
+        var event = new GameResultSavedEvent("user", 300L, 2, 5, 60000L, DATE_TIME);
+
+        userStatsService.gameResultsSaved(new GameResultsSavedEvent(List.of(event)));
+        verify(userStatsRepository).recordGames(new String[]{"user"}, new long[]{1}, new long[]{300L},
+                new long[]{300L}, new long[]{5}, new long[]{60000L}, new LocalDateTime[]{DATE_TIME});
+
+        given(userStatsRepository.findById("user")).willReturn(Optional.of(stats("user", 2, 300L, 400L)));
+        userStatsService.gameResultCommitted(event);
+        assertThat(userStatsService.getStats("user").orElseThrow().gamesPlayed()).isEqualTo(2);
+    }
+
+    @Test
+    void testThatBatchIsRecordedOncePerPlayerInNameOrder() {
+        userStatsService.gameResultsSaved(new GameResultsSavedEvent(List.of(
+                new GameResultSavedEvent("b", 300L, 2, 5, 60000L, DATE_TIME),
+                new GameResultSavedEvent("a", 100L, 1, 2, 30000L, DATE_TIME),
+                new GameResultSavedEvent("b", 500L, 3, 7, 90000L, DATE_TIME.plusHours(1)))));
+
+        verify(userStatsRepository).recordGames(new String[]{"a", "b"}, new long[]{1, 2}, new long[]{100L, 500L},
+                new long[]{100L, 800L}, new long[]{2, 12}, new long[]{30000L, 150000L},
+                new LocalDateTime[]{DATE_TIME, DATE_TIME.plusHours(1)});
+    }
+
+    @Test
+    void testThatReadOverlappingACommitIsNotCached() {
+        given(userStatsRepository.findById("user")).willAnswer(_ -> {
+            userStatsService.gameResultCommitted(new GameResultSavedEvent("user", 300L, 2, 5, 60000L, DATE_TIME));
+            return Optional.of(stats("user", 1, 100L, 100L));
+        });
+
+        userStatsService.getStats("user");
+        userStatsService.getStats("user");
+
+        verify(userStatsRepository, times(2)).findById("user");
+    }
+
+    @Test
+    void testThatCacheKeepsTheMostRecentlyReadUsers() {
+        given(userStatsRepository.findById(any())).willAnswer(invocation ->
+                Optional.of(stats(invocation.getArgument(0), 1, 100L, 100L)));
+
+        userStatsService.getStats("a");
+        userStatsService.getStats("b");
+        userStatsService.getStats("a");
+        userStatsService.getStats("c");
+        userStatsService.getStats("a");
+        userStatsService.getStats("b");
+
+        verify(userStatsRepository, times(1)).findById("a");
+        verify(userStatsRepository, times(2)).findById("b");
+        assertThat(meterRegistry.get("user.stats.cache.size").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    void testThatBackfillOnlyRunsOnAnEmptyTable() {
+        given(userStatsRepository.existsAny()).willReturn(true);
+        userStatsService.backfillIfEmpty();
+        verify(userStatsRepository, never()).recomputeAll();
+
+        given(userStatsRepository.existsAny()).willReturn(false);
+        given(userStatsRepository.recomputeAll()).willReturn(3);
+        userStatsService.backfillIfEmpty();
+
+        var inOrder = inOrder(userStatsRepository);
+        inOrder.verify(userStatsRepository).lockGameResults();
+        inOrder.verify(userStatsRepository).recomputeAll();
+    }
+
+    @Test
+    void testThatBackfillClearsTheCache() {
+        given(userStatsRepository.findById("user")).willReturn(Optional.of(stats("user", 1, 100L, 100L)));
+        given(userStatsRepository.recomputeAll()).willReturn(1);
+        userStatsService.getStats("user");
+
+        assertThat(userStatsService.backfill()).isEqualTo(1);
+        userStatsService.getStats("user");
+
+        verify(userStatsRepository, times(2)).findById("user");
+    }
+
+    private static UserStats stats(String username, long gamesPlayed, long bestScore, long totalScore) {
+        return new UserStats(username, gamesPlayed, bestScore, totalScore, 120L, 600000L, DATE_TIME);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.lobbyserver.user.db;
+
+import com.example.lobbyserver.TestcontainersConfiguration;
+import com.example.lobbyserver.game.db.GameResult;
+import com.example.lobbyserver.game.db.GameResultRepository;
+import com.example.lobbyserver.user.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({TestcontainersConfiguration.class, UserService.class, UserConfiguration.class})
+@DirtiesContext
+@ActiveProfiles("test")
+class UserStatsRepositoryTest {
+
+    private static final LocalDateTime DATE_TIME = LocalDateTime.of(2021, 1, 1, 0, 0);
+
+    @Autowired
+    UserStatsRepository userStatsRepository;
+
+    @Autowired
+    GameResultRepository gameResultRepository;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        userService.createUser("user1", "password", "user1@email.com");
+        userService.createUser("user2", "password", "user2@email.com");
+    }
+
+    @Test
+    void testThatRecordedGamesAreAggregated() {
+        userStatsRepository.recordGames(new String[]{"user1"}, new long[]{2}, new long[]{3000L}, new long[]{4000L},
+                new long[]{16}, new long[]{30000L}, new LocalDateTime[]{DATE_TIME.plusHours(1)});
+        userStatsRepository.recordGames(new String[]{"user1"}, new long[]{1}, new long[]{2000L}, new long[]{2000L},
+                new long[]{8}, new long[]{15000L}, new LocalDateTime[]{DATE_TIME.minusHours(1)});
+
+        var stats = userStatsRepository.findById("user1").orElseThrow();
+        assertThat(stats.getGamesPlayed()).isEqualTo(3);
+        assertThat(stats.getBestScore()).isEqualTo(3000L);
+        assertThat(stats.getTotalScore()).isEqualTo(6000L);
+        assertThat(stats.getTotalLinesCleared()).isEqualTo(24L);
+        assertThat(stats.getTotalPlayTime()).isEqualTo(45000L);
+        assertThat(stats.getLastPlayed()).isEqualTo(DATE_TIME.plusHours(1));
+        assertThat(userStatsRepository.findById("user2")).isEmpty();
+    }
+
+    @Test
+    void testThatRecomputingReplacesTheAggregatesWithTheStoredResults() {
+        var user1 = userRepository.findById("user1").orElseThrow();
+        var user2 = userRepository.findById("user2").orElseThrow();
+        gameResultRepository.saveAll(List.of(
+                new GameResult(null, user1, 1000L, 10, 6, 10000L, DATE_TIME),
+                new GameResult(null, user1, 3000L, 12, 9, 30000L, DATE_TIME.plusDays(1)),
+                new GameResult(null, user2, 500L, 3, 2, 5000L, DATE_TIME)
+        ));
+        userStatsRepository.recordGames(new String[]{"user1"}, new long[]{1}, new long[]{99999L}, new long[]{99999L},
+                new long[]{99}, new long[]{99999L}, new LocalDateTime[]{DATE_TIME});
+        assertThat(userStatsRepository.existsAny()).isTrue();
+
+        userStatsRepository.lockGameResults();
+        assertThat(userStatsRepository.recomputeAll()).isEqualTo(2);
+
+        var stats = userStatsRepository.findById("user1").orElseThrow();
+        assertThat(stats.getGamesPlayed()).isEqualTo(2);
+        assertThat(stats.getBestScore()).isEqualTo(3000L);
+        assertThat(stats.getTotalScore()).isEqualTo(4000L);
+        assertThat(stats.getTotalLinesCleared()).isEqualTo(15L);
+        assertThat(stats.getTotalPlayTime()).isEqualTo(40000L);
+        assertThat(stats.getLastPlayed()).isEqualTo(DATE_TIME.plusDays(1));
+        assertThat(userStatsRepository.findById("user2").orElseThrow().getGamesPlayed()).isEqualTo(1);
+    }
+
+    @TestConfiguration
+    static class UserStatsRepositoryTestConfiguration {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return PasswordEncoderFactories.createDelegatingPasswordEncoder();
+        }
+    }
+}